@@ -0,0 +1,119 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.orland0m.rpi.access.sim.SimulatedPinAccessor;
+import com.orland0m.rpi.middleware.exception.PinBusyException;
+import com.orland0m.rpi.middleware.exception.StacklessMode;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * markBusy/markFree cycles on one shared pin as the number of competing threads grows.
+ * Losing threads get a PinBusyException, stackless mode is enabled so the numbers
+ * reflect the state machine rather than stack trace capture.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BusyFlagBenchmark {
+    /*! Accessor owning the pin */
+    private SimulatedPinAccessor accessor;
+    /*! Pin shared by every benchmark thread */
+    private OutputPin pin;
+
+    @Setup
+    public void setup() {
+        StacklessMode.setEnabled(true);
+        accessor = new SimulatedPinAccessor();
+        pin = accessor.getOutGpio(WiringPi.GPIO_0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        accessor.shutdown();
+        StacklessMode.setEnabled(false);
+    }
+
+    /**
+     * One busy/free cycle
+     *
+     * @return True if this thread owned the pin
+     */
+    private boolean cycle() {
+        try {
+            pin.markBusy();
+
+        } catch(PinBusyException e) {
+            return false;
+        }
+
+        pin.markFree();
+        return true;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean busyFree1() {
+        return cycle();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public boolean busyFree2() {
+        return cycle();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean busyFree4() {
+        return cycle();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean busyFree8() {
+        return cycle();
+    }
+}
\ No newline at end of file
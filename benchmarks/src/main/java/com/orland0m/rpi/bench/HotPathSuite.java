@@ -0,0 +1,77 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the middleware hot path benchmarks the way releases are compared: throughput and
+ * sampled latency percentiles, allocation rate from the GC profiler, and results saved
+ * as JSON. Usage: java -cp target/benchmarks.jar com.orland0m.rpi.bench.HotPathSuite [result.json]
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class HotPathSuite {
+    /*! Result file used when none is given */
+    private static final String DEFAULT_RESULT_FILE = "target/jmh-result.json";
+
+    /**
+     * Utility class, not meant to be instantiated
+     */
+    private HotPathSuite() {
+    }
+
+    /**
+     * Runs the suite
+     *
+     * @param args Optional path of the JSON result file
+     * @throws RunnerException If JMH fails to run the benchmarks
+     */
+    public static void main(String[] args) throws RunnerException {
+        String resultFile = args.length > 0 ? args[0] : DEFAULT_RESULT_FILE;
+        Options options = new OptionsBuilder()
+        .include(WiringPiLookupBenchmark.class.getSimpleName())
+        .include(RegistryContentionBenchmark.class.getSimpleName())
+        .include(BusyFlagBenchmark.class.getSimpleName())
+        .include(ToggleBenchmark.class.getSimpleName())
+        .include(ListenerFanOutBenchmark.class.getSimpleName())
+        .param("backend", "sim")
+        .mode(Mode.Throughput)
+        .mode(Mode.SampleTime)
+        .timeUnit(TimeUnit.MICROSECONDS)
+        .addProfiler(GCProfiler.class)
+        .resultFormat(ResultFormatType.JSON)
+        .result(resultFile)
+        .build();
+        new Runner(options).run();
+    }
+}
\ No newline at end of file
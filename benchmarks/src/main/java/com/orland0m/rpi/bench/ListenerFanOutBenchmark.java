@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.orland0m.rpi.access.sim.SimulatedPinAccessor;
+import com.orland0m.rpi.middleware.pin.InputPin;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Cost of delivering one input edge to a growing number of listeners, either plain
+ * state listeners or event listeners reading the pooled event. Run with -prof gc to
+ * check that events are not allocated per edge.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListenerFanOutBenchmark {
+    /*! Number of listeners registered on the input pin */
+    @Param({"1", "4", "16"})
+    public int listeners;
+    /*! Listener flavour: "state" or "event" */
+    @Param({"state", "event"})
+    public String kind;
+    /*! Accessor owning the pin */
+    private SimulatedPinAccessor accessor;
+    /*! Level driven on the next invocation */
+    private boolean level;
+
+    @Setup
+    public void setup(final Blackhole blackhole) {
+        accessor = new SimulatedPinAccessor();
+        InputPin pin = accessor.getInGpio(WiringPi.GPIO_2);
+
+        for(int i = 0; i < listeners; i++) {
+            if("event".equals(kind)) {
+                pin.addEventListener(event -> blackhole.consume(event.getTimestampNanos()));
+
+            } else {
+                pin.addListener(changed -> blackhole.consume(changed));
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        accessor.shutdown();
+    }
+
+    @Benchmark
+    public void edge() {
+        level = !level;
+        accessor.setInputLevel(WiringPi.GPIO_2, level);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,113 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.orland0m.rpi.access.sim.SimulatedPinAccessor;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Measures cached pin lookups on the accessor registry while the number of
+ * threads hammering it grows. Throughput should scale with the thread count
+ * since lookups never take a monitor. Runs on the simulated accessor with no latency,
+ * which registers pins exactly like the hardware backends do.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistryContentionBenchmark {
+    /*! GPIOs provisioned before measuring */
+    private static final WiringPi[] GPIOS = new WiringPi[] {
+        WiringPi.GPIO_0, WiringPi.GPIO_1, WiringPi.GPIO_2, WiringPi.GPIO_3
+    };
+    /*! Accessor under test */
+    private SimulatedPinAccessor accessor;
+
+    @Setup
+    public void setup() {
+        accessor = new SimulatedPinAccessor();
+
+        for(WiringPi gpio : GPIOS) {
+            accessor.getOutGpio(gpio);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        accessor.shutdown();
+    }
+
+    /**
+     * Looks up one of the provisioned pins
+     *
+     * @return The cached pin so JMH does not optimize the lookup away
+     */
+    private OutputPin lookup() {
+        return accessor.getOutGpio(GPIOS[(int)(Thread.currentThread().getId() & 3)]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public OutputPin cachedLookup1() {
+        return lookup();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public OutputPin cachedLookup2() {
+        return lookup();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public OutputPin cachedLookup4() {
+        return lookup();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public OutputPin cachedLookup8() {
+        return lookup();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,119 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.orland0m.rpi.access.rest.RestConfig;
+import com.orland0m.rpi.access.rest.RestGateway;
+import com.orland0m.rpi.access.rest.RestPinAccessor;
+import com.orland0m.rpi.access.sim.SimulatedPinAccessor;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Remote pin operations per second against a gateway on the loopback interface, backed
+ * by the simulated board. The concurrent variant runs more threads than connections when
+ * connections=1, so its requests are pipelined. With batchWindowMicros above zero writes
+ * are batched; toggles then collapse and mostly measure the client side.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class RestLoopbackBenchmark {
+    /*! Persistent connections kept by the client */
+    @Param({"1", "4"})
+    public int connections;
+    /*! Client batch window, zero disables batching */
+    @Param({"0", "500"})
+    public long batchWindowMicros;
+    /*! The board behind the gateway */
+    private SimulatedPinAccessor board;
+    /*! The gateway */
+    private RestGateway gateway;
+    /*! The client under test */
+    private RestPinAccessor client;
+    /*! Pin being toggled */
+    private OutputPin pin;
+
+    @Setup
+    public void setup() throws IOException {
+        RestConfig config = new RestConfig();
+        config.setBindAddress("127.0.0.1");
+        config.setPort(0);
+        config.setServer("127.0.0.1");
+        config.setMaxConnections(connections);
+        config.setBatchWindow(batchWindowMicros, TimeUnit.MICROSECONDS);
+        board = new SimulatedPinAccessor();
+        gateway = new RestGateway(board, config);
+        gateway.start();
+
+        config.setPort(gateway.getAddress().getPort());
+        client = new RestPinAccessor(config);
+        pin = client.getOutGpio(WiringPi.GPIO_0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.shutdown();
+        gateway.stop();
+        board.shutdown();
+    }
+
+    @Benchmark
+    public int toggle() {
+        return pin.tryToggle();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int toggleConcurrent() {
+        return pin.tryToggle();
+    }
+
+    @Benchmark
+    public int read() {
+        return pin.tryRead();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.orland0m.rpi.access.sim.SimulatedPinAccessor;
+import com.orland0m.rpi.middleware.exception.InvalidatedPinException;
+import com.orland0m.rpi.middleware.exception.StacklessMode;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.PinStatus;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Compares the cost of a failed pin write through the throwing API, with and without
+ * stack traces, against the status code API. Run with -prof gc to see the allocation
+ * difference.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatusCodeBenchmark {
+    /*! Whether exceptions are created without stack traces */
+    @Param({"false", "true"})
+    public boolean stackless;
+    /*! A valid pin, used as the success baseline */
+    private OutputPin validPin;
+    /*! An invalidated pin, every write to it fails */
+    private OutputPin invalidPin;
+
+    @Setup
+    public void setup() {
+        StacklessMode.setEnabled(stackless);
+        SimulatedPinAccessor accessor = new SimulatedPinAccessor();
+        validPin = accessor.getOutGpio(WiringPi.GPIO_0);
+        invalidPin = accessor.getOutGpio(WiringPi.GPIO_1);
+        invalidPin.markInvalid();
+    }
+
+    @TearDown
+    public void tearDown() {
+        StacklessMode.setEnabled(false);
+    }
+
+    @Benchmark
+    public int exceptionFailure() {
+        try {
+            invalidPin.up();
+            return PinStatus.OK;
+
+        } catch(InvalidatedPinException e) {
+            return PinStatus.INVALIDATED;
+        }
+    }
+
+    @Benchmark
+    public int statusFailure() {
+        return invalidPin.trySet(true);
+    }
+
+    @Benchmark
+    public int statusSuccess() {
+        return validPin.trySet(true);
+    }
+}
\ No newline at end of file
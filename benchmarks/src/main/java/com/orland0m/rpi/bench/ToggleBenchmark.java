@@ -0,0 +1,126 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.orland0m.rpi.access.local.LocalPinAccessor;
+import com.orland0m.rpi.access.mmap.GpioRegisters;
+import com.orland0m.rpi.access.mmap.MappedPinAccessor;
+import com.orland0m.rpi.access.sim.SimulatedPinAccessor;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.PinAccessor;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Toggle rate of the memory mapped backend versus the Pi4J backend, with the simulated
+ * backend as the middleware-only baseline. The pi4j backend needs a Raspberry PI; away
+ * from the board run with -p backend=mmap,sim and the register file is replaced by a
+ * temporary stand-in. On the board pass -p registerFile=/dev/gpiomem.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ToggleBenchmark {
+    /*! Backend under test: mmap, pi4j or sim */
+    @Param({"mmap", "pi4j", "sim"})
+    public String backend;
+    /*! Register file for the mmap backend, empty means a temporary stand-in */
+    @Param({""})
+    public String registerFile;
+    /*! Accessor under test */
+    private PinAccessor accessor;
+    /*! Pin being toggled */
+    private OutputPin pin;
+    /*! Temporary stand-in file, null when using a real register file */
+    private File standIn;
+
+    @Setup
+    public void setup() throws IOException {
+        if("pi4j".equals(backend)) {
+            accessor = new LocalPinAccessor();
+
+        } else if("sim".equals(backend)) {
+            accessor = new SimulatedPinAccessor();
+
+        } else {
+            String path = registerFile;
+
+            if(path.isEmpty()) {
+                standIn = File.createTempFile("gpiomem", ".bin");
+
+                try(RandomAccessFile file = new RandomAccessFile(standIn, "rw")) {
+                    file.setLength(GpioRegisters.BLOCK_SIZE);
+                }
+
+                path = standIn.getPath();
+            }
+
+            accessor = new MappedPinAccessor(path);
+        }
+
+        pin = accessor.getOutGpio(WiringPi.GPIO_0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        accessor.shutdown();
+
+        if(standIn != null) {
+            standIn.delete();
+        }
+    }
+
+    @Benchmark
+    public void toggle() {
+        pin.toggle();
+    }
+
+    @Benchmark
+    public void upDown() {
+        pin.up();
+        pin.down();
+    }
+}
\ No newline at end of file
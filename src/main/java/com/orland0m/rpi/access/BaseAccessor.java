@@ -23,25 +23,37 @@
  */
 package com.orland0m.rpi.access;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.apache.log4j.Logger;
 
+import com.orland0m.rpi.middleware.event.DebounceConfig;
 import com.orland0m.rpi.middleware.exception.AccessorDownException;
+import com.orland0m.rpi.middleware.exception.InvalidatedPinException;
 import com.orland0m.rpi.middleware.exception.PinBusyException;
+import com.orland0m.rpi.middleware.journal.PinJournal;
+import com.orland0m.rpi.middleware.journal.PinSnapshot;
+import com.orland0m.rpi.middleware.metrics.PinMetrics;
 import com.orland0m.rpi.middleware.pin.InputPin;
 import com.orland0m.rpi.middleware.pin.OutputPin;
 import com.orland0m.rpi.middleware.pin.PinAccessor;
+import com.orland0m.rpi.middleware.pin.PinLease;
+import com.orland0m.rpi.middleware.pin.PinSet;
+import com.orland0m.rpi.middleware.pin.PinStatus;
 import com.orland0m.rpi.middleware.pin.RpiPin;
 import com.orland0m.rpi.middleware.pin.WiringPi;
 
 /**
  * Abstract class with common functionality for pin accessors to manage pin objects
  * and misc features.
- * NOTE: Functions grab the down mutex instead of calling assertNotDown because
- * they need the accessor to stay in a valid state while performing an operation.
+ * NOTE: The pin registry is a fixed size array indexed by WiringPi ordinal, slots are
+ * only ever changed through compare-and-set so that looking up a cached pin costs a
+ * couple of volatile reads and never blocks. The accessor lifecycle is kept in a single
+ * atomic word; provisioning is refused as soon as a shutdown starts. Provisioning and
+ * masked writes are journaled and persisted here, pins handle their own writes, edges
+ * and settings.
  *
  * @author Orlando Miramontes <https://github.com/orland0m>
  */
@@ -54,21 +66,48 @@ public abstract class BaseAccessor implements PinAccessor {
     /*! Message used when the register a pin that is currently in use */
     private static final String PIN_IN_USE_MSG =
         "You must first release the GPIO pin before trying to register it again";
+    /*! Message used when the user tries to lease a pin that was never provisioned */
+    private static final String NOT_PROVISIONED_MSG =
+        "The GPIO pin must be provisioned before it can be leased: ";
+    /*! Message used when a masked write targets a pin that is not a valid output pin */
+    private static final String NOT_OUTPUT_MSG =
+        "Masked writes can only target GPIOs provisioned as output pins: ";
     /*! Message used when the user tries to registter a null pin object */
     private static final String NULL_PIN_MSG = "Trying to register a null pin object";
-    /*! Map containing the currently provisioned pins */
-    private final Map<WiringPi, RpiPin> provisionedPins;
-    /*! Memory address used to have exclusive access to the isDown flag  */
-    private final Object downLock  = new Object();
-    /*! Whether this accessor is down or not */
-    private boolean isDown;
+    /*! Every GPIO, indexed by ordinal; cached because WiringPi.values() clones on each call */
+    private static final WiringPi[] GPIOS = WiringPi.values();
+    /*! Lifecycle state: the accessor accepts requests */
+    private static final int RUNNING = 0;
+    /*! Lifecycle state: a shutdown is releasing the registered pins */
+    private static final int SHUTTING_DOWN = 1;
+    /*! Lifecycle state: the accessor has been shutdown */
+    private static final int DOWN = 2;
+    /*! Registry containing the currently provisioned pins, indexed by WiringPi ordinal */
+    private final AtomicReferenceArray<RpiPin> provisionedPins;
+    /*! One lock per GPIO serializing provisioning, indexed by WiringPi ordinal */
+    private final Object[] provisioningLocks;
+    /*! The lifecycle state of this accessor */
+    private final AtomicInteger state;
+    /*! Counters and latency histograms for every pin provisioned by this accessor */
+    private final PinMetrics metrics;
+    /*! Journal bound to every registered pin, null while not journaling */
+    private volatile PinJournal journal;
+    /*! Snapshot bound to every registered pin, null while not persisting */
+    private volatile PinSnapshot snapshot;
 
     /**
      * Initializes common fields
      */
     protected BaseAccessor() {
-        provisionedPins = new HashMap<>();
-        isDown = false;
+        provisionedPins = new AtomicReferenceArray<>(WiringPi.values().length);
+        provisioningLocks = new Object[GPIOS.length];
+
+        for(int i = 0; i < provisioningLocks.length; i++) {
+            provisioningLocks[i] = new Object();
+        }
+
+        state = new AtomicInteger(RUNNING);
+        metrics = new PinMetrics();
     }
 
     /* (non-Javadoc)
@@ -77,33 +116,47 @@ public abstract class BaseAccessor implements PinAccessor {
     @Override
     public void shutdown() throws PinBusyException,
         AccessorDownException {
-        Iterator<Map.Entry<WiringPi, RpiPin>> iter;
+        if(!state.compareAndSet(RUNNING, SHUTTING_DOWN)) {
+            throw new AccessorDownException(ACCESSOR_DOWN_MSG);
+        }
 
-        synchronized(downLock) {
-            if(isDown) {
-                throw new AccessorDownException(ACCESSOR_DOWN_MSG);
+        PinSnapshot persisted = snapshot;
 
-            } else {
-                synchronized(provisionedPins) {
-                    iter = provisionedPins.entrySet().iterator();
+        for(int i = 0; i < provisionedPins.length(); i++) {
+            RpiPin pin = provisionedPins.getAndSet(i, null);
 
-                    while(iter.hasNext()) {
-                        Map.Entry<WiringPi, RpiPin> entry = iter.next();
-                        RpiPin pin = entry.getValue();
-                        logger.trace("Releasing " + pin.getGpioInfo() + "...");
+            if(pin != null) {
+                // The snapshot keeps describing the pins as they were before the shutdown
+                if(pin instanceof BasePin) {
+                    ((BasePin)pin).bindSnapshot(null);
+                }
+
+                // and the outputs keep driving the level it recorded, for the restore
+                if(persisted != null && pin instanceof BaseOutputPin) {
+                    ((BaseOutputPin)pin).retainLevel(true);
+                }
 
-                        if(pin.isValid()) {
-                            pin.markInvalid();
-                        }
+                try {
+                    releasePin(pin);
 
-                        iter.remove();
-                        logger.trace("Successfully released " + pin.getGpioInfo());
+                } catch(PinBusyException e) {
+                    // Put things back the way they were so the user can retry later
+                    if(pin instanceof BasePin) {
+                        ((BasePin)pin).bindSnapshot(snapshot);
                     }
-                }
 
-                isDown = true;
+                    if(pin instanceof BaseOutputPin) {
+                        ((BaseOutputPin)pin).retainLevel(false);
+                    }
+
+                    provisionedPins.set(i, pin);
+                    state.set(RUNNING);
+                    throw e;
+                }
             }
         }
+
+        state.set(DOWN);
     }
 
     /* (non-Javadoc)
@@ -111,29 +164,367 @@ public abstract class BaseAccessor implements PinAccessor {
      */
     @Override
     public boolean isDown() {
-        boolean retVal = false;
+        return state.get() == DOWN;
+    }
 
-        synchronized(downLock) {
-            retVal = isDown;
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getMetrics()
+     */
+    @Override
+    public PinMetrics getMetrics() {
+        return metrics;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#setJournal(com.orland0m.rpi.middleware.journal.PinJournal)
+     */
+    @Override
+    public void setJournal(PinJournal journal) {
+        this.journal = journal;
+
+        // Pins registered from now on bind the journal when they are registered
+        for(int i = 0; i < provisionedPins.length(); i++) {
+            RpiPin pin = provisionedPins.get(i);
+
+            if(pin instanceof BasePin) {
+                ((BasePin)pin).bindJournal(journal);
+            }
         }
+    }
 
-        return retVal;
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#setSnapshot(com.orland0m.rpi.middleware.journal.PinSnapshot)
+     */
+    @Override
+    public void setSnapshot(PinSnapshot snapshot) {
+        bindSnapshot(snapshot, true);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#restore(com.orland0m.rpi.middleware.journal.PinSnapshot)
+     */
+    @Override
+    public int restore(PinSnapshot snapshot) throws PinBusyException, AccessorDownException {
+        assertNotDown();
+        int restored = 0;
+
+        for(WiringPi gpio : GPIOS) {
+            byte direction = snapshot.getDirection(gpio);
+
+            if(direction == PinSnapshot.INPUT) {
+                InputPin in = getInGpio(gpio);
+                DebounceConfig debounce = snapshot.getDebounce(gpio);
+                long window = snapshot.getFrequencyWindowNanos(gpio);
+
+                if(debounce != null) {
+                    in.setDebounce(debounce);
+                }
+
+                if(window > 0) {
+                    in.setFrequencyWindow(window, TimeUnit.NANOSECONDS);
+                }
+
+                restored++;
+
+            } else if(direction == PinSnapshot.OUTPUT) {
+                provisionOutput(gpio, snapshot.isHigh(gpio));
+                restored++;
+            }
+        }
+
+        // The snapshot already describes the restored pins, recording them again would
+        // reset their settings
+        bindSnapshot(snapshot, false);
+
+        if(logger.isDebugEnabled()) {
+            logger.debug("Restored " + restored + " pins from the snapshot");
+        }
+
+        return restored;
+    }
+
+    /**
+     * Provisions an output pin driving the given level. Backends that can provision a
+     * pin at a given level should override this so restoring never glitches the output,
+     * the default provisions the pin and writes the level afterwards.
+     *
+     * @param gpio The GPIO information for the pin in question
+     * @param high The level to drive
+     * @return The pin object
+     * @throws PinBusyException If the GPIO is provisioned as a busy input pin
+     * @throws AccessorDownException If this accessor is already down
+     */
+    protected OutputPin provisionOutput(WiringPi gpio, boolean high) throws PinBusyException,
+        AccessorDownException {
+        OutputPin out = getOutGpio(gpio);
+        out.trySet(high);
+        return out;
     }
 
     /**
-     * @throws AccessorDownException
+     * @throws AccessorDownException If this accessor is down or shutting down
      */
     protected void assertNotDown() throws
         AccessorDownException {
-        synchronized(downLock) {
-            if(isDown) {
-                throw new AccessorDownException(ACCESSOR_DOWN_MSG);
+        if(state.get() != RUNNING) {
+            throw new AccessorDownException(ACCESSOR_DOWN_MSG);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#readAll()
+     */
+    @Override
+    public int readAll() throws AccessorDownException {
+        assertNotDown();
+        int mask = 0;
+
+        for(int i = 0; i < GPIOS.length; i++) {
+            RpiPin pin = provisionedPins.get(i);
+
+            if(pin != null && pin.isValid()) {
+                mask |= 1 << GPIOS[i].getGpioAddress();
             }
         }
+
+        return readBank(mask);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#writeMasked(int, int)
+     */
+    @Override
+    public void writeMasked(int mask, int values) throws IllegalArgumentException,
+        AccessorDownException {
+        assertNotDown();
+        int unchecked = mask;
+
+        // Validate everything first so a bad mask does not leave a partial write behind
+        for(int i = 0; i < GPIOS.length; i++) {
+            int bit = 1 << GPIOS[i].getGpioAddress();
+
+            if((mask & bit) != 0) {
+                RpiPin pin = provisionedPins.get(i);
+
+                if(!(pin instanceof OutputPin) || !pin.isValid()) {
+                    throw new IllegalArgumentException(NOT_OUTPUT_MSG + GPIOS[i]);
+                }
+
+                unchecked &= ~bit;
+            }
+        }
+
+        if(unchecked != 0) {
+            throw new IllegalArgumentException(NOT_OUTPUT_MSG + PinSet.toString(unchecked));
+        }
+
+        PinJournal bound = journal;
+
+        if(bound != null) {
+            bound.append(PinJournal.WRITE_MASK, PinJournal.BANK_ADDRESS, values & mask, mask,
+                         System.nanoTime());
+        }
+
+        writeBank(mask, values & mask);
+        PinSnapshot persisted = snapshot;
+
+        if(persisted != null) {
+            persisted.recordLevels(mask, values);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#flush()
+     */
+    @Override
+    public void flush() throws PinBusyException, InvalidatedPinException, AccessorDownException {
+        // Writes are applied immediately, accessors that batch them override this
+        assertNotDown();
+    }
+
+    /**
+     * Reads the levels of the given provisioned pins. Backends that can read the whole
+     * level register at once should override this, the default reads pin by pin.
+     *
+     * @param mask Bitmask of the GPIO addresses to read, all of them provisioned
+     * @return Bitmask with the levels of the requested pins
+     */
+    protected int readBank(int mask) {
+        int levels = 0;
+
+        for(int i = 0; i < GPIOS.length; i++) {
+            int bit = 1 << GPIOS[i].getGpioAddress();
+            RpiPin pin = provisionedPins.get(i);
+
+            if((mask & bit) != 0 && pin != null && pin.tryRead() == PinStatus.HIGH) {
+                levels |= bit;
+            }
+        }
+
+        return levels;
     }
 
     /**
-     * Registeres an already provisioned pin
+     * Sets the given provisioned output pins. Backends that can write the set and clear
+     * registers directly should override this, the default writes pin by pin.
+     *
+     * @param mask Bitmask of the GPIO addresses to write, all of them valid output pins
+     * @param values Bitmask with the level for each GPIO in the mask
+     */
+    protected void writeBank(int mask, int values) {
+        for(int i = 0; i < GPIOS.length; i++) {
+            int bit = 1 << GPIOS[i].getGpioAddress();
+
+            if((mask & bit) != 0) {
+                RpiPin pin = provisionedPins.get(i);
+
+                // The accessor journaled the masked write already
+                if(pin instanceof BaseOutputPin) {
+                    ((BaseOutputPin)pin).trySetFromBank((values & bit) != 0);
+
+                } else {
+                    ((OutputPin)pin).trySet((values & bit) != 0);
+                }
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#tryGetInGpio(com.orland0m.rpi.middleware.pin.WiringPi)
+     */
+    @Override
+    public InputPin tryGetInGpio(WiringPi gpio) {
+        if(state.get() != RUNNING) {
+            return null;
+        }
+
+        RpiPin pin = provisionedPins.get(gpio.ordinal());
+
+        if(pin instanceof InputPin && pin.isValid()) {
+            return (InputPin)pin;
+
+        } else if(pin != null && isHeld(pin)) {
+            return null;
+        }
+
+        try {
+            return getInGpio(gpio);
+
+        } catch(PinBusyException | AccessorDownException e) {
+            // Lost a race against another thread, rare enough to pay for the exception
+            return null;
+
+        } catch(IllegalArgumentException e) {
+            // Another thread registered a pin first, take it if it fits
+            pin = provisionedPins.get(gpio.ordinal());
+            return pin instanceof InputPin && pin.isValid() ? (InputPin)pin : null;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#tryGetOutGpio(com.orland0m.rpi.middleware.pin.WiringPi)
+     */
+    @Override
+    public OutputPin tryGetOutGpio(WiringPi gpio) {
+        if(state.get() != RUNNING) {
+            return null;
+        }
+
+        RpiPin pin = provisionedPins.get(gpio.ordinal());
+
+        if(pin instanceof OutputPin && pin.isValid()) {
+            return (OutputPin)pin;
+
+        } else if(pin != null && isHeld(pin)) {
+            return null;
+        }
+
+        try {
+            return getOutGpio(gpio);
+
+        } catch(PinBusyException | AccessorDownException e) {
+            // Lost a race against another thread, rare enough to pay for the exception
+            return null;
+
+        } catch(IllegalArgumentException e) {
+            // Another thread registered a pin first, take it if it fits
+            pin = provisionedPins.get(gpio.ordinal());
+            return pin instanceof OutputPin && pin.isValid() ? (OutputPin)pin : null;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#findGpio(com.orland0m.rpi.middleware.pin.WiringPi)
+     */
+    @Override
+    public RpiPin findGpio(WiringPi gpio) {
+        return state.get() == DOWN ? null : provisionedPins.get(gpio.ordinal());
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#tryAcquire(com.orland0m.rpi.middleware.pin.WiringPi)
+     */
+    @Override
+    public PinLease tryAcquire(WiringPi gpio) throws IllegalArgumentException,
+        InvalidatedPinException, AccessorDownException {
+        return getProvisionedPin(gpio).tryAcquire();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#acquire(com.orland0m.rpi.middleware.pin.WiringPi, long, java.util.concurrent.TimeUnit)
+     */
+    @Override
+    public PinLease acquire(WiringPi gpio, long timeout, TimeUnit unit)
+    throws IllegalArgumentException, InvalidatedPinException, AccessorDownException,
+        InterruptedException {
+        return getProvisionedPin(gpio).acquire(timeout, unit);
+    }
+
+    /**
+     * Returns the pin currently registered for the given GPIO
+     *
+     * @param gpio The GPIO information for the pin in question
+     * @return The pin object
+     * @throws IllegalArgumentException If no pin is registered for the GPIO
+     * @throws AccessorDownException If this accessor is already down
+     */
+    protected RpiPin getProvisionedPin(WiringPi gpio) throws IllegalArgumentException,
+        AccessorDownException {
+        assertNotDown();
+        RpiPin pin = provisionedPins.get(gpio.ordinal());
+
+        if(pin == null) {
+            throw new IllegalArgumentException(NOT_PROVISIONED_MSG + gpio);
+        }
+
+        return pin;
+    }
+
+    /**
+     * Returns the pin currently registered for the given GPIO without any checks
+     *
+     * @param gpio The GPIO information for the pin in question
+     * @return The pin object, or null if no pin is registered for the GPIO
+     */
+    protected RpiPin findProvisionedPin(WiringPi gpio) {
+        return provisionedPins.get(gpio.ordinal());
+    }
+
+    /**
+     * Returns the lock serializing the provisioning of a GPIO. Backends hold it from
+     * getForInputOrRelease or getForOutputOrRelease until the new pin is registered, so
+     * only one thread builds a pin, and claims its hardware, for a given GPIO; the others
+     * wait and find the registered pin. Reads of already provisioned pins never take it.
+     *
+     * @param gpio The GPIO information for the pin in question
+     * @return The lock object
+     */
+    protected final Object provisioningLock(WiringPi gpio) {
+        return provisioningLocks[gpio.ordinal()];
+    }
+
+    /**
+     * Registeres an already provisioned pin, callers hold the GPIO's provisioningLock
      *
      * @param pin A reference to the pin object
      * @throws IllegalArgumentException If the GPIO associated with the pin is already registered
@@ -147,26 +538,101 @@ public abstract class BaseAccessor implements PinAccessor {
             throw new NullPointerException(NULL_PIN_MSG);
         }
 
-        synchronized(downLock) {
-            if(!isDown) {
-                synchronized(provisionedPins) {
-                    logger.trace("Registering " + pin.getGpioInfo() + "...");
+        int slot = pin.getGpioInfo().ordinal();
+        assertNotDown();
 
-                    if(provisionedPins.containsKey(pin.getGpioInfo())) {
-                        throw new IllegalArgumentException(PIN_IN_USE_MSG);
+        if(!provisionedPins.compareAndSet(slot, null, pin)) {
+            throw new IllegalArgumentException(PIN_IN_USE_MSG);
+        }
 
-                    } else {
-                        provisionedPins.put(pin.getGpioInfo(), pin);
-                        logger.trace("Successfully registered " + pin.getGpioInfo());
-                    }
-                }
+        // A shutdown may have swept the registry between the check above and the CAS
+        if(state.get() != RUNNING && provisionedPins.compareAndSet(slot, pin, null)) {
+            throw new AccessorDownException(ACCESSOR_DOWN_MSG);
+        }
+
+        if(pin instanceof BasePin) {
+            ((BasePin)pin).bindMetrics(metrics);
+            journalProvisioning((BasePin)pin);
+            PinSnapshot persisted = snapshot;
+
+            if(persisted != null) {
+                persistProvisioning((BasePin)pin, persisted);
+            }
+
+            ((BasePin)pin).bindSnapshot(persisted);
+        }
+
+        if(logger.isTraceEnabled()) {
+            logger.trace("Successfully registered " + pin.getGpioInfo());
+        }
+    }
+
+    /**
+     * Binds the journal to a newly registered pin and records its provisioning
+     *
+     * @param pin The registered pin object
+     */
+    private void journalProvisioning(BasePin pin) {
+        PinJournal bound = journal;
+        pin.bindJournal(bound);
+
+        if(bound != null) {
+            int address = pin.getGpioInfo().getGpioAddress();
+
+            if(pin instanceof BaseInputPin) {
+                boolean high = ((BaseInputPin)pin).tryReadLevel() == PinStatus.HIGH;
+                bound.append(PinJournal.PROVISION_INPUT, address, high ? 1 : 0, 1 << address,
+                             System.nanoTime());
 
             } else {
-                throw new AccessorDownException(ACCESSOR_DOWN_MSG);
+                bound.append(PinJournal.PROVISION_OUTPUT, address, 0, 1 << address,
+                             System.nanoTime());
+            }
+        }
+    }
+
+    /**
+     * Binds a snapshot to every registered pin
+     *
+     * @param snapshot The snapshot, null to stop persisting
+     * @param recordAll True to record every pin, false to only record the pins the
+     *                  snapshot does not know about
+     */
+    private void bindSnapshot(PinSnapshot snapshot, boolean recordAll) {
+        this.snapshot = snapshot;
+
+        // Pins registered from now on are recorded when they are registered
+        for(int i = 0; i < provisionedPins.length(); i++) {
+            RpiPin pin = provisionedPins.get(i);
+
+            if(pin instanceof BasePin && pin.isValid()) {
+                if(snapshot != null && (recordAll
+                                        || snapshot.getDirection(GPIOS[i]) == PinSnapshot.NONE)) {
+                    persistProvisioning((BasePin)pin, snapshot);
+                }
+
+                ((BasePin)pin).bindSnapshot(snapshot);
             }
         }
     }
 
+    /**
+     * Records a registered pin in the snapshot, with the level of outputs
+     *
+     * @param pin The registered pin object
+     * @param persisted The snapshot
+     */
+    private static void persistProvisioning(BasePin pin, PinSnapshot persisted) {
+        int address = pin.getGpioInfo().getGpioAddress();
+
+        if(pin instanceof OutputPin) {
+            persisted.recordProvision(address, PinSnapshot.OUTPUT, pin.tryRead() == PinStatus.HIGH);
+
+        } else {
+            persisted.recordProvision(address, PinSnapshot.INPUT, false);
+        }
+    }
+
     /**
      * Returns the pin object for the given GPIO if it is already registered as an InputPin,
      * and if that pin object is in a valid state. Returns null if any of those conditions
@@ -180,39 +646,18 @@ public abstract class BaseAccessor implements PinAccessor {
      */
     protected InputPin getForInputOrRelease(WiringPi gpio) throws PinBusyException,
         AccessorDownException {
-        RpiPin pin;
-        InputPin retVal = null;
-
-        synchronized(downLock) {
-            if(!isDown) {
-                synchronized(provisionedPins) {
-                    if(provisionedPins.containsKey(gpio)) {
-                        pin = provisionedPins.get(gpio);
-                        logger.trace("Trying to reuse " + pin.getGpioInfo() + " as input pin");
-
-                        if(pin instanceof InputPin && pin.isValid()) {
-                            logger.trace("Reuse possible... returning existing instance");
-                            retVal = (InputPin)pin;
-
-                        } else {
-                            logger.trace("Pin already registered, releasing " + pin.getGpioInfo() + "...");
-
-                            if(pin.isValid()) {
-                                pin.markInvalid();
-                            }
-
-                            provisionedPins.remove(gpio);
-                            logger.trace("Successfully released " + pin.getGpioInfo());
-                        }
-                    }
-                }
+        assertNotDown();
+        RpiPin pin = provisionedPins.get(gpio.ordinal());
 
-            } else {
-                throw new AccessorDownException(ACCESSOR_DOWN_MSG);
-            }
+        if(pin instanceof InputPin && pin.isValid()) {
+            return (InputPin)pin;
+        }
+
+        if(pin != null) {
+            unregisterPin(gpio, pin);
         }
 
-        return retVal;
+        return null;
     }
 
     /**
@@ -228,38 +673,83 @@ public abstract class BaseAccessor implements PinAccessor {
      */
     protected OutputPin getForOutputOrRelease(WiringPi gpio) throws PinBusyException,
         AccessorDownException {
-        RpiPin pin;
-        OutputPin retVal = null;
-
-        synchronized(downLock) {
-            if(!isDown) {
-                synchronized(provisionedPins) {
-                    if(provisionedPins.containsKey(gpio)) {
-                        pin = provisionedPins.get(gpio);
-                        logger.trace("Trying to reuse " + pin.getGpioInfo() + " as output pin");
-
-                        if(pin instanceof OutputPin && pin.isValid()) {
-                            logger.trace("Reuse possible... returning existing instance");
-                            retVal = (OutputPin)pin;
-
-                        } else {
-                            logger.trace("Pin already registered, releasing " + pin.getGpioInfo() + "...");
-
-                            if(pin.isValid()) {
-                                pin.markInvalid();
-                            }
-
-                            provisionedPins.remove(gpio);
-                            logger.trace("Successfully released " + pin.getGpioInfo());
-                        }
-                    }
-                }
+        assertNotDown();
+        RpiPin pin = provisionedPins.get(gpio.ordinal());
 
-            } else {
-                throw new AccessorDownException(ACCESSOR_DOWN_MSG);
+        if(pin instanceof OutputPin && pin.isValid()) {
+            return (OutputPin)pin;
+        }
+
+        if(pin != null) {
+            unregisterPin(gpio, pin);
+        }
+
+        return null;
+    }
+
+    /**
+     * Removes the given pin from the registry and invalidates it. Nothing happens if
+     * another thread already replaced or removed the pin.
+     *
+     * @param gpio The GPIO information for the pin in question
+     * @param pin The pin object expected to be registered
+     * @throws PinBusyException If the pin is currently busy, the pin stays registered
+     */
+    private void unregisterPin(WiringPi gpio, RpiPin pin) throws PinBusyException {
+        int slot = gpio.ordinal();
+
+        if(provisionedPins.compareAndSet(slot, pin, null)) {
+            try {
+                releasePin(pin);
+
+            } catch(PinBusyException e) {
+                provisionedPins.compareAndSet(slot, null, pin);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Returns true if the pin is valid and busy, meaning it cannot be released right now
+     *
+     * @param pin The registered pin object
+     * @return True if releasing the pin would fail
+     */
+    private static boolean isHeld(RpiPin pin) {
+        if(!pin.isValid()) {
+            return false;
+        }
+
+        try {
+            return pin.isBusy();
+
+        } catch(InvalidatedPinException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Invalidates a pin that was just taken out of the registry
+     *
+     * @param pin The pin object being released
+     * @throws PinBusyException If the pin is currently busy
+     */
+    private void releasePin(RpiPin pin) throws PinBusyException {
+        if(logger.isTraceEnabled()) {
+            logger.trace("Releasing " + pin.getGpioInfo() + "...");
+        }
+
+        if(pin.isValid()) {
+            try {
+                pin.markInvalid();
+
+            } catch(InvalidatedPinException e) {
+                // Somebody else invalidated it first, nothing left to do
             }
         }
 
-        return retVal;
+        if(logger.isTraceEnabled()) {
+            logger.trace("Successfully released " + pin.getGpioInfo());
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,503 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.orland0m.rpi.middleware.event.DebounceConfig;
+import com.orland0m.rpi.middleware.event.Edge;
+import com.orland0m.rpi.middleware.event.ListenerQueue;
+import com.orland0m.rpi.middleware.event.OverflowPolicy;
+import com.orland0m.rpi.middleware.event.PinEvent;
+import com.orland0m.rpi.middleware.event.PinEventListener;
+import com.orland0m.rpi.middleware.event.PinStateListener;
+import com.orland0m.rpi.middleware.exception.InvalidatedPinException;
+import com.orland0m.rpi.middleware.exception.PinBusyException;
+import com.orland0m.rpi.middleware.journal.PinJournal;
+import com.orland0m.rpi.middleware.journal.PinSnapshot;
+import com.orland0m.rpi.middleware.metrics.PinMetrics;
+import com.orland0m.rpi.middleware.pin.InputPin;
+import com.orland0m.rpi.middleware.pin.PinStatus;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Abstract input pin that implements the InputPin contract on top of a backend level
+ * read. Listeners are kept here and every backend reports state changes through
+ * fireStateChange, so listener fan-out is handled, and measured, in a single place.
+ * Listeners receive pooled PinEvent objects, PinStateListener is adapted to that.
+ * Asynchronous listeners are registered behind a ListenerRing, fan-out only queues the
+ * change for them. A Debouncer, when set, filters changes before any fan-out, and an
+ * EdgeCounter counts and times the changes that pass it.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public abstract class BaseInputPin extends BasePin implements InputPin {
+    /*! Listeners notified on state changes */
+    private final List<PinEventListener> listeners = new CopyOnWriteArrayList<>();
+    /*! Number of state changes reported so far */
+    private final AtomicLong sequence = new AtomicLong();
+    /*! Edges filtered out by debouncing */
+    private final LongAdder suppressedEdges = new LongAdder();
+    /*! Debounce filter, null if changes are reported unfiltered */
+    private volatile Debouncer debouncer;
+    /*! Edge counts and pulse measurements */
+    private final EdgeCounter counter = new EdgeCounter();
+    /*! Set once the backend was asked to watch this pin, changed under the listeners lock */
+    private volatile boolean watching;
+
+    /**
+     * Initializes common input pin objects
+     *
+     * @param gpio The GPIO pin information
+     */
+    protected BaseInputPin(WiringPi gpio) {
+        super(gpio);
+    }
+
+    /**
+     * Reads the current level from the backend
+     *
+     * @return True if the pin is high
+     */
+    protected abstract boolean readLevel();
+
+    /**
+     * Non-throwing variant of readLevel, backends whose reads can fail should override this
+     *
+     * @return HIGH or LOW, or a negative PinStatus code if the read failed
+     */
+    protected int tryReadLevel() {
+        return readLevel() ? PinStatus.HIGH : PinStatus.LOW;
+    }
+
+    /**
+     * Called once, the first time something needs this pin's state changes: a listener,
+     * the edge counters or a journal. Backends that only watch pins on demand should
+     * start watching here.
+     */
+    protected void onStartWatching() {
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.RpiPin#isUp()
+     */
+    @Override
+    public boolean isUp() throws InvalidatedPinException {
+        assertValidity();
+        return read();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.RpiPin#isDown()
+     */
+    @Override
+    public boolean isDown() throws InvalidatedPinException {
+        return !isUp();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.RpiPin#tryRead()
+     */
+    @Override
+    public int tryRead() {
+        if(!isValid()) {
+            return PinStatus.INVALIDATED;
+        }
+
+        recordRead();
+        return tryReadLevel();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.InputPin#addListener(com.orland0m.rpi.middleware.event.PinStateListener)
+     */
+    @Override
+    public void addListener(PinStateListener listener) throws InvalidatedPinException {
+        assertValidity();
+
+        if(listener == null) {
+            throw new NullPointerException("Listener object must be a valid object");
+        }
+
+        register(adapt(listener));
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.InputPin#addListener(com.orland0m.rpi.middleware.event.PinStateListener, int, com.orland0m.rpi.middleware.event.OverflowPolicy)
+     */
+    @Override
+    public ListenerQueue addListener(PinStateListener listener, int capacity, OverflowPolicy policy)
+    throws InvalidatedPinException, IllegalArgumentException {
+        if(listener == null) {
+            throw new NullPointerException("Listener object must be a valid object");
+        }
+
+        return addEventListener(adapt(listener), capacity, policy);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.InputPin#addEventListener(com.orland0m.rpi.middleware.event.PinEventListener)
+     */
+    @Override
+    public void addEventListener(PinEventListener listener) throws InvalidatedPinException {
+        assertValidity();
+
+        if(listener == null) {
+            throw new NullPointerException("Listener object must be a valid object");
+        }
+
+        register(listener);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.InputPin#addEventListener(com.orland0m.rpi.middleware.event.PinEventListener, int, com.orland0m.rpi.middleware.event.OverflowPolicy)
+     */
+    @Override
+    public ListenerQueue addEventListener(PinEventListener listener, int capacity, OverflowPolicy policy)
+    throws InvalidatedPinException, IllegalArgumentException {
+        assertValidity();
+
+        if(listener == null || policy == null) {
+            throw new NullPointerException("Listener and policy must be valid objects");
+
+        } else if(capacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive: " + capacity);
+        }
+
+        ListenerRing ring = new ListenerRing(this, listener, capacity, policy);
+
+        try {
+            register(ring);
+
+        } catch(InvalidatedPinException e) {
+            ring.close();
+            throw e;
+        }
+
+        return ring;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.InputPin#setDebounce(com.orland0m.rpi.middleware.event.DebounceConfig)
+     */
+    @Override
+    public void setDebounce(DebounceConfig config) throws InvalidatedPinException {
+        assertValidity();
+        Debouncer next = null;
+
+        if(config != null && (config.getStableTimeNanos() > 0 || config.getMaxRate() > 0)) {
+            next = new Debouncer(this, config, TimerWheel.shared(), tryReadLevel() == PinStatus.HIGH);
+        }
+
+        Debouncer previous;
+
+        synchronized(listeners) {
+            previous = debouncer;
+            debouncer = next;
+        }
+
+        if(previous != null) {
+            previous.cancel();
+        }
+
+        PinSnapshot bound = getSnapshot();
+
+        if(bound != null) {
+            bound.recordDebounce(gpio.getGpioAddress(), next == null ? null : config);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.InputPin#getSuppressedEdgeCount()
+     */
+    @Override
+    public long getSuppressedEdgeCount() {
+        return suppressedEdges.sum();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.InputPin#getEdgeCount(com.orland0m.rpi.middleware.event.Edge)
+     */
+    @Override
+    public long getEdgeCount(Edge edge) {
+        watchForCounters();
+        if(edge == Edge.RISING) {
+            return counter.getRising();
+
+        } else if(edge == Edge.FALLING) {
+            return counter.getFalling();
+        }
+
+        return counter.getRising() + counter.getFalling();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.InputPin#getPulseWidthNanos()
+     */
+    @Override
+    public long getPulseWidthNanos() {
+        watchForCounters();
+        return counter.getPulseWidth();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.InputPin#getPeriodNanos()
+     */
+    @Override
+    public long getPeriodNanos() {
+        watchForCounters();
+        return counter.getPeriod();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.InputPin#getFrequencyHz()
+     */
+    @Override
+    public double getFrequencyHz() {
+        watchForCounters();
+        return counter.getFrequency();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.InputPin#setFrequencyWindow(long, java.util.concurrent.TimeUnit)
+     */
+    @Override
+    public void setFrequencyWindow(long window, TimeUnit unit) {
+        if(window <= 0) {
+            throw new IllegalArgumentException("Frequency window must be positive");
+        }
+
+        watchForCounters();
+        counter.setWindow(unit.toNanos(window));
+        PinSnapshot bound = getSnapshot();
+
+        if(bound != null) {
+            bound.recordFrequencyWindow(gpio.getGpioAddress(), unit.toNanos(window));
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.InputPin#resetCounters()
+     */
+    @Override
+    public void resetCounters() {
+        watchForCounters();
+        counter.reset();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.RpiPin#markInvalid()
+     */
+    @Override
+    public void markInvalid() throws PinBusyException, InvalidatedPinException {
+        super.markInvalid();
+        Debouncer filter = debouncer;
+
+        if(filter != null) {
+            filter.cancel();
+        }
+
+        synchronized(listeners) {
+            for(PinEventListener listener : listeners) {
+                if(listener instanceof ListenerRing) {
+                    ((ListenerRing)listener).close();
+                }
+            }
+
+            listeners.clear();
+        }
+    }
+
+    /**
+     * Notifies every listener that the pin changed state, reading the new level first.
+     * Backends that know the level should pass it instead.
+     */
+    protected void fireStateChange() {
+        fireStateChange(tryReadLevel() == PinStatus.HIGH, System.nanoTime());
+    }
+
+    /**
+     * Reports that the pin changed state, through the debounce filter if one is set
+     *
+     * @param high Level the pin changed to
+     * @param timestampNanos When the change was seen, from System#nanoTime
+     */
+    protected void fireStateChange(boolean high, long timestampNanos) {
+        journalEdge(high, timestampNanos);
+        Debouncer filter = debouncer;
+
+        if(filter == null) {
+            dispatchStateChange(high, timestampNanos);
+
+        } else {
+            filter.onEdge(high, timestampNanos);
+        }
+    }
+
+    /**
+     * Counts the change and notifies every listener that the pin changed state. A
+     * failing listener is logged and does not prevent the remaining listeners from
+     * being notified.
+     *
+     * @param high Level the pin changed to
+     * @param timestampNanos When the change was seen, from System#nanoTime
+     */
+    void dispatchStateChange(boolean high, long timestampNanos) {
+        counter.record(high, timestampNanos);
+        PooledPinEvent event = PooledPinEvent.obtain(this, high, timestampNanos,
+                                                     sequence.incrementAndGet());
+
+        try {
+            for(PinEventListener listener : listeners) {
+                if(listener instanceof ListenerRing) {
+                    // Measured by the ring's worker when it is delivered
+                    listener.onPinEvent(event);
+
+                } else {
+                    notifyListener(listener, event);
+                }
+            }
+
+        } finally {
+            event.recycle();
+        }
+    }
+
+    /**
+     * Notifies a single listener, logging its failures and recording the time it took
+     *
+     * @param listener The listener to notify
+     * @param event The state change
+     */
+    void notifyListener(PinEventListener listener, PinEvent event) {
+        PinMetrics metrics = getMetrics();
+        long start = metrics == null ? 0 : System.nanoTime();
+
+        try {
+            listener.onPinEvent(event);
+
+        } catch(RuntimeException e) {
+            logger.error("Listener failed while handling " + gpio, e);
+        }
+
+        if(metrics != null) {
+            metrics.recordListenerEvent(gpio, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Counts an edge the debounce filter will never report
+     */
+    void recordSuppressedEdge() {
+        suppressedEdges.increment();
+    }
+
+    /**
+     * Adapts a listener that only wants to know which pin changed
+     *
+     * @param listener The listener
+     * @return An event listener calling it
+     */
+    private PinEventListener adapt(PinStateListener listener) {
+        return event -> listener.onPinStateChange(this);
+    }
+
+    /**
+     * Adds a listener, starting to watch the pin if it is the first one
+     *
+     * @param listener The listener, possibly a ListenerRing
+     * @throws InvalidatedPinException If the pin was invalidated meanwhile
+     */
+    private void register(PinEventListener listener) throws InvalidatedPinException {
+        synchronized(listeners) {
+            // markInvalid clears the listeners under the same lock
+            assertValidity();
+            listeners.add(listener);
+        }
+
+        startWatching();
+    }
+
+    /**
+     * Asks the backend to watch this pin, once
+     */
+    private void startWatching() {
+        synchronized(listeners) {
+            if(watching || !isValid()) {
+                return;
+            }
+
+            watching = true;
+        }
+
+        onStartWatching();
+    }
+
+    /**
+     * Makes sure edges reach the counters, which only see what the backend reports
+     */
+    private void watchForCounters() {
+        if(!watching) {
+            startWatching();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BasePin#bindJournal(com.orland0m.rpi.middleware.journal.PinJournal)
+     */
+    @Override
+    void bindJournal(PinJournal journal) {
+        super.bindJournal(journal);
+
+        // The journal records edges as the backend reports them
+        if(journal != null && !watching) {
+            startWatching();
+        }
+    }
+
+    /**
+     * Reads the level and records the read
+     *
+     * @return True if the pin is high
+     */
+    private boolean read() {
+        recordRead();
+        return readLevel();
+    }
+
+    /**
+     * Counts one read if metrics are bound
+     */
+    private void recordRead() {
+        PinMetrics metrics = getMetrics();
+
+        if(metrics != null) {
+            metrics.recordRead(gpio);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,339 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access;
+
+import com.orland0m.rpi.middleware.exception.InvalidatedPinException;
+import com.orland0m.rpi.middleware.journal.PinJournal;
+import com.orland0m.rpi.middleware.journal.PinSnapshot;
+import com.orland0m.rpi.middleware.metrics.PinMetrics;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.PinStatus;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Abstract output pin that implements the OutputPin contract on top of three
+ * backend primitives: read the level, write the level and invert the level.
+ * Validity checks, metrics, journaling and snapshots are handled here so every backend
+ * behaves the same.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public abstract class BaseOutputPin extends BasePin implements OutputPin {
+    /*! Set while a shutdown persisting the pin's level releases it */
+    private volatile boolean retainingLevel;
+
+    /**
+     * Initializes common output pin objects
+     *
+     * @param gpio The GPIO pin information
+     */
+    protected BaseOutputPin(WiringPi gpio) {
+        super(gpio);
+    }
+
+    /**
+     * Reads the current level from the backend
+     *
+     * @return True if the pin is high
+     */
+    protected abstract boolean readLevel();
+
+    /**
+     * Writes the given level to the backend
+     *
+     * @param high True to drive the pin high
+     */
+    protected abstract void writeLevel(boolean high);
+
+    /**
+     * Inverts the current level, backends with a native toggle should override this
+     */
+    protected void invertLevel() {
+        writeLevel(!readLevel());
+    }
+
+    /**
+     * Returns true while the pin is released by a shutdown that keeps a snapshot of it.
+     * Backends driving outputs low on markInvalid must then leave the output at its last
+     * level, which is what a restore brings back.
+     *
+     * @return True if markInvalid must not change the output's level
+     */
+    protected boolean isRetainingLevel() {
+        return retainingLevel;
+    }
+
+    /**
+     * Makes markInvalid leave the output at its last level, or drive it low again
+     *
+     * @param retain True to keep the level
+     */
+    void retainLevel(boolean retain) {
+        retainingLevel = retain;
+    }
+
+    /**
+     * Non-throwing variant of readLevel, backends whose reads can fail should override this
+     *
+     * @return HIGH or LOW, or a negative PinStatus code if the read failed
+     */
+    protected int tryReadLevel() {
+        return readLevel() ? PinStatus.HIGH : PinStatus.LOW;
+    }
+
+    /**
+     * Non-throwing variant of writeLevel, backends whose writes can fail should override this
+     *
+     * @param high True to drive the pin high
+     * @return OK, or a negative PinStatus code if the write failed
+     */
+    protected int tryWriteLevel(boolean high) {
+        writeLevel(high);
+        return PinStatus.OK;
+    }
+
+    /**
+     * Non-throwing variant of invertLevel, backends whose writes can fail should override this
+     *
+     * @return OK, or a negative PinStatus code if the write failed
+     */
+    protected int tryInvertLevel() {
+        invertLevel();
+        return PinStatus.OK;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.RpiPin#isUp()
+     */
+    @Override
+    public boolean isUp() throws InvalidatedPinException {
+        assertValidity();
+        return read();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.RpiPin#isDown()
+     */
+    @Override
+    public boolean isDown() throws InvalidatedPinException {
+        return !isUp();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.OutputPin#up()
+     */
+    @Override
+    public void up() throws InvalidatedPinException {
+        assertValidity();
+        write(true);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.OutputPin#down()
+     */
+    @Override
+    public void down() throws InvalidatedPinException {
+        assertValidity();
+        write(false);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.OutputPin#toggle()
+     */
+    @Override
+    public void toggle() throws InvalidatedPinException {
+        assertValidity();
+        invert();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.RpiPin#tryRead()
+     */
+    @Override
+    public int tryRead() {
+        if(!isValid()) {
+            return PinStatus.INVALIDATED;
+        }
+
+        recordRead();
+        return tryReadLevel();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.OutputPin#trySet(boolean)
+     */
+    @Override
+    public int trySet(boolean high) {
+        if(!isValid()) {
+            return PinStatus.INVALIDATED;
+        }
+
+        journal(PinJournal.WRITE, high ? 1 : 0);
+        long start = writeStart();
+        int status = tryWriteLevel(high);
+        recordWrite(start);
+
+        if(status == PinStatus.OK) {
+            persistLevel(high);
+        }
+
+        return status;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.OutputPin#tryToggle()
+     */
+    @Override
+    public int tryToggle() {
+        if(!isValid()) {
+            return PinStatus.INVALIDATED;
+        }
+
+        journal(PinJournal.TOGGLE, 0);
+        long start = writeStart();
+        int status = tryInvertLevel();
+        recordWrite(start);
+
+        if(status == PinStatus.OK) {
+            persistToggle();
+        }
+
+        return status;
+    }
+
+    /**
+     * Sets the level as part of a masked write, which is journaled and persisted by the
+     * accessor as a whole instead of pin by pin
+     *
+     * @param high True to drive the pin high
+     * @return OK, or a negative PinStatus code if the write failed
+     */
+    int trySetFromBank(boolean high) {
+        if(!isValid()) {
+            return PinStatus.INVALIDATED;
+        }
+
+        long start = writeStart();
+        int status = tryWriteLevel(high);
+        recordWrite(start);
+        return status;
+    }
+
+    /**
+     * Reads the level and records the read
+     *
+     * @return True if the pin is high
+     */
+    private boolean read() {
+        recordRead();
+        return readLevel();
+    }
+
+    /**
+     * Writes the level and records the write latency
+     *
+     * @param high True to drive the pin high
+     */
+    private void write(boolean high) {
+        journal(PinJournal.WRITE, high ? 1 : 0);
+        long start = writeStart();
+        writeLevel(high);
+        recordWrite(start);
+        persistLevel(high);
+    }
+
+    /**
+     * Inverts the level and records the write latency
+     */
+    private void invert() {
+        journal(PinJournal.TOGGLE, 0);
+        long start = writeStart();
+        invertLevel();
+        recordWrite(start);
+        persistToggle();
+    }
+
+    /**
+     * Persists a written level if a snapshot is bound
+     *
+     * @param high The level written
+     */
+    private void persistLevel(boolean high) {
+        PinSnapshot bound = getSnapshot();
+
+        if(bound != null) {
+            bound.recordLevel(gpio.getGpioAddress(), high);
+        }
+    }
+
+    /**
+     * Persists the level left by a toggle if a snapshot is bound. The level is read back
+     * instead of flipping the stored one, so concurrent toggles can't leave the snapshot
+     * inverted
+     */
+    private void persistToggle() {
+        PinSnapshot bound = getSnapshot();
+
+        if(bound != null) {
+            int level = tryReadLevel();
+
+            if(level >= 0) {
+                bound.recordLevel(gpio.getGpioAddress(), level == PinStatus.HIGH);
+            }
+        }
+    }
+
+    /**
+     * Counts one read if metrics are bound
+     */
+    private void recordRead() {
+        PinMetrics metrics = getMetrics();
+
+        if(metrics != null) {
+            metrics.recordRead(gpio);
+        }
+    }
+
+    /**
+     * Starts timing a write
+     *
+     * @return The start timestamp, or zero if no metrics are bound
+     */
+    private long writeStart() {
+        return getMetrics() == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Records a write started at the given timestamp if metrics are bound
+     *
+     * @param start The value returned by writeStart
+     */
+    private void recordWrite(long start) {
+        PinMetrics metrics = getMetrics();
+
+        if(metrics != null && start != 0) {
+            metrics.recordWrite(gpio, System.nanoTime() - start);
+        }
+    }
+}
\ No newline at end of file
@@ -23,17 +23,31 @@
  */
 package com.orland0m.rpi.access;
 
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
 import org.apache.log4j.Logger;
 
 import com.orland0m.rpi.middleware.exception.InvalidatedPinException;
 import com.orland0m.rpi.middleware.exception.PinBusyException;
+import com.orland0m.rpi.middleware.journal.PinJournal;
+import com.orland0m.rpi.middleware.journal.PinSnapshot;
+import com.orland0m.rpi.middleware.metrics.PinMetrics;
+import com.orland0m.rpi.middleware.pin.PinLease;
 import com.orland0m.rpi.middleware.pin.RpiPin;
 import com.orland0m.rpi.middleware.pin.WiringPi;
 
 /**
  * Abstract pin class with common functionality to manage pin state and misc features.
- * NOTE: Functions grab the validity mutex instead of calling assertValidity because
- * they need the pin to stay in a valid state while performing an operation.
+ * NOTE: Validity and busy flags live in a single atomic word together with an epoch
+ * counter that grows every time the pin is marked busy. Transitions are done with
+ * compare-and-set so the validity check on the write path is a single volatile read.
+ * Leases are busy periods tagged with their epoch, threads waiting for a lease park
+ * on a FIFO queue and are woken one at a time as the pin is released.
  *
  * @author Orlando Miramontes <https://github.com/orland0m>
  */
@@ -49,16 +63,34 @@ public abstract class BasePin implements RpiPin {
     /*! Message used when the user tries to invalidate a busy pin */
     private static final String CANNOT_MARK_INVALID =
         "This pin object is currently busy, cannot mark as invalid at this moment";
-    /*! Memory address used to have exclusive access to the isValid flag */
-    private final Object validMutex = new Object();
-    /*! Memory address used to have exclusive access to the isBusy flag */
-    private final Object busyMutex = new Object();
+    /*! State bit set once the pin has been invalidated */
+    private static final int INVALID = 1;
+    /*! State bit set while the pin is busy */
+    private static final int BUSY = 1 << 1;
+    /*! Amount added to the state word every time the pin is marked busy */
+    private static final int EPOCH_UNIT = 1 << 2;
+    /*! Packed pin state: INVALID and BUSY bits plus the busy epoch on the upper bits */
+    private final AtomicInteger state = new AtomicInteger(0);
+    /*! Threads waiting for a lease, in arrival order */
+    private final Queue<Thread> waiters = new ConcurrentLinkedQueue<>();
+    /*! Number of acquire calls that had to wait */
+    private final LongAdder contentionCount = new LongAdder();
+    /*! Accumulated time spent waiting for leases */
+    private final LongAdder waitNanos = new LongAdder();
+    /*! Number of leases revoked for exceeding the maximum lease time */
+    private final LongAdder revokedCount = new LongAdder();
+    /*! The most recently granted lease */
+    private volatile Lease currentLease;
+    /*! Maximum time a lease may hold the pin, zero means forever */
+    private volatile long maxLeaseNanos;
+    /*! Metrics of the accessor that registered this pin, null while unregistered */
+    private volatile PinMetrics metrics;
+    /*! Journal of the accessor that registered this pin, null while not journaling */
+    private volatile PinJournal journal;
+    /*! Snapshot of the accessor that registered this pin, null while not persisted */
+    private volatile PinSnapshot snapshot;
     /*! The GPIO pin information */
     protected final WiringPi gpio;
-    /*! Whether this pin is valid */
-    private boolean isValid;
-    /*! Whether this pin is busy */
-    private boolean isBusy;
 
     /**
      * Initializes common pin objects
@@ -67,8 +99,6 @@ public abstract class BasePin implements RpiPin {
      */
     protected BasePin(WiringPi gpio) {
         this.gpio = gpio;
-        isValid = true;
-        isBusy = false;
     }
 
     /* (non-Javadoc)
@@ -85,33 +115,42 @@ public abstract class BasePin implements RpiPin {
      * @throws InvalidatedPinException If the pin has been invalidated
      */
     protected void assertValidity() throws InvalidatedPinException {
-        synchronized(validMutex) {
-            if(!isValid) {
-                throw new InvalidatedPinException(INVALID_PIN_MSG);
-            }
+        if((state.get() & INVALID) != 0) {
+            throw new InvalidatedPinException(INVALID_PIN_MSG);
         }
     }
 
+    /**
+     * Returns the number of times this pin has been marked busy. The value wraps around
+     * and is only meant to tell one busy period apart from the next one.
+     *
+     * @return The current busy epoch
+     */
+    protected int getBusyEpoch() {
+        return state.get() >>> 2;
+    }
+
     /* (non-Javadoc)
      * @see com.orland0m.rpi.middleware.pin.RpiPin#markBusy()
      */
     @Override
     public void markBusy() throws PinBusyException, InvalidatedPinException {
-        synchronized(validMutex) {
-            if(isValid) {
-                synchronized(busyMutex) {
-                    if(isBusy) {
-                        throw new PinBusyException(PIN_BUSY_MSG);
-
-                    } else {
-                        logger.trace("Marked " + gpio + " busy");
-                        isBusy = true;
-                    }
-                }
+        int current;
+
+        do {
+            current = state.get();
 
-            } else {
+            if((current & INVALID) != 0) {
                 throw new InvalidatedPinException(INVALID_PIN_MSG);
+
+            } else if((current & BUSY) != 0) {
+                recordBusyRejection();
+                throw new PinBusyException(PIN_BUSY_MSG);
             }
+        } while(!state.compareAndSet(current, (current + EPOCH_UNIT) | BUSY));
+
+        if(logger.isTraceEnabled()) {
+            logger.trace("Marked " + gpio + " busy");
         }
     }
 
@@ -128,20 +167,13 @@ public abstract class BasePin implements RpiPin {
      */
     @Override
     public boolean isBusy() throws InvalidatedPinException {
-        boolean isBusy = true;
-
-        synchronized(validMutex) {
-            if(isValid) {
-                synchronized(busyMutex) {
-                    isBusy = this.isBusy;
-                }
+        int current = state.get();
 
-            } else {
-                throw new InvalidatedPinException(INVALID_PIN_MSG);
-            }
+        if((current & INVALID) != 0) {
+            throw new InvalidatedPinException(INVALID_PIN_MSG);
         }
 
-        return isBusy;
+        return (current & BUSY) != 0;
     }
 
     /* (non-Javadoc)
@@ -149,16 +181,20 @@ public abstract class BasePin implements RpiPin {
      */
     @Override
     public void markFree() throws InvalidatedPinException {
-        synchronized(validMutex) {
-            if(isValid) {
-                synchronized(busyMutex) {
-                    isBusy = false;
-                    logger.trace("Marked " + gpio + " free");
-                }
+        int current;
 
-            } else {
+        do {
+            current = state.get();
+
+            if((current & INVALID) != 0) {
                 throw new InvalidatedPinException(INVALID_PIN_MSG);
             }
+        } while(!state.compareAndSet(current, current & ~BUSY));
+
+        LockSupport.unpark(waiters.peek());
+
+        if(logger.isTraceEnabled()) {
+            logger.trace("Marked " + gpio + " free");
         }
     }
 
@@ -167,22 +203,37 @@ public abstract class BasePin implements RpiPin {
      */
     @Override
     public void markInvalid() throws PinBusyException, InvalidatedPinException {
-        synchronized(validMutex) {
-            if(isValid) {
-                synchronized(busyMutex) {
-                    if(isBusy) {
-                        throw new PinBusyException(CANNOT_MARK_INVALID);
-
-                    } else {
-                        isValid = false;
-                        logger.debug("Marked " + gpio + " invalid");
-                    }
-                }
+        int current;
 
-            } else {
+        do {
+            current = state.get();
+
+            if((current & INVALID) != 0) {
                 throw new InvalidatedPinException(INVALID_PIN_MSG);
+
+            } else if((current & BUSY) != 0) {
+                throw new PinBusyException(CANNOT_MARK_INVALID);
             }
+        } while(!state.compareAndSet(current, current | INVALID));
+
+        PinMetrics bound = metrics;
+
+        if(bound != null) {
+            bound.recordInvalidation(gpio);
+        }
+
+        journal(PinJournal.INVALIDATE, 0);
+        PinSnapshot persisted = snapshot;
+
+        if(persisted != null) {
+            persisted.recordInvalidation(gpio.getGpioAddress());
+        }
+
+        for(Thread waiter : waiters) {
+            LockSupport.unpark(waiter);
         }
+
+        logger.debug("Marked " + gpio + " invalid");
     }
 
     /* (non-Javadoc)
@@ -190,12 +241,341 @@ public abstract class BasePin implements RpiPin {
      */
     @Override
     public boolean isValid() {
-        boolean retVal = false;
+        return (state.get() & INVALID) == 0;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.RpiPin#tryAcquire()
+     */
+    @Override
+    public PinLease tryAcquire() throws InvalidatedPinException {
+        assertValidity();
+        PinLease lease = waiters.isEmpty() ? tryTakeLease() : null;
+
+        if(lease == null) {
+            recordBusyRejection();
+        }
+
+        return lease;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.RpiPin#acquire(long, java.util.concurrent.TimeUnit)
+     */
+    @Override
+    public PinLease acquire(long timeout, TimeUnit unit) throws InvalidatedPinException,
+        InterruptedException {
+        assertValidity();
+        PinLease lease = waiters.isEmpty() ? tryTakeLease() : null;
 
-        synchronized(validMutex) {
-            retVal = isValid;
+        if(lease != null) {
+            return lease;
         }
 
-        return retVal;
+        if(Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+
+        Thread current = Thread.currentThread();
+        long start = System.nanoTime();
+        long deadline = start + unit.toNanos(timeout);
+        contentionCount.increment();
+        waiters.add(current);
+
+        try {
+            while(true) {
+                if(waiters.peek() == current) {
+                    lease = tryTakeLease();
+
+                    if(lease == null) {
+                        lease = tryRevokeLease();
+                    }
+
+                    if(lease != null) {
+                        return lease;
+                    }
+                }
+
+                long now = System.nanoTime();
+                long parkNanos = deadline - now;
+
+                if(parkNanos <= 0) {
+                    recordBusyRejection();
+                    return null;
+                }
+
+                if(waiters.peek() == current) {
+                    parkNanos = Math.min(parkNanos, nanosUntilRevocation(now));
+                }
+
+                LockSupport.parkNanos(this, parkNanos);
+
+                if(Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+
+                assertValidity();
+            }
+
+        } finally {
+            waiters.remove(current);
+            waitNanos.add(System.nanoTime() - start);
+            // Whoever is first now may have missed the wake up that was meant for us
+            LockSupport.unpark(waiters.peek());
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.RpiPin#setMaxLeaseTime(long, java.util.concurrent.TimeUnit)
+     */
+    @Override
+    public void setMaxLeaseTime(long time, TimeUnit unit) {
+        if(time < 0) {
+            throw new IllegalArgumentException("Maximum lease time cannot be negative");
+        }
+
+        maxLeaseNanos = unit.toNanos(time);
+        LockSupport.unpark(waiters.peek());
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.RpiPin#getLeaseContentionCount()
+     */
+    @Override
+    public long getLeaseContentionCount() {
+        return contentionCount.sum();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.RpiPin#getLeaseWaitNanos()
+     */
+    @Override
+    public long getLeaseWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.RpiPin#getRevokedLeaseCount()
+     */
+    @Override
+    public long getRevokedLeaseCount() {
+        return revokedCount.sum();
+    }
+
+    /**
+     * Attaches the metrics of the accessor that registered this pin
+     *
+     * @param metrics The accessor's metrics
+     */
+    void bindMetrics(PinMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the metrics this pin records into
+     *
+     * @return The accessor's metrics, or null if the pin was never registered
+     */
+    protected PinMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Attaches the journal of the accessor that registered this pin
+     *
+     * @param journal The accessor's journal, null to stop journaling
+     */
+    void bindJournal(PinJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Appends a record about this pin if a journal is bound
+     *
+     * @param opcode One of the PinJournal opcodes
+     * @param value The level recorded with it
+     */
+    void journal(byte opcode, int value) {
+        PinJournal bound = journal;
+
+        if(bound != null) {
+            bound.append(opcode, gpio.getGpioAddress(), value, 1 << gpio.getGpioAddress(),
+                         System.nanoTime());
+        }
+    }
+
+    /**
+     * Appends an edge of this pin if a journal is bound
+     *
+     * @param high The new level
+     * @param timestampNanos When the edge was seen
+     */
+    void journalEdge(boolean high, long timestampNanos) {
+        PinJournal bound = journal;
+
+        if(bound != null) {
+            bound.append(PinJournal.EDGE, gpio.getGpioAddress(), high ? 1 : 0,
+                         1 << gpio.getGpioAddress(), timestampNanos);
+        }
+    }
+
+    /**
+     * Attaches the snapshot of the accessor that registered this pin
+     *
+     * @param snapshot The accessor's snapshot, null to stop persisting this pin
+     */
+    void bindSnapshot(PinSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Returns the snapshot this pin persists its state into
+     *
+     * @return The accessor's snapshot, or null if the pin is not persisted
+     */
+    PinSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Counts a rejected attempt to mark this pin busy or lease it
+     */
+    private void recordBusyRejection() {
+        PinMetrics bound = metrics;
+
+        if(bound != null) {
+            bound.recordBusyRejection(gpio);
+        }
+    }
+
+    /**
+     * Marks the pin busy under a new lease if it is currently free
+     *
+     * @return The new lease, or null if the pin is busy
+     * @throws InvalidatedPinException If the pin has been invalidated
+     */
+    private PinLease tryTakeLease() throws InvalidatedPinException {
+        int current;
+
+        do {
+            current = state.get();
+
+            if((current & INVALID) != 0) {
+                throw new InvalidatedPinException(INVALID_PIN_MSG);
+
+            } else if((current & BUSY) != 0) {
+                return null;
+            }
+        } while(!state.compareAndSet(current, (current + EPOCH_UNIT) | BUSY));
+
+        return grantLease(current + EPOCH_UNIT);
+    }
+
+    /**
+     * Takes the pin away from the current lease if it exceeded the maximum lease time
+     *
+     * @return The new lease, or null if the current lease is still within its time
+     */
+    private PinLease tryRevokeLease() {
+        int current = state.get();
+        Lease holder = currentLease;
+
+        if((current & (INVALID | BUSY)) != BUSY || holder == null || holder.epoch != (current >>> 2)
+                || nanosUntilRevocation(System.nanoTime()) > 0) {
+            return null;
+        }
+
+        // The pin stays busy, it just moves on to the next epoch
+        if(!state.compareAndSet(current, current + EPOCH_UNIT)) {
+            return null;
+        }
+
+        revokedCount.increment();
+        logger.warn("Revoked lease on " + gpio + " after exceeding the maximum lease time");
+        return grantLease(current + EPOCH_UNIT);
+    }
+
+    /**
+     * Publishes a lease for the busy period that was just started
+     *
+     * @param newState The state word written by the successful transition
+     * @return The new lease
+     */
+    private PinLease grantLease(int newState) {
+        Lease lease = new Lease(newState >>> 2, System.nanoTime());
+        currentLease = lease;
+        return lease;
+    }
+
+    /**
+     * Returns how long the current lease may keep the pin before it can be revoked
+     *
+     * @param now The current System.nanoTime value
+     * @return The time left in nanoseconds, Long.MAX_VALUE if revocation is disabled
+     */
+    private long nanosUntilRevocation(long now) {
+        long maxNanos = maxLeaseNanos;
+        int current = state.get();
+        Lease holder = currentLease;
+
+        if(maxNanos == 0) {
+            return Long.MAX_VALUE;
+
+        } else if(holder == null || holder.epoch != (current >>> 2)) {
+            // Busy without a lease, or a lease being granted; either way nothing expires
+            // sooner than a full lease from now
+            return maxNanos;
+        }
+
+        return Math.max(holder.grantedAt + maxNanos - now, 0);
+    }
+
+    /**
+     * Lease tied to one busy epoch of the enclosing pin
+     */
+    private final class Lease implements PinLease {
+        /*! The busy epoch owned by this lease */
+        private final int epoch;
+        /*! System.nanoTime value at which the lease was granted */
+        private final long grantedAt;
+
+        /**
+         * Initializes a lease object
+         *
+         * @param epoch The busy epoch owned by this lease
+         * @param grantedAt The time at which the lease was granted
+         */
+        private Lease(int epoch, long grantedAt) {
+            this.epoch = epoch;
+            this.grantedAt = grantedAt;
+        }
+
+        /* (non-Javadoc)
+         * @see com.orland0m.rpi.middleware.pin.PinLease#getPin()
+         */
+        @Override
+        public RpiPin getPin() {
+            return BasePin.this;
+        }
+
+        /* (non-Javadoc)
+         * @see com.orland0m.rpi.middleware.pin.PinLease#isActive()
+         */
+        @Override
+        public boolean isActive() {
+            return state.get() == ((epoch << 2) | BUSY);
+        }
+
+        /* (non-Javadoc)
+         * @see com.orland0m.rpi.middleware.pin.PinLease#close()
+         */
+        @Override
+        public void close() {
+            int owned = (epoch << 2) | BUSY;
+
+            if(state.compareAndSet(owned, owned & ~BUSY)) {
+                LockSupport.unpark(waiters.peek());
+            }
+        }
     }
 }
\ No newline at end of file
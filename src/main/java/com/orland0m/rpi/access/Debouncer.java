@@ -0,0 +1,230 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.orland0m.rpi.middleware.event.DebounceConfig;
+import com.orland0m.rpi.middleware.event.DebounceMode;
+
+/**
+ * Debounce and rate filter sitting between a pin's backend and its listener fan-out.
+ * Every raw edge updates the pending level and moves a single TimerWheel timeout to the
+ * time the level is settled and the rate cap allows reporting it. When the timeout
+ * expires the level is reported if it differs from the last reported one; edges that
+ * never got reported are counted as suppressed.
+ *
+ * Reported levels are decided under the filter's lock, listeners are always notified
+ * outside of it. A leading edge reported at once is dispatched on the backend's thread,
+ * like an unfiltered change; levels reported when a timeout expires are handed to a
+ * dispatcher thread shared by every filter, so listeners never run on the wheel thread
+ * and cannot hold up the timeouts of other pins. Backends report the edges of a pin
+ * from one thread at a time, which together with the queued count keeps reports in
+ * order.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+final class Debouncer extends TimerWheel.Timeout {
+    /*! Dispatcher shared by every filter, created on first use, guarded by Debouncer.class */
+    private static ExecutorService dispatcher;
+    /*! The filtered pin */
+    private final BaseInputPin pin;
+    /*! Wheel expiring the settle timeout */
+    private final TimerWheel wheel;
+    /*! Time a level must be held to be settled */
+    private final long stableNanos;
+    /*! Minimum time between two reported changes */
+    private final long minIntervalNanos;
+    /*! Whether the first edge after a quiet period is reported at once */
+    private final boolean immediate;
+    /*! Latest raw level, guarded by this */
+    private boolean raw;
+    /*! When the latest raw edge was seen, guarded by this */
+    private long rawNanos;
+    /*! Whether a raw edge is waiting for the timeout, guarded by this */
+    private boolean pending;
+    /*! Last reported level, guarded by this */
+    private boolean reported;
+    /*! When the last change was reported, guarded by this */
+    private long reportedNanos;
+    /*! Set once the filter is replaced or the pin invalidated, guarded by this */
+    private boolean cancelled;
+    /*! Reports handed to the dispatcher and not delivered yet, guarded by this */
+    private int queued;
+
+    /**
+     * Creates a filter, settings are copied from the configuration
+     *
+     * @param pin The filtered pin
+     * @param config The filter settings
+     * @param wheel Wheel expiring the settle timeout
+     * @param level The pin's current level
+     */
+    Debouncer(BaseInputPin pin, DebounceConfig config, TimerWheel wheel, boolean level) {
+        this.pin = pin;
+        this.wheel = wheel;
+        stableNanos = config.getStableTimeNanos();
+        minIntervalNanos = config.getMaxRate() == 0 ? 0 : 1_000_000_000L / config.getMaxRate();
+        // Without a stable time there is nothing to wait for in trailing mode either
+        immediate = config.getMode() == DebounceMode.LEADING || stableNanos == 0;
+        raw = level;
+        reported = level;
+        rawNanos = System.nanoTime() - Math.max(stableNanos, minIntervalNanos);
+        reportedNanos = rawNanos;
+    }
+
+    /**
+     * Returns the dispatcher shared by every filter, starting it on first use
+     *
+     * @return The single thread executor
+     */
+    private static synchronized ExecutorService dispatcher() {
+        if(dispatcher == null) {
+            dispatcher = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "rpi-debounce-dispatch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        return dispatcher;
+    }
+
+    /**
+     * Filters a raw edge
+     *
+     * @param high The new level
+     * @param timestampNanos When the edge was seen
+     */
+    void onEdge(boolean high, long timestampNanos) {
+        synchronized(this) {
+            if(cancelled) {
+                return;
+            }
+
+            boolean quiet = !pending && timestampNanos - rawNanos >= stableNanos
+                            && timestampNanos - reportedNanos >= minIntervalNanos;
+            raw = high;
+            rawNanos = timestampNanos;
+
+            if(!immediate || !quiet || high == reported) {
+                if(pending) {
+                    // The previous pending edge will never be reported on its own
+                    pin.recordSuppressedEdge();
+                }
+
+                pending = true;
+                wheel.schedule(this, deadline());
+                return;
+            }
+
+            reported = high;
+            reportedNanos = timestampNanos;
+
+            if(queued > 0) {
+                // Earlier reports are still on their way, this one has to follow them
+                queue(high, timestampNanos);
+                return;
+            }
+        }
+
+        pin.dispatchStateChange(high, timestampNanos);
+    }
+
+    /**
+     * Stops the filter, a pending edge is discarded
+     */
+    synchronized void cancel() {
+        cancelled = true;
+        wheel.cancel(this);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.TimerWheel.Timeout#expire(long)
+     */
+    @Override
+    protected synchronized void expire(long now) {
+        if(cancelled || !pending) {
+            return;
+        }
+
+        long deadline = deadline();
+
+        if(now - deadline < 0) {
+            wheel.schedule(this, deadline);
+            return;
+        }
+
+        pending = false;
+
+        if(raw != reported) {
+            reported = raw;
+            reportedNanos = now;
+            queue(raw, rawNanos);
+
+        } else {
+            // The pin bounced back to the reported level
+            pin.recordSuppressedEdge();
+        }
+    }
+
+    /**
+     * Returns when the pending level can be reported. Caller must hold the lock.
+     *
+     * @return The deadline as System#nanoTime
+     */
+    private long deadline() {
+        return Math.max(rawNanos + stableNanos, reportedNanos + minIntervalNanos);
+    }
+
+    /**
+     * Hands a report to the dispatcher, under the lock so reports stay in order. Caller
+     * must hold the lock.
+     *
+     * @param level The reported level
+     * @param timestampNanos When the reported edge was seen
+     */
+    private void queue(boolean level, long timestampNanos) {
+        queued++;
+        dispatcher().execute(() -> deliver(level, timestampNanos));
+    }
+
+    /**
+     * Notifies the listeners of a queued report, on the dispatcher thread
+     *
+     * @param level The reported level
+     * @param timestampNanos When the reported edge was seen
+     */
+    private void deliver(boolean level, long timestampNanos) {
+        try {
+            pin.dispatchStateChange(level, timestampNanos);
+
+        } finally {
+            synchronized(this) {
+                queued--;
+            }
+        }
+    }
+}
\ No newline at end of file
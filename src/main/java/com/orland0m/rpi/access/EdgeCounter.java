@@ -0,0 +1,279 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Counter and timer state of an input pin, updated on every reported edge. Everything
+ * is kept in primitive fields updated under a StampedLock write lock, which is never
+ * contended unless edges are reported from several threads at once; readers use
+ * optimistic reads and never block the edge path.
+ *
+ * The frequency is measured over a sliding window split in BUCKETS buckets of rising
+ * edge counts, so it needs no per edge history.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+final class EdgeCounter {
+    /*! Buckets in the frequency window, a power of two */
+    private static final int BUCKETS = 16;
+    /*! Default frequency window */
+    private static final long DEFAULT_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    /*! Guards every field below */
+    private final StampedLock lock = new StampedLock();
+    /*! Rising edges per bucket */
+    private final long[] buckets = new long[BUCKETS];
+    /*! Length of one bucket */
+    private long bucketNanos = DEFAULT_WINDOW_NANOS / BUCKETS;
+    /*! Absolute index of the newest bucket */
+    private long newestBucket;
+    /*! Rising edges counted */
+    private long rising;
+    /*! Falling edges counted */
+    private long falling;
+    /*! Time of the last rising edge, valid once rising is not zero */
+    private long lastRise;
+    /*! Width of the last high pulse, zero until one completed */
+    private long pulseWidth;
+    /*! Time between the last two rising edges, zero until two were seen */
+    private long period;
+
+    /**
+     * Counts an edge, called on the edge path
+     *
+     * @param high The new level
+     * @param timestampNanos When the edge was seen
+     */
+    void record(boolean high, long timestampNanos) {
+        long stamp = lock.writeLock();
+
+        try {
+            if(high) {
+                if(rising != 0) {
+                    period = timestampNanos - lastRise;
+                }
+
+                rising++;
+                lastRise = timestampNanos;
+                long bucket = Math.floorDiv(timestampNanos, bucketNanos);
+
+                if(bucket != newestBucket) {
+                    // Clear the buckets the window slid over since the last rising edge
+                    for(long b = Math.max(newestBucket + 1, bucket - BUCKETS + 1); b <= bucket; b++) {
+                        buckets[(int)(b & (BUCKETS - 1))] = 0;
+                    }
+
+                    newestBucket = Math.max(newestBucket, bucket);
+                }
+
+                buckets[(int)(bucket & (BUCKETS - 1))]++;
+
+            } else {
+                if(rising != 0) {
+                    pulseWidth = timestampNanos - lastRise;
+                }
+
+                falling++;
+            }
+
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the rising edges counted
+     *
+     * @return The count
+     */
+    long getRising() {
+        long stamp = lock.tryOptimisticRead();
+        long value = rising;
+        return lock.validate(stamp) ? value : readLocked(true);
+    }
+
+    /**
+     * Returns the falling edges counted
+     *
+     * @return The count
+     */
+    long getFalling() {
+        long stamp = lock.tryOptimisticRead();
+        long value = falling;
+        return lock.validate(stamp) ? value : readLocked(false);
+    }
+
+    /**
+     * Returns the width of the last high pulse
+     *
+     * @return The width in nanoseconds, zero until a pulse completed
+     */
+    long getPulseWidth() {
+        long stamp = lock.tryOptimisticRead();
+        long value = pulseWidth;
+
+        if(!lock.validate(stamp)) {
+            stamp = lock.readLock();
+
+            try {
+                value = pulseWidth;
+
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Returns the time between the last two rising edges
+     *
+     * @return The period in nanoseconds, zero until two rising edges were seen
+     */
+    long getPeriod() {
+        long stamp = lock.tryOptimisticRead();
+        long value = period;
+
+        if(!lock.validate(stamp)) {
+            stamp = lock.readLock();
+
+            try {
+                value = period;
+
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Returns the rising edges per second over the sliding window ending now
+     *
+     * @return The frequency in Hz
+     */
+    double getFrequency() {
+        long now = System.nanoTime();
+        long stamp = lock.tryOptimisticRead();
+        double frequency = frequency(now);
+
+        if(!lock.validate(stamp)) {
+            stamp = lock.readLock();
+
+            try {
+                frequency = frequency(now);
+
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        return frequency;
+    }
+
+    /**
+     * Changes the frequency window, the frequency starts over
+     *
+     * @param windowNanos The window length
+     */
+    void setWindow(long windowNanos) {
+        long stamp = lock.writeLock();
+
+        try {
+            bucketNanos = Math.max(1, windowNanos / BUCKETS);
+            newestBucket = 0;
+
+            for(int i = 0; i < BUCKETS; i++) {
+                buckets[i] = 0;
+            }
+
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Clears every counter and measurement
+     */
+    void reset() {
+        long stamp = lock.writeLock();
+
+        try {
+            rising = 0;
+            falling = 0;
+            pulseWidth = 0;
+            period = 0;
+
+            for(int i = 0; i < BUCKETS; i++) {
+                buckets[i] = 0;
+            }
+
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Reads a count under the read lock, after an optimistic read failed
+     *
+     * @param risingEdges True for the rising count, false for the falling one
+     * @return The count
+     */
+    private long readLocked(boolean risingEdges) {
+        long stamp = lock.readLock();
+
+        try {
+            return risingEdges ? rising : falling;
+
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Computes the frequency from the buckets, may see torn state under an optimistic
+     * read but never fails
+     *
+     * @param now The current time
+     * @return The frequency in Hz
+     */
+    private double frequency(long now) {
+        long width = bucketNanos;
+        long current = Math.floorDiv(now, width);
+        long edges = 0;
+
+        // Buckets older than the window, or than the newest bucket's window, are stale
+        for(long b = Math.max(current, newestBucket) - BUCKETS + 1; b <= Math.min(current, newestBucket); b++) {
+            edges += buckets[(int)(b & (BUCKETS - 1))];
+        }
+
+        // The current bucket is only partially elapsed
+        long span = (BUCKETS - 1) * width + (now - current * width);
+        return edges * 1e9 / span;
+    }
+}
\ No newline at end of file
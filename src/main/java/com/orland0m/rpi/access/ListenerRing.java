@@ -0,0 +1,256 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access;
+
+import com.orland0m.rpi.middleware.event.ListenerQueue;
+import com.orland0m.rpi.middleware.event.OverflowPolicy;
+import com.orland0m.rpi.middleware.event.PinEvent;
+import com.orland0m.rpi.middleware.event.PinEventListener;
+
+/**
+ * Preallocated ring of pending state changes drained by a worker thread dedicated to a
+ * single listener. Events are copied into primitive slots and the worker delivers them
+ * through an event object of its own, so publishing does not allocate.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+final class ListenerRing implements PinEventListener, ListenerQueue {
+    /*! The pin whose changes are queued */
+    private final BaseInputPin pin;
+    /*! The user's listener */
+    private final PinEventListener listener;
+    /*! What to do once the ring is full */
+    private final OverflowPolicy policy;
+    /*! Capture times of the pending changes, guarded by this */
+    private final long[] captured;
+    /*! Sequence numbers of the pending changes, guarded by this */
+    private final long[] sequences;
+    /*! Levels of the pending changes, guarded by this */
+    private final boolean[] levels;
+    /*! Event handed to the listener, only used by the worker */
+    private final PooledPinEvent delivering = new PooledPinEvent();
+    /*! Thread delivering the pending changes */
+    private final Thread worker;
+    /*! Index of the next change to deliver, guarded by this */
+    private long head;
+    /*! Index of the next free slot, guarded by this */
+    private long tail;
+    /*! Changes dropped or replaced while full, written under the lock */
+    private volatile long dropped;
+    /*! Changes delivered, only written by the worker */
+    private volatile long delivered;
+    /*! Longest queueing delay seen, only written by the worker */
+    private volatile long maxQueueNanos;
+    /*! Set once the pin is invalidated, guarded by this */
+    private boolean closed;
+
+    /**
+     * Allocates the ring and starts its worker
+     *
+     * @param pin The pin whose changes are queued
+     * @param listener The user's listener
+     * @param capacity The maximum number of pending changes
+     * @param policy What to do once the ring is full
+     */
+    ListenerRing(BaseInputPin pin, PinEventListener listener, int capacity, OverflowPolicy policy) {
+        this.pin = pin;
+        this.listener = listener;
+        this.policy = policy;
+        captured = new long[capacity];
+        sequences = new long[capacity];
+        levels = new boolean[capacity];
+        worker = new Thread(this::run, "rpi-listener-" + pin.getGpioInfo());
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.event.PinEventListener#onPinEvent(com.orland0m.rpi.middleware.event.PinEvent)
+     */
+    @Override
+    public void onPinEvent(PinEvent event) {
+        synchronized(this) {
+            if(closed) {
+                return;
+            }
+
+            if(tail - head == captured.length) {
+                switch(policy) {
+                    case BLOCK:
+                        while(tail - head == captured.length && !closed) {
+                            try {
+                                wait();
+
+                            } catch(InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                dropped++;
+                                return;
+                            }
+                        }
+
+                        if(closed) {
+                            return;
+                        }
+
+                        break;
+
+                    case DROP_OLDEST:
+                        head++;
+                        dropped++;
+                        break;
+
+                    default:
+                        // The newest pending change becomes the latest one
+                        put(tail - 1, event);
+                        dropped++;
+                        return;
+                }
+            }
+
+            put(tail++, event);
+
+            if(tail - head == 1) {
+                notifyAll();
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.event.ListenerQueue#getCapacity()
+     */
+    @Override
+    public int getCapacity() {
+        return captured.length;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.event.ListenerQueue#getOverflowPolicy()
+     */
+    @Override
+    public OverflowPolicy getOverflowPolicy() {
+        return policy;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.event.ListenerQueue#getDepth()
+     */
+    @Override
+    public synchronized int getDepth() {
+        return (int)(tail - head);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.event.ListenerQueue#getDroppedCount()
+     */
+    @Override
+    public long getDroppedCount() {
+        return dropped;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.event.ListenerQueue#getDeliveredCount()
+     */
+    @Override
+    public long getDeliveredCount() {
+        return delivered;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.event.ListenerQueue#getMaxQueueNanos()
+     */
+    @Override
+    public long getMaxQueueNanos() {
+        return maxQueueNanos;
+    }
+
+    /**
+     * Stops the worker once the listener returns, pending changes are discarded and
+     * blocked publishers released
+     */
+    synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * Worker loop: delivers the pending changes in order
+     */
+    private void run() {
+        while(true) {
+            synchronized(this) {
+                while(head == tail && !closed) {
+                    try {
+                        wait();
+
+                    } catch(InterruptedException e) {
+                        // Only close stops the worker
+                    }
+                }
+
+                if(closed) {
+                    return;
+                }
+
+                int slot = slot(head);
+                delivering.set(pin, levels[slot], captured[slot], sequences[slot]);
+
+                if(tail - head++ == captured.length) {
+                    notifyAll();
+                }
+            }
+
+            long waited = System.nanoTime() - delivering.getTimestampNanos();
+
+            if(waited > maxQueueNanos) {
+                maxQueueNanos = waited;
+            }
+
+            pin.notifyListener(listener, delivering);
+            delivered++;
+        }
+    }
+
+    /**
+     * Copies an event into a slot. Caller must hold the lock.
+     *
+     * @param index The ring index
+     * @param event The event
+     */
+    private void put(long index, PinEvent event) {
+        int slot = slot(index);
+        captured[slot] = event.getTimestampNanos();
+        sequences[slot] = event.getSequence();
+        levels[slot] = event.isHigh();
+    }
+
+    /**
+     * Maps a ring index to its slot
+     *
+     * @param index The ring index
+     * @return The array slot
+     */
+    private int slot(long index) {
+        return (int)(index % captured.length);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,170 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.orland0m.rpi.middleware.event.Edge;
+import com.orland0m.rpi.middleware.event.PinEvent;
+import com.orland0m.rpi.middleware.pin.InputPin;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Mutable PinEvent recycled through a fixed pool shared by every pin. Taking and
+ * returning an event is a compare-and-set on a pool slot; events are only allocated
+ * while more threads than POOL_SIZE are notifying listeners at once.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+final class PooledPinEvent implements PinEvent {
+    /*! Number of pooled events */
+    private static final int POOL_SIZE = 64;
+    /*! Free events, null slots are in use */
+    private static final AtomicReferenceArray<PooledPinEvent> pool = new AtomicReferenceArray<>(POOL_SIZE);
+    /*! The pin that changed */
+    private InputPin pin;
+    /*! Level the pin changed to */
+    private boolean high;
+    /*! Capture time */
+    private long timestampNanos;
+    /*! Per pin sequence number */
+    private long sequence;
+
+    static {
+        for(int i = 0; i < POOL_SIZE; i++) {
+            pool.set(i, new PooledPinEvent());
+        }
+    }
+
+    /**
+     * Takes an event from the pool, allocating one if the pool is empty
+     *
+     * @param pin The pin that changed
+     * @param high Level the pin changed to
+     * @param timestampNanos Capture time
+     * @param sequence Per pin sequence number
+     * @return The filled event, to be handed back through recycle
+     */
+    static PooledPinEvent obtain(InputPin pin, boolean high, long timestampNanos, long sequence) {
+        PooledPinEvent event = null;
+        // Start somewhere different per thread so notifying threads rarely collide
+        int start = (int)Thread.currentThread().getId();
+
+        for(int i = 0; i < POOL_SIZE && event == null; i++) {
+            event = pool.getAndSet((start + i) & (POOL_SIZE - 1), null);
+        }
+
+        if(event == null) {
+            event = new PooledPinEvent();
+        }
+
+        event.set(pin, high, timestampNanos, sequence);
+        return event;
+    }
+
+    /**
+     * Hands the event back to the pool, it is dropped if the pool is full
+     */
+    void recycle() {
+        pin = null;
+        int start = (int)Thread.currentThread().getId();
+
+        for(int i = 0; i < POOL_SIZE; i++) {
+            if(pool.compareAndSet((start + i) & (POOL_SIZE - 1), null, this)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Fills the event
+     *
+     * @param pin The pin that changed
+     * @param high Level the pin changed to
+     * @param timestampNanos Capture time
+     * @param sequence Per pin sequence number
+     */
+    void set(InputPin pin, boolean high, long timestampNanos, long sequence) {
+        this.pin = pin;
+        this.high = high;
+        this.timestampNanos = timestampNanos;
+        this.sequence = sequence;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.event.PinEvent#getPin()
+     */
+    @Override
+    public InputPin getPin() {
+        return pin;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.event.PinEvent#getGpio()
+     */
+    @Override
+    public WiringPi getGpio() {
+        return pin.getGpioInfo();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.event.PinEvent#isHigh()
+     */
+    @Override
+    public boolean isHigh() {
+        return high;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.event.PinEvent#getEdge()
+     */
+    @Override
+    public Edge getEdge() {
+        return high ? Edge.RISING : Edge.FALLING;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.event.PinEvent#getTimestampNanos()
+     */
+    @Override
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.event.PinEvent#getSequence()
+     */
+    @Override
+    public long getSequence() {
+        return sequence;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return pin.getGpioInfo() + " " + getEdge() + " #" + sequence + " @" + timestampNanos;
+    }
+}
\ No newline at end of file
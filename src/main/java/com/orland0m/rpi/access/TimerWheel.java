@@ -0,0 +1,243 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Hashed timer wheel driving the timeouts of every pin from a single thread. Timeouts
+ * are intrusive list nodes, so scheduling and rescheduling them does not allocate, and
+ * the thread waits without ticking while nothing is scheduled. Timeouts expire on the
+ * first tick at or after their deadline, so they run up to one tick late and must be
+ * quick: they hold up every other timeout.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+final class TimerWheel {
+    /*! Logger object reference */
+    final static Logger logger = Logger.getLogger(TimerWheel.class);
+    /*! Number of buckets, a power of two */
+    private static final int BUCKETS = 512;
+    /*! Tick of the shared wheel */
+    private static final long SHARED_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    /*! Wheel shared by every pin, created on first use, guarded by TimerWheel.class */
+    private static TimerWheel shared;
+    /*! Tick length */
+    private final long tickNanos;
+    /*! Head of every bucket's list, guarded by this */
+    private final Timeout[] buckets = new Timeout[BUCKETS];
+    /*! Number of scheduled timeouts, guarded by this */
+    private int scheduled;
+    /*! Last tick whose bucket was processed, guarded by this */
+    private long processedTick;
+
+    /**
+     * Node scheduled on a TimerWheel
+     */
+    abstract static class Timeout {
+        /*! Next node in the bucket, guarded by the wheel */
+        private Timeout next;
+        /*! Previous node in the bucket, guarded by the wheel */
+        private Timeout previous;
+        /*! Bucket holding the node, -1 while not scheduled, guarded by the wheel */
+        private int bucket = -1;
+        /*! Deadline as System#nanoTime, guarded by the wheel */
+        private long deadline;
+        /*! Next node in the batch being expired, only used by the wheel thread */
+        private Timeout expiredNext;
+
+        /**
+         * Called on the wheel thread once the deadline has passed
+         *
+         * @param now The current System#nanoTime
+         */
+        protected abstract void expire(long now);
+    }
+
+    /**
+     * Returns the wheel shared by every pin, starting it on first use
+     *
+     * @return The shared wheel, with a one millisecond tick
+     */
+    static synchronized TimerWheel shared() {
+        if(shared == null) {
+            shared = new TimerWheel("rpi-timer-wheel", SHARED_TICK_NANOS);
+        }
+
+        return shared;
+    }
+
+    /**
+     * Starts a wheel
+     *
+     * @param name Name of the wheel thread
+     * @param tickNanos Tick length in nanoseconds
+     */
+    TimerWheel(String name, long tickNanos) {
+        this.tickNanos = tickNanos;
+        processedTick = Math.floorDiv(System.nanoTime(), tickNanos);
+        Thread thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Schedules a timeout, moving it if it is already scheduled
+     *
+     * @param timeout The timeout
+     * @param deadline When it expires, as System#nanoTime
+     */
+    synchronized void schedule(Timeout timeout, long deadline) {
+        if(timeout.bucket >= 0) {
+            unlink(timeout);
+        }
+
+        // First tick starting at or after the deadline, so the timeout is due once its
+        // bucket is visited; deadlines already due go to the next tick instead of a full
+        // turn later
+        long tick = Math.max(Math.floorDiv(deadline - 1, tickNanos) + 1, processedTick + 1);
+        int bucket = (int)(tick & (BUCKETS - 1));
+        timeout.deadline = deadline;
+        timeout.bucket = bucket;
+        timeout.previous = null;
+        timeout.next = buckets[bucket];
+
+        if(timeout.next != null) {
+            timeout.next.previous = timeout;
+        }
+
+        buckets[bucket] = timeout;
+
+        if(scheduled++ == 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Cancels a timeout, nothing happens if it is not scheduled
+     *
+     * @param timeout The timeout
+     */
+    synchronized void cancel(Timeout timeout) {
+        if(timeout.bucket >= 0) {
+            unlink(timeout);
+        }
+    }
+
+    /**
+     * Removes a scheduled timeout from its bucket. Caller must hold the lock.
+     *
+     * @param timeout The timeout
+     */
+    private void unlink(Timeout timeout) {
+        if(timeout.previous == null) {
+            buckets[timeout.bucket] = timeout.next;
+
+        } else {
+            timeout.previous.next = timeout.next;
+        }
+
+        if(timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+
+        timeout.next = null;
+        timeout.previous = null;
+        timeout.bucket = -1;
+        scheduled--;
+    }
+
+    /**
+     * Wheel loop: waits for the next tick and expires the due timeouts of every tick
+     * that passed meanwhile
+     */
+    private void run() {
+        while(true) {
+            long wake;
+
+            synchronized(this) {
+                while(scheduled == 0) {
+                    try {
+                        wait();
+
+                    } catch(InterruptedException e) {
+                        // The wheel lives as long as the process
+                    }
+                }
+
+                wake = (processedTick + 1) * tickNanos;
+            }
+
+            long sleep = wake - System.nanoTime();
+
+            if(sleep > 0) {
+                LockSupport.parkNanos(this, sleep);
+            }
+
+            long now = System.nanoTime();
+            Timeout expired = null;
+
+            synchronized(this) {
+                long reached = Math.floorDiv(now, tickNanos);
+                // After an idle period every bucket is visited at most once
+                long tick = Math.max(processedTick + 1, reached - BUCKETS + 1);
+
+                for(; tick <= reached; tick++) {
+                    Timeout timeout = buckets[(int)(tick & (BUCKETS - 1))];
+
+                    while(timeout != null) {
+                        Timeout next = timeout.next;
+
+                        if(timeout.deadline - now <= 0) {
+                            unlink(timeout);
+                            timeout.expiredNext = expired;
+                            expired = timeout;
+                        }
+
+                        timeout = next;
+                    }
+                }
+
+                processedTick = Math.max(processedTick, reached);
+            }
+
+            // Expired outside the lock, timeouts usually schedule themselves again
+            while(expired != null) {
+                Timeout timeout = expired;
+                expired = timeout.expiredNext;
+                timeout.expiredNext = null;
+
+                try {
+                    timeout.expire(now);
+
+                } catch(RuntimeException e) {
+                    logger.error("Timeout failed", e);
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -23,11 +23,9 @@
  */
 package com.orland0m.rpi.access.local;
 
-import com.orland0m.rpi.access.BasePin;
-import com.orland0m.rpi.middleware.event.PinStateListener;
+import com.orland0m.rpi.access.BaseInputPin;
 import com.orland0m.rpi.middleware.exception.InvalidatedPinException;
 import com.orland0m.rpi.middleware.exception.PinBusyException;
-import com.orland0m.rpi.middleware.pin.InputPin;
 import com.orland0m.rpi.middleware.pin.WiringPi;
 import com.pi4j.io.gpio.GpioController;
 import com.pi4j.io.gpio.GpioPinDigitalInput;
@@ -43,7 +41,7 @@ import com.pi4j.io.gpio.RaspiPin;
  *
  * @author Orlando Miramontes <https://github.com/orland0m>
  */
-public class LocalInputPin extends BasePin implements InputPin {
+public class LocalInputPin extends BaseInputPin {
     /*! A reference to the pi4j pin object */
     private final GpioPinDigitalInput pin;
 
@@ -60,29 +58,19 @@ public class LocalInputPin extends BasePin implements InputPin {
     }
 
     /* (non-Javadoc)
-     * @see com.orland0m.rpi.middleware.pin.RpiPin#isHigh()
+     * @see com.orland0m.rpi.access.BaseInputPin#readLevel()
      */
     @Override
-    public boolean isUp() throws InvalidatedPinException {
-        assertValidity();
+    protected boolean readLevel() {
         return pin.isHigh();
     }
 
     /* (non-Javadoc)
-     * @see com.orland0m.rpi.middleware.pin.RpiPin#isLow()
+     * @see com.orland0m.rpi.access.BaseInputPin#onStartWatching()
      */
     @Override
-    public boolean isDown() throws InvalidatedPinException {
-        return !isUp();
-    }
-
-    /* (non-Javadoc)
-     * @see com.orland0m.rpi.middleware.pin.InputPin#addListener(com.orland0m.rpi.middleware.event.PinStateListener)
-     */
-    @Override
-    public void addListener(PinStateListener listener) throws InvalidatedPinException {
-        assertValidity();
-        pin.addListener(new Pi4jListener(this, listener));
+    protected void onStartWatching() {
+        pin.addListener(new Pi4jListener(this));
     }
 
     /* (non-Javadoc)
@@ -95,4 +83,13 @@ public class LocalInputPin extends BasePin implements InputPin {
         pin.setPullResistance(PinPullResistance.OFF);
         pin.unexport();
     }
+
+    /**
+     * Forwards a pi4j state change event to the registered listeners
+     *
+     * @param high Level reported by the event
+     */
+    void handlePi4jEvent(boolean high) {
+        fireStateChange(high, System.nanoTime());
+    }
 }
\ No newline at end of file
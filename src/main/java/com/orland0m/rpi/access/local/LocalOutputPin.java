@@ -23,10 +23,9 @@
  */
 package com.orland0m.rpi.access.local;
 
-import com.orland0m.rpi.access.BasePin;
+import com.orland0m.rpi.access.BaseOutputPin;
 import com.orland0m.rpi.middleware.exception.InvalidatedPinException;
 import com.orland0m.rpi.middleware.exception.PinBusyException;
-import com.orland0m.rpi.middleware.pin.OutputPin;
 import com.orland0m.rpi.middleware.pin.WiringPi;
 import com.pi4j.io.gpio.GpioController;
 import com.pi4j.io.gpio.GpioPinDigitalOutput;
@@ -43,7 +42,7 @@ import com.pi4j.io.gpio.RaspiPin;
  *
  * @author Orlando Miramontes <https://github.com/orland0m>
  */
-public class LocalOutputPin extends BasePin implements OutputPin {
+public class LocalOutputPin extends BaseOutputPin {
     /*! A reference to the pi4j pin object */
     private final GpioPinDigitalOutput pin;
 
@@ -53,54 +52,44 @@ public class LocalOutputPin extends BasePin implements OutputPin {
      * @param gpio The GPIO pin information
      */
     public LocalOutputPin(WiringPi gpio, GpioController controller) {
+        this(gpio, controller, false);
+    }
+
+    /**
+     * Initializes a local output pin object driving the given level from the start
+     *
+     * @param gpio The GPIO pin information
+     * @param controller The pi4j controller
+     * @param high The initial level
+     */
+    public LocalOutputPin(WiringPi gpio, GpioController controller, boolean high) {
         super(gpio);
         pin = controller.provisionDigitalOutputPin(RaspiPin.getPinByAddress(gpio.getGpioAddress()),
                 gpio.toString(),
-                PinState.LOW);
+                PinState.getState(high));
     }
 
     /* (non-Javadoc)
-     * @see com.orland0m.rpi.middleware.pin.OutputPin#isHigh()
+     * @see com.orland0m.rpi.access.BaseOutputPin#readLevel()
      */
     @Override
-    public boolean isUp() {
-        assertValidity();
+    protected boolean readLevel() {
         return pin.isHigh();
     }
 
     /* (non-Javadoc)
-     * @see com.orland0m.rpi.middleware.pin.RpiPin#isDown()
-     */
-    @Override
-    public boolean isDown() throws InvalidatedPinException {
-        assertValidity();
-        return pin.isLow();
-    }
-
-    /* (non-Javadoc)
-     * @see com.orland0m.rpi.middleware.pin.OutputPin#up()
+     * @see com.orland0m.rpi.access.BaseOutputPin#writeLevel(boolean)
      */
     @Override
-    public void up() throws InvalidatedPinException {
-        assertValidity();
-        pin.high();
+    protected void writeLevel(boolean high) {
+        pin.setState(high);
     }
 
     /* (non-Javadoc)
-     * @see com.orland0m.rpi.middleware.pin.OutputPin#down()
+     * @see com.orland0m.rpi.access.BaseOutputPin#invertLevel()
      */
     @Override
-    public void down() throws InvalidatedPinException {
-        assertValidity();
-        pin.low();
-    }
-
-    /* (non-Javadoc)
-     * @see com.orland0m.rpi.middleware.pin.OutputPin#toggle()
-     */
-    @Override
-    public void toggle() throws InvalidatedPinException {
-        assertValidity();
+    protected void invertLevel() {
         pin.toggle();
     }
 
@@ -110,7 +99,11 @@ public class LocalOutputPin extends BasePin implements OutputPin {
     @Override
     public void markInvalid() throws PinBusyException, InvalidatedPinException {
         super.markInvalid();
-        pin.low();
+
+        if(!isRetainingLevel()) {
+            pin.low();
+        }
+
         pin.setPullResistance(PinPullResistance.OFF);
         pin.unexport();
     }
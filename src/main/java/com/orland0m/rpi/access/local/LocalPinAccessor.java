@@ -24,6 +24,8 @@
 package com.orland0m.rpi.access.local;
 
 import com.orland0m.rpi.access.BaseAccessor;
+import com.orland0m.rpi.middleware.AccessorStartup;
+import com.orland0m.rpi.middleware.StartupProfile;
 import com.orland0m.rpi.middleware.exception.AccessorDownException;
 import com.orland0m.rpi.middleware.exception.PinBusyException;
 import com.orland0m.rpi.middleware.pin.InputPin;
@@ -33,15 +35,62 @@ import com.pi4j.io.gpio.GpioController;
 import com.pi4j.io.gpio.GpioFactory;
 
 /**
- * Class that creates local access pin objects based on user requests
+ * Class that creates local access pin objects based on user requests. Built with a
+ * StartupProfile the native controller is initialized in the background and the
+ * profile's pins are provisioned and warmed up before the accessor reports ready; pin
+ * calls made earlier wait for the native initialization only.
  *
  * @author Orlando Miramontes <https://github.com/orland0m>
  */
 public class LocalPinAccessor extends BaseAccessor {
-    private final GpioController controller;
-
+    /*! The pi4j controller, set once the native initialization completed */
+    private volatile GpioController controller;
+    /*! Background startup, null if the controller was initialized by the constructor */
+    private final AccessorStartup startup;
+
+    /**
+     * Initializes the native controller on the calling thread, pins are provisioned on
+     * first use
+     */
     public LocalPinAccessor() {
         controller = GpioFactory.getInstance();
+        startup = null;
+    }
+
+    /**
+     * Starts initializing the native controller in the background, then provisions and
+     * warms up the pins of the given profile. The constructor returns at once, use
+     * getStartup to follow the progress.
+     *
+     * @param profile The pins and warm-up settings
+     * @throws IllegalArgumentException If a pin is declared both as input and output
+     */
+    public LocalPinAccessor(StartupProfile profile) {
+        startup = new AccessorStartup(this, profile, () -> controller = GpioFactory.getInstance());
+        startup.start();
+    }
+
+    /**
+     * Returns the background startup of this accessor
+     *
+     * @return The startup, or null if the accessor was built without a profile
+     */
+    public AccessorStartup getStartup() {
+        return startup;
+    }
+
+    /**
+     * Returns the native controller, waiting for a background initialization
+     *
+     * @return The pi4j controller
+     * @throws IllegalStateException If the native initialization failed
+     */
+    private GpioController controller() throws IllegalStateException {
+        if(startup != null) {
+            startup.awaitInitialized();
+        }
+
+        return controller;
     }
 
     /* (non-Javadoc)
@@ -51,7 +100,13 @@ public class LocalPinAccessor extends BaseAccessor {
     public void shutdown()
     throws IllegalArgumentException, PinBusyException, AccessorDownException, AccessorDownException {
         super.shutdown();
-        controller.shutdown();
+
+        try {
+            controller().shutdown();
+
+        } catch(IllegalStateException e) {
+            // The native controller never came up, there is nothing to release
+        }
     }
 
     /* (non-Javadoc)
@@ -91,14 +146,17 @@ public class LocalPinAccessor extends BaseAccessor {
     public InputPin getInGpio(WiringPi gpio) throws IllegalArgumentException, PinBusyException,
         AccessorDownException {
         assertNotDown();
-        InputPin retVal = getForInputOrRelease(gpio);
 
-        if(retVal == null) {
-            retVal = new LocalInputPin(gpio, controller);
-            registerProvisionedPin(retVal);
-        }
+        synchronized(provisioningLock(gpio)) {
+            InputPin retVal = getForInputOrRelease(gpio);
+
+            if(retVal == null) {
+                retVal = new LocalInputPin(gpio, controller());
+                registerProvisionedPin(retVal);
+            }
 
-        return retVal;
+            return retVal;
+        }
     }
 
     /* (non-Javadoc)
@@ -138,13 +196,39 @@ public class LocalPinAccessor extends BaseAccessor {
     public OutputPin getOutGpio(WiringPi gpio) throws IllegalArgumentException, PinBusyException,
         AccessorDownException {
         assertNotDown();
-        OutputPin retVal = getForOutputOrRelease(gpio);
 
-        if(retVal == null) {
-            retVal = new LocalOutputPin(gpio, controller);
-            registerProvisionedPin(retVal);
+        synchronized(provisioningLock(gpio)) {
+            OutputPin retVal = getForOutputOrRelease(gpio);
+
+            if(retVal == null) {
+                retVal = new LocalOutputPin(gpio, controller());
+                registerProvisionedPin(retVal);
+            }
+
+            return retVal;
         }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseAccessor#provisionOutput(com.orland0m.rpi.middleware.pin.WiringPi, boolean)
+     */
+    @Override
+    protected OutputPin provisionOutput(WiringPi gpio, boolean high) throws PinBusyException,
+        AccessorDownException {
+        assertNotDown();
 
-        return retVal;
+        synchronized(provisioningLock(gpio)) {
+            OutputPin retVal = getForOutputOrRelease(gpio);
+
+            if(retVal == null) {
+                retVal = new LocalOutputPin(gpio, controller(), high);
+                registerProvisionedPin(retVal);
+
+            } else {
+                retVal.trySet(high);
+            }
+
+            return retVal;
+        }
     }
 }
\ No newline at end of file
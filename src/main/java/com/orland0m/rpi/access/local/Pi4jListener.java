@@ -23,7 +23,6 @@
  */
 package com.orland0m.rpi.access.local;
 
-import com.orland0m.rpi.middleware.event.PinStateListener;
 import com.pi4j.io.gpio.event.GpioPinDigitalStateChangeEvent;
 import com.pi4j.io.gpio.event.GpioPinListenerDigital;
 
@@ -36,20 +35,16 @@ public class Pi4jListener implements GpioPinListenerDigital {
 
     /*! A reference to the pin object listening for events */
     private final LocalInputPin pin;
-    /*! A reference to the  */
-    private final PinStateListener listener;
 
     /**
-     * @param pin
-     * @param listener
-     * @throws NullPointerException
+     * @param pin The pin whose listeners are notified
+     * @throws NullPointerException If the pin object is not initialized
      */
-    public Pi4jListener(LocalInputPin pin, PinStateListener listener) throws NullPointerException {
+    public Pi4jListener(LocalInputPin pin) throws NullPointerException {
         this.pin = pin;
-        this.listener = listener;
 
-        if(pin == null || listener == null) {
-            throw new NullPointerException("Pin and listener objects must be valid objects");
+        if(pin == null) {
+            throw new NullPointerException("Pin object must be a valid object");
         }
     }
 
@@ -58,6 +53,6 @@ public class Pi4jListener implements GpioPinListenerDigital {
      */
     @Override
     public void handleGpioPinDigitalStateChangeEvent(GpioPinDigitalStateChangeEvent event) {
-        listener.onPinStateChange(pin);
+        pin.handlePi4jEvent(event.getState().isHigh());
     }
 }
\ No newline at end of file
@@ -0,0 +1,171 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.mmap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Direct access to the BCM283x GPIO register block through a memory mapped file.
+ * Normally the file is /dev/gpiomem, any regular file of at least BLOCK_SIZE bytes
+ * can stand in for it when testing away from the board. Only bank 0 (BCM GPIOs 0-31)
+ * is handled since every WiringPi GPIO lives there.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public final class GpioRegisters implements Closeable {
+    /*! Default register file exposed by the kernel, accessible without root */
+    public static final String DEFAULT_REGISTER_FILE = "/dev/gpiomem";
+    /*! Size of the mapped register block */
+    public static final int BLOCK_SIZE = 4096;
+    /*! Offset of the first function select register, 3 bits per GPIO, 10 GPIOs per register */
+    public static final int GPFSEL0 = 0x00;
+    /*! Offset of the output set register for bank 0 */
+    public static final int GPSET0 = 0x1C;
+    /*! Offset of the output clear register for bank 0 */
+    public static final int GPCLR0 = 0x28;
+    /*! Offset of the pin level register for bank 0 */
+    public static final int GPLEV0 = 0x34;
+    /*! Offset of the pull up/down control register */
+    public static final int GPPUD = 0x94;
+    /*! Offset of the pull up/down clock register for bank 0 */
+    public static final int GPPUDCLK0 = 0x98;
+    /*! Function select value for inputs */
+    public static final int FSEL_INPUT = 0;
+    /*! Function select value for outputs */
+    public static final int FSEL_OUTPUT = 1;
+    /*! GPPUD value that disables pull resistors */
+    public static final int PULL_OFF = 0;
+    /*! GPPUD value that enables the pull down resistor */
+    public static final int PULL_DOWN = 1;
+    /*! Time the pull control signal needs to settle, at least 150 core cycles */
+    private static final long PULL_SETUP_NANOS = TimeUnit.MICROSECONDS.toNanos(5);
+    /*! The mapped register block */
+    private final MappedByteBuffer registers;
+    /*! The file backing the mapping */
+    private final RandomAccessFile file;
+
+    /**
+     * Maps the register block from the given file
+     *
+     * @param registerFile Path to /dev/gpiomem or a stand-in file
+     * @throws IOException If the file cannot be opened or mapped
+     */
+    public GpioRegisters(String registerFile) throws IOException {
+        file = new RandomAccessFile(registerFile, "rw");
+
+        try {
+            registers = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, BLOCK_SIZE);
+
+        } catch(IOException e) {
+            file.close();
+            throw e;
+        }
+
+        // The peripheral registers are little endian
+        registers.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Sets the function of the given GPIO. Function select registers are shared by
+     * ten GPIOs so the read-modify-write is serialized.
+     *
+     * @param bcmGpio The BCM GPIO number
+     * @param function FSEL_INPUT or FSEL_OUTPUT
+     */
+    public synchronized void setFunction(int bcmGpio, int function) {
+        int offset = GPFSEL0 + (bcmGpio / 10) * 4;
+        int shift = (bcmGpio % 10) * 3;
+        int value = registers.getInt(offset);
+        value = (value & ~(7 << shift)) | ((function & 7) << shift);
+        registers.putInt(offset, value);
+    }
+
+    /**
+     * Returns the function currently selected for the given GPIO
+     *
+     * @param bcmGpio The BCM GPIO number
+     * @return The 3 bit function select value
+     */
+    public int getFunction(int bcmGpio) {
+        int offset = GPFSEL0 + (bcmGpio / 10) * 4;
+        return (registers.getInt(offset) >>> ((bcmGpio % 10) * 3)) & 7;
+    }
+
+    /**
+     * Configures the pull resistors of the given GPIOs using the BCM2835 clocked sequence
+     *
+     * @param bcmMask Bitmask of BCM GPIO numbers
+     * @param pull PULL_OFF or PULL_DOWN
+     */
+    public synchronized void setPull(int bcmMask, int pull) {
+        registers.putInt(GPPUD, pull);
+        LockSupport.parkNanos(PULL_SETUP_NANOS);
+        registers.putInt(GPPUDCLK0, bcmMask);
+        LockSupport.parkNanos(PULL_SETUP_NANOS);
+        registers.putInt(GPPUD, PULL_OFF);
+        registers.putInt(GPPUDCLK0, 0);
+    }
+
+    /**
+     * Drives the given outputs high with a single register write
+     *
+     * @param bcmMask Bitmask of BCM GPIO numbers
+     */
+    public void set(int bcmMask) {
+        registers.putInt(GPSET0, bcmMask);
+    }
+
+    /**
+     * Drives the given outputs low with a single register write
+     *
+     * @param bcmMask Bitmask of BCM GPIO numbers
+     */
+    public void clear(int bcmMask) {
+        registers.putInt(GPCLR0, bcmMask);
+    }
+
+    /**
+     * Reads the level of every GPIO in bank 0
+     *
+     * @return Bitmask of levels indexed by BCM GPIO number
+     */
+    public int levels() {
+        return registers.getInt(GPLEV0);
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
\ No newline at end of file
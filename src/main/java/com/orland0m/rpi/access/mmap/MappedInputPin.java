@@ -0,0 +1,105 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.mmap;
+
+import com.orland0m.rpi.access.BaseInputPin;
+import com.orland0m.rpi.middleware.exception.InvalidatedPinException;
+import com.orland0m.rpi.middleware.exception.PinBusyException;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Input pin that reads the GPIO level register directly. There are no interrupts
+ * without the native layers, state changes are detected by the accessor's edge poller.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class MappedInputPin extends BaseInputPin {
+    /*! The mapped register block */
+    private final GpioRegisters registers;
+    /*! The accessor that owns this pin, polls the level register for edges */
+    private final MappedPinAccessor accessor;
+    /*! This pin's bit in the bank 0 registers */
+    private final int bit;
+
+    /**
+     * Configures the GPIO as an input with the pull down resistor enabled
+     *
+     * @param gpio The GPIO pin information
+     * @param registers The mapped register block
+     * @param accessor The accessor that owns this pin
+     */
+    public MappedInputPin(WiringPi gpio, GpioRegisters registers, MappedPinAccessor accessor) {
+        super(gpio);
+        this.registers = registers;
+        this.accessor = accessor;
+        this.bit = 1 << gpio.getBcmGpio();
+        registers.setFunction(gpio.getBcmGpio(), GpioRegisters.FSEL_INPUT);
+        registers.setPull(bit, GpioRegisters.PULL_DOWN);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseInputPin#readLevel()
+     */
+    @Override
+    protected boolean readLevel() {
+        return (registers.levels() & bit) != 0;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseInputPin#onStartWatching()
+     */
+    @Override
+    protected void onStartWatching() {
+        accessor.watch(this);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.RpiPin#markInvalid()
+     */
+    @Override
+    public void markInvalid() throws PinBusyException, InvalidatedPinException {
+        super.markInvalid();
+        accessor.unwatch(this);
+        registers.setPull(bit, GpioRegisters.PULL_OFF);
+    }
+
+    /**
+     * Returns this pin's bit in the bank 0 registers
+     *
+     * @return The BCM GPIO mask
+     */
+    int getBcmMask() {
+        return bit;
+    }
+
+    /**
+     * Notifies every listener that the pin changed state, called from the edge poller
+     *
+     * @param high The new level
+     * @param timestampNanos When the poller saw the change
+     */
+    void handleEdge(boolean high, long timestampNanos) {
+        fireStateChange(high, timestampNanos);
+    }
+}
\ No newline at end of file
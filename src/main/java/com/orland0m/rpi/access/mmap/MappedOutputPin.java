@@ -0,0 +1,110 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.mmap;
+
+import com.orland0m.rpi.access.BaseOutputPin;
+import com.orland0m.rpi.middleware.exception.InvalidatedPinException;
+import com.orland0m.rpi.middleware.exception.PinBusyException;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Output pin that drives the GPIO through the set and clear registers directly.
+ * Like local pins, mapped pins are never marked 'busy' by the library since
+ * register writes are immediate.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class MappedOutputPin extends BaseOutputPin {
+    /*! The mapped register block */
+    private final GpioRegisters registers;
+    /*! This pin's bit in the bank 0 registers */
+    private final int bit;
+
+    /**
+     * Configures the GPIO as a low output
+     *
+     * @param gpio The GPIO pin information
+     * @param registers The mapped register block
+     */
+    public MappedOutputPin(WiringPi gpio, GpioRegisters registers) {
+        this(gpio, registers, false);
+    }
+
+    /**
+     * Configures the GPIO as an output driving the given level. The level is latched
+     * before the pin becomes an output, so it never drives any other level.
+     *
+     * @param gpio The GPIO pin information
+     * @param registers The mapped register block
+     * @param high The initial level
+     */
+    public MappedOutputPin(WiringPi gpio, GpioRegisters registers, boolean high) {
+        super(gpio);
+        this.registers = registers;
+        this.bit = 1 << gpio.getBcmGpio();
+
+        if(high) {
+            registers.set(bit);
+
+        } else {
+            registers.clear(bit);
+        }
+
+        registers.setFunction(gpio.getBcmGpio(), GpioRegisters.FSEL_OUTPUT);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseOutputPin#readLevel()
+     */
+    @Override
+    protected boolean readLevel() {
+        return (registers.levels() & bit) != 0;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseOutputPin#writeLevel(boolean)
+     */
+    @Override
+    protected void writeLevel(boolean high) {
+        if(high) {
+            registers.set(bit);
+
+        } else {
+            registers.clear(bit);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.RpiPin#markInvalid()
+     */
+    @Override
+    public void markInvalid() throws PinBusyException, InvalidatedPinException {
+        super.markInvalid();
+
+        if(!isRetainingLevel()) {
+            registers.clear(bit);
+            registers.setFunction(gpio.getBcmGpio(), GpioRegisters.FSEL_INPUT);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,378 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.mmap;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+
+import com.orland0m.rpi.access.BaseAccessor;
+import com.orland0m.rpi.middleware.exception.AccessorDownException;
+import com.orland0m.rpi.middleware.exception.PinBusyException;
+import com.orland0m.rpi.middleware.pin.InputPin;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Local pin accessor that bypasses Pi4J and the WiringPi native layers, pins are driven
+ * through the memory mapped GPIO registers. Bank operations use a single set and a single
+ * clear register write. Input listeners are served by a poller thread that watches the
+ * level register, it is only started once a listener is registered.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class MappedPinAccessor extends BaseAccessor {
+    /*! Logger object reference */
+    final static Logger logger = Logger.getLogger(MappedPinAccessor.class);
+    /*! Default time between two level register polls */
+    public static final long DEFAULT_POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    /*! Translation from WiringPi GPIO address to BCM GPIO number */
+    private static final int[] ADDRESS_TO_BCM = new int[32];
+    /*! Translation from BCM GPIO number to WiringPi GPIO address, -1 if there is none */
+    private static final int[] BCM_TO_ADDRESS = new int[32];
+
+    static {
+        Arrays.fill(BCM_TO_ADDRESS, -1);
+
+        for(WiringPi gpio : WiringPi.values()) {
+            ADDRESS_TO_BCM[gpio.getGpioAddress()] = gpio.getBcmGpio();
+            BCM_TO_ADDRESS[gpio.getBcmGpio()] = gpio.getGpioAddress();
+        }
+    }
+
+    /*! The mapped register block */
+    private final GpioRegisters registers;
+    /*! Time between two level register polls */
+    private final long pollIntervalNanos;
+    /*! Input pins with listeners, indexed by BCM GPIO number */
+    private final MappedInputPin[] watched = new MappedInputPin[32];
+    /*! Bitmask of the BCM GPIOs in the watched array */
+    private volatile int watchedMask;
+    /*! The edge poller thread, null until the first pin is watched */
+    private Thread poller;
+
+    /**
+     * Maps the default register file, /dev/gpiomem
+     *
+     * @throws IOException If the register file cannot be mapped
+     */
+    public MappedPinAccessor() throws IOException {
+        this(GpioRegisters.DEFAULT_REGISTER_FILE, DEFAULT_POLL_INTERVAL_NANOS);
+    }
+
+    /**
+     * Maps the given register file
+     *
+     * @param registerFile Path to /dev/gpiomem or a stand-in file
+     * @throws IOException If the register file cannot be mapped
+     */
+    public MappedPinAccessor(String registerFile) throws IOException {
+        this(registerFile, DEFAULT_POLL_INTERVAL_NANOS);
+    }
+
+    /**
+     * Maps the given register file
+     *
+     * @param registerFile Path to /dev/gpiomem or a stand-in file
+     * @param pollIntervalNanos Time between two level register polls for input listeners
+     * @throws IOException If the register file cannot be mapped
+     */
+    public MappedPinAccessor(String registerFile, long pollIntervalNanos) throws IOException {
+        if(pollIntervalNanos <= 0) {
+            throw new IllegalArgumentException("Poll interval must be positive");
+        }
+
+        this.registers = new GpioRegisters(registerFile);
+        this.pollIntervalNanos = pollIntervalNanos;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#shutdown()
+     */
+    @Override
+    public void shutdown() throws PinBusyException, AccessorDownException {
+        super.shutdown();
+        Thread stopped;
+
+        synchronized(watched) {
+            stopped = poller;
+            poller = null;
+        }
+
+        if(stopped != null) {
+            stopped.interrupt();
+        }
+
+        try {
+            registers.close();
+
+        } catch(IOException e) {
+            logger.warn("Failed to close the GPIO register file", e);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getInPin(int)
+     */
+    @Override
+    public InputPin getInPin(int physicalPinNumber)
+    throws IllegalArgumentException, PinBusyException, AccessorDownException {
+        WiringPi gpio = WiringPi.fromPhysicalPin(physicalPinNumber);
+        return getInGpio(gpio);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getInGpio(int)
+     */
+    @Override
+    public InputPin getInGpio(int gpioNumber) throws IllegalArgumentException, PinBusyException,
+        AccessorDownException {
+        WiringPi gpio = WiringPi.fromGpioAddress(gpioNumber);
+        return getInGpio(gpio);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getInGpio(java.lang.String)
+     */
+    @Override
+    public InputPin getInGpio(String gpioName) throws IllegalArgumentException, PinBusyException,
+        AccessorDownException {
+        WiringPi gpio = WiringPi.fromGpioName(gpioName);
+        return getInGpio(gpio);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getInGpio(com.orland0m.rpi.middleware.pin.WiringPi)
+     */
+    @Override
+    public InputPin getInGpio(WiringPi gpio) throws IllegalArgumentException, PinBusyException,
+        AccessorDownException {
+        assertNotDown();
+
+        synchronized(provisioningLock(gpio)) {
+            InputPin retVal = getForInputOrRelease(gpio);
+
+            if(retVal == null) {
+                retVal = new MappedInputPin(gpio, registers, this);
+                registerProvisionedPin(retVal);
+            }
+
+            return retVal;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getOutPin(int)
+     */
+    @Override
+    public OutputPin getOutPin(int physicalPinNumber) throws IllegalArgumentException,
+        PinBusyException {
+        WiringPi gpio = WiringPi.fromPhysicalPin(physicalPinNumber);
+        return getOutGpio(gpio);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getOutGpio(int)
+     */
+    @Override
+    public OutputPin getOutGpio(int gpioNumber) throws IllegalArgumentException, PinBusyException,
+        AccessorDownException {
+        WiringPi gpio = WiringPi.fromGpioAddress(gpioNumber);
+        return getOutGpio(gpio);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getOutGpio(java.lang.String)
+     */
+    @Override
+    public OutputPin getOutGpio(String gpioName) throws IllegalArgumentException, PinBusyException,
+        AccessorDownException {
+        WiringPi gpio = WiringPi.fromGpioName(gpioName);
+        return getOutGpio(gpio);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getOutGpio(com.orland0m.rpi.middleware.pin.WiringPi)
+     */
+    @Override
+    public OutputPin getOutGpio(WiringPi gpio) throws IllegalArgumentException, PinBusyException,
+        AccessorDownException {
+        assertNotDown();
+
+        synchronized(provisioningLock(gpio)) {
+            OutputPin retVal = getForOutputOrRelease(gpio);
+
+            if(retVal == null) {
+                retVal = new MappedOutputPin(gpio, registers);
+                registerProvisionedPin(retVal);
+            }
+
+            return retVal;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseAccessor#provisionOutput(com.orland0m.rpi.middleware.pin.WiringPi, boolean)
+     */
+    @Override
+    protected OutputPin provisionOutput(WiringPi gpio, boolean high) throws PinBusyException,
+        AccessorDownException {
+        assertNotDown();
+
+        synchronized(provisioningLock(gpio)) {
+            OutputPin retVal = getForOutputOrRelease(gpio);
+
+            if(retVal == null) {
+                retVal = new MappedOutputPin(gpio, registers, high);
+                registerProvisionedPin(retVal);
+
+            } else {
+                retVal.trySet(high);
+            }
+
+            return retVal;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseAccessor#readBank(int)
+     */
+    @Override
+    protected int readBank(int mask) {
+        int bcmLevels = registers.levels();
+        int levels = 0;
+
+        for(int remaining = bcmLevels; remaining != 0; remaining &= remaining - 1) {
+            int address = BCM_TO_ADDRESS[Integer.numberOfTrailingZeros(remaining)];
+
+            if(address >= 0) {
+                levels |= 1 << address;
+            }
+        }
+
+        return levels & mask;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseAccessor#writeBank(int, int)
+     */
+    @Override
+    protected void writeBank(int mask, int values) {
+        int bcmSet = toBcm(mask & values);
+        int bcmClear = toBcm(mask & ~values);
+
+        if(bcmSet != 0) {
+            registers.set(bcmSet);
+        }
+
+        if(bcmClear != 0) {
+            registers.clear(bcmClear);
+        }
+    }
+
+    /**
+     * Starts watching the given pin for state changes
+     *
+     * @param pin The input pin with listeners
+     */
+    void watch(MappedInputPin pin) {
+        synchronized(watched) {
+            int bcm = pin.getGpioInfo().getBcmGpio();
+            watched[bcm] = pin;
+            watchedMask |= pin.getBcmMask();
+
+            if(poller == null && !isDown()) {
+                poller = new Thread(this::pollEdges, "rpi-mmap-edge-poller");
+                poller.setDaemon(true);
+                poller.start();
+            }
+        }
+    }
+
+    /**
+     * Stops watching the given pin for state changes
+     *
+     * @param pin The input pin being released
+     */
+    void unwatch(MappedInputPin pin) {
+        synchronized(watched) {
+            int bcm = pin.getGpioInfo().getBcmGpio();
+
+            if(watched[bcm] == pin) {
+                watched[bcm] = null;
+                watchedMask &= ~pin.getBcmMask();
+            }
+        }
+    }
+
+    /**
+     * Edge poller loop, compares consecutive level register reads and notifies the
+     * pins whose level changed
+     */
+    private void pollEdges() {
+        int last = registers.levels();
+
+        while(!Thread.currentThread().isInterrupted()) {
+            int current = registers.levels();
+            int changed = (current ^ last) & watchedMask;
+            long now = changed == 0 ? 0 : System.nanoTime();
+            last = current;
+
+            for(; changed != 0; changed &= changed - 1) {
+                int address = Integer.numberOfTrailingZeros(changed);
+                MappedInputPin pin = watched[address];
+
+                if(pin != null) {
+                    try {
+                        pin.handleEdge((current & (1 << address)) != 0, now);
+
+                    } catch(RuntimeException e) {
+                        logger.error("Listener failed while handling " + pin.getGpioInfo(), e);
+                    }
+                }
+            }
+
+            LockSupport.parkNanos(this, pollIntervalNanos);
+        }
+    }
+
+    /**
+     * Translates a WiringPi address mask into a BCM GPIO mask
+     *
+     * @param mask Bitmask of WiringPi GPIO addresses
+     * @return Bitmask of BCM GPIO numbers
+     */
+    private static int toBcm(int mask) {
+        int bcmMask = 0;
+
+        for(int remaining = mask; remaining != 0; remaining &= remaining - 1) {
+            bcmMask |= 1 << ADDRESS_TO_BCM[Integer.numberOfTrailingZeros(remaining)];
+        }
+
+        return bcmMask;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,224 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.rest;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.orland0m.rpi.middleware.pin.PinStatus;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Collects output writes for the REST client and sends them as one batch request.
+ * Writes to the same pin are composed as they arrive, so each pin appears at most once
+ * per batch, at the position of its first write. A batch is sent when its window
+ * elapses, when it reaches the configured size, or when someone needs a barrier.
+ *
+ * Batches are sent one at a time and in order. Failures of batches sent in the
+ * background are kept and reported by the next flush.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+final class RestBatcher {
+    /*! Write: set high */
+    static final byte UP = 1;
+    /*! Write: set low */
+    static final byte DOWN = 2;
+    /*! Write: toggle */
+    static final byte TOGGLE = 3;
+    /*! Pin listed in the batch, but its writes cancelled out */
+    private static final byte NOTHING = 4;
+    /*! Every GPIO, indexed by ordinal; cached because WiringPi.values() clones on each call */
+    private static final WiringPi[] GPIOS = WiringPi.values();
+    /*! Action names, indexed by write */
+    private static final String[] ACTIONS = {null, RestProtocol.UP, RestProtocol.DOWN, RestProtocol.TOGGLE};
+    /*! The accessor sending the batches */
+    private final RestPinAccessor accessor;
+    /*! How long a batch collects writes */
+    private final long windowNanos;
+    /*! Writes that make a batch be sent right away */
+    private final int maxBatchSize;
+    /*! Pending write per GPIO, indexed by ordinal, zero if the pin is not listed */
+    private final byte[] pending = new byte[GPIOS.length];
+    /*! Listed GPIO ordinals, in order of their first write */
+    private final int[] order = new int[GPIOS.length];
+    /*! Number of listed GPIOs */
+    private int listed;
+    /*! Writes collected since the last batch was sent */
+    private int writes;
+    /*! True while a background send is scheduled */
+    private boolean scheduled;
+    /*! Serializes sends so batches reach the gateway in order */
+    private final Object sendLock = new Object();
+    /*! Sends batches whose window elapsed */
+    private final ScheduledExecutorService timer;
+    /*! First failure of a background send, reported by the next flush */
+    private final AtomicInteger deferredFailure = new AtomicInteger(PinStatus.OK);
+
+    /**
+     * @param accessor The accessor sending the batches
+     * @param windowNanos How long a batch collects writes
+     * @param maxBatchSize Writes that make a batch be sent right away
+     */
+    RestBatcher(RestPinAccessor accessor, long windowNanos, int maxBatchSize) {
+        this.accessor = accessor;
+        this.windowNanos = windowNanos;
+        this.maxBatchSize = maxBatchSize;
+        this.timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "rpi-rest-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Adds a write to the current batch
+     *
+     * @param gpio The GPIO written
+     * @param write UP, DOWN or TOGGLE
+     * @return OK, or the status of the batch if adding the write made it full and it failed
+     */
+    int add(WiringPi gpio, byte write) {
+        boolean full;
+
+        synchronized(this) {
+            int slot = gpio.ordinal();
+            byte previous = pending[slot];
+
+            if(previous == 0) {
+                order[listed++] = slot;
+            }
+
+            pending[slot] = compose(previous, write);
+            full = ++writes >= maxBatchSize;
+
+            if(!full && !scheduled) {
+                scheduled = true;
+                timer.schedule(this::sendInBackground, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        return full ? send() : PinStatus.OK;
+    }
+
+    /**
+     * Sends the pending batch and reports the first failure since the last flush
+     *
+     * @return OK, or a negative PinStatus code
+     */
+    int flush() {
+        int status = send();
+        int deferred = deferredFailure.getAndSet(PinStatus.OK);
+        return status < 0 ? status : deferred;
+    }
+
+    /**
+     * Sends the pending batch, keeping a failure for the next flush. Called before any
+     * other request so it cannot overtake earlier writes.
+     */
+    void sendInBackground() {
+        int status = send();
+
+        if(status < 0 && deferredFailure.compareAndSet(PinStatus.OK, status)) {
+            RestPinAccessor.logger.warn("Batched write failed: " + PinStatus.toString(status));
+        }
+    }
+
+    /**
+     * Stops the window timer, the pending batch is left to a final flush
+     */
+    void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Sends the pending batch, if any
+     *
+     * @return OK, or a negative PinStatus code
+     */
+    private int send() {
+        synchronized(sendLock) {
+            String batch = drain();
+            return batch == null ? PinStatus.OK : accessor.sendBatch(batch);
+        }
+    }
+
+    /**
+     * Takes the pending writes, leaving an empty batch behind
+     *
+     * @return The batch body, or null if there is nothing to send
+     */
+    private synchronized String drain() {
+        scheduled = false;
+        writes = 0;
+
+        if(listed == 0) {
+            return null;
+        }
+
+        StringBuilder body = new StringBuilder(listed * 16);
+
+        for(int i = 0; i < listed; i++) {
+            int slot = order[i];
+            byte write = pending[slot];
+            pending[slot] = 0;
+
+            if(write != NOTHING) {
+                body.append(GPIOS[slot]).append(' ').append(ACTIONS[write]).append('\n');
+            }
+        }
+
+        listed = 0;
+        return body.length() == 0 ? null : body.toString();
+    }
+
+    /**
+     * Composes a pending write with a newer one on the same pin
+     *
+     * @param previous The pending write, zero if none
+     * @param write The newer write
+     * @return The single write equivalent to both
+     */
+    private static byte compose(byte previous, byte write) {
+        if(write != TOGGLE) {
+            return write;
+        }
+
+        switch(previous) {
+            case UP:
+                return DOWN;
+
+            case DOWN:
+                return UP;
+
+            case TOGGLE:
+                return NOTHING;
+
+            default:
+                return TOGGLE;
+        }
+    }
+}
\ No newline at end of file
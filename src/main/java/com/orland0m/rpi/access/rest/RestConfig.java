@@ -23,10 +23,300 @@
  */
 package com.orland0m.rpi.access.rest;
 
+import java.util.concurrent.TimeUnit;
+
 /**
+ * Settings shared by the REST gateway and the REST pin accessor. The gateway binds to
+ * the bind address and port, clients connect to the server and port. Both sides send
+ * or expect the same API key; a null key disables authentication.
  *
  * @author Orlando Miramontes <https://github.com/orland0m>
  */
 public class RestConfig {
+    /*! Port used when none is configured */
+    public static final int DEFAULT_PORT = 8080;
+    /*! Worker threads used by the gateway when none are configured */
+    public static final int DEFAULT_WORKER_THREADS = 4;
+    /*! Persistent connections a client keeps when none are configured */
+    public static final int DEFAULT_MAX_CONNECTIONS = 2;
+    /*! Client connect timeout used when none is configured */
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 2000;
+    /*! Client read timeout used when none is configured */
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 5000;
+    /*! Writes merged into one client batch when no limit is configured */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+    /*! Host name or address of the gateway, used by clients */
+    private String server;
+    /*! Address the gateway listens on, null listens on every interface */
+    private String bindAddress;
+    /*! TCP port of the gateway */
+    private int port = DEFAULT_PORT;
+    /*! Shared secret sent in the X-Api-Key header, null disables authentication */
+    private String apiKey;
+    /*! Threads servicing gateway requests */
+    private int workerThreads = DEFAULT_WORKER_THREADS;
+    /*! Pending connection queue length, zero lets the system decide */
+    private int backlog;
+    /*! Persistent connections a client keeps open to the gateway */
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    /*! Client connect timeout, zero waits forever */
+    private int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    /*! Client read timeout, zero waits forever */
+    private int readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+    /*! How long a client batch collects writes before it is sent, zero disables batching */
+    private long batchWindowNanos;
+    /*! Writes that make a client batch be sent before its window elapses */
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    /**
+     * Returns the host name or address of the gateway
+     *
+     * @return The server, or null if not configured
+     */
+    public String getServer() {
+        return server;
+    }
+
+    /**
+     * Sets the host name or address of the gateway
+     *
+     * @param server The server
+     */
+    public void setServer(String server) {
+        this.server = server;
+    }
+
+    /**
+     * Returns the address the gateway listens on
+     *
+     * @return The bind address, or null to listen on every interface
+     */
+    public String getBindAddress() {
+        return bindAddress;
+    }
+
+    /**
+     * Sets the address the gateway listens on
+     *
+     * @param bindAddress The bind address, or null to listen on every interface
+     */
+    public void setBindAddress(String bindAddress) {
+        this.bindAddress = bindAddress;
+    }
+
+    /**
+     * Returns the TCP port of the gateway
+     *
+     * @return The port
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Sets the TCP port of the gateway, zero makes the gateway pick a free port
+     *
+     * @param port The port
+     * @throws IllegalArgumentException If the port is out of range
+     */
+    public void setPort(int port) throws IllegalArgumentException {
+        if(port < 0 || port > 0xFFFF) {
+            throw new IllegalArgumentException("Invalid port: " + port);
+        }
+
+        this.port = port;
+    }
+
+    /**
+     * Returns the shared secret
+     *
+     * @return The API key, or null if authentication is disabled
+     */
+    public String getApiKey() {
+        return apiKey;
+    }
+
+    /**
+     * Sets the shared secret
+     *
+     * @param apiKey The API key, or null to disable authentication
+     */
+    public void setApiKey(String apiKey) {
+        this.apiKey = apiKey;
+    }
+
+    /**
+     * Returns the number of threads servicing gateway requests
+     *
+     * @return The thread count
+     */
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    /**
+     * Sets the number of threads servicing gateway requests
+     *
+     * @param workerThreads The thread count
+     * @throws IllegalArgumentException If the count is not positive
+     */
+    public void setWorkerThreads(int workerThreads) throws IllegalArgumentException {
+        if(workerThreads < 1) {
+            throw new IllegalArgumentException("At least one worker thread is required");
+        }
+
+        this.workerThreads = workerThreads;
+    }
+
+    /**
+     * Returns the pending connection queue length
+     *
+     * @return The backlog, zero lets the system decide
+     */
+    public int getBacklog() {
+        return backlog;
+    }
+
+    /**
+     * Sets the pending connection queue length
+     *
+     * @param backlog The backlog, zero lets the system decide
+     * @throws IllegalArgumentException If the backlog is negative
+     */
+    public void setBacklog(int backlog) throws IllegalArgumentException {
+        if(backlog < 0) {
+            throw new IllegalArgumentException("Backlog cannot be negative");
+        }
+
+        this.backlog = backlog;
+    }
+
+    /**
+     * Returns the number of persistent connections a client keeps open to the gateway
+     *
+     * @return The connection count
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Sets the number of persistent connections a client keeps open to the gateway.
+     * Concurrent calls beyond this number are pipelined on the open connections.
+     *
+     * @param maxConnections The connection count
+     * @throws IllegalArgumentException If the count is not positive
+     */
+    public void setMaxConnections(int maxConnections) throws IllegalArgumentException {
+        if(maxConnections < 1) {
+            throw new IllegalArgumentException("At least one connection is required");
+        }
+
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Returns the client connect timeout
+     *
+     * @return The timeout in milliseconds, zero waits forever
+     */
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    /**
+     * Sets the client connect timeout
+     *
+     * @param timeout The timeout, zero waits forever
+     * @param unit The unit of the timeout argument
+     * @throws IllegalArgumentException If the timeout is negative
+     */
+    public void setConnectTimeout(long timeout, TimeUnit unit) throws IllegalArgumentException {
+        connectTimeoutMillis = toMillis(timeout, unit);
+    }
+
+    /**
+     * Returns the client read timeout
+     *
+     * @return The timeout in milliseconds, zero waits forever
+     */
+    public int getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    /**
+     * Sets the client read timeout, the longest a call waits for the gateway to answer
+     *
+     * @param timeout The timeout, zero waits forever
+     * @param unit The unit of the timeout argument
+     * @throws IllegalArgumentException If the timeout is negative
+     */
+    public void setReadTimeout(long timeout, TimeUnit unit) throws IllegalArgumentException {
+        readTimeoutMillis = toMillis(timeout, unit);
+    }
+
+    /**
+     * Returns how long a client batch collects writes before it is sent
+     *
+     * @return The window in nanoseconds, zero if batching is disabled
+     */
+    public long getBatchWindowNanos() {
+        return batchWindowNanos;
+    }
+
+    /**
+     * Enables write batching on clients. Output pin writes issued within the window are
+     * merged into one request, redundant writes to the same pin are collapsed. Writes
+     * return before they are applied, PinAccessor#flush waits for them.
+     *
+     * @param window The window, zero disables batching
+     * @param unit The unit of the window argument
+     * @throws IllegalArgumentException If the window is negative
+     */
+    public void setBatchWindow(long window, TimeUnit unit) throws IllegalArgumentException {
+        if(window < 0) {
+            throw new IllegalArgumentException("Batch window cannot be negative");
+        }
+
+        batchWindowNanos = unit.toNanos(window);
+    }
+
+    /**
+     * Returns the number of writes that make a client batch be sent before its window elapses
+     *
+     * @return The batch size
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Sets the number of writes that make a client batch be sent before its window elapses
+     *
+     * @param maxBatchSize The batch size
+     * @throws IllegalArgumentException If the size is not positive
+     */
+    public void setMaxBatchSize(int maxBatchSize) throws IllegalArgumentException {
+        if(maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Converts a timeout to the int milliseconds used by sockets
+     *
+     * @param timeout The timeout
+     * @param unit The unit of the timeout argument
+     * @return The timeout in milliseconds
+     * @throws IllegalArgumentException If the timeout is negative
+     */
+    private static int toMillis(long timeout, TimeUnit unit) throws IllegalArgumentException {
+        if(timeout < 0) {
+            throw new IllegalArgumentException("Timeout cannot be negative");
+        }
 
+        return (int)Math.min(Integer.MAX_VALUE, unit.toMillis(timeout));
+    }
 }
\ No newline at end of file
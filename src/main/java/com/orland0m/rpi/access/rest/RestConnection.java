@@ -0,0 +1,464 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.rest;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One persistent HTTP/1.1 connection to the gateway. Requests are pipelined: a caller
+ * writes its request as soon as the socket is free to write and takes a ticket, then
+ * waits until every earlier response has been read before reading its own. Responses
+ * are parsed straight from a reused buffer; a pin operation allocates nothing.
+ *
+ * A response is returned packed in a long, the HTTP status in the upper half and the
+ * decimal body in the lower half, see httpStatus and value.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+final class RestConnection implements Closeable {
+    /*! Size of the response buffer */
+    private static final int BUFFER_SIZE = 8192;
+    /*! Longest header line inspected, longer lines are consumed but truncated */
+    private static final int MAX_LINE = 256;
+    /*! Header name: content length, lower case */
+    private static final byte[] CONTENT_LENGTH = RestProtocol.encode("content-length:");
+    /*! Header name: connection, lower case */
+    private static final byte[] CONNECTION = RestProtocol.encode("connection:");
+    /*! Header value: close, lower case */
+    private static final byte[] CLOSE = RestProtocol.encode("close");
+    /*! The socket */
+    private final Socket socket;
+    /*! Socket output, unbuffered: every request is written with a single call */
+    private final OutputStream out;
+    /*! Socket input */
+    private final InputStream in;
+    /*! Response buffer */
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    /*! Current header line */
+    private final byte[] line = new byte[MAX_LINE];
+    /*! Read position in the response buffer */
+    private int position;
+    /*! End of the valid data in the response buffer */
+    private int limit;
+    /*! Serializes writers, guards sent */
+    private final Object writeLock = new Object();
+    /*! Serializes readers, guards received */
+    private final Object readLock = new Object();
+    /*! Tickets handed out, one per request written */
+    private long sent;
+    /*! Responses read so far, the ticket allowed to read next */
+    private long received;
+    /*! Calls currently using this connection */
+    private final AtomicInteger inFlight = new AtomicInteger();
+    /*! Set once the connection is no longer usable */
+    private volatile boolean closed;
+
+    /**
+     * Connects to the gateway
+     *
+     * @param address The gateway address
+     * @param connectTimeoutMillis Connect timeout, zero waits forever
+     * @param readTimeoutMillis Read timeout, zero waits forever
+     * @throws IOException If the connection cannot be established
+     */
+    RestConnection(InetSocketAddress address, int connectTimeoutMillis, int readTimeoutMillis)
+    throws IOException {
+        socket = new Socket();
+
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            socket.connect(address, connectTimeoutMillis);
+            socket.setSoTimeout(readTimeoutMillis);
+            out = socket.getOutputStream();
+            in = socket.getInputStream();
+
+        } catch(IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends a request and waits for its response
+     *
+     * @param request The complete request, written as is
+     * @return The packed response
+     * @throws IOException If the connection fails or the gateway answers with an unexpected status
+     * @throws IllegalArgumentException If the gateway rejected the request as malformed
+     */
+    long call(byte[] request) throws IOException, IllegalArgumentException {
+        inFlight.incrementAndGet();
+
+        try {
+            long ticket;
+
+            synchronized(writeLock) {
+                if(closed) {
+                    throw new IOException("Connection is closed");
+                }
+
+                try {
+                    out.write(request);
+
+                } catch(IOException e) {
+                    close();
+                    throw e;
+                }
+
+                ticket = sent++;
+            }
+
+            return awaitResponse(ticket);
+
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the number of calls currently using this connection
+     *
+     * @return The call count
+     */
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns true if this connection can no longer be used
+     *
+     * @return True if closed
+     */
+    boolean isClosed() {
+        return closed;
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() {
+        closed = true;
+
+        try {
+            socket.close();
+
+        } catch(IOException e) {
+            // Nothing left to release
+        }
+
+        synchronized(readLock) {
+            readLock.notifyAll();
+        }
+    }
+
+    /**
+     * Returns the HTTP status of a packed response
+     *
+     * @param response The packed response
+     * @return The HTTP status
+     */
+    static int httpStatus(long response) {
+        return (int)(response >>> 32);
+    }
+
+    /**
+     * Returns the decimal body of a packed response
+     *
+     * @param response The packed response
+     * @return The body value
+     */
+    static int value(long response) {
+        return (int)response;
+    }
+
+    /**
+     * Waits for every earlier response to be read, then reads the one for the given ticket.
+     * The wait is not interruptible: an abandoned response would desynchronize the pipeline.
+     *
+     * @param ticket The ticket obtained when the request was written
+     * @return The packed response
+     * @throws IOException If the connection fails
+     */
+    private long awaitResponse(long ticket) throws IOException {
+        boolean interrupted = false;
+
+        try {
+            synchronized(readLock) {
+                while(received != ticket) {
+                    if(closed) {
+                        throw new IOException("Connection closed before a pipelined response arrived");
+                    }
+
+                    try {
+                        readLock.wait();
+
+                    } catch(InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+
+                try {
+                    return readResponse();
+
+                } catch(IOException e) {
+                    close();
+                    throw e;
+
+                } finally {
+                    received++;
+                    readLock.notifyAll();
+                }
+            }
+
+        } finally {
+            if(interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Reads and parses one response
+     *
+     * @return The packed response
+     * @throws IOException If the response is malformed or has an unexpected status
+     * @throws IllegalArgumentException If the gateway rejected the request as malformed
+     */
+    private long readResponse() throws IOException, IllegalArgumentException {
+        int length = readLine();
+
+        // "HTTP/1.1 200 OK"
+        if(length < 12 || line[8] != ' ') {
+            throw new IOException("Malformed status line");
+        }
+
+        int status = (line[9] - '0') * 100 + (line[10] - '0') * 10 + (line[11] - '0');
+        int contentLength = 0;
+        boolean closeAfter = false;
+
+        while((length = readLine()) > 0) {
+            if(startsWithIgnoreCase(length, CONTENT_LENGTH)) {
+                contentLength = parseInt(line, CONTENT_LENGTH.length, length);
+
+            } else if(startsWithIgnoreCase(length, CONNECTION)) {
+                closeAfter = containsIgnoreCase(length, CLOSE);
+            }
+        }
+
+        long response = readBody(status, contentLength);
+
+        if(closeAfter) {
+            close();
+        }
+
+        return response;
+    }
+
+    /**
+     * Reads the body and packs it with the status. Bodies that are not a decimal number are
+     * only expected on errors, they are decoded to text for the exception message.
+     *
+     * @param status The HTTP status
+     * @param contentLength The body length
+     * @return The packed response
+     * @throws IOException If the body cannot be read or the status is unexpected
+     * @throws IllegalArgumentException If the gateway rejected the request as malformed
+     */
+    private long readBody(int status, int contentLength) throws IOException,
+        IllegalArgumentException {
+        byte[] text = contentLength <= MAX_LINE ? line : null;
+        int value = 0;
+        boolean numeric = contentLength > 0;
+        boolean negative = false;
+
+        for(int i = 0; i < contentLength; i++) {
+            int b = readByte();
+
+            if(text != null) {
+                text[i] = (byte)b;
+            }
+
+            if(i == 0 && b == '-') {
+                negative = true;
+
+            } else if(b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+
+            } else {
+                numeric = false;
+            }
+        }
+
+        if(numeric) {
+            switch(status) {
+                case RestProtocol.HTTP_OK:
+                case RestProtocol.HTTP_CONFLICT:
+                case RestProtocol.HTTP_GONE:
+                case RestProtocol.HTTP_UNAVAILABLE:
+                    return ((long)status << 32) | ((negative ? -value : value) & 0xFFFFFFFFL);
+
+                default:
+                    break;
+            }
+        }
+
+        String message = text == null ? contentLength + " bytes"
+                         : new String(text, 0, contentLength, StandardCharsets.UTF_8);
+
+        if(status == RestProtocol.HTTP_BAD_REQUEST || status == RestProtocol.HTTP_NOT_FOUND) {
+            throw new IllegalArgumentException(message);
+        }
+
+        throw new IOException("Gateway answered HTTP " + status + ": " + message);
+    }
+
+    /**
+     * Reads a CRLF terminated line into the line buffer, truncating long lines
+     *
+     * @return The line length, without the terminator
+     * @throws IOException If the connection fails
+     */
+    private int readLine() throws IOException {
+        int length = 0;
+
+        for(int b = readByte(); b != '\n'; b = readByte()) {
+            if(length < MAX_LINE) {
+                line[length++] = (byte)b;
+            }
+        }
+
+        return length > 0 && line[length - 1] == '\r' ? length - 1 : length;
+    }
+
+    /**
+     * Reads one byte, refilling the buffer when empty
+     *
+     * @return The byte
+     * @throws IOException If the connection fails or is closed by the gateway
+     */
+    private int readByte() throws IOException {
+        if(position == limit) {
+            int read = in.read(buffer, 0, buffer.length);
+
+            if(read < 0) {
+                throw new EOFException("Gateway closed the connection");
+            }
+
+            position = 0;
+            limit = read;
+        }
+
+        return buffer[position++] & 0xFF;
+    }
+
+    /**
+     * Checks whether the current line starts with a lower case prefix
+     *
+     * @param length The line length
+     * @param prefix The lower case prefix
+     * @return True if the line starts with the prefix, ignoring case
+     */
+    private boolean startsWithIgnoreCase(int length, byte[] prefix) {
+        if(length < prefix.length) {
+            return false;
+        }
+
+        for(int i = 0; i < prefix.length; i++) {
+            if(toLower(line[i]) != prefix[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks whether the current line contains a lower case token
+     *
+     * @param length The line length
+     * @param token The lower case token
+     * @return True if the line contains the token, ignoring case
+     */
+    private boolean containsIgnoreCase(int length, byte[] token) {
+        for(int start = 0; start + token.length <= length; start++) {
+            int i = 0;
+
+            while(i < token.length && toLower(line[start + i]) == token[i]) {
+                i++;
+            }
+
+            if(i == token.length) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Parses a non-negative decimal number, skipping blanks
+     *
+     * @param bytes The text
+     * @param from First index
+     * @param to End index
+     * @return The number
+     * @throws IOException If the text is not a number
+     */
+    private static int parseInt(byte[] bytes, int from, int to) throws IOException {
+        int value = 0;
+
+        for(int i = from; i < to; i++) {
+            byte b = bytes[i];
+
+            if(b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+
+            } else if(b != ' ' && b != '\t') {
+                throw new IOException("Malformed number in response header");
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Lower cases an ASCII letter
+     *
+     * @param b The byte
+     * @return The lower case byte
+     */
+    private static byte toLower(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte)(b + ('a' - 'A')) : b;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,163 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.rest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded pool of persistent connections to the gateway. An idle connection is used
+ * when there is one, otherwise a new connection is opened while the pool has room, and
+ * once it is full calls are pipelined on the least loaded connection. Broken connections
+ * are replaced lazily by the next call that needs one.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+final class RestConnectionPool implements Closeable {
+    /*! The gateway address */
+    private final InetSocketAddress address;
+    /*! Connect timeout for new connections */
+    private final int connectTimeoutMillis;
+    /*! Read timeout for new connections */
+    private final int readTimeoutMillis;
+    /*! Pool slots, null until first used */
+    private final AtomicReferenceArray<RestConnection> connections;
+    /*! Set once the pool is closed */
+    private volatile boolean closed;
+
+    /**
+     * Initializes an empty pool, connections are opened on demand
+     *
+     * @param config Server, port, timeouts and pool size
+     */
+    RestConnectionPool(RestConfig config) {
+        address = InetSocketAddress.createUnresolved(config.getServer(), config.getPort());
+        connectTimeoutMillis = config.getConnectTimeoutMillis();
+        readTimeoutMillis = config.getReadTimeoutMillis();
+        connections = new AtomicReferenceArray<>(config.getMaxConnections());
+    }
+
+    /**
+     * Sends a request on a pooled connection and waits for its response
+     *
+     * @param request The complete request
+     * @return The packed response, see RestConnection
+     * @throws IOException If no connection can be used or the call fails
+     * @throws IllegalArgumentException If the gateway rejected the request as malformed
+     */
+    long call(byte[] request) throws IOException, IllegalArgumentException {
+        return pick().call(request);
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() {
+        closed = true;
+
+        for(int i = 0; i < connections.length(); i++) {
+            RestConnection connection = connections.getAndSet(i, null);
+
+            if(connection != null) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Picks the connection for the next call
+     *
+     * @return An open connection
+     * @throws IOException If the pool is closed or a new connection cannot be established
+     */
+    private RestConnection pick() throws IOException {
+        while(true) {
+            if(closed) {
+                throw new IOException("Connection pool is closed");
+            }
+
+            RestConnection best = null;
+            int bestLoad = Integer.MAX_VALUE;
+            int free = -1;
+
+            for(int i = 0; i < connections.length(); i++) {
+                RestConnection connection = connections.get(i);
+
+                if(connection == null || connection.isClosed()) {
+                    free = free < 0 ? i : free;
+                    continue;
+                }
+
+                int load = connection.getInFlight();
+
+                if(load == 0) {
+                    return connection;
+
+                } else if(load < bestLoad) {
+                    best = connection;
+                    bestLoad = load;
+                }
+            }
+
+            if(free < 0) {
+                return best;
+            }
+
+            RestConnection stale = connections.get(free);
+
+            if(stale != null && !stale.isClosed()) {
+                // Another thread refilled the slot, look again
+                continue;
+            }
+
+            RestConnection fresh = new RestConnection(resolve(), connectTimeoutMillis,
+                                                      readTimeoutMillis);
+
+            if(connections.compareAndSet(free, stale, fresh) && !closed) {
+                return fresh;
+            }
+
+            fresh.close();
+        }
+    }
+
+    /**
+     * Resolves the gateway address, done per connection so DNS changes are honored
+     *
+     * @return The resolved address
+     * @throws IOException If the host name cannot be resolved
+     */
+    private InetSocketAddress resolve() throws IOException {
+        InetSocketAddress resolved = new InetSocketAddress(address.getHostString(), address.getPort());
+
+        if(resolved.isUnresolved()) {
+            throw new IOException("Unable to resolve gateway host: " + address.getHostString());
+        }
+
+        return resolved;
+    }
+}
\ No newline at end of file
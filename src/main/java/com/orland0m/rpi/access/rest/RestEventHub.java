@@ -0,0 +1,303 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.rest;
+
+import static com.orland0m.rpi.access.rest.RestProtocol.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.log4j.Logger;
+
+import com.orland0m.rpi.middleware.event.PinEvent;
+import com.orland0m.rpi.middleware.event.PinEventListener;
+import com.orland0m.rpi.middleware.exception.InvalidatedPinException;
+import com.orland0m.rpi.middleware.pin.InputPin;
+import com.orland0m.rpi.middleware.pin.PinStatus;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Gateway side of the event stream. Edges of the watched pins are numbered and kept in a
+ * ring of the last BACKLOG edges, and every subscribed stream has its own writer thread
+ * sending the edges it is missing. Listeners only append to the ring, so a slow client
+ * never delays the thread reporting the edge, and a stalled client only blocks its own
+ * writer. The ring bounds what a stream can fall behind: a stream more than BACKLOG
+ * edges behind gets a "reset" event instead, as a reconnecting client would. See
+ * RestProtocol for the stream format.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+final class RestEventHub implements PinEventListener {
+    /*! Logger object reference */
+    final static Logger logger = Logger.getLogger(RestEventHub.class);
+    /*! Edges kept for replay, a power of two */
+    static final int BACKLOG = 1024;
+    /*! Comment sent when the stream has been idle for HEARTBEAT_MILLIS */
+    private static final byte[] HEARTBEAT = encode(":\n\n");
+    /*! Identifies this hub in event ids, so ids from another gateway instance are rejected */
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong() >>> 1);
+    /*! GPIO of each edge in the ring, guarded by this */
+    private final WiringPi[] ringGpio = new WiringPi[BACKLOG];
+    /*! Level of each edge in the ring, guarded by this */
+    private final boolean[] ringLevel = new boolean[BACKLOG];
+    /*! Sequence number of the next edge, guarded by this */
+    private long next;
+    /*! Set once the hub is closed */
+    private volatile boolean closed;
+    /*! Pin currently watched for each GPIO, indexed by ordinal */
+    private final AtomicReferenceArray<InputPin> watched =
+        new AtomicReferenceArray<>(WiringPi.values().length);
+    /*! Open streams */
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    /*! Number of writer threads started so far, names them */
+    private final AtomicInteger writers = new AtomicInteger();
+
+    /**
+     * Streams the edges of a pin. Watching a pin twice has no effect; a pin provisioned
+     * again after being released must be watched again.
+     *
+     * @param pin The input pin
+     * @return A PinStatus code
+     */
+    int watch(InputPin pin) {
+        int index = pin.getGpioInfo().ordinal();
+        InputPin current = watched.get(index);
+
+        if(current != pin && watched.compareAndSet(index, current, pin)) {
+            try {
+                pin.addEventListener(this);
+
+            } catch(InvalidatedPinException e) {
+                watched.compareAndSet(index, pin, null);
+                return PinStatus.INVALIDATED;
+            }
+        }
+
+        return PinStatus.OK;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.event.PinEventListener#onPinEvent(com.orland0m.rpi.middleware.event.PinEvent)
+     */
+    @Override
+    public void onPinEvent(PinEvent event) {
+        publish(event.getGpio(), event.isHigh());
+    }
+
+    /**
+     * Numbers an edge and wakes the writers
+     *
+     * @param gpio The GPIO that changed
+     * @param level The new level
+     */
+    synchronized void publish(WiringPi gpio, boolean level) {
+        int slot = (int)(next & (BACKLOG - 1));
+        ringGpio[slot] = gpio;
+        ringLevel[slot] = level;
+        next++;
+        notifyAll();
+    }
+
+    /**
+     * Finds where a new stream starts. Must be called before the response headers are
+     * sent, edges reported once the client sees the response must not be missed.
+     *
+     * @param lastEventId The Last-Event-ID sent by the client, or null for a new client
+     * @return The sequence number of the first edge to send, or -1 if edges were lost
+     */
+    synchronized long start(String lastEventId) {
+        return lastEventId == null ? next : resumePoint(lastEventId);
+    }
+
+    /**
+     * Adds a stream whose response headers have already been sent and starts its writer
+     *
+     * @param out The response body
+     * @param start The position returned by start
+     */
+    void subscribe(OutputStream out, long start) {
+        Subscriber subscriber = new Subscriber(out);
+
+        synchronized(this) {
+            subscriber.reset = start < 0 || start < next - BACKLOG;
+            subscriber.cursor = subscriber.reset ? next : start;
+            subscribers.add(subscriber);
+        }
+
+        if(closed) {
+            subscribers.remove(subscriber);
+            subscriber.close();
+            return;
+        }
+
+        Thread writer = new Thread(() -> push(subscriber),
+                                   "rpi-rest-events-" + writers.incrementAndGet());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stops the writers and closes every stream
+     */
+    void close() {
+        closed = true;
+
+        synchronized(this) {
+            notifyAll();
+        }
+
+        for(Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+
+        subscribers.clear();
+    }
+
+    /**
+     * Finds where a returning client resumes, caller must hold the lock
+     *
+     * @param lastEventId The id of the last event the client received
+     * @return The sequence number of the first edge to replay, or -1 if edges were lost
+     */
+    private long resumePoint(String lastEventId) {
+        int colon = lastEventId.indexOf(':');
+
+        if(colon < 0 || !epoch.equals(lastEventId.substring(0, colon))) {
+            return -1;
+        }
+
+        try {
+            long resume = Long.parseLong(lastEventId.substring(colon + 1)) + 1;
+            return resume <= next && resume >= next - BACKLOG ? resume : -1;
+
+        } catch(NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Writer loop of one stream: formats the edges the stream is missing while holding
+     * the lock and writes them without it, or a heartbeat once the stream has been idle
+     * for HEARTBEAT_MILLIS. The first pass sends a heartbeat at once.
+     *
+     * @param subscriber The stream
+     */
+    private void push(Subscriber subscriber) {
+        StringBuilder text = new StringBuilder(256);
+        long lastWrite = 0;
+
+        try {
+            while(!closed) {
+                synchronized(this) {
+                    long idle;
+
+                    while(!closed && !subscriber.reset && subscriber.cursor == next
+                        && (idle = HEARTBEAT_MILLIS - (System.currentTimeMillis() - lastWrite)) > 0) {
+                        wait(idle);
+                    }
+
+                    text.setLength(0);
+                    format(subscriber, text);
+                }
+
+                if(closed) {
+                    break;
+                }
+
+                subscriber.out.write(text.length() == 0 ? HEARTBEAT : encode(text.toString()));
+                subscriber.out.flush();
+                lastWrite = System.currentTimeMillis();
+            }
+
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+        } catch(IOException e) {
+            logger.debug("Event stream closed by client");
+
+        } finally {
+            subscribers.remove(subscriber);
+            subscriber.close();
+        }
+    }
+
+    /**
+     * Formats the events a stream is missing and moves its cursor, caller must hold the lock
+     *
+     * @param subscriber The stream
+     * @param text Receives the events
+     */
+    private void format(Subscriber subscriber, StringBuilder text) {
+        if(subscriber.reset || subscriber.cursor < next - BACKLOG) {
+            text.append("id: ").append(epoch).append(':').append(next - 1)
+            .append("\nevent: ").append(RESET_EVENT).append("\ndata:\n\n");
+            subscriber.reset = false;
+            subscriber.cursor = next;
+            return;
+        }
+
+        for(; subscriber.cursor < next; subscriber.cursor++) {
+            int slot = (int)(subscriber.cursor & (BACKLOG - 1));
+            text.append("id: ").append(epoch).append(':').append(subscriber.cursor)
+            .append("\nevent: ").append(EDGE_EVENT).append("\ndata: ").append(ringGpio[slot])
+            .append(ringLevel[slot] ? " 1\n\n" : " 0\n\n");
+        }
+    }
+
+    /**
+     * One open stream
+     */
+    private static class Subscriber {
+        /*! The response body */
+        final OutputStream out;
+        /*! Sequence number of the next edge to send, guarded by the hub */
+        long cursor;
+        /*! Set when the client must be told edges were lost, guarded by the hub */
+        boolean reset;
+
+        /**
+         * @param out The response body
+         */
+        Subscriber(OutputStream out) {
+            this.out = out;
+        }
+
+        /**
+         * Ends the response
+         */
+        void close() {
+            try {
+                out.close();
+
+            } catch(IOException e) {
+                logger.debug("Failed to close event stream", e);
+            }
+        }
+    }
+}
\ No newline at end of file
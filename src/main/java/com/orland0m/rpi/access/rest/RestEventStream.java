@@ -0,0 +1,391 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.rest;
+
+import static com.orland0m.rpi.access.rest.RestProtocol.*;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import org.apache.log4j.Logger;
+
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Client side of the event stream: one dedicated connection per accessor, kept open by
+ * a daemon thread that hands every edge to the accessor. When the connection drops the
+ * thread reconnects with exponential backoff and resumes after the last event received,
+ * so no edge is lost unless the gateway's backlog overflowed, in which case a reset is
+ * delivered instead. See RestProtocol for the stream format.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+final class RestEventStream implements Closeable {
+    /*! Logger object reference */
+    final static Logger logger = Logger.getLogger(RestEventStream.class);
+    /*! First reconnection delay, in milliseconds */
+    private static final long MIN_BACKOFF_MILLIS = 100;
+    /*! Longest reconnection delay, in milliseconds */
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+    /*! Longest line accepted */
+    private static final int MAX_LINE = 1024;
+    /*! The accessor receiving the edges */
+    private final RestPinAccessor accessor;
+    /*! Gateway address, resolved on every connection */
+    private final InetSocketAddress address;
+    /*! Request line suffix and headers shared with the accessor's requests */
+    private final String headers;
+    /*! Connect timeout in milliseconds */
+    private final int connectTimeoutMillis;
+    /*! Longest wait for the stream to open, in milliseconds */
+    private final int openTimeoutMillis;
+    /*! Thread reading the stream, guarded by this */
+    private Thread reader;
+    /*! Set while the stream is open, guarded by this */
+    private boolean open;
+    /*! Failed connection attempts, guarded by this */
+    private long failures;
+    /*! Current socket, closed to stop the reader */
+    private volatile Socket socket;
+    /*! Set once the stream is closed */
+    private volatile boolean closed;
+    /*! Id of the last event received, only used by the reader */
+    private String lastEventId;
+
+    /**
+     * @param accessor The accessor receiving the edges
+     * @param config Server, port and timeouts
+     * @param headers Request line suffix and headers shared with the accessor's requests
+     */
+    RestEventStream(RestPinAccessor accessor, RestConfig config, String headers) {
+        this.accessor = accessor;
+        this.address = InetSocketAddress.createUnresolved(config.getServer(), config.getPort());
+        this.headers = headers;
+        this.connectTimeoutMillis = config.getConnectTimeoutMillis();
+        this.openTimeoutMillis = config.getConnectTimeoutMillis() + config.getReadTimeoutMillis();
+    }
+
+    /**
+     * Starts the reader if needed and waits, within the connect and read timeouts, for
+     * the stream to open. Waiting makes sure edges reported after a pin is watched are
+     * not missed. The wait ends early if the connection attempt fails, the reader keeps
+     * retrying in the background.
+     */
+    synchronized void open() {
+        if(closed) {
+            return;
+        }
+
+        if(reader == null) {
+            reader = new Thread(this::run, "rpi-rest-events");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        long deadline = System.currentTimeMillis() + openTimeoutMillis;
+        long failed = failures;
+
+        try {
+            for(long wait = openTimeoutMillis; !open && !closed && failed == failures && wait > 0;
+                    wait = deadline - System.currentTimeMillis()) {
+                wait(wait);
+            }
+
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() {
+        Thread current;
+
+        synchronized(this) {
+            closed = true;
+            current = reader;
+            notifyAll();
+        }
+
+        closeSocket();
+
+        if(current != null) {
+            current.interrupt();
+        }
+    }
+
+    /**
+     * Reader loop
+     */
+    private void run() {
+        long backoff = MIN_BACKOFF_MILLIS;
+
+        while(!closed) {
+            try {
+                stream();
+
+            } catch(IOException e) {
+                if(!closed) {
+                    logger.debug("Event stream interrupted: " + e.getMessage());
+                }
+            }
+
+            synchronized(this) {
+                if(open) {
+                    backoff = MIN_BACKOFF_MILLIS;
+                    open = false;
+
+                } else {
+                    failures++;
+                    notifyAll();
+                }
+            }
+
+            closeSocket();
+
+            try {
+                Thread.sleep(backoff);
+
+            } catch(InterruptedException e) {
+                break;
+            }
+
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    /**
+     * Opens the stream and delivers its events until it fails
+     *
+     * @throws IOException If the stream cannot be opened or fails
+     */
+    private void stream() throws IOException {
+        InetSocketAddress resolved = new InetSocketAddress(address.getHostString(), address.getPort());
+
+        if(resolved.isUnresolved()) {
+            throw new IOException("Unable to resolve gateway host: " + address.getHostString());
+        }
+
+        Socket connection = new Socket();
+        socket = connection;
+
+        if(closed) {
+            return;
+        }
+
+        connection.setTcpNoDelay(true);
+        connection.connect(resolved, connectTimeoutMillis);
+        // The gateway sends a heartbeat while idle, a longer silence means a dead peer
+        connection.setSoTimeout(3 * HEARTBEAT_MILLIS);
+
+        StringBuilder request = new StringBuilder(256);
+        request.append("GET ").append(EVENTS_PATH).append(headers)
+        .append("Accept: text/event-stream\r\n");
+
+        if(lastEventId != null) {
+            request.append(LAST_EVENT_ID_HEADER).append(": ").append(lastEventId).append("\r\n");
+        }
+
+        connection.getOutputStream().write(encode(request.append("\r\n").toString()));
+        InputStream in = new BufferedInputStream(connection.getInputStream());
+        String status = readLine(in);
+
+        if(!status.startsWith("HTTP/1.1 200")) {
+            throw new IOException("Event stream refused: " + status);
+        }
+
+        boolean chunked = false;
+
+        for(String header = readLine(in); !header.isEmpty(); header = readLine(in)) {
+            chunked |= header.toLowerCase(Locale.ROOT).startsWith("transfer-encoding: chunked");
+        }
+
+        synchronized(this) {
+            open = true;
+            notifyAll();
+        }
+
+        read(chunked ? new ChunkedInputStream(in) : in);
+    }
+
+    /**
+     * Parses events and delivers them
+     *
+     * @param in The response body
+     * @throws IOException If the stream fails
+     */
+    private void read(InputStream in) throws IOException {
+        String id = null;
+        String event = null;
+        String data = null;
+
+        while(true) {
+            String line = readLine(in);
+
+            if(line.isEmpty()) {
+                if(event != null) {
+                    deliver(event, data);
+                }
+
+                // The id is only committed once its event was delivered
+                lastEventId = id == null ? lastEventId : id;
+                id = null;
+                event = null;
+                data = null;
+
+            } else if(line.startsWith("id: ")) {
+                id = line.substring(4);
+
+            } else if(line.startsWith("event: ")) {
+                event = line.substring(7);
+
+            } else if(line.startsWith("data: ")) {
+                data = line.substring(6);
+            }
+        }
+    }
+
+    /**
+     * Hands an event to the accessor
+     *
+     * @param event The event name
+     * @param data The event data, null if none
+     */
+    private void deliver(String event, String data) {
+        try {
+            if(EDGE_EVENT.equals(event)) {
+                int space = data.indexOf(' ');
+                accessor.deliverEdge(WiringPi.fromGpioName(data.substring(0, space)),
+                                     data.charAt(space + 1) == '1');
+
+            } else if(RESET_EVENT.equals(event)) {
+                accessor.resyncListeners();
+            }
+
+        } catch(RuntimeException e) {
+            logger.error("Failed to deliver event " + event + ": " + data, e);
+        }
+    }
+
+    /**
+     * Closes the current socket, if any
+     */
+    private void closeSocket() {
+        Socket current = socket;
+
+        if(current != null) {
+            try {
+                current.close();
+
+            } catch(IOException e) {
+                logger.debug("Failed to close event stream", e);
+            }
+        }
+    }
+
+    /**
+     * Reads an US-ASCII line, without its terminator
+     *
+     * @param in The stream
+     * @return The line
+     * @throws IOException If the stream fails, ends or the line is too long
+     */
+    private static String readLine(InputStream in) throws IOException {
+        byte[] line = new byte[MAX_LINE];
+        int length = 0;
+
+        for(int b = in.read(); b != '\n'; b = in.read()) {
+            if(b < 0) {
+                throw new EOFException("Event stream ended");
+
+            } else if(length == MAX_LINE) {
+                throw new IOException("Event stream line too long");
+            }
+
+            line[length++] = (byte)b;
+        }
+
+        if(length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+
+        return new String(line, 0, length, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Removes the chunked transfer coding from a response body
+     */
+    private static class ChunkedInputStream extends InputStream {
+        /*! The raw response */
+        private final InputStream in;
+        /*! Bytes left in the current chunk, -1 before the first chunk */
+        private int remaining = -1;
+
+        /**
+         * @param in The raw response
+         */
+        ChunkedInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        /* (non-Javadoc)
+         * @see java.io.InputStream#read()
+         */
+        @Override
+        public int read() throws IOException {
+            while(remaining <= 0) {
+                if(remaining == 0) {
+                    readLine(in);
+                }
+
+                String size = readLine(in);
+                int extension = size.indexOf(';');
+
+                try {
+                    remaining = Integer.parseInt(extension < 0 ? size.trim()
+                                                 : size.substring(0, extension).trim(), 16);
+
+                } catch(NumberFormatException e) {
+                    throw new IOException("Malformed chunk size: " + size);
+                }
+
+                if(remaining == 0) {
+                    return -1;
+                }
+            }
+
+            remaining--;
+            return in.read();
+        }
+    }
+}
\ No newline at end of file
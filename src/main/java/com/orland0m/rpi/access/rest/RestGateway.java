@@ -0,0 +1,728 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.rest;
+
+import static com.orland0m.rpi.access.rest.RestProtocol.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import com.orland0m.rpi.middleware.exception.AccessorDownException;
+import com.orland0m.rpi.middleware.exception.InvalidatedPinException;
+import com.orland0m.rpi.middleware.exception.PinBusyException;
+import com.orland0m.rpi.middleware.pin.InputPin;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.PinAccessor;
+import com.orland0m.rpi.middleware.pin.PinStatus;
+import com.orland0m.rpi.middleware.pin.RpiPin;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+import com.sun.net.httpserver.Authenticator;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpPrincipal;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Exposes a PinAccessor over HTTP using the JDK's built in server, no servlet container
+ * is needed. Requests are serviced by a fixed pool of worker threads; connections are
+ * kept alive because every response has a known length. Pin operations go through the
+ * non-throwing PinStatus calls and answer with preencoded bodies, see RestProtocol for
+ * the endpoints. Edges of watched input pins are pushed to clients over the event
+ * stream, see RestEventHub; an open stream does not hold a worker thread.
+ *
+ * Deployments should start the JVM with -Dsun.net.httpserver.nodelay=true. The JDK
+ * server writes headers and body separately, and with Nagle enabled the body waits for
+ * the client's delayed ACK, adding ~40ms to every call. The property is read once, when
+ * the first server of the JVM is created, so the gateway leaves it to the launcher.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class RestGateway {
+    /*! Logger object reference */
+    final static Logger logger = Logger.getLogger(RestGateway.class);
+    /*! Method name: GET */
+    private static final String GET = "GET";
+    /*! Method name: POST */
+    private static final String POST = "POST";
+    /*! Empty response body */
+    private static final byte[] NO_BODY = new byte[0];
+    /*! Content type of every response */
+    private static final String TEXT_PLAIN = "text/plain; charset=us-ascii";
+    /*! Content type of the event stream */
+    private static final String EVENT_STREAM = "text/event-stream; charset=us-ascii";
+    /*! Content type of the metrics response */
+    private static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+    /*! The accessor whose pins are exposed */
+    private final PinAccessor accessor;
+    /*! The underlying HTTP server */
+    private final HttpServer server;
+    /*! Threads servicing requests */
+    private final ExecutorService workers;
+    /*! Serializes batches, toggles read the levels before the batch is written */
+    private final Object batchLock = new Object();
+    /*! Numbers edges and pushes them to the event streams */
+    private final RestEventHub events;
+
+    /**
+     * Binds the gateway to the configured address and port. Call start to begin
+     * accepting requests.
+     *
+     * @param accessor The accessor whose pins are exposed
+     * @param config Bind address, port, API key and thread settings
+     * @throws IOException If the server socket cannot be bound
+     * @throws NullPointerException If the accessor or configuration objects are not initialized
+     */
+    public RestGateway(PinAccessor accessor, RestConfig config) throws IOException,
+        NullPointerException {
+        if(accessor == null || config == null) {
+            throw new NullPointerException("Accessor and configuration objects must be valid objects");
+        }
+
+        this.accessor = accessor;
+        InetSocketAddress address = config.getBindAddress() == null
+                                    ? new InetSocketAddress(config.getPort())
+                                    : new InetSocketAddress(config.getBindAddress(), config.getPort());
+        server = HttpServer.create(address, config.getBacklog());
+        workers = Executors.newFixedThreadPool(config.getWorkerThreads(), new WorkerFactory());
+        server.setExecutor(workers);
+        events = new RestEventHub();
+
+        Authenticator authenticator = config.getApiKey() == null
+                                      ? null : new ApiKeyAuthenticator(config.getApiKey());
+        addContext(GPIO_PATH, this::handleGpio, authenticator);
+        addContext(BANK_PATH, this::handleBank, authenticator);
+        addContext(BATCH_PATH, this::handleBatch, authenticator);
+        addContext(METRICS_PATH, this::handleMetrics, authenticator);
+        addContext(EVENTS_PATH, this::handleEvents, authenticator);
+    }
+
+    /**
+     * Starts accepting requests
+     */
+    public void start() {
+        server.start();
+        logger.info("REST gateway listening on " + server.getAddress());
+    }
+
+    /**
+     * Stops accepting requests and releases the worker threads. The accessor is not
+     * shutdown, it belongs to the caller.
+     */
+    public void stop() {
+        events.close();
+        server.stop(0);
+        workers.shutdown();
+        logger.info("REST gateway stopped");
+    }
+
+    /**
+     * Returns the address the gateway is bound to, useful when the port was picked by
+     * the system
+     *
+     * @return The bound address
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Handles the single pin endpoints: /gpio/{name}/{action}
+     *
+     * @param exchange The request
+     * @throws IOException If the response cannot be written
+     */
+    private void handleGpio(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getRawPath();
+        int slash = path.indexOf('/', GPIO_PATH.length());
+
+        if(slash < 0) {
+            respond(exchange, HTTP_NOT_FOUND, encode("Missing action"));
+            return;
+        }
+
+        WiringPi gpio;
+
+        try {
+            gpio = WiringPi.fromGpioName(path.substring(GPIO_PATH.length(), slash));
+
+        } catch(IllegalArgumentException e) {
+            respond(exchange, HTTP_NOT_FOUND, encode(e.getMessage()));
+            return;
+        }
+
+        String action = path.substring(slash + 1);
+        boolean post = POST.equals(exchange.getRequestMethod());
+        int status;
+
+        if(INPUT.equals(action) || OUTPUT.equals(action)) {
+            if(!post && !GET.equals(exchange.getRequestMethod())) {
+                rejectMethod(exchange, "GET, POST");
+                return;
+            }
+
+            boolean output = OUTPUT.equals(action);
+
+            if(!post) {
+                read(exchange, gpio, output);
+                return;
+            }
+
+            status = provision(gpio, output);
+
+        } else if(UP.equals(action) || DOWN.equals(action) || TOGGLE.equals(action)) {
+            if(!post) {
+                rejectMethod(exchange, POST);
+                return;
+            }
+
+            status = write(gpio, action);
+
+        } else if(WATCH.equals(action)) {
+            if(!post) {
+                rejectMethod(exchange, POST);
+                return;
+            }
+
+            status = watch(gpio);
+
+        } else {
+            respond(exchange, HTTP_NOT_FOUND, encode("Unknown action: " + action));
+            return;
+        }
+
+        respond(exchange, httpStatus(status), statusBody(status));
+    }
+
+    /**
+     * Handles the whole board endpoints: /bank and /bank/{mask}/{values}
+     *
+     * @param exchange The request
+     * @throws IOException If the response cannot be written
+     */
+    private void handleBank(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getRawPath();
+
+        try {
+            if(path.length() == BANK_PATH.length()) {
+                if(!GET.equals(exchange.getRequestMethod())) {
+                    rejectMethod(exchange, GET);
+                    return;
+                }
+
+                respond(exchange, HTTP_OK, encode(Integer.toString(accessor.readAll())));
+                return;
+            }
+
+            int slash = path.indexOf('/', BANK_PATH.length() + 1);
+
+            if(path.charAt(BANK_PATH.length()) != '/' || slash < 0) {
+                respond(exchange, HTTP_NOT_FOUND, encode("Expected /bank/{mask}/{values}"));
+                return;
+            }
+
+            if(!POST.equals(exchange.getRequestMethod())) {
+                rejectMethod(exchange, POST);
+                return;
+            }
+
+            int mask = Integer.parseInt(path.substring(BANK_PATH.length() + 1, slash));
+            int values = Integer.parseInt(path.substring(slash + 1));
+            accessor.writeMasked(mask, values);
+            respond(exchange, HTTP_OK, statusBody(PinStatus.OK));
+
+        } catch(AccessorDownException e) {
+            respond(exchange, HTTP_UNAVAILABLE, statusBody(PinStatus.ACCESSOR_DOWN));
+
+        } catch(IllegalArgumentException e) {
+            // NumberFormatException included
+            respond(exchange, HTTP_BAD_REQUEST, encode(String.valueOf(e.getMessage())));
+        }
+    }
+
+    /**
+     * Handles the batch endpoint, see RestProtocol for the body format
+     *
+     * @param exchange The request
+     * @throws IOException If the request cannot be read or the response cannot be written
+     */
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        if(!exchange.getRequestURI().getRawPath().equals(BATCH_PATH)) {
+            respond(exchange, HTTP_NOT_FOUND, NO_BODY);
+            return;
+        }
+
+        if(!POST.equals(exchange.getRequestMethod())) {
+            rejectMethod(exchange, POST);
+            return;
+        }
+
+        String body = readBody(exchange);
+
+        if(body == null) {
+            respond(exchange, HTTP_BAD_REQUEST, encode("Batch body is too large"));
+            return;
+        }
+
+        int status;
+
+        try {
+            status = applyBatch(body);
+
+        } catch(IllegalArgumentException e) {
+            respond(exchange, HTTP_BAD_REQUEST, encode(String.valueOf(e.getMessage())));
+            return;
+        }
+
+        respond(exchange, httpStatus(status), statusBody(status));
+    }
+
+    /**
+     * Handles the metrics endpoint
+     *
+     * @param exchange The request
+     * @throws IOException If the response cannot be written
+     */
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        if(!GET.equals(exchange.getRequestMethod())) {
+            rejectMethod(exchange, GET);
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", PROMETHEUS_TEXT);
+        send(exchange, HTTP_OK, accessor.getMetrics().toPrometheusText().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Handles the event stream endpoint. The response headers are sent here and the
+     * exchange is handed over to the event hub, which keeps it open.
+     *
+     * @param exchange The request
+     * @throws IOException If the response headers cannot be written
+     */
+    private void handleEvents(HttpExchange exchange) throws IOException {
+        if(!exchange.getRequestURI().getRawPath().equals(EVENTS_PATH)) {
+            respond(exchange, HTTP_NOT_FOUND, NO_BODY);
+            return;
+        }
+
+        if(!GET.equals(exchange.getRequestMethod())) {
+            rejectMethod(exchange, GET);
+            return;
+        }
+
+        long start = events.start(exchange.getRequestHeaders().getFirst(LAST_EVENT_ID_HEADER));
+        exchange.getResponseHeaders().set("Content-Type", EVENT_STREAM);
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(HTTP_OK, 0);
+        events.subscribe(exchange.getResponseBody(), start);
+    }
+
+    /**
+     * Provisions a pin
+     *
+     * @param gpio The GPIO to provision
+     * @param output True to provision an output pin, false for an input pin
+     * @return A PinStatus code
+     */
+    private int provision(WiringPi gpio, boolean output) {
+        try {
+            if(output) {
+                accessor.getOutGpio(gpio);
+
+            } else {
+                accessor.getInGpio(gpio);
+            }
+
+            return PinStatus.OK;
+
+        } catch(PinBusyException e) {
+            return PinStatus.BUSY;
+
+        } catch(InvalidatedPinException e) {
+            return PinStatus.INVALIDATED;
+
+        } catch(AccessorDownException e) {
+            return PinStatus.ACCESSOR_DOWN;
+        }
+    }
+
+    /**
+     * Reads a pin already provisioned in the requested direction, a read never
+     * provisions. Answers 404 if the GPIO is not provisioned and 409 if it is provisioned
+     * in the other direction.
+     *
+     * @param exchange The request
+     * @param gpio The GPIO to read
+     * @param output True to read an output pin, false for an input pin
+     * @throws IOException If the response cannot be written
+     */
+    private void read(HttpExchange exchange, WiringPi gpio, boolean output) throws IOException {
+        RpiPin pin = accessor.findGpio(gpio);
+
+        if(pin == null && !accessor.isDown()) {
+            respond(exchange, HTTP_NOT_FOUND, encode("Not provisioned: " + gpio));
+            return;
+        }
+
+        int status;
+
+        if(pin == null) {
+            status = PinStatus.ACCESSOR_DOWN;
+
+        } else if(output ? pin instanceof OutputPin : pin instanceof InputPin) {
+            status = pin.tryRead();
+
+        } else {
+            status = PinStatus.BUSY;
+        }
+
+        respond(exchange, httpStatus(status), statusBody(status));
+    }
+
+    /**
+     * Writes an output pin, provisioning it if needed
+     *
+     * @param gpio The GPIO to write
+     * @param action UP, DOWN or TOGGLE
+     * @return A PinStatus code
+     */
+    private int write(WiringPi gpio, String action) {
+        OutputPin pin = accessor.tryGetOutGpio(gpio);
+
+        if(pin == null) {
+            return unavailable();
+        }
+
+        if(TOGGLE.equals(action)) {
+            return pin.tryToggle();
+        }
+
+        return pin.trySet(UP.equals(action));
+    }
+
+    /**
+     * Streams the edges of an input pin, provisioning it if needed
+     *
+     * @param gpio The GPIO to watch
+     * @return A PinStatus code
+     */
+    private int watch(WiringPi gpio) {
+        InputPin pin = accessor.tryGetInGpio(gpio);
+        return pin == null ? unavailable() : events.watch(pin);
+    }
+
+    /**
+     * Folds a batch into one final level per pin and writes them all at once. The whole
+     * batch is parsed first and its pins checked without provisioning them; pins are only
+     * provisioned, and written, once every line is valid and every pin available, so the
+     * batch is applied completely or not at all.
+     *
+     * @param body The batch, one "{name} {action}" write per line
+     * @return A PinStatus code
+     * @throws IllegalArgumentException If the batch is malformed
+     */
+    private int applyBatch(String body) throws IllegalArgumentException {
+        int mask = 0;
+        int values = 0;
+        int toggles = 0;
+        int start = 0;
+
+        while(start < body.length()) {
+            int end = body.indexOf('\n', start);
+            end = end < 0 ? body.length() : end;
+            int space = body.indexOf(' ', start);
+
+            if(end == start) {
+                start++;
+                continue;
+
+            } else if(space < 0 || space > end) {
+                throw new IllegalArgumentException("Malformed batch line: " + body.substring(start, end));
+            }
+
+            WiringPi gpio = WiringPi.fromGpioName(body.substring(start, space));
+            String action = body.substring(space + 1, end);
+            int bit = 1 << gpio.getGpioAddress();
+
+            if(UP.equals(action)) {
+                mask |= bit;
+                values |= bit;
+                toggles &= ~bit;
+
+            } else if(DOWN.equals(action)) {
+                mask |= bit;
+                values &= ~bit;
+                toggles &= ~bit;
+
+            } else if(TOGGLE.equals(action)) {
+                if((mask & bit) != 0) {
+                    values ^= bit;
+
+                } else {
+                    toggles ^= bit;
+                }
+
+            } else {
+                throw new IllegalArgumentException("Unknown action: " + action);
+            }
+
+            start = end + 1;
+        }
+
+        int pins = mask | toggles;
+
+        if(!available(pins)) {
+            return unavailable();
+        }
+
+        for(int pending = pins; pending != 0; pending &= pending - 1) {
+            WiringPi gpio = WiringPi.fromGpioAddress(Integer.numberOfTrailingZeros(pending));
+
+            if(accessor.tryGetOutGpio(gpio) == null) {
+                return unavailable();
+            }
+        }
+
+        try {
+            synchronized(batchLock) {
+                if(toggles != 0) {
+                    int current = accessor.readAll();
+                    mask |= toggles;
+                    values = (values & ~toggles) | (~current & toggles);
+                }
+
+                if(mask != 0) {
+                    accessor.writeMasked(mask, values);
+                }
+            }
+
+            return PinStatus.OK;
+
+        } catch(AccessorDownException e) {
+            return PinStatus.ACCESSOR_DOWN;
+
+        } catch(IllegalArgumentException e) {
+            // A pin was released after it was resolved
+            return PinStatus.BUSY;
+        }
+    }
+
+    /**
+     * Checks, without provisioning anything, that every pin of a batch is an output or
+     * can become one: pins in the other direction must not be busy
+     *
+     * @param pins Bitmask of GPIO addresses
+     * @return True if every pin is available
+     */
+    private boolean available(int pins) {
+        for(int pending = pins; pending != 0; pending &= pending - 1) {
+            int address = Integer.numberOfTrailingZeros(pending);
+            RpiPin pin = accessor.findGpio(WiringPi.fromGpioAddress(address));
+
+            if(pin == null || pin instanceof OutputPin || !pin.isValid()) {
+                continue;
+            }
+
+            try {
+                if(pin.isBusy()) {
+                    return false;
+                }
+
+            } catch(InvalidatedPinException e) {
+                // Released meanwhile, it can be provisioned again
+            }
+        }
+
+        return !accessor.isDown();
+    }
+
+    /**
+     * Explains why a pin could not be obtained without throwing
+     *
+     * @return ACCESSOR_DOWN if the accessor is down, BUSY otherwise
+     */
+    private int unavailable() {
+        return accessor.isDown() ? PinStatus.ACCESSOR_DOWN : PinStatus.BUSY;
+    }
+
+    /**
+     * Reads a small request body
+     *
+     * @param exchange The request
+     * @return The body, or null if it exceeds MAX_BATCH_BODY
+     * @throws IOException If the body cannot be read
+     */
+    private static String readBody(HttpExchange exchange) throws IOException {
+        byte[] body = new byte[1024];
+        int length = 0;
+
+        try(InputStream in = exchange.getRequestBody()) {
+            for(int read; (read = in.read(body, length, body.length - length)) > 0;) {
+                length += read;
+
+                if(length == body.length) {
+                    if(body.length == MAX_BATCH_BODY) {
+                        return null;
+                    }
+
+                    body = Arrays.copyOf(body, Math.min(body.length * 2, MAX_BATCH_BODY));
+                }
+            }
+        }
+
+        return new String(body, 0, length, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Registers a handler, logging unexpected failures as internal errors
+     *
+     * @param path The context path
+     * @param handler The handler
+     * @param authenticator The authenticator, null if authentication is disabled
+     */
+    private void addContext(String path, HttpHandler handler, Authenticator authenticator) {
+        HttpContext context = server.createContext(path, exchange -> {
+            try {
+                handler.handle(exchange);
+
+            } catch(RuntimeException e) {
+                logger.error("Failed to handle " + exchange.getRequestURI(), e);
+                respond(exchange, HTTP_INTERNAL_ERROR, NO_BODY);
+            }
+        });
+
+        if(authenticator != null) {
+            context.setAuthenticator(authenticator);
+        }
+    }
+
+    /**
+     * Answers with 405, listing the allowed methods
+     *
+     * @param exchange The request
+     * @param allowed The allowed methods
+     * @throws IOException If the response cannot be written
+     */
+    private static void rejectMethod(HttpExchange exchange, String allowed) throws IOException {
+        exchange.getResponseHeaders().set("Allow", allowed);
+        respond(exchange, HTTP_BAD_METHOD, NO_BODY);
+    }
+
+    /**
+     * Answers with a plain text body
+     *
+     * @param exchange The request
+     * @param code The HTTP status
+     * @param body The response body
+     * @throws IOException If the response cannot be written
+     */
+    private static void respond(HttpExchange exchange, int code, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", TEXT_PLAIN);
+        send(exchange, code, body);
+    }
+
+    /**
+     * Writes a fixed length response and closes the exchange, which leaves the connection
+     * open for the next request
+     *
+     * @param exchange The request
+     * @param code The HTTP status
+     * @param body The response body
+     * @throws IOException If the response cannot be written
+     */
+    private static void send(HttpExchange exchange, int code, byte[] body) throws IOException {
+        try {
+            exchange.sendResponseHeaders(code, body.length == 0 ? -1 : body.length);
+
+            if(body.length > 0) {
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+            }
+
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Accepts requests carrying the configured API key
+     */
+    private static class ApiKeyAuthenticator extends Authenticator {
+        /*! The expected key */
+        private final byte[] apiKey;
+        /*! Principal attached to authenticated requests */
+        private final HttpPrincipal principal;
+
+        /**
+         * @param apiKey The expected key
+         */
+        ApiKeyAuthenticator(String apiKey) {
+            this.apiKey = apiKey.getBytes(StandardCharsets.UTF_8);
+            this.principal = new HttpPrincipal("client", "rpi-rest");
+        }
+
+        /* (non-Javadoc)
+         * @see com.sun.net.httpserver.Authenticator#authenticate(com.sun.net.httpserver.HttpExchange)
+         */
+        @Override
+        public Result authenticate(HttpExchange exchange) {
+            String key = exchange.getRequestHeaders().getFirst(API_KEY_HEADER);
+
+            // Constant time comparison, the key must not leak through response timing
+            if(key != null && MessageDigest.isEqual(apiKey, key.getBytes(StandardCharsets.UTF_8))) {
+                return new Success(principal);
+            }
+
+            return new Failure(HTTP_UNAUTHORIZED);
+        }
+    }
+
+    /**
+     * Names the worker threads so they can be told apart in thread dumps
+     */
+    private static class WorkerFactory implements ThreadFactory {
+        /*! Number of threads created so far */
+        private final AtomicInteger count = new AtomicInteger();
+
+        /* (non-Javadoc)
+         * @see ThreadFactory#newThread(java.lang.Runnable)
+         */
+        @Override
+        public Thread newThread(Runnable task) {
+            return new Thread(task, "rpi-rest-worker-" + count.incrementAndGet());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,117 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.rest;
+
+import com.orland0m.rpi.access.BaseInputPin;
+import com.orland0m.rpi.middleware.pin.PinStatus;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Input pin read through a RestGateway
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class RestInputPin extends BaseInputPin {
+    /*! The accessor owning the connections */
+    private final RestPinAccessor accessor;
+    /*! Encoded read request */
+    private final byte[] readRequest;
+    /*! Encoded watch request */
+    private final byte[] watchRequest;
+    /*! Set once the gateway has been asked to stream this pin's edges */
+    private volatile boolean watched;
+
+    /**
+     * Initializes a pin that has already been provisioned on the gateway
+     *
+     * @param gpio The GPIO pin information
+     * @param accessor The accessor owning the connections
+     */
+    public RestInputPin(WiringPi gpio, RestPinAccessor accessor) {
+        super(gpio);
+        this.accessor = accessor;
+        readRequest = accessor.request("GET", gpio, RestProtocol.INPUT);
+        watchRequest = accessor.request("POST", gpio, RestProtocol.WATCH);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseInputPin#readLevel()
+     */
+    @Override
+    protected boolean readLevel() {
+        return accessor.execute(readRequest) == PinStatus.HIGH;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseInputPin#tryReadLevel()
+     */
+    @Override
+    protected int tryReadLevel() {
+        return accessor.tryExecute(readRequest);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseInputPin#onStartWatching()
+     */
+    @Override
+    protected void onStartWatching() {
+        // Flagged first, so a failed request is retried when the event stream resyncs
+        watched = true;
+        accessor.watch(this);
+    }
+
+    /**
+     * Returns whether the gateway has been asked to stream this pin's edges
+     *
+     * @return True once the pin is watched, for listeners, counters or a journal
+     */
+    boolean isWatched() {
+        return watched;
+    }
+
+    /**
+     * Returns the encoded watch request
+     *
+     * @return The request, shared; must not be modified
+     */
+    byte[] watchRequest() {
+        return watchRequest;
+    }
+
+    /**
+     * Notifies the listeners, called when the event stream reports an edge
+     */
+    void handleEdge() {
+        fireStateChange();
+    }
+
+    /**
+     * Notifies the listeners of an edge whose level is known
+     *
+     * @param high The new level
+     */
+    void handleEdge(boolean high) {
+        fireStateChange(high, System.nanoTime());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,113 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.rest;
+
+import com.orland0m.rpi.access.BaseOutputPin;
+import com.orland0m.rpi.middleware.pin.PinStatus;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Output pin driven through a RestGateway. The requests for every operation are
+ * encoded when the pin is created, a call writes them as they are. Writes go through
+ * the accessor's batcher when batching is enabled.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class RestOutputPin extends BaseOutputPin {
+    /*! The accessor owning the connections */
+    private final RestPinAccessor accessor;
+    /*! Encoded read request */
+    private final byte[] readRequest;
+    /*! Encoded set high request */
+    private final byte[] upRequest;
+    /*! Encoded set low request */
+    private final byte[] downRequest;
+    /*! Encoded toggle request */
+    private final byte[] toggleRequest;
+
+    /**
+     * Initializes a pin that has already been provisioned on the gateway
+     *
+     * @param gpio The GPIO pin information
+     * @param accessor The accessor owning the connections
+     */
+    public RestOutputPin(WiringPi gpio, RestPinAccessor accessor) {
+        super(gpio);
+        this.accessor = accessor;
+        readRequest = accessor.request("GET", gpio, RestProtocol.OUTPUT);
+        upRequest = accessor.request("POST", gpio, RestProtocol.UP);
+        downRequest = accessor.request("POST", gpio, RestProtocol.DOWN);
+        toggleRequest = accessor.request("POST", gpio, RestProtocol.TOGGLE);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseOutputPin#readLevel()
+     */
+    @Override
+    protected boolean readLevel() {
+        return accessor.execute(readRequest) == PinStatus.HIGH;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseOutputPin#writeLevel(boolean)
+     */
+    @Override
+    protected void writeLevel(boolean high) {
+        accessor.write(gpio, high ? RestBatcher.UP : RestBatcher.DOWN,
+                       high ? upRequest : downRequest);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseOutputPin#invertLevel()
+     */
+    @Override
+    protected void invertLevel() {
+        accessor.write(gpio, RestBatcher.TOGGLE, toggleRequest);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseOutputPin#tryReadLevel()
+     */
+    @Override
+    protected int tryReadLevel() {
+        return accessor.tryExecute(readRequest);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseOutputPin#tryWriteLevel(boolean)
+     */
+    @Override
+    protected int tryWriteLevel(boolean high) {
+        return accessor.tryWrite(gpio, high ? RestBatcher.UP : RestBatcher.DOWN,
+                                 high ? upRequest : downRequest);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseOutputPin#tryInvertLevel()
+     */
+    @Override
+    protected int tryInvertLevel() {
+        return accessor.tryWrite(gpio, RestBatcher.TOGGLE, toggleRequest);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,491 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.rest;
+
+import static com.orland0m.rpi.access.rest.RestProtocol.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import org.apache.log4j.Logger;
+
+import com.orland0m.rpi.access.BaseAccessor;
+import com.orland0m.rpi.middleware.exception.AccessorDownException;
+import com.orland0m.rpi.middleware.exception.InvalidatedPinException;
+import com.orland0m.rpi.middleware.exception.PinBusyException;
+import com.orland0m.rpi.middleware.pin.InputPin;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.PinStatus;
+import com.orland0m.rpi.middleware.pin.RpiPin;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Class that creates pin objects backed by a remote RestGateway. Calls travel over a
+ * bounded pool of persistent connections; concurrent calls beyond the pool size are
+ * pipelined. Every pin request is encoded once, when the pin is provisioned, and written
+ * from that same array on each call.
+ *
+ * With RestConfig#setBatchWindow output writes are batched, see RestBatcher. Any other
+ * call sends the pending batch first, so it never overtakes earlier writes.
+ *
+ * Listeners work as they do locally: the first listener, counter or journal of a pin
+ * asks the gateway to watch it, and edges arrive over a single event stream shared by every pin of the
+ * accessor, see RestEventStream. Nothing is polled.
+ *
+ * The throwing calls report gateway side failures with the usual exceptions and network
+ * failures with UncheckedIOException; the non-throwing calls return PinStatus.UNREACHABLE
+ * for the latter.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class RestPinAccessor extends BaseAccessor {
+    /*! Logger object reference */
+    final static Logger logger = Logger.getLogger(RestPinAccessor.class);
+    /*! Error message: the remote pin was invalidated */
+    private static final String REMOTE_INVALID_MSG = "The gateway reports this pin as invalidated";
+    /*! Error message: the remote pin is busy */
+    private static final String REMOTE_BUSY_MSG = "The gateway reports this pin as busy";
+    /*! Error message: the remote accessor is down */
+    private static final String REMOTE_DOWN_MSG = "The gateway's pin accessor has been shutdown";
+    /*! Error message: the gateway could not be reached */
+    private static final String UNREACHABLE_MSG = "The gateway could not be reached";
+    /*! Connections to the gateway */
+    private final RestConnectionPool pool;
+    /*! Protocol version and request headers, identical for every request */
+    private final String headers;
+    /*! Write batcher, null if batching is disabled */
+    private final RestBatcher batcher;
+    /*! Edges of the watched pins, opened by the first watched pin */
+    private final RestEventStream events;
+
+    /**
+     * Initializes an accessor for the gateway described by the configuration. No
+     * connection is opened until the first call.
+     *
+     * @param config Server, port, API key, timeouts and pool size
+     * @throws NullPointerException If the configuration object or its server are not initialized
+     */
+    public RestPinAccessor(RestConfig config) throws NullPointerException {
+        if(config == null || config.getServer() == null) {
+            throw new NullPointerException("Configuration object and server must be valid objects");
+        }
+
+        StringBuilder builder = new StringBuilder(128);
+        builder.append(" HTTP/1.1\r\nHost: ").append(config.getServer()).append(':')
+        .append(config.getPort()).append("\r\n");
+
+        if(config.getApiKey() != null) {
+            builder.append(API_KEY_HEADER).append(": ").append(config.getApiKey()).append("\r\n");
+        }
+
+        headers = builder.toString();
+        pool = new RestConnectionPool(config);
+        batcher = config.getBatchWindowNanos() == 0 ? null
+                  : new RestBatcher(this, config.getBatchWindowNanos(), config.getMaxBatchSize());
+        events = new RestEventStream(this, config, headers);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#shutdown()
+     */
+    @Override
+    public void shutdown() throws PinBusyException, AccessorDownException {
+        super.shutdown();
+
+        if(batcher != null) {
+            batcher.shutdown();
+            batcher.sendInBackground();
+        }
+
+        events.close();
+        pool.close();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseAccessor#flush()
+     */
+    @Override
+    public void flush() throws PinBusyException, InvalidatedPinException, AccessorDownException {
+        assertNotDown();
+
+        if(batcher != null) {
+            int status = batcher.flush();
+
+            if(status < 0) {
+                throw toException(status);
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getInPin(int)
+     */
+    @Override
+    public InputPin getInPin(int physicalPinNumber) throws IllegalArgumentException,
+        PinBusyException, AccessorDownException {
+        return getInGpio(WiringPi.fromPhysicalPin(physicalPinNumber));
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getInGpio(int)
+     */
+    @Override
+    public InputPin getInGpio(int gpioNumber) throws IllegalArgumentException, PinBusyException,
+        AccessorDownException {
+        return getInGpio(WiringPi.fromGpioAddress(gpioNumber));
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getInGpio(java.lang.String)
+     */
+    @Override
+    public InputPin getInGpio(String gpioName) throws IllegalArgumentException, PinBusyException,
+        AccessorDownException {
+        return getInGpio(WiringPi.fromGpioName(gpioName));
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getInGpio(com.orland0m.rpi.middleware.pin.WiringPi)
+     */
+    @Override
+    public InputPin getInGpio(WiringPi gpio) throws IllegalArgumentException, PinBusyException,
+        AccessorDownException {
+        assertNotDown();
+
+        synchronized(provisioningLock(gpio)) {
+            InputPin retVal = getForInputOrRelease(gpio);
+
+            if(retVal == null) {
+                execute(request("POST", gpio, INPUT));
+                retVal = new RestInputPin(gpio, this);
+                registerProvisionedPin(retVal);
+            }
+
+            return retVal;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getOutPin(int)
+     */
+    @Override
+    public OutputPin getOutPin(int physicalPinNumber) throws IllegalArgumentException,
+        PinBusyException, AccessorDownException {
+        return getOutGpio(WiringPi.fromPhysicalPin(physicalPinNumber));
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getOutGpio(int)
+     */
+    @Override
+    public OutputPin getOutGpio(int gpioNumber) throws IllegalArgumentException, PinBusyException,
+        AccessorDownException {
+        return getOutGpio(WiringPi.fromGpioAddress(gpioNumber));
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getOutGpio(java.lang.String)
+     */
+    @Override
+    public OutputPin getOutGpio(String gpioName) throws IllegalArgumentException, PinBusyException,
+        AccessorDownException {
+        return getOutGpio(WiringPi.fromGpioName(gpioName));
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getOutGpio(com.orland0m.rpi.middleware.pin.WiringPi)
+     */
+    @Override
+    public OutputPin getOutGpio(WiringPi gpio) throws IllegalArgumentException, PinBusyException,
+        AccessorDownException {
+        assertNotDown();
+
+        synchronized(provisioningLock(gpio)) {
+            OutputPin retVal = getForOutputOrRelease(gpio);
+
+            if(retVal == null) {
+                execute(request("POST", gpio, OUTPUT));
+                retVal = new RestOutputPin(gpio, this);
+                registerProvisionedPin(retVal);
+            }
+
+            return retVal;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseAccessor#readBank(int)
+     */
+    @Override
+    protected int readBank(int mask) {
+        if(batcher != null) {
+            batcher.sendInBackground();
+        }
+
+        try {
+            long response = pool.call(request("GET", BANK_PATH));
+
+            if(RestConnection.httpStatus(response) == HTTP_OK) {
+                return RestConnection.value(response) & mask;
+            }
+
+            throw toException(RestConnection.value(response));
+
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseAccessor#writeBank(int, int)
+     */
+    @Override
+    protected void writeBank(int mask, int values) {
+        execute(request("POST", BANK_PATH + '/' + mask + '/' + values));
+    }
+
+    /**
+     * Encodes a complete single pin request
+     *
+     * @param method The request method
+     * @param gpio The GPIO addressed
+     * @param action The action, see RestProtocol
+     * @return The request bytes
+     */
+    byte[] request(String method, WiringPi gpio, String action) {
+        return request(method, GPIO_PATH + gpio + '/' + action);
+    }
+
+    /**
+     * Asks the gateway to stream the edges of a pin, opening the event stream first so
+     * no edge reported after the gateway starts watching is missed
+     *
+     * @param pin The pin
+     * @throws InvalidatedPinException If the remote pin has been invalidated
+     * @throws PinBusyException If the remote pin is busy
+     * @throws AccessorDownException If the remote accessor is down
+     * @throws UncheckedIOException If the gateway cannot be reached
+     */
+    void watch(RestInputPin pin) throws InvalidatedPinException, PinBusyException,
+        AccessorDownException, UncheckedIOException {
+        events.open();
+        execute(pin.watchRequest());
+    }
+
+    /**
+     * Notifies the listeners of a pin that it changed state, called by the event stream
+     *
+     * @param gpio The GPIO that changed
+     * @param high The new level
+     */
+    void deliverEdge(WiringPi gpio, boolean high) {
+        RpiPin pin = findProvisionedPin(gpio);
+
+        if(pin instanceof RestInputPin && pin.isValid()) {
+            ((RestInputPin)pin).handleEdge(high);
+        }
+    }
+
+    /**
+     * Watches every pin with listeners again and notifies the listeners, called by the
+     * event stream when edges were lost. The gateway may have been restarted, in which
+     * case it no longer watches anything.
+     */
+    void resyncListeners() {
+        logger.warn("Event stream lost edges, notifying every remote listener");
+
+        for(WiringPi gpio : WiringPi.values()) {
+            RpiPin pin = findProvisionedPin(gpio);
+
+            if(pin instanceof RestInputPin && pin.isValid() && ((RestInputPin)pin).isWatched()) {
+                RestInputPin input = (RestInputPin)pin;
+                int status = tryExecute(input.watchRequest());
+
+                if(status == PinStatus.UNREACHABLE) {
+                    // Pooled connections to a restarted gateway fail once before being
+                    // replaced; watching is idempotent, so retrying is safe
+                    status = tryExecute(input.watchRequest());
+                }
+
+                if(status < 0) {
+                    logger.error("Failed to watch " + gpio + " again: " + PinStatus.toString(status));
+                }
+
+                input.handleEdge();
+            }
+        }
+    }
+
+    /**
+     * Performs an output write, or adds it to the current batch when batching is enabled
+     *
+     * @param gpio The GPIO written
+     * @param write RestBatcher.UP, DOWN or TOGGLE
+     * @param request The complete single pin request for the write
+     * @throws InvalidatedPinException If the remote pin has been invalidated
+     * @throws PinBusyException If the remote pin is busy
+     * @throws AccessorDownException If the remote accessor is down
+     * @throws UncheckedIOException If the gateway cannot be reached
+     */
+    void write(WiringPi gpio, byte write, byte[] request) throws InvalidatedPinException,
+        PinBusyException, AccessorDownException, UncheckedIOException {
+        if(batcher == null) {
+            execute(request);
+            return;
+        }
+
+        int status = batcher.add(gpio, write);
+
+        if(status < 0) {
+            throw toException(status);
+        }
+    }
+
+    /**
+     * Non-throwing variant of write. With batching enabled OK only means the write was
+     * queued, failures are reported by the batch it ends up in.
+     *
+     * @param gpio The GPIO written
+     * @param write RestBatcher.UP, DOWN or TOGGLE
+     * @param request The complete single pin request for the write
+     * @return The status code answered by the gateway, or UNREACHABLE
+     */
+    int tryWrite(WiringPi gpio, byte write, byte[] request) {
+        return batcher == null ? tryExecute(request) : batcher.add(gpio, write);
+    }
+
+    /**
+     * Sends a batch body, bypassing the batcher
+     *
+     * @param body The batch, see RestProtocol
+     * @return The status code answered by the gateway, or UNREACHABLE
+     */
+    int sendBatch(String body) {
+        return call(encode("POST " + BATCH_PATH + headers + "Content-Length: " + body.length()
+                           + "\r\n\r\n" + body));
+    }
+
+    /**
+     * Performs a call, reporting failures with exceptions
+     *
+     * @param request The complete request
+     * @return The non-negative status code answered by the gateway
+     * @throws InvalidatedPinException If the remote pin has been invalidated
+     * @throws PinBusyException If the remote pin is busy
+     * @throws AccessorDownException If the remote accessor is down
+     * @throws UncheckedIOException If the gateway cannot be reached
+     */
+    int execute(byte[] request) throws InvalidatedPinException, PinBusyException,
+        AccessorDownException, UncheckedIOException {
+        int status;
+
+        if(batcher != null) {
+            batcher.sendInBackground();
+        }
+
+        try {
+            status = RestConnection.value(pool.call(request));
+
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if(status < 0) {
+            throw toException(status);
+        }
+
+        return status;
+    }
+
+    /**
+     * Performs a call without throwing
+     *
+     * @param request The complete request
+     * @return The status code answered by the gateway, or UNREACHABLE
+     */
+    int tryExecute(byte[] request) {
+        if(batcher != null) {
+            batcher.sendInBackground();
+        }
+
+        return call(request);
+    }
+
+    /**
+     * Performs a call without throwing, bypassing the batcher
+     *
+     * @param request The complete request
+     * @return The status code answered by the gateway, or UNREACHABLE
+     */
+    private int call(byte[] request) {
+        try {
+            return RestConnection.value(pool.call(request));
+
+        } catch(IOException | IllegalArgumentException e) {
+            if(logger.isDebugEnabled()) {
+                logger.debug("Gateway call failed", e);
+            }
+
+            return PinStatus.UNREACHABLE;
+        }
+    }
+
+    /**
+     * Encodes a complete request
+     *
+     * @param method The request method
+     * @param path The request path
+     * @return The request bytes
+     */
+    private byte[] request(String method, String path) {
+        return encode(method + ' ' + path + headers + "Content-Length: 0\r\n\r\n");
+    }
+
+    /**
+     * Maps a negative status code answered by the gateway to the exception the local
+     * accessors throw in the same situation
+     *
+     * @param status The status code
+     * @return The exception to throw
+     */
+    private static RuntimeException toException(int status) {
+        switch(status) {
+            case PinStatus.INVALIDATED:
+                return new InvalidatedPinException(REMOTE_INVALID_MSG);
+
+            case PinStatus.BUSY:
+                return new PinBusyException(REMOTE_BUSY_MSG);
+
+            case PinStatus.ACCESSOR_DOWN:
+                return new AccessorDownException(REMOTE_DOWN_MSG);
+
+            case PinStatus.UNREACHABLE:
+                return new UncheckedIOException(new IOException(UNREACHABLE_MSG));
+
+            default:
+                return new UncheckedIOException(new IOException("Unexpected status from gateway: "
+                                                                + PinStatus.toString(status)));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,184 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.rest;
+
+import java.nio.charset.StandardCharsets;
+
+import com.orland0m.rpi.middleware.pin.PinStatus;
+
+/**
+ * Wire level constants of the REST API, shared by the gateway and its clients.
+ * Pin operations answer with a PinStatus code as plain decimal text, so the bodies
+ * are tiny and can be encoded once.
+ *
+ * <pre>
+ * GET  /gpio/{name}/input    Reads a provisioned input pin, never provisions it
+ * POST /gpio/{name}/input    Provisions an input pin
+ * GET  /gpio/{name}/output   Reads a provisioned output pin, never provisions it
+ * POST /gpio/{name}/output   Provisions an output pin
+ * POST /gpio/{name}/up       Sets an output pin high
+ * POST /gpio/{name}/down     Sets an output pin low
+ * POST /gpio/{name}/toggle   Toggles an output pin
+ * POST /gpio/{name}/watch    Streams the edges of an input pin to /events
+ * GET  /bank                 Reads every provisioned pin, see PinAccessor#readAll
+ * POST /bank/{mask}/{values} Writes several output pins, see PinAccessor#writeMasked
+ * POST /batch                Applies a batch of output writes, all or nothing
+ * GET  /metrics              Metrics snapshot in Prometheus text format
+ * GET  /events               Server-Sent Events stream of the watched pins' edges
+ * </pre>
+ *
+ * Reading a pin that is not provisioned answers 404, reading it in the wrong direction
+ * answers 409 with the BUSY code.
+ *
+ * A batch body holds one write per line, "{name} {action}" with action up, down or
+ * toggle. The writes are folded in order into one final level per pin and applied with
+ * a single PinAccessor#writeMasked call. The whole batch is validated first: if a line
+ * is malformed or a pin is unavailable, nothing is provisioned or written.
+ *
+ * The event stream never ends. Each edge is sent as an "edge" event whose data is
+ * "{name} {level}" and whose id is "{epoch}:{sequence}"; the sequence grows by one per
+ * edge and the epoch identifies the gateway instance. A client reconnecting with the
+ * Last-Event-ID header gets every edge it missed. When they can no longer be replayed,
+ * or the epoch does not match, it gets a "reset" event instead and must assume any
+ * watched pin may have changed. Comment lines are sent while idle so dead connections
+ * are detected on both ends.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+final class RestProtocol {
+    /*! Header carrying the shared secret */
+    static final String API_KEY_HEADER = "X-Api-Key";
+    /*! Prefix of the single pin endpoints, followed by the WiringPi name and an action */
+    static final String GPIO_PATH = "/gpio/";
+    /*! Whole board endpoint */
+    static final String BANK_PATH = "/bank";
+    /*! Batch endpoint */
+    static final String BATCH_PATH = "/batch";
+    /*! Largest batch body accepted */
+    static final int MAX_BATCH_BODY = 64 * 1024;
+    /*! Metrics endpoint */
+    static final String METRICS_PATH = "/metrics";
+    /*! Event stream endpoint */
+    static final String EVENTS_PATH = "/events";
+    /*! Header carrying the id of the last event received */
+    static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+    /*! Event name: a watched pin changed state */
+    static final String EDGE_EVENT = "edge";
+    /*! Event name: edges were lost, every watched pin must be checked */
+    static final String RESET_EVENT = "reset";
+    /*! Longest time the event stream stays silent, in milliseconds */
+    static final int HEARTBEAT_MILLIS = 10000;
+    /*! Action: input pin */
+    static final String INPUT = "input";
+    /*! Action: output pin */
+    static final String OUTPUT = "output";
+    /*! Action: set high */
+    static final String UP = "up";
+    /*! Action: set low */
+    static final String DOWN = "down";
+    /*! Action: toggle */
+    static final String TOGGLE = "toggle";
+    /*! Action: stream edges */
+    static final String WATCH = "watch";
+    /*! HTTP status: success */
+    static final int HTTP_OK = 200;
+    /*! HTTP status: malformed request */
+    static final int HTTP_BAD_REQUEST = 400;
+    /*! HTTP status: missing or wrong API key */
+    static final int HTTP_UNAUTHORIZED = 401;
+    /*! HTTP status: unknown endpoint or GPIO */
+    static final int HTTP_NOT_FOUND = 404;
+    /*! HTTP status: endpoint does not support the method */
+    static final int HTTP_BAD_METHOD = 405;
+    /*! HTTP status: the pin is busy */
+    static final int HTTP_CONFLICT = 409;
+    /*! HTTP status: the pin has been invalidated */
+    static final int HTTP_GONE = 410;
+    /*! HTTP status: unexpected failure */
+    static final int HTTP_INTERNAL_ERROR = 500;
+    /*! HTTP status: the accessor is down */
+    static final int HTTP_UNAVAILABLE = 503;
+    /*! Smallest status code with a preencoded body */
+    private static final int MIN_STATUS = PinStatus.ACCESSOR_DOWN;
+    /*! Preencoded bodies, indexed by status code minus MIN_STATUS */
+    private static final byte[][] STATUS_BODIES = new byte[PinStatus.HIGH - MIN_STATUS + 1][];
+
+    static {
+        for(int i = 0; i < STATUS_BODIES.length; i++) {
+            STATUS_BODIES[i] = encode(Integer.toString(i + MIN_STATUS));
+        }
+    }
+
+    /**
+     * Constants holder, not meant to be instantiated
+     */
+    private RestProtocol() {
+    }
+
+    /**
+     * Returns the response body for the given status code
+     *
+     * @param status A PinStatus code
+     * @return The body, shared; must not be modified
+     */
+    static byte[] statusBody(int status) {
+        if(status < MIN_STATUS || status > PinStatus.HIGH) {
+            return encode(Integer.toString(status));
+        }
+
+        return STATUS_BODIES[status - MIN_STATUS];
+    }
+
+    /**
+     * Returns the HTTP status used to answer with the given status code
+     *
+     * @param status A PinStatus code
+     * @return The HTTP status
+     */
+    static int httpStatus(int status) {
+        switch(status) {
+            case PinStatus.INVALIDATED:
+                return HTTP_GONE;
+
+            case PinStatus.BUSY:
+                return HTTP_CONFLICT;
+
+            case PinStatus.ACCESSOR_DOWN:
+                return HTTP_UNAVAILABLE;
+
+            default:
+                return status >= 0 ? HTTP_OK : HTTP_INTERNAL_ERROR;
+        }
+    }
+
+    /**
+     * Encodes text as US-ASCII
+     *
+     * @param text The text
+     * @return The encoded bytes
+     */
+    static byte[] encode(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,223 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.sim;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+
+import com.orland0m.rpi.middleware.exception.AccessorDownException;
+import com.orland0m.rpi.middleware.exception.InvalidatedPinException;
+import com.orland0m.rpi.middleware.exception.PinBusyException;
+import com.orland0m.rpi.middleware.journal.JournalReader;
+import com.orland0m.rpi.middleware.journal.PinJournal;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.PinStatus;
+import com.orland0m.rpi.middleware.pin.RpiPin;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Feeds a PinJournal into a simulated board: pins are provisioned and invalidated as
+ * they were, recorded edges drive the simulated inputs and recorded writes are applied
+ * to the simulated outputs. Replaying in real time keeps the recorded spacing between
+ * records, which reproduces an incident with the timing it had; replaying as fast as
+ * possible turns a journal into a load test.
+ *
+ * Records that cannot be applied, such as a write to a pin the journal never
+ * provisioned and the board cannot provision, are counted and skipped.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class JournalReplayer {
+    /*! Logger object reference */
+    final static Logger logger = Logger.getLogger(JournalReplayer.class);
+    /*! GPIOs indexed by address, null for addresses that do not exist */
+    private static final WiringPi[] BY_ADDRESS = new WiringPi[32];
+    /*! The board records are applied to */
+    private final SimulatedPinAccessor board;
+    /*! Records that could not be applied */
+    private volatile long failed;
+
+    static {
+        for(WiringPi gpio : WiringPi.values()) {
+            BY_ADDRESS[gpio.getGpioAddress()] = gpio;
+        }
+    }
+
+    /**
+     * Initializes a replayer for the given board
+     *
+     * @param board The simulated board to drive
+     */
+    public JournalReplayer(SimulatedPinAccessor board) {
+        this.board = board;
+    }
+
+    /**
+     * Replays every remaining record of a journal on the calling thread
+     *
+     * @param reader The journal, positioned before the first record to replay
+     * @param realTime True to keep the recorded timing, false to replay as fast as possible
+     * @return The number of records read
+     * @throws IOException If the journal cannot be read
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     * @throws AccessorDownException If the board is shut down
+     */
+    public long replay(JournalReader reader, boolean realTime) throws IOException,
+        InterruptedException, AccessorDownException {
+        long count = 0;
+        long start = 0;
+        long first = 0;
+
+        while(reader.next()) {
+            if(realTime) {
+                if(count == 0) {
+                    start = System.nanoTime();
+                    first = reader.getTimestampNanos();
+
+                } else {
+                    awaitDeadline(start + reader.getTimestampNanos() - first);
+                }
+            }
+
+            count++;
+
+            if(board.isDown()) {
+                throw new AccessorDownException("Board shut down while replaying a journal");
+            }
+
+            if(!apply(reader)) {
+                failed++;
+
+                if(logger.isDebugEnabled()) {
+                    logger.debug("Skipped journal record " + reader.getOpcode() + " for address "
+                                 + reader.getAddress());
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the number of records that could not be applied
+     *
+     * @return The failed record count
+     */
+    public long getFailedCount() {
+        return failed;
+    }
+
+    /**
+     * Applies the current record to the board
+     *
+     * @param reader The journal, positioned on the record
+     * @return False if the record could not be applied
+     */
+    private boolean apply(JournalReader reader) {
+        byte opcode = reader.getOpcode();
+
+        if(opcode == PinJournal.WRITE_MASK) {
+            try {
+                board.writeMasked(reader.getMask(), reader.getValue());
+                return true;
+
+            } catch(IllegalArgumentException e) {
+                return false;
+            }
+        }
+
+        int address = reader.getAddress();
+        WiringPi gpio = address >= 0 && address < BY_ADDRESS.length ? BY_ADDRESS[address] : null;
+
+        if(gpio == null) {
+            return false;
+        }
+
+        boolean high = reader.getValue() != 0;
+
+        try {
+            switch(opcode) {
+                case PinJournal.PROVISION_INPUT:
+                    board.setInputLevel(gpio, high);
+                    board.getInGpio(gpio);
+                    return true;
+
+                case PinJournal.PROVISION_OUTPUT:
+                    board.getOutGpio(gpio);
+                    return true;
+
+                case PinJournal.INVALIDATE:
+                    RpiPin pin = board.findPin(gpio);
+
+                    if(pin == null || !pin.isValid()) {
+                        return false;
+                    }
+
+                    pin.markInvalid();
+                    return true;
+
+                case PinJournal.EDGE:
+                    board.setInputLevel(gpio, high);
+                    return true;
+
+                case PinJournal.WRITE:
+                case PinJournal.TOGGLE:
+                    OutputPin out = board.tryGetOutGpio(gpio);
+
+                    if(out == null) {
+                        return false;
+                    }
+
+                    int status = opcode == PinJournal.WRITE ? out.trySet(high) : out.tryToggle();
+                    return status >= PinStatus.OK;
+
+                default:
+                    return false;
+            }
+
+        } catch(PinBusyException | InvalidatedPinException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Waits until the given System#nanoTime deadline
+     *
+     * @param deadline The deadline
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     */
+    private static void awaitDeadline(long deadline) throws InterruptedException {
+        long remaining;
+
+        while((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+
+            if(Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+}
\ No newline at end of file
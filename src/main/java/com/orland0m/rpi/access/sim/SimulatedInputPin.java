@@ -0,0 +1,69 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.sim;
+
+import com.orland0m.rpi.access.BaseInputPin;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Input pin whose level lives in the simulated accessor's in-memory bank. The level
+ * changes through SimulatedPinAccessor#setInputLevel or the synthetic edge generator.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class SimulatedInputPin extends BaseInputPin {
+    /*! The accessor holding the pin bank */
+    private final SimulatedPinAccessor accessor;
+    /*! This pin's bit in the bank */
+    private final int bit;
+
+    /**
+     * Initializes an input pin, which reads whatever level the bank holds for it
+     *
+     * @param gpio The GPIO pin information
+     * @param accessor The accessor holding the pin bank
+     */
+    public SimulatedInputPin(WiringPi gpio, SimulatedPinAccessor accessor) {
+        super(gpio);
+        this.accessor = accessor;
+        this.bit = 1 << gpio.getGpioAddress();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseInputPin#readLevel()
+     */
+    @Override
+    protected boolean readLevel() {
+        return (accessor.readLevels() & bit) != 0;
+    }
+
+    /**
+     * Notifies every listener that the pin changed state
+     *
+     * @param high The new level
+     */
+    void handleEdge(boolean high) {
+        fireStateChange(high, System.nanoTime());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,382 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.sim;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+
+import com.orland0m.rpi.access.BaseAccessor;
+import com.orland0m.rpi.middleware.exception.AccessorDownException;
+import com.orland0m.rpi.middleware.exception.PinBusyException;
+import com.orland0m.rpi.middleware.pin.InputPin;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.RpiPin;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Pin accessor that needs no hardware, pin levels live in a single atomic word indexed
+ * by WiringPi GPIO address. Every pin operation can be slowed down by a configurable
+ * latency and jitter, and input pins can receive synthetic edges at a fixed rate, which
+ * makes it possible to benchmark and load test the middleware on any machine.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class SimulatedPinAccessor extends BaseAccessor {
+    /*! Logger object reference */
+    final static Logger logger = Logger.getLogger(SimulatedPinAccessor.class);
+    /*! Delays shorter than this are spun instead of parked, parking is not that precise */
+    private static final long SPIN_THRESHOLD_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    /*! Every GPIO, cached because WiringPi.values() clones on each call */
+    private static final WiringPi[] GPIOS = WiringPi.values();
+    /*! Pin levels, bit N holds the level of the GPIO with address N */
+    private final AtomicInteger levels = new AtomicInteger();
+    /*! Fixed delay added to every pin operation */
+    private final long latencyNanos;
+    /*! Maximum random delay added on top of the fixed delay */
+    private final long jitterNanos;
+    /*! Synthetic edge generator, null if disabled */
+    private final Thread edgeGenerator;
+
+    /**
+     * Initializes an ideal simulated board, no latency and no synthetic edges
+     */
+    public SimulatedPinAccessor() {
+        this(new SimulationConfig());
+    }
+
+    /**
+     * Initializes a simulated board with the given settings
+     *
+     * @param config The simulation settings
+     */
+    public SimulatedPinAccessor(SimulationConfig config) {
+        latencyNanos = config.getLatencyNanos();
+        jitterNanos = config.getJitterNanos();
+
+        if(config.getEdgeRateHz() > 0) {
+            final long periodNanos = Math.max(1, (long)(TimeUnit.SECONDS.toNanos(1) / config.getEdgeRateHz()));
+            edgeGenerator = new Thread(() -> generateEdges(periodNanos), "rpi-sim-edge-generator");
+            edgeGenerator.setDaemon(true);
+            edgeGenerator.start();
+
+        } else {
+            edgeGenerator = null;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#shutdown()
+     */
+    @Override
+    public void shutdown() throws PinBusyException, AccessorDownException {
+        super.shutdown();
+
+        if(edgeGenerator != null) {
+            edgeGenerator.interrupt();
+        }
+    }
+
+    /**
+     * Drives the level of a simulated input, as the outside world would. Listeners of the
+     * input pin are notified on the calling thread if the level changes.
+     *
+     * @param gpio The GPIO to drive
+     * @param high The new level
+     */
+    public void setInputLevel(WiringPi gpio, boolean high) {
+        int bit = 1 << gpio.getGpioAddress();
+        int current;
+        int next;
+
+        do {
+            current = levels.get();
+            next = high ? current | bit : current & ~bit;
+
+            if(current == next) {
+                return;
+            }
+        } while(!levels.compareAndSet(current, next));
+
+        RpiPin pin = findProvisionedPin(gpio);
+
+        if(pin instanceof SimulatedInputPin && pin.isValid()) {
+            ((SimulatedInputPin)pin).handleEdge(high);
+        }
+    }
+
+    /**
+     * Returns the pin registered for the given GPIO, for the journal replayer
+     *
+     * @param gpio The GPIO information for the pin in question
+     * @return The pin object, or null if none is registered
+     */
+    RpiPin findPin(WiringPi gpio) {
+        return findProvisionedPin(gpio);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getInPin(int)
+     */
+    @Override
+    public InputPin getInPin(int physicalPinNumber)
+    throws IllegalArgumentException, PinBusyException, AccessorDownException {
+        WiringPi gpio = WiringPi.fromPhysicalPin(physicalPinNumber);
+        return getInGpio(gpio);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getInGpio(int)
+     */
+    @Override
+    public InputPin getInGpio(int gpioNumber) throws IllegalArgumentException, PinBusyException,
+        AccessorDownException {
+        WiringPi gpio = WiringPi.fromGpioAddress(gpioNumber);
+        return getInGpio(gpio);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getInGpio(java.lang.String)
+     */
+    @Override
+    public InputPin getInGpio(String gpioName) throws IllegalArgumentException, PinBusyException,
+        AccessorDownException {
+        WiringPi gpio = WiringPi.fromGpioName(gpioName);
+        return getInGpio(gpio);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getInGpio(com.orland0m.rpi.middleware.pin.WiringPi)
+     */
+    @Override
+    public InputPin getInGpio(WiringPi gpio) throws IllegalArgumentException, PinBusyException,
+        AccessorDownException {
+        assertNotDown();
+
+        synchronized(provisioningLock(gpio)) {
+            InputPin retVal = getForInputOrRelease(gpio);
+
+            if(retVal == null) {
+                retVal = new SimulatedInputPin(gpio, this);
+                registerProvisionedPin(retVal);
+            }
+
+            return retVal;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getOutPin(int)
+     */
+    @Override
+    public OutputPin getOutPin(int physicalPinNumber) throws IllegalArgumentException,
+        PinBusyException {
+        WiringPi gpio = WiringPi.fromPhysicalPin(physicalPinNumber);
+        return getOutGpio(gpio);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getOutGpio(int)
+     */
+    @Override
+    public OutputPin getOutGpio(int gpioNumber) throws IllegalArgumentException, PinBusyException,
+        AccessorDownException {
+        WiringPi gpio = WiringPi.fromGpioAddress(gpioNumber);
+        return getOutGpio(gpio);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getOutGpio(java.lang.String)
+     */
+    @Override
+    public OutputPin getOutGpio(String gpioName) throws IllegalArgumentException, PinBusyException,
+        AccessorDownException {
+        WiringPi gpio = WiringPi.fromGpioName(gpioName);
+        return getOutGpio(gpio);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getOutGpio(com.orland0m.rpi.middleware.pin.WiringPi)
+     */
+    @Override
+    public OutputPin getOutGpio(WiringPi gpio) throws IllegalArgumentException, PinBusyException,
+        AccessorDownException {
+        assertNotDown();
+
+        synchronized(provisioningLock(gpio)) {
+            OutputPin retVal = getForOutputOrRelease(gpio);
+
+            if(retVal == null) {
+                retVal = new SimulatedOutputPin(gpio, this);
+                registerProvisionedPin(retVal);
+            }
+
+            return retVal;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseAccessor#provisionOutput(com.orland0m.rpi.middleware.pin.WiringPi, boolean)
+     */
+    @Override
+    protected OutputPin provisionOutput(WiringPi gpio, boolean high) throws PinBusyException,
+        AccessorDownException {
+        assertNotDown();
+
+        synchronized(provisioningLock(gpio)) {
+            OutputPin retVal = getForOutputOrRelease(gpio);
+
+            if(retVal == null) {
+                retVal = new SimulatedOutputPin(gpio, this, high);
+                registerProvisionedPin(retVal);
+
+            } else {
+                retVal.trySet(high);
+            }
+
+            return retVal;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseAccessor#readBank(int)
+     */
+    @Override
+    protected int readBank(int mask) {
+        return readLevels() & mask;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseAccessor#writeBank(int, int)
+     */
+    @Override
+    protected void writeBank(int mask, int values) {
+        writeLevels(mask, values);
+    }
+
+    /**
+     * Reads the whole bank after the simulated latency
+     *
+     * @return The pin levels
+     */
+    int readLevels() {
+        simulateLatency();
+        return levels.get();
+    }
+
+    /**
+     * Writes the given pins after the simulated latency
+     *
+     * @param mask Bitmask of the GPIO addresses to write
+     * @param values Bitmask with the level for each GPIO in the mask
+     */
+    void writeLevels(int mask, int values) {
+        simulateLatency();
+        int current;
+
+        do {
+            current = levels.get();
+        } while(!levels.compareAndSet(current, (current & ~mask) | (values & mask)));
+    }
+
+    /**
+     * Inverts the given pins after the simulated latency
+     *
+     * @param mask Bitmask of the GPIO addresses to invert
+     */
+    void toggleLevels(int mask) {
+        simulateLatency();
+        int current;
+
+        do {
+            current = levels.get();
+        } while(!levels.compareAndSet(current, current ^ mask));
+    }
+
+    /**
+     * Blocks the calling thread for the configured latency plus a random jitter
+     */
+    private void simulateLatency() {
+        long delay = latencyNanos;
+
+        if(jitterNanos > 0) {
+            delay += ThreadLocalRandom.current().nextLong(jitterNanos + 1);
+        }
+
+        if(delay == 0) {
+            return;
+        }
+
+        long deadline = System.nanoTime() + delay;
+
+        if(delay > SPIN_THRESHOLD_NANOS) {
+            LockSupport.parkNanos(delay - SPIN_THRESHOLD_NANOS);
+        }
+
+        while(System.nanoTime() - deadline < 0) {
+            // Spin out the rest of the delay
+        }
+    }
+
+    /**
+     * Synthetic edge loop, toggles every provisioned input pin once per period
+     *
+     * @param periodNanos Time between two edges
+     */
+    private void generateEdges(long periodNanos) {
+        long deadline = System.nanoTime();
+
+        while(!Thread.currentThread().isInterrupted()) {
+            deadline += periodNanos;
+
+            for(WiringPi gpio : GPIOS) {
+                RpiPin pin = findProvisionedPin(gpio);
+
+                if(pin instanceof SimulatedInputPin && pin.isValid()) {
+                    int bit = 1 << gpio.getGpioAddress();
+
+                    try {
+                        setInputLevel(gpio, (levels.get() & bit) == 0);
+
+                    } catch(RuntimeException e) {
+                        logger.error("Listener failed while handling " + gpio, e);
+                    }
+                }
+            }
+
+            long wait = deadline - System.nanoTime();
+
+            if(wait > 0) {
+                LockSupport.parkNanos(this, wait);
+
+            } else if(wait < -periodNanos * 1000) {
+                // Hopelessly behind, skip ahead instead of bursting to catch up
+                deadline = System.nanoTime();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.sim;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings for the simulated pin accessor. The defaults simulate an ideal board:
+ * no latency, no jitter and no synthetic input edges.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class SimulationConfig {
+    /*! Fixed delay added to every pin operation */
+    private long latencyNanos;
+    /*! Maximum random delay added on top of the fixed delay */
+    private long jitterNanos;
+    /*! Synthetic edges generated per second on every provisioned input pin, zero disables them */
+    private double edgeRateHz;
+
+    /**
+     * Returns the fixed delay added to every pin operation
+     *
+     * @return The delay in nanoseconds
+     */
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    /**
+     * Sets the fixed delay added to every pin operation
+     *
+     * @param latency The delay
+     * @param unit The unit of the latency argument
+     */
+    public void setLatency(long latency, TimeUnit unit) {
+        if(latency < 0) {
+            throw new IllegalArgumentException("Latency cannot be negative");
+        }
+
+        this.latencyNanos = unit.toNanos(latency);
+    }
+
+    /**
+     * Returns the maximum random delay added on top of the fixed delay
+     *
+     * @return The jitter in nanoseconds
+     */
+    public long getJitterNanos() {
+        return jitterNanos;
+    }
+
+    /**
+     * Sets the maximum random delay added on top of the fixed delay
+     *
+     * @param jitter The jitter
+     * @param unit The unit of the jitter argument
+     */
+    public void setJitter(long jitter, TimeUnit unit) {
+        if(jitter < 0) {
+            throw new IllegalArgumentException("Jitter cannot be negative");
+        }
+
+        this.jitterNanos = unit.toNanos(jitter);
+    }
+
+    /**
+     * Returns the synthetic edge rate
+     *
+     * @return Edges per second on every provisioned input pin
+     */
+    public double getEdgeRateHz() {
+        return edgeRateHz;
+    }
+
+    /**
+     * Sets the synthetic edge rate, every provisioned input pin toggles at this rate
+     *
+     * @param edgeRateHz Edges per second, zero disables synthetic edges
+     */
+    public void setEdgeRateHz(double edgeRateHz) {
+        if(edgeRateHz < 0 || Double.isNaN(edgeRateHz)) {
+            throw new IllegalArgumentException("Edge rate cannot be negative");
+        }
+
+        this.edgeRateHz = edgeRateHz;
+    }
+}
\ No newline at end of file
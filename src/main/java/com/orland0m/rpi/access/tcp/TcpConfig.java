@@ -0,0 +1,306 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.tcp;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings shared by the binary TCP gateway and the TCP pin accessor. The gateway binds
+ * to the bind address and port, clients connect to the server and port. Both sides use
+ * the same API key; a null key disables authentication.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class TcpConfig {
+    /*! Port used when none is configured */
+    public static final int DEFAULT_PORT = 8090;
+    /*! Requests a client keeps in flight when no window is configured */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 64;
+    /*! Largest in-flight window accepted */
+    public static final int MAX_IN_FLIGHT = 4096;
+    /*! Client connect timeout used when none is configured */
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 2000;
+    /*! Client read timeout used when none is configured */
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 5000;
+    /*! UDP port value that disables the UDP output channel */
+    public static final int UDP_DISABLED = -1;
+    /*! Host name or address of the gateway, used by clients */
+    private String server;
+    /*! Address the gateway listens on, null listens on every interface */
+    private String bindAddress;
+    /*! TCP port of the gateway */
+    private int port = DEFAULT_PORT;
+    /*! Shared secret sent when connecting, null disables authentication */
+    private String apiKey;
+    /*! Requests a client may have sent and not yet seen answered */
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    /*! Client connect timeout, zero waits forever */
+    private int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    /*! Client read timeout, zero waits forever */
+    private int readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+    /*! UDP port of the output channel, UDP_DISABLED when not used */
+    private int udpPort = UDP_DISABLED;
+    /*! How long client output updates are merged before a datagram is sent, zero sends each */
+    private long udpWindowNanos;
+    /*! Interval between full state datagrams, zero disables them */
+    private long fullStateIntervalNanos;
+
+    /**
+     * Returns the host name or address of the gateway
+     *
+     * @return The server, or null if not configured
+     */
+    public String getServer() {
+        return server;
+    }
+
+    /**
+     * Sets the host name or address of the gateway
+     *
+     * @param server The server
+     */
+    public void setServer(String server) {
+        this.server = server;
+    }
+
+    /**
+     * Returns the address the gateway listens on
+     *
+     * @return The bind address, or null to listen on every interface
+     */
+    public String getBindAddress() {
+        return bindAddress;
+    }
+
+    /**
+     * Sets the address the gateway listens on
+     *
+     * @param bindAddress The bind address, or null to listen on every interface
+     */
+    public void setBindAddress(String bindAddress) {
+        this.bindAddress = bindAddress;
+    }
+
+    /**
+     * Returns the TCP port of the gateway
+     *
+     * @return The port
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Sets the TCP port of the gateway, zero makes the gateway pick a free port
+     *
+     * @param port The port
+     * @throws IllegalArgumentException If the port is out of range
+     */
+    public void setPort(int port) throws IllegalArgumentException {
+        if(port < 0 || port > 0xFFFF) {
+            throw new IllegalArgumentException("Invalid port: " + port);
+        }
+
+        this.port = port;
+    }
+
+    /**
+     * Returns the shared secret
+     *
+     * @return The API key, or null if authentication is disabled
+     */
+    public String getApiKey() {
+        return apiKey;
+    }
+
+    /**
+     * Sets the shared secret
+     *
+     * @param apiKey The API key, or null to disable authentication
+     * @throws IllegalArgumentException If the key is longer than TcpProtocol allows
+     */
+    public void setApiKey(String apiKey) throws IllegalArgumentException {
+        if(apiKey != null && TcpProtocol.encodeKey(apiKey).length > TcpProtocol.MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("API key is too long");
+        }
+
+        this.apiKey = apiKey;
+    }
+
+    /**
+     * Returns the number of requests a client may have in flight
+     *
+     * @return The window size
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Sets the number of requests a client may have sent and not yet seen answered.
+     * Callers beyond the window wait for an earlier response.
+     *
+     * @param maxInFlight The window size
+     * @throws IllegalArgumentException If the window is not between 1 and MAX_IN_FLIGHT
+     */
+    public void setMaxInFlight(int maxInFlight) throws IllegalArgumentException {
+        if(maxInFlight < 1 || maxInFlight > MAX_IN_FLIGHT) {
+            throw new IllegalArgumentException("In-flight window must be between 1 and "
+                                               + MAX_IN_FLIGHT);
+        }
+
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Returns the client connect timeout
+     *
+     * @return The timeout in milliseconds, zero waits forever
+     */
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    /**
+     * Sets the client connect timeout
+     *
+     * @param timeout The timeout, zero waits forever
+     * @param unit The unit of the timeout argument
+     * @throws IllegalArgumentException If the timeout is negative
+     */
+    public void setConnectTimeout(long timeout, TimeUnit unit) throws IllegalArgumentException {
+        connectTimeoutMillis = toMillis(timeout, unit);
+    }
+
+    /**
+     * Returns the client read timeout
+     *
+     * @return The timeout in milliseconds, zero waits forever
+     */
+    public int getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    /**
+     * Sets the client read timeout, the longest a call waits for the gateway to answer
+     *
+     * @param timeout The timeout, zero waits forever
+     * @param unit The unit of the timeout argument
+     * @throws IllegalArgumentException If the timeout is negative
+     */
+    public void setReadTimeout(long timeout, TimeUnit unit) throws IllegalArgumentException {
+        readTimeoutMillis = toMillis(timeout, unit);
+    }
+
+    /**
+     * Returns the UDP port of the output channel
+     *
+     * @return The port, or UDP_DISABLED
+     */
+    public int getUdpPort() {
+        return udpPort;
+    }
+
+    /**
+     * Enables the UDP output channel. The gateway listens on this port, zero picks a free
+     * one; clients send their output writes to it as datagrams, without waiting for an
+     * answer. Reads, provisioning and every other call still use TCP.
+     *
+     * @param udpPort The port, or UDP_DISABLED
+     * @throws IllegalArgumentException If the port is out of range
+     */
+    public void setUdpPort(int udpPort) throws IllegalArgumentException {
+        if(udpPort < UDP_DISABLED || udpPort > 0xFFFF) {
+            throw new IllegalArgumentException("Invalid port: " + udpPort);
+        }
+
+        this.udpPort = udpPort;
+    }
+
+    /**
+     * Returns how long client output updates are merged into one datagram
+     *
+     * @return The window in nanoseconds, zero if every write is sent at once
+     */
+    public long getUdpWindowNanos() {
+        return udpWindowNanos;
+    }
+
+    /**
+     * Sets how long client output updates are merged into one datagram. Writes to the
+     * same pin within the window collapse to the last one.
+     *
+     * @param window The window, zero sends every write at once
+     * @param unit The unit of the window argument
+     * @throws IllegalArgumentException If the window is negative
+     */
+    public void setUdpWindow(long window, TimeUnit unit) throws IllegalArgumentException {
+        if(window < 0) {
+            throw new IllegalArgumentException("Window cannot be negative");
+        }
+
+        udpWindowNanos = unit.toNanos(window);
+    }
+
+    /**
+     * Returns the interval between full state datagrams
+     *
+     * @return The interval in nanoseconds, zero if disabled
+     */
+    public long getFullStateIntervalNanos() {
+        return fullStateIntervalNanos;
+    }
+
+    /**
+     * Makes clients periodically resend the level of every pin they drive over UDP, which
+     * repairs lost datagrams
+     *
+     * @param interval The interval, zero disables full state datagrams
+     * @param unit The unit of the interval argument
+     * @throws IllegalArgumentException If the interval is negative
+     */
+    public void setFullStateInterval(long interval, TimeUnit unit) throws IllegalArgumentException {
+        if(interval < 0) {
+            throw new IllegalArgumentException("Interval cannot be negative");
+        }
+
+        fullStateIntervalNanos = unit.toNanos(interval);
+    }
+
+    /**
+     * Converts a timeout to the int milliseconds used by sockets
+     *
+     * @param timeout The timeout
+     * @param unit The unit of the timeout argument
+     * @return The timeout in milliseconds
+     * @throws IllegalArgumentException If the timeout is negative
+     */
+    private static int toMillis(long timeout, TimeUnit unit) throws IllegalArgumentException {
+        if(timeout < 0) {
+            throw new IllegalArgumentException("Timeout cannot be negative");
+        }
+
+        return (int)Math.min(Integer.MAX_VALUE, unit.toMillis(timeout));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,472 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.tcp;
+
+import static com.orland0m.rpi.access.tcp.TcpProtocol.*;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+
+/**
+ * One connection to a TcpGateway. Any number of threads may call concurrently: each
+ * takes a slot of the in-flight window, writes its frame and parks until the reader
+ * thread matches the response to the slot by sequence number. The window bounds the
+ * requests outstanding at once; callers beyond it wait for a slot. Nothing is allocated
+ * per call.
+ *
+ * A response is returned packed in a long, the status in the upper half and the value in
+ * the lower half, see status and value.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+final class TcpConnection implements Closeable {
+    /*! Logger object reference */
+    final static Logger logger = Logger.getLogger(TcpConnection.class);
+    /*! Size of the read buffer, a multiple of FRAME_SIZE */
+    private static final int READ_BUFFER_SIZE = 256 * FRAME_SIZE;
+    /*! The accessor receiving edges and connection loss notifications */
+    private final TcpPinAccessor accessor;
+    /*! The socket, in blocking mode */
+    private final SocketChannel channel;
+    /*! Outstanding requests, indexed by sequence number modulo their count */
+    private final Slot[] slots;
+    /*! Indexes of the free slots, guarded by itself */
+    private final int[] free;
+    /*! Number of free slots, guarded by free */
+    private int freeCount;
+    /*! Limits the requests in flight */
+    private final Semaphore window;
+    /*! Read timeout in nanoseconds, zero waits forever */
+    private final long readTimeoutNanos;
+    /*! Frame being written, guarded by itself */
+    private final ByteBuffer frame = ByteBuffer.allocateDirect(FRAME_SIZE + MAX_KEY_LENGTH);
+    /*! Thread reading responses */
+    private final Thread reader;
+    /*! Set once the connection is no longer usable */
+    private volatile boolean closed;
+
+    /**
+     * Connects to the gateway and authenticates if a key is given
+     *
+     * @param accessor The accessor receiving edges and connection loss notifications
+     * @param address The gateway address
+     * @param config Timeouts and window size
+     * @param apiKey The key, null if authentication is disabled
+     * @throws IOException If the connection cannot be established or the key is rejected
+     */
+    TcpConnection(TcpPinAccessor accessor, InetSocketAddress address, TcpConfig config,
+                  byte[] apiKey) throws IOException {
+        this.accessor = accessor;
+        this.readTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getReadTimeoutMillis());
+        int size = Integer.highestOneBit(config.getMaxInFlight() * 2 - 1);
+        slots = new Slot[size];
+        free = new int[size];
+
+        for(int i = 0; i < size; i++) {
+            slots[i] = new Slot(i, size);
+            free[i] = size - 1 - i;
+        }
+
+        freeCount = size;
+        window = new Semaphore(config.getMaxInFlight());
+        channel = SocketChannel.open();
+
+        try {
+            channel.socket().setTcpNoDelay(true);
+            channel.socket().setKeepAlive(true);
+            channel.socket().connect(address, config.getConnectTimeoutMillis());
+
+        } catch(IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        reader = new Thread(this::read, "rpi-tcp-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        if(apiKey != null && status(call(AUTH, NO_GPIO, apiKey.length, 0, apiKey, false)) != 0) {
+            close();
+            throw new IOException("The gateway rejected the key");
+        }
+    }
+
+    /**
+     * Sends a request and waits for its response
+     *
+     * @param opcode The opcode
+     * @param gpio The GPIO address, or NO_GPIO
+     * @param value The value
+     * @param argument The argument
+     * @return The packed response
+     * @throws IOException If the connection fails or the response times out
+     * @throws IllegalArgumentException If the gateway did not understand the request
+     */
+    long call(byte opcode, int gpio, int value, int argument) throws IOException,
+        IllegalArgumentException {
+        return call(opcode, gpio, value, argument, null, false);
+    }
+
+    /**
+     * Opens a UDP output session, see TcpProtocol
+     *
+     * @return The session token
+     * @throws IOException If the connection fails, the response times out or the gateway
+     * has no room for another session
+     * @throws IllegalArgumentException If the gateway's UDP output channel is disabled
+     */
+    long openUdpSession() throws IOException, IllegalArgumentException {
+        long token = call(UDP_SESSION, NO_GPIO, 0, 0, null, true);
+
+        if(token == 0) {
+            throw new IOException("The gateway has no room for another UDP session");
+        }
+
+        return token;
+    }
+
+    /**
+     * Returns true if this connection can no longer be used
+     *
+     * @return True if closed
+     */
+    boolean isClosed() {
+        return closed;
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() {
+        closed = true;
+
+        try {
+            channel.close();
+
+        } catch(IOException e) {
+            // Nothing left to release
+        }
+
+        for(Slot slot : slots) {
+            Thread waiter = slot.waiter;
+
+            if(waiter != null) {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+
+    /**
+     * Returns the status of a packed response
+     *
+     * @param response The packed response
+     * @return A PinStatus code
+     */
+    static int status(long response) {
+        return (int)(response >> 32);
+    }
+
+    /**
+     * Returns the value of a packed response
+     *
+     * @param response The packed response
+     * @return The value
+     */
+    static int value(long response) {
+        return (int)response;
+    }
+
+    /**
+     * Sends a request, followed by a payload, and waits for its response
+     *
+     * @param opcode The opcode
+     * @param gpio The GPIO address, or NO_GPIO
+     * @param value The value
+     * @param argument The argument
+     * @param payload Bytes sent after the frame, null for none
+     * @param wide True to return the response value and argument instead, as one long
+     * @return The packed response
+     * @throws IOException If the connection fails or the response times out
+     * @throws IllegalArgumentException If the gateway did not understand the request
+     */
+    private long call(byte opcode, int gpio, int value, int argument, byte[] payload,
+                      boolean wide) throws IOException, IllegalArgumentException {
+        try {
+            if(readTimeoutNanos == 0) {
+                window.acquire();
+
+            } else if(!window.tryAcquire(readTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new SocketTimeoutException("In-flight window stayed full");
+            }
+
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the in-flight window", e);
+        }
+
+        Slot slot = takeSlot();
+
+        try {
+            int sequence = slot.next(slots.length);
+            slot.waiter = Thread.currentThread();
+            slot.sequence = sequence;
+            write(opcode, gpio, sequence, value, argument, payload);
+            await(slot);
+
+            if(slot.opcode == BAD_REQUEST) {
+                throw new IllegalArgumentException("The gateway rejected the request");
+            }
+
+            long high = wide ? slot.value : slot.status;
+            return high << 32 | ((wide ? slot.argument : slot.value) & 0xFFFFFFFFL);
+
+        } finally {
+            slot.waiter = null;
+            slot.sequence = 0;
+            releaseSlot(slot);
+            window.release();
+        }
+    }
+
+    /**
+     * Writes a request frame
+     *
+     * @param opcode The opcode
+     * @param gpio The GPIO address, or NO_GPIO
+     * @param sequence The sequence number
+     * @param value The value
+     * @param argument The argument
+     * @param payload Bytes sent after the frame, null for none
+     * @throws IOException If the connection fails
+     */
+    private void write(byte opcode, int gpio, int sequence, int value, int argument,
+                       byte[] payload) throws IOException {
+        synchronized(frame) {
+            if(closed) {
+                throw new IOException("Connection is closed");
+            }
+
+            frame.clear();
+            putFrame(frame, opcode, gpio, 0, sequence, value, argument);
+
+            if(payload != null) {
+                frame.put(payload);
+            }
+
+            frame.flip();
+
+            try {
+                while(frame.hasRemaining()) {
+                    channel.write(frame);
+                }
+
+            } catch(IOException e) {
+                close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Parks until the slot's response arrives
+     *
+     * @param slot The slot
+     * @throws IOException If the connection fails or the response times out
+     */
+    private void await(Slot slot) throws IOException {
+        long deadline = System.nanoTime() + readTimeoutNanos;
+
+        while(!slot.done) {
+            if(closed) {
+                throw new IOException("Connection is closed");
+            }
+
+            if(readTimeoutNanos == 0) {
+                LockSupport.park(slot);
+
+            } else {
+                long remaining = deadline - System.nanoTime();
+
+                if(remaining <= 0) {
+                    // The stream can no longer be trusted to be in step
+                    close();
+                    throw new SocketTimeoutException("No response from the gateway");
+                }
+
+                LockSupport.parkNanos(slot, remaining);
+            }
+        }
+    }
+
+    /**
+     * Takes a free slot, the window guarantees there is one
+     *
+     * @return The slot
+     */
+    private Slot takeSlot() {
+        synchronized(free) {
+            return slots[free[--freeCount]];
+        }
+    }
+
+    /**
+     * Returns a slot to the free list
+     *
+     * @param slot The slot
+     */
+    private void releaseSlot(Slot slot) {
+        synchronized(free) {
+            free[freeCount++] = slot.index;
+        }
+    }
+
+    /**
+     * Reader loop: completes slots and hands edges to the accessor
+     */
+    private void read() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+        try {
+            while(!closed) {
+                if(channel.read(buffer) < 0) {
+                    throw new EOFException("Connection closed by the gateway");
+                }
+
+                buffer.flip();
+
+                for(; buffer.remaining() >= FRAME_SIZE; buffer.position(buffer.position() + FRAME_SIZE)) {
+                    dispatch(buffer, buffer.position());
+                }
+
+                buffer.compact();
+            }
+
+        } catch(IOException e) {
+            if(!closed) {
+                logger.debug("TCP connection lost: " + e.getMessage());
+            }
+        }
+
+        close();
+        accessor.connectionLost();
+    }
+
+    /**
+     * Handles one frame received from the gateway
+     *
+     * @param buffer The buffer
+     * @param frame Index of the frame
+     */
+    private void dispatch(ByteBuffer buffer, int frame) {
+        byte opcode = opcode(buffer, frame);
+
+        if(opcode == EDGE) {
+            accessor.deliverEdge(gpio(buffer, frame), TcpProtocol.status(buffer, frame) != 0);
+            return;
+
+        } else if(opcode == RESET) {
+            accessor.edgesLost();
+            return;
+        }
+
+        int sequence = sequence(buffer, frame);
+        Slot slot = slots[(sequence - 1) & (slots.length - 1)];
+
+        // A late response to a call that timed out finds the slot reused or empty
+        if(slot.sequence == sequence && !slot.done) {
+            Thread waiter = slot.waiter;
+            slot.opcode = opcode;
+            slot.status = TcpProtocol.status(buffer, frame);
+            slot.value = TcpProtocol.value(buffer, frame);
+            slot.argument = argument(buffer, frame);
+            slot.done = true;
+
+            if(waiter != null) {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+
+    /**
+     * One outstanding request
+     */
+    private static class Slot {
+        /*! Position in the slot array */
+        final int index;
+        /*! Sequence number of the outstanding request, zero when idle */
+        volatile int sequence;
+        /*! Thread waiting for the response */
+        volatile Thread waiter;
+        /*! Set by the reader once the response arrived */
+        volatile boolean done;
+        /*! Response opcode, published by done */
+        byte opcode;
+        /*! Response status, published by done */
+        int status;
+        /*! Response value, published by done */
+        int value;
+        /*! Response argument, published by done */
+        int argument;
+        /*! Last sequence number used */
+        private int last;
+
+        /**
+         * @param index Position in the slot array
+         * @param slots Number of slots, a power of two
+         */
+        Slot(int index, int slots) {
+            this.index = index;
+            // The first call gets index + 1, later ones keep that value modulo slots
+            this.last = index + 1 - slots;
+        }
+
+        /**
+         * Picks the next sequence number mapping to this slot and clears the response
+         *
+         * @param slots Number of slots, a power of two
+         * @return The sequence number, never zero
+         */
+        int next(int slots) {
+            done = false;
+            last += slots;
+
+            if(last == 0) {
+                last = slots;
+            }
+
+            return last;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,714 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.tcp;
+
+import static com.orland0m.rpi.access.tcp.TcpProtocol.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.log4j.Logger;
+
+import com.orland0m.rpi.middleware.event.PinEvent;
+import com.orland0m.rpi.middleware.event.PinEventListener;
+import com.orland0m.rpi.middleware.exception.AccessorDownException;
+import com.orland0m.rpi.middleware.exception.InvalidatedPinException;
+import com.orland0m.rpi.middleware.exception.PinBusyException;
+import com.orland0m.rpi.middleware.pin.InputPin;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.PinAccessor;
+import com.orland0m.rpi.middleware.pin.PinStatus;
+import com.orland0m.rpi.middleware.pin.RpiPin;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Exposes a PinAccessor over the binary TCP protocol, see TcpProtocol. A single selector
+ * thread accepts connections, decodes frames and runs the pin operations; they are
+ * short, non-blocking calls, so handing them to other threads would cost more than it
+ * saves. Responses are collected in a per connection buffer and written with one call
+ * per batch of requests read. When a client does not read its responses the gateway
+ * stops reading its requests until the buffer drains.
+ *
+ * With TcpConfig#setUdpPort the gateway also receives output writes as datagrams, see
+ * UdpOutputReceiver; clients open a UDP session over their TCP connection first.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class TcpGateway {
+    /*! Logger object reference */
+    final static Logger logger = Logger.getLogger(TcpGateway.class);
+    /*! Size of the connection buffers, a multiple of FRAME_SIZE */
+    private static final int BUFFER_SIZE = 1024 * FRAME_SIZE;
+    /*! Edges queued per connection before a RESET is sent instead, a power of two */
+    private static final int EDGE_QUEUE = 256;
+    /*! The accessor whose pins are exposed */
+    private final PinAccessor accessor;
+    /*! The expected key, null if authentication is disabled */
+    private final byte[] apiKey;
+    /*! The listening socket */
+    private final ServerSocketChannel server;
+    /*! Selector multiplexing every connection */
+    private final Selector selector;
+    /*! Thread running the selector loop */
+    private final Thread selectorThread;
+    /*! Open connections */
+    private final List<Connection> connections = new CopyOnWriteArrayList<>();
+    /*! Pin currently watched for each GPIO, indexed by ordinal */
+    private final AtomicReferenceArray<InputPin> watched =
+        new AtomicReferenceArray<>(WiringPi.values().length);
+    /*! Queues the edges of watched pins on the connections watching them */
+    private final PinEventListener edgeListener = this::queueEdge;
+    /*! Receives UDP output datagrams, null if the UDP channel is disabled */
+    private final UdpOutputReceiver udp;
+    /*! Set while the gateway runs */
+    private volatile boolean running;
+
+    /**
+     * Binds the gateway to the configured address and port. Call start to begin
+     * accepting connections.
+     *
+     * @param accessor The accessor whose pins are exposed
+     * @param config Bind address, ports and API key
+     * @throws IOException If the server sockets cannot be bound
+     * @throws NullPointerException If the accessor or configuration objects are not initialized
+     */
+    public TcpGateway(PinAccessor accessor, TcpConfig config) throws IOException,
+        NullPointerException {
+        if(accessor == null || config == null) {
+            throw new NullPointerException("Accessor and configuration objects must be valid objects");
+        }
+
+        this.accessor = accessor;
+        this.apiKey = config.getApiKey() == null ? null : encodeKey(config.getApiKey());
+        InetSocketAddress address = config.getBindAddress() == null
+                                    ? new InetSocketAddress(config.getPort())
+                                    : new InetSocketAddress(config.getBindAddress(), config.getPort());
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+
+        try {
+            server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            server.bind(address);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+
+        } catch(IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+
+        if(config.getUdpPort() == TcpConfig.UDP_DISABLED) {
+            udp = null;
+
+        } else {
+            try {
+                udp = new UdpOutputReceiver(accessor, config.getBindAddress() == null
+                                            ? new InetSocketAddress(config.getUdpPort())
+                                            : new InetSocketAddress(config.getBindAddress(), config.getUdpPort()));
+
+            } catch(IOException e) {
+                server.close();
+                selector.close();
+                throw e;
+            }
+        }
+
+        selectorThread = new Thread(this::run, "rpi-tcp-selector");
+        selectorThread.setDaemon(true);
+    }
+
+    /**
+     * Starts accepting connections
+     */
+    public void start() {
+        running = true;
+        selectorThread.start();
+        logger.info("TCP gateway listening on " + getAddress());
+
+        if(udp != null) {
+            udp.start();
+            logger.info("UDP output channel listening on " + udp.getAddress());
+        }
+    }
+
+    /**
+     * Closes every connection and stops accepting new ones. The accessor is not
+     * shutdown, it belongs to the caller.
+     */
+    public void stop() {
+        running = false;
+        selector.wakeup();
+
+        try {
+            selectorThread.join();
+
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for(Connection connection : connections) {
+            connection.close();
+        }
+
+        if(udp != null) {
+            udp.close();
+        }
+
+        try {
+            server.close();
+            selector.close();
+
+        } catch(IOException e) {
+            logger.debug("Failed to close the TCP gateway", e);
+        }
+
+        logger.info("TCP gateway stopped");
+    }
+
+    /**
+     * Returns the address the gateway is bound to, useful when the port was picked by
+     * the system
+     *
+     * @return The bound address, or null once stopped
+     */
+    public InetSocketAddress getAddress() {
+        try {
+            return (InetSocketAddress)server.getLocalAddress();
+
+        } catch(IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the address the UDP output channel is bound to
+     *
+     * @return The bound address, or null if the channel is disabled or stopped
+     */
+    public InetSocketAddress getUdpAddress() {
+        return udp == null ? null : udp.getAddress();
+    }
+
+    /**
+     * Returns the number of UDP output datagrams dropped: malformed, for unknown
+     * sessions, or entirely stale
+     *
+     * @return The count, zero if the channel is disabled
+     */
+    public long getDroppedDatagrams() {
+        return udp == null ? 0 : udp.getDropped();
+    }
+
+    /**
+     * Selector loop
+     */
+    private void run() {
+        while(running) {
+            try {
+                selector.select();
+
+            } catch(IOException e) {
+                logger.error("TCP gateway selector failed", e);
+                break;
+            }
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+            while(keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+
+                if(!key.isValid()) {
+                    continue;
+
+                } else if(key.isAcceptable()) {
+                    accept();
+                    continue;
+                }
+
+                Connection connection = (Connection)key.attachment();
+
+                try {
+                    if(key.isReadable()) {
+                        connection.read();
+                    }
+
+                    if(key.isValid() && key.isWritable()) {
+                        connection.flush();
+                    }
+
+                } catch(IOException e) {
+                    logger.debug("TCP connection closed: " + e.getMessage());
+                    connection.close();
+                }
+            }
+
+            for(Connection connection : connections) {
+                try {
+                    connection.sendEdges();
+
+                } catch(IOException e) {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Accepts a pending connection
+     */
+    private void accept() {
+        try {
+            SocketChannel channel = server.accept();
+
+            if(channel == null) {
+                return;
+            }
+
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.add(connection);
+
+        } catch(IOException e) {
+            logger.error("Failed to accept a TCP connection", e);
+        }
+    }
+
+    /**
+     * Executes a request and writes its response
+     *
+     * @param in The request buffer
+     * @param frame Index of the request frame
+     * @param out The response buffer, with room for a frame
+     * @param connection The connection the request arrived on
+     */
+    private void execute(ByteBuffer in, int frame, ByteBuffer out, Connection connection) {
+        byte opcode = opcode(in, frame);
+        int address = gpio(in, frame);
+        int sequence = sequence(in, frame);
+        int value = 0;
+        int argument = 0;
+        int status;
+
+        try {
+            switch(opcode) {
+                case UDP_SESSION:
+                    if(udp == null) {
+                        throw new IllegalArgumentException("The UDP output channel is disabled");
+                    }
+
+                    udp.closeSession(connection.udpToken);
+                    connection.udpToken = udp.openSession();
+                    value = (int)(connection.udpToken >>> 32);
+                    argument = (int)connection.udpToken;
+                    status = connection.udpToken == 0 ? PinStatus.BUSY : PinStatus.OK;
+                    break;
+
+                case READ_ALL:
+                    value = accessor.readAll();
+                    status = PinStatus.OK;
+                    break;
+
+                case WRITE_MASKED:
+                    accessor.writeMasked(value(in, frame), argument(in, frame));
+                    status = PinStatus.OK;
+                    break;
+
+                default:
+                    status = execute(opcode, WiringPi.fromGpioAddress(address), connection);
+                    break;
+            }
+
+        } catch(AccessorDownException e) {
+            status = PinStatus.ACCESSOR_DOWN;
+
+        } catch(IllegalArgumentException e) {
+            // Unknown opcode or GPIO, a read of a pin that is not provisioned, or a masked
+            // write to pins that are not outputs
+            putFrame(out, BAD_REQUEST, address, 0, sequence, 0, 0);
+            return;
+        }
+
+        putFrame(out, opcode, address, status, sequence, value, argument);
+    }
+
+    /**
+     * Executes a single pin request
+     *
+     * @param opcode The opcode
+     * @param gpio The GPIO addressed
+     * @param connection The connection the request arrived on
+     * @return A PinStatus code
+     * @throws IllegalArgumentException If the opcode is unknown
+     */
+    private int execute(byte opcode, WiringPi gpio, Connection connection)
+    throws IllegalArgumentException {
+        switch(opcode) {
+            case PROVISION_INPUT:
+            case PROVISION_OUTPUT:
+                return provision(gpio, opcode == PROVISION_OUTPUT);
+
+            case READ_INPUT:
+            case READ_OUTPUT:
+                return read(gpio, opcode == READ_OUTPUT);
+
+            case UP:
+            case DOWN:
+            case TOGGLE:
+                OutputPin output = accessor.tryGetOutGpio(gpio);
+
+                if(output == null) {
+                    return unavailable();
+                }
+
+                return opcode == TOGGLE ? output.tryToggle() : output.trySet(opcode == UP);
+
+            case WATCH:
+                InputPin input = accessor.tryGetInGpio(gpio);
+                return input == null ? unavailable() : watch(input, connection);
+
+            default:
+                throw new IllegalArgumentException("Unknown opcode: " + opcode);
+        }
+    }
+
+    /**
+     * Reads a provisioned pin. Reads never provision, a pin provisioned in the other
+     * direction is answered as busy and left alone.
+     *
+     * @param gpio The GPIO to read
+     * @param output True to read an output pin, false for an input pin
+     * @return A PinStatus code
+     * @throws IllegalArgumentException If the pin is not provisioned
+     */
+    private int read(WiringPi gpio, boolean output) throws IllegalArgumentException {
+        RpiPin pin = accessor.findGpio(gpio);
+
+        if(pin == null) {
+            if(accessor.isDown()) {
+                return PinStatus.ACCESSOR_DOWN;
+            }
+
+            throw new IllegalArgumentException("Not provisioned: " + gpio);
+        }
+
+        if(output ? pin instanceof OutputPin : pin instanceof InputPin) {
+            return pin.tryRead();
+        }
+
+        return PinStatus.BUSY;
+    }
+
+    /**
+     * Provisions a pin
+     *
+     * @param gpio The GPIO to provision
+     * @param output True to provision an output pin, false for an input pin
+     * @return A PinStatus code
+     */
+    private int provision(WiringPi gpio, boolean output) {
+        try {
+            if(output) {
+                accessor.getOutGpio(gpio);
+
+            } else {
+                accessor.getInGpio(gpio);
+            }
+
+            return PinStatus.OK;
+
+        } catch(PinBusyException e) {
+            return PinStatus.BUSY;
+
+        } catch(InvalidatedPinException e) {
+            return PinStatus.INVALIDATED;
+
+        } catch(AccessorDownException e) {
+            return PinStatus.ACCESSOR_DOWN;
+        }
+    }
+
+    /**
+     * Sends the edges of a pin to a connection
+     *
+     * @param pin The input pin
+     * @param connection The connection
+     * @return A PinStatus code
+     */
+    private int watch(InputPin pin, Connection connection) {
+        int index = pin.getGpioInfo().ordinal();
+        InputPin current = watched.get(index);
+
+        if(current != pin && watched.compareAndSet(index, current, pin)) {
+            try {
+                pin.addEventListener(edgeListener);
+
+            } catch(InvalidatedPinException e) {
+                watched.compareAndSet(index, pin, null);
+                return PinStatus.INVALIDATED;
+            }
+        }
+
+        connection.watchMask |= 1 << pin.getGpioInfo().getGpioAddress();
+        return PinStatus.OK;
+    }
+
+    /**
+     * Queues an edge on every connection watching the pin, called by the pin's listener
+     * thread
+     *
+     * @param event The state change
+     */
+    private void queueEdge(PinEvent event) {
+        int level = event.isHigh() ? PinStatus.HIGH : PinStatus.LOW;
+        int address = event.getGpio().getGpioAddress();
+        boolean queued = false;
+
+        for(Connection connection : connections) {
+            if((connection.watchMask & (1 << address)) != 0) {
+                connection.queueEdge(address, level);
+                queued = true;
+            }
+        }
+
+        if(queued) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Explains why a pin could not be obtained without throwing
+     *
+     * @return ACCESSOR_DOWN if the accessor is down, BUSY otherwise
+     */
+    private int unavailable() {
+        return accessor.isDown() ? PinStatus.ACCESSOR_DOWN : PinStatus.BUSY;
+    }
+
+    /**
+     * State of one client connection, only used by the selector thread unless noted
+     */
+    private final class Connection {
+        /*! The socket */
+        final SocketChannel channel;
+        /*! Registration with the selector */
+        SelectionKey key;
+        /*! Received bytes not yet decoded, in read mode between calls */
+        final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        /*! Responses not yet written, in write mode between calls */
+        final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        /*! Set once the client presented the key */
+        boolean authenticated = apiKey == null;
+        /*! GPIO address bits of the pins this connection watches, read by listener threads */
+        volatile int watchMask;
+        /*! Queued edges, GPIO address and level packed per entry, guarded by the array */
+        final int[] edges = new int[EDGE_QUEUE];
+        /*! Index of the oldest queued edge, guarded by edges */
+        int edgeHead;
+        /*! Number of queued edges, guarded by edges */
+        int edgeCount;
+        /*! Set when edges were dropped, guarded by edges */
+        boolean edgesLost;
+        /*! Token of the UDP session opened by this connection, zero if none */
+        long udpToken;
+
+        /**
+         * @param channel The socket
+         */
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+            in.flip();
+        }
+
+        /**
+         * Reads what the socket has, then decodes and executes as many requests as the
+         * response buffer has room for
+         *
+         * @throws IOException If the connection failed or the client misbehaved
+         */
+        void read() throws IOException {
+            in.compact();
+            int read = channel.read(in);
+            in.flip();
+
+            if(read < 0) {
+                throw new IOException("Connection closed by client");
+            }
+
+            process();
+            flush();
+        }
+
+        /**
+         * Decodes and executes buffered requests
+         *
+         * @throws IOException If the client misbehaved
+         */
+        void process() throws IOException {
+            while(in.remaining() >= FRAME_SIZE && out.remaining() >= FRAME_SIZE) {
+                int frame = in.position();
+
+                if(opcode(in, frame) == AUTH) {
+                    int length = value(in, frame);
+
+                    if(length < 0 || length > MAX_KEY_LENGTH) {
+                        throw new IOException("Invalid key length: " + length);
+
+                    } else if(in.remaining() < FRAME_SIZE + length) {
+                        return;
+                    }
+
+                    byte[] key = new byte[length];
+                    in.position(frame + FRAME_SIZE);
+                    in.get(key);
+
+                    // Constant time comparison, the key must not leak through response timing
+                    if(apiKey != null && !MessageDigest.isEqual(apiKey, key)) {
+                        throw new IOException("Client presented a wrong key");
+                    }
+
+                    authenticated = true;
+                    putFrame(out, AUTH, NO_GPIO, PinStatus.OK, sequence(in, frame), 0, 0);
+                    continue;
+
+                } else if(!authenticated) {
+                    throw new IOException("Client did not authenticate");
+                }
+
+                execute(in, frame, out, this);
+                in.position(frame + FRAME_SIZE);
+            }
+        }
+
+        /**
+         * Writes buffered responses and adjusts the interest set: reads are suspended
+         * while the response buffer is full, writes are watched while it is not empty
+         *
+         * @throws IOException If the connection failed
+         */
+        void flush() throws IOException {
+            out.flip();
+
+            if(out.hasRemaining()) {
+                channel.write(out);
+            }
+
+            out.compact();
+            boolean pending = out.position() > 0;
+
+            if(!pending && in.remaining() >= FRAME_SIZE) {
+                // Room again for the requests left undecoded
+                process();
+                out.flip();
+                channel.write(out);
+                out.compact();
+                pending = out.position() > 0;
+            }
+
+            key.interestOps((pending ? SelectionKey.OP_WRITE : 0)
+                            | (out.remaining() >= FRAME_SIZE ? SelectionKey.OP_READ : 0));
+        }
+
+        /**
+         * Queues an edge, called by the pin's listener thread
+         *
+         * @param address The GPIO address
+         * @param level HIGH or LOW
+         */
+        void queueEdge(int address, int level) {
+            synchronized(edges) {
+                if(edgeCount == EDGE_QUEUE) {
+                    edgesLost = true;
+                    return;
+                }
+
+                edges[(edgeHead + edgeCount++) & (EDGE_QUEUE - 1)] = address << 1 | level;
+            }
+        }
+
+        /**
+         * Moves queued edges to the response buffer and writes them
+         *
+         * @throws IOException If the connection failed
+         */
+        void sendEdges() throws IOException {
+            boolean moved = false;
+
+            synchronized(edges) {
+                if(edgesLost && out.remaining() >= FRAME_SIZE) {
+                    putFrame(out, RESET, NO_GPIO, PinStatus.OK, 0, 0, 0);
+                    edgesLost = false;
+                    moved = true;
+                }
+
+                for(; edgeCount > 0 && out.remaining() >= FRAME_SIZE; edgeCount--) {
+                    int edge = edges[edgeHead];
+                    edgeHead = (edgeHead + 1) & (EDGE_QUEUE - 1);
+                    putFrame(out, EDGE, edge >>> 1, edge & 1, 0, 0, 0);
+                    moved = true;
+                }
+            }
+
+            if(moved && key.isValid()) {
+                flush();
+            }
+        }
+
+        /**
+         * Closes the socket
+         */
+        void close() {
+            connections.remove(this);
+
+            if(udp != null) {
+                udp.closeSession(udpToken);
+            }
+
+            if(key != null) {
+                key.cancel();
+            }
+
+            try {
+                channel.close();
+
+            } catch(IOException e) {
+                logger.debug("Failed to close a TCP connection", e);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,105 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.tcp;
+
+import com.orland0m.rpi.access.BaseInputPin;
+import com.orland0m.rpi.middleware.pin.PinStatus;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Input pin read through a TcpGateway
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class TcpInputPin extends BaseInputPin {
+    /*! The accessor owning the connection */
+    private final TcpPinAccessor accessor;
+    /*! GPIO address sent in every frame */
+    private final int address;
+    /*! Set once the gateway has been asked to send this pin's edges */
+    private volatile boolean watched;
+
+    /**
+     * Initializes a pin that has already been provisioned on the gateway
+     *
+     * @param gpio The GPIO pin information
+     * @param accessor The accessor owning the connection
+     */
+    public TcpInputPin(WiringPi gpio, TcpPinAccessor accessor) {
+        super(gpio);
+        this.accessor = accessor;
+        this.address = gpio.getGpioAddress();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseInputPin#readLevel()
+     */
+    @Override
+    protected boolean readLevel() {
+        return accessor.execute(TcpProtocol.READ_INPUT, address) == PinStatus.HIGH;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseInputPin#tryReadLevel()
+     */
+    @Override
+    protected int tryReadLevel() {
+        return accessor.tryExecute(TcpProtocol.READ_INPUT, address);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseInputPin#onStartWatching()
+     */
+    @Override
+    protected void onStartWatching() {
+        // Flagged first, so a failed request is retried when the listeners resync
+        watched = true;
+        accessor.watch(this);
+    }
+
+    /**
+     * Returns whether the gateway has been asked to send this pin's edges
+     *
+     * @return True once the pin is watched, for listeners, counters or a journal
+     */
+    boolean isWatched() {
+        return watched;
+    }
+
+    /**
+     * Notifies the listeners, called when the gateway reports an edge
+     */
+    void handleEdge() {
+        fireStateChange();
+    }
+
+    /**
+     * Notifies the listeners of an edge whose level is known
+     *
+     * @param high The new level
+     */
+    void handleEdge(boolean high) {
+        fireStateChange(high, System.nanoTime());
+    }
+}
\ No newline at end of file
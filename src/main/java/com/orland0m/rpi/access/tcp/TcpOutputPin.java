@@ -0,0 +1,112 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.tcp;
+
+import com.orland0m.rpi.access.BaseOutputPin;
+import com.orland0m.rpi.middleware.exception.InvalidatedPinException;
+import com.orland0m.rpi.middleware.exception.PinBusyException;
+import com.orland0m.rpi.middleware.pin.PinStatus;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Output pin driven through a TcpGateway, every operation is a single frame. Writes go
+ * through the UDP output channel when it is enabled.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class TcpOutputPin extends BaseOutputPin {
+    /*! The accessor owning the connection */
+    private final TcpPinAccessor accessor;
+    /*! GPIO address sent in every frame */
+    private final int address;
+
+    /**
+     * Initializes a pin that has already been provisioned on the gateway
+     *
+     * @param gpio The GPIO pin information
+     * @param accessor The accessor owning the connection
+     */
+    public TcpOutputPin(WiringPi gpio, TcpPinAccessor accessor) {
+        super(gpio);
+        this.accessor = accessor;
+        this.address = gpio.getGpioAddress();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseOutputPin#readLevel()
+     */
+    @Override
+    protected boolean readLevel() {
+        return accessor.execute(TcpProtocol.READ_OUTPUT, address) == PinStatus.HIGH;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseOutputPin#writeLevel(boolean)
+     */
+    @Override
+    protected void writeLevel(boolean high) {
+        accessor.write(high ? TcpProtocol.UP : TcpProtocol.DOWN, address);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseOutputPin#invertLevel()
+     */
+    @Override
+    protected void invertLevel() {
+        accessor.write(TcpProtocol.TOGGLE, address);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseOutputPin#tryReadLevel()
+     */
+    @Override
+    protected int tryReadLevel() {
+        return accessor.tryExecute(TcpProtocol.READ_OUTPUT, address);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseOutputPin#tryWriteLevel(boolean)
+     */
+    @Override
+    protected int tryWriteLevel(boolean high) {
+        return accessor.tryWrite(high ? TcpProtocol.UP : TcpProtocol.DOWN, address);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseOutputPin#tryInvertLevel()
+     */
+    @Override
+    protected int tryInvertLevel() {
+        return accessor.tryWrite(TcpProtocol.TOGGLE, address);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.RpiPin#markInvalid()
+     */
+    @Override
+    public void markInvalid() throws PinBusyException, InvalidatedPinException {
+        super.markInvalid();
+        accessor.releaseOutput(address);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,620 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.tcp;
+
+import static com.orland0m.rpi.access.tcp.TcpProtocol.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.log4j.Logger;
+
+import com.orland0m.rpi.access.BaseAccessor;
+import com.orland0m.rpi.middleware.exception.AccessorDownException;
+import com.orland0m.rpi.middleware.exception.InvalidatedPinException;
+import com.orland0m.rpi.middleware.exception.PinBusyException;
+import com.orland0m.rpi.middleware.pin.InputPin;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.PinStatus;
+import com.orland0m.rpi.middleware.pin.RpiPin;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Class that creates pin objects backed by a remote TcpGateway. Every call is one fixed
+ * size frame each way over a single connection, with up to TcpConfig#getMaxInFlight calls
+ * outstanding; the connection is opened on the first call and reopened by the next call
+ * after it fails.
+ *
+ * Listeners work as they do with the REST accessor: the first listener, counter or
+ * journal of a pin asks the gateway to watch it and edges are pushed over the same connection. They are delivered
+ * on a separate thread, so listeners may call back into the accessor. When the
+ * connection is lost, or the gateway dropped edges, every pin with listeners is watched
+ * again and its listeners are notified once.
+ *
+ * With TcpConfig#setUdpPort output writes are sent as datagrams instead, see
+ * UdpOutputChannel: they return as soon as they are sent and are never acknowledged.
+ *
+ * Failures are reported like RestPinAccessor does: gateway side failures with the usual
+ * exceptions, network failures with UncheckedIOException or PinStatus.UNREACHABLE.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class TcpPinAccessor extends BaseAccessor {
+    /*! Logger object reference */
+    final static Logger logger = Logger.getLogger(TcpPinAccessor.class);
+    /*! Error message: the remote pin was invalidated */
+    private static final String REMOTE_INVALID_MSG = "The gateway reports this pin as invalidated";
+    /*! Error message: the remote pin is busy */
+    private static final String REMOTE_BUSY_MSG = "The gateway reports this pin as busy";
+    /*! Error message: the remote accessor is down */
+    private static final String REMOTE_DOWN_MSG = "The gateway's pin accessor has been shutdown";
+    /*! Error message: the gateway could not be reached */
+    private static final String UNREACHABLE_MSG = "The gateway could not be reached";
+    /*! First reconnection delay of listening clients, in milliseconds */
+    private static final long MIN_BACKOFF_MILLIS = 100;
+    /*! Longest reconnection delay of listening clients, in milliseconds */
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+    /*! Connection settings */
+    private final TcpConfig config;
+    /*! Gateway address, resolved on every connection */
+    private final InetSocketAddress address;
+    /*! The key, null if authentication is disabled */
+    private final byte[] apiKey;
+    /*! Guards connection replacement */
+    private final Object connectLock = new Object();
+    /*! Current connection, null before the first call */
+    private volatile TcpConnection connection;
+    /*! Thread delivering edges, created by the first listener, guarded by connectLock */
+    private ExecutorService events;
+    /*! UDP output channel, opened by the first write, guarded by connectLock */
+    private UdpOutputChannel udp;
+
+    /**
+     * Initializes an accessor for the gateway described by the configuration. No
+     * connection is opened until the first call.
+     *
+     * @param config Server, port, API key, timeouts and window size
+     * @throws NullPointerException If the configuration object or its server are not initialized
+     */
+    public TcpPinAccessor(TcpConfig config) throws NullPointerException {
+        if(config == null || config.getServer() == null) {
+            throw new NullPointerException("Configuration object and server must be valid objects");
+        }
+
+        this.config = config;
+        address = InetSocketAddress.createUnresolved(config.getServer(), config.getPort());
+        apiKey = config.getApiKey() == null ? null : encodeKey(config.getApiKey());
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#shutdown()
+     */
+    @Override
+    public void shutdown() throws PinBusyException, AccessorDownException {
+        super.shutdown();
+
+        synchronized(connectLock) {
+            if(connection != null) {
+                connection.close();
+            }
+
+            if(events != null) {
+                events.shutdownNow();
+            }
+
+            if(udp != null) {
+                udp.close();
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseAccessor#flush()
+     */
+    @Override
+    public void flush() throws PinBusyException, InvalidatedPinException, AccessorDownException {
+        assertNotDown();
+        UdpOutputChannel channel;
+
+        synchronized(connectLock) {
+            channel = udp;
+        }
+
+        if(channel != null && channel.flush() < 0) {
+            throw toException(PinStatus.UNREACHABLE);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getInPin(int)
+     */
+    @Override
+    public InputPin getInPin(int physicalPinNumber) throws IllegalArgumentException,
+        PinBusyException, AccessorDownException {
+        return getInGpio(WiringPi.fromPhysicalPin(physicalPinNumber));
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getInGpio(int)
+     */
+    @Override
+    public InputPin getInGpio(int gpioNumber) throws IllegalArgumentException, PinBusyException,
+        AccessorDownException {
+        return getInGpio(WiringPi.fromGpioAddress(gpioNumber));
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getInGpio(java.lang.String)
+     */
+    @Override
+    public InputPin getInGpio(String gpioName) throws IllegalArgumentException, PinBusyException,
+        AccessorDownException {
+        return getInGpio(WiringPi.fromGpioName(gpioName));
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getInGpio(com.orland0m.rpi.middleware.pin.WiringPi)
+     */
+    @Override
+    public InputPin getInGpio(WiringPi gpio) throws IllegalArgumentException, PinBusyException,
+        AccessorDownException {
+        assertNotDown();
+
+        synchronized(provisioningLock(gpio)) {
+            InputPin retVal = getForInputOrRelease(gpio);
+
+            if(retVal == null) {
+                execute(PROVISION_INPUT, gpio.getGpioAddress());
+                retVal = new TcpInputPin(gpio, this);
+                registerProvisionedPin(retVal);
+            }
+
+            return retVal;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getOutPin(int)
+     */
+    @Override
+    public OutputPin getOutPin(int physicalPinNumber) throws IllegalArgumentException,
+        PinBusyException, AccessorDownException {
+        return getOutGpio(WiringPi.fromPhysicalPin(physicalPinNumber));
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getOutGpio(int)
+     */
+    @Override
+    public OutputPin getOutGpio(int gpioNumber) throws IllegalArgumentException, PinBusyException,
+        AccessorDownException {
+        return getOutGpio(WiringPi.fromGpioAddress(gpioNumber));
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getOutGpio(java.lang.String)
+     */
+    @Override
+    public OutputPin getOutGpio(String gpioName) throws IllegalArgumentException, PinBusyException,
+        AccessorDownException {
+        return getOutGpio(WiringPi.fromGpioName(gpioName));
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getOutGpio(com.orland0m.rpi.middleware.pin.WiringPi)
+     */
+    @Override
+    public OutputPin getOutGpio(WiringPi gpio) throws IllegalArgumentException, PinBusyException,
+        AccessorDownException {
+        assertNotDown();
+
+        synchronized(provisioningLock(gpio)) {
+            OutputPin retVal = getForOutputOrRelease(gpio);
+
+            if(retVal == null) {
+                execute(PROVISION_OUTPUT, gpio.getGpioAddress());
+                retVal = new TcpOutputPin(gpio, this);
+                registerProvisionedPin(retVal);
+            }
+
+            return retVal;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseAccessor#readBank(int)
+     */
+    @Override
+    protected int readBank(int mask) {
+        long response = call(READ_ALL, NO_GPIO, 0, 0);
+
+        if(TcpConnection.status(response) < 0) {
+            throw toException(TcpConnection.status(response));
+        }
+
+        return TcpConnection.value(response) & mask;
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.access.BaseAccessor#writeBank(int, int)
+     */
+    @Override
+    protected void writeBank(int mask, int values) {
+        int status = TcpConnection.status(call(WRITE_MASKED, NO_GPIO, mask, values));
+
+        if(status < 0) {
+            throw toException(status);
+        }
+    }
+
+    /**
+     * Performs a single pin call, reporting failures with exceptions
+     *
+     * @param opcode The opcode, see TcpProtocol
+     * @param gpio The GPIO address
+     * @return The non-negative status code answered by the gateway
+     * @throws InvalidatedPinException If the remote pin has been invalidated
+     * @throws PinBusyException If the remote pin is busy
+     * @throws AccessorDownException If the remote accessor is down
+     * @throws UncheckedIOException If the gateway cannot be reached
+     */
+    int execute(byte opcode, int gpio) throws InvalidatedPinException, PinBusyException,
+        AccessorDownException, UncheckedIOException {
+        int status = TcpConnection.status(call(opcode, gpio, 0, 0));
+
+        if(status < 0) {
+            throw toException(status);
+        }
+
+        return status;
+    }
+
+    /**
+     * Performs a single pin call without throwing
+     *
+     * @param opcode The opcode, see TcpProtocol
+     * @param gpio The GPIO address
+     * @return The status code answered by the gateway, or UNREACHABLE
+     */
+    int tryExecute(byte opcode, int gpio) {
+        try {
+            TcpConnection current = connection();
+            return TcpConnection.status(current.call(opcode, gpio, 0, 0));
+
+        } catch(IOException | IllegalArgumentException e) {
+            if(logger.isDebugEnabled()) {
+                logger.debug("Gateway call failed", e);
+            }
+
+            return PinStatus.UNREACHABLE;
+        }
+    }
+
+    /**
+     * Writes an output pin, as a datagram when the UDP output channel is enabled
+     *
+     * @param opcode UP, DOWN or TOGGLE
+     * @param gpio The GPIO address
+     * @throws InvalidatedPinException If the remote pin has been invalidated
+     * @throws PinBusyException If the remote pin is busy
+     * @throws AccessorDownException If the remote accessor is down
+     * @throws UncheckedIOException If the gateway cannot be reached
+     */
+    void write(byte opcode, int gpio) throws InvalidatedPinException, PinBusyException,
+        AccessorDownException, UncheckedIOException {
+        int status = tryWrite(opcode, gpio);
+
+        if(status < 0) {
+            throw toException(status);
+        }
+    }
+
+    /**
+     * Writes an output pin without throwing, as a datagram when the UDP output channel is
+     * enabled; OK then only means the datagram was sent or queued
+     *
+     * @param opcode UP, DOWN or TOGGLE
+     * @param gpio The GPIO address
+     * @return A PinStatus code, or UNREACHABLE
+     */
+    int tryWrite(byte opcode, int gpio) {
+        if(config.getUdpPort() <= 0) {
+            return tryExecute(opcode, gpio);
+        }
+
+        UdpOutputChannel channel;
+
+        synchronized(connectLock) {
+            if(udp == null && !isDown()) {
+                try {
+                    InetSocketAddress resolved = new InetSocketAddress(address.getHostString(),
+                                                                       config.getUdpPort());
+
+                    if(resolved.isUnresolved()) {
+                        return PinStatus.UNREACHABLE;
+                    }
+
+                    udp = new UdpOutputChannel(this, resolved, config);
+
+                } catch(IOException e) {
+                    logger.debug("Failed to open the UDP output channel", e);
+                    return PinStatus.UNREACHABLE;
+                }
+            }
+
+            channel = udp;
+        }
+
+        return channel == null ? PinStatus.ACCESSOR_DOWN : channel.write(gpio, opcode);
+    }
+
+    /**
+     * Stops sending the level of an output pin over UDP, called once the pin is invalidated
+     *
+     * @param gpio The GPIO address
+     */
+    void releaseOutput(int gpio) {
+        UdpOutputChannel channel;
+
+        synchronized(connectLock) {
+            channel = udp;
+        }
+
+        if(channel != null) {
+            channel.release(gpio);
+        }
+    }
+
+    /**
+     * Asks the gateway to send the edges of a pin
+     *
+     * @param pin The pin
+     * @throws InvalidatedPinException If the remote pin has been invalidated
+     * @throws PinBusyException If the remote pin is busy
+     * @throws AccessorDownException If the remote accessor is down
+     * @throws UncheckedIOException If the gateway cannot be reached
+     */
+    void watch(TcpInputPin pin) throws InvalidatedPinException, PinBusyException,
+        AccessorDownException, UncheckedIOException {
+        synchronized(connectLock) {
+            if(events == null) {
+                events = Executors.newSingleThreadExecutor(task -> {
+                    Thread thread = new Thread(task, "rpi-tcp-events");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+
+        execute(WATCH, pin.getGpioInfo().getGpioAddress());
+    }
+
+    /**
+     * Notifies the listeners of a pin that it changed state, called by the reader thread
+     *
+     * @param address The GPIO address reported by the gateway
+     * @param high The new level
+     */
+    void deliverEdge(int address, boolean high) {
+        dispatch(() -> {
+            RpiPin pin = findProvisionedPin(WiringPi.fromGpioAddress(address));
+
+            if(pin instanceof TcpInputPin && pin.isValid()) {
+                ((TcpInputPin)pin).handleEdge(high);
+            }
+        });
+    }
+
+    /**
+     * Notifies every listener, called by the reader thread when the gateway dropped edges
+     */
+    void edgesLost() {
+        logger.warn("The gateway dropped edges, notifying every remote listener");
+        dispatch(this::resyncListeners);
+    }
+
+    /**
+     * Reconnects in the background if any pin has listeners, called by the reader thread
+     * when the connection fails. Otherwise the next call reconnects.
+     */
+    void connectionLost() {
+        if(!isDown() && isWatching()) {
+            dispatch(this::reconnect);
+        }
+    }
+
+    /**
+     * Performs a call
+     *
+     * @param opcode The opcode
+     * @param gpio The GPIO address, or NO_GPIO
+     * @param value The value
+     * @param argument The argument
+     * @return The packed response
+     * @throws UncheckedIOException If the gateway cannot be reached
+     * @throws IllegalArgumentException If the gateway did not understand the request
+     */
+    private long call(byte opcode, int gpio, int value, int argument) throws UncheckedIOException,
+        IllegalArgumentException {
+        try {
+            return connection().call(opcode, gpio, value, argument);
+
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the current connection, opening a new one if it is missing or broken
+     *
+     * @return An open connection
+     * @throws IOException If the connection cannot be established
+     */
+    TcpConnection connection() throws IOException {
+        TcpConnection current = connection;
+
+        if(current != null && !current.isClosed()) {
+            return current;
+        }
+
+        synchronized(connectLock) {
+            current = connection;
+
+            if(current != null && !current.isClosed()) {
+                return current;
+
+            } else if(isDown()) {
+                throw new IOException("The accessor has been shutdown");
+            }
+
+            InetSocketAddress resolved = new InetSocketAddress(address.getHostString(), address.getPort());
+
+            if(resolved.isUnresolved()) {
+                throw new IOException("Unable to resolve gateway host: " + address.getHostString());
+            }
+
+            boolean reconnecting = current != null;
+            connection = new TcpConnection(this, resolved, config, apiKey);
+
+            if(reconnecting && isWatching()) {
+                // The watches belonged to the old connection
+                dispatch(this::resyncListeners);
+            }
+
+            return connection;
+        }
+    }
+
+    /**
+     * Reconnects with exponential backoff, runs on the events thread
+     */
+    private void reconnect() {
+        long backoff = MIN_BACKOFF_MILLIS;
+
+        while(!isDown()) {
+            try {
+                connection();
+                return;
+
+            } catch(IOException e) {
+                logger.debug("Reconnection failed: " + e.getMessage());
+            }
+
+            try {
+                Thread.sleep(backoff);
+
+            } catch(InterruptedException e) {
+                return;
+            }
+
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    /**
+     * Watches every pin with listeners again and notifies the listeners, runs on the
+     * events thread
+     */
+    private void resyncListeners() {
+        for(WiringPi gpio : WiringPi.values()) {
+            RpiPin pin = findProvisionedPin(gpio);
+
+            if(pin instanceof TcpInputPin && pin.isValid() && ((TcpInputPin)pin).isWatched()) {
+                int status = tryExecute(WATCH, gpio.getGpioAddress());
+
+                if(status < 0) {
+                    logger.error("Failed to watch " + gpio + " again: " + PinStatus.toString(status));
+                }
+
+                ((TcpInputPin)pin).handleEdge();
+            }
+        }
+    }
+
+    /**
+     * Returns whether any pin has listeners
+     *
+     * @return True if some pin is watched
+     */
+    private boolean isWatching() {
+        synchronized(connectLock) {
+            return events != null;
+        }
+    }
+
+    /**
+     * Runs a task on the events thread
+     *
+     * @param task The task
+     */
+    private void dispatch(Runnable task) {
+        ExecutorService executor;
+
+        synchronized(connectLock) {
+            executor = events;
+        }
+
+        if(executor == null) {
+            return;
+        }
+
+        try {
+            executor.execute(task);
+
+        } catch(RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    /**
+     * Maps a negative status code answered by the gateway to the exception the local
+     * accessors throw in the same situation
+     *
+     * @param status The status code
+     * @return The exception to throw
+     */
+    private static RuntimeException toException(int status) {
+        switch(status) {
+            case PinStatus.INVALIDATED:
+                return new InvalidatedPinException(REMOTE_INVALID_MSG);
+
+            case PinStatus.BUSY:
+                return new PinBusyException(REMOTE_BUSY_MSG);
+
+            case PinStatus.ACCESSOR_DOWN:
+                return new AccessorDownException(REMOTE_DOWN_MSG);
+
+            case PinStatus.UNREACHABLE:
+                return new UncheckedIOException(new IOException(UNREACHABLE_MSG));
+
+            default:
+                return new UncheckedIOException(new IOException("Unexpected status from gateway: "
+                                                                + PinStatus.toString(status)));
+        }
+    }
+}
\ No newline at end of file
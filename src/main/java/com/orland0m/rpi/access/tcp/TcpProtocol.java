@@ -0,0 +1,226 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.tcp;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Wire format of the binary TCP protocol, shared by the gateway and its clients. Every
+ * message is one fixed size frame of FRAME_SIZE bytes, big endian:
+ *
+ * <pre>
+ * offset size
+ *   0     1   opcode
+ *   1     1   WiringPi GPIO address, NO_GPIO when the operation has none
+ *   2     2   status, a PinStatus code; zero in requests
+ *   4     4   sequence number, echoed in the response
+ *   8     4   value: readAll result, writeMasked mask, key length
+ *  12     4   argument: writeMasked values
+ * </pre>
+ *
+ * Responses carry the opcode and sequence number of their request and may arrive in any
+ * order. EDGE frames are sent by the gateway unprompted, with sequence number zero, for
+ * each state change of a pin the connection watches; RESET frames tell the client some
+ * were dropped. When the gateway has an API key the first frame of a connection must be
+ * AUTH, followed by the key bytes, value holds their count.
+ *
+ * UDP_SESSION opens a session for the UDP output channel, answering with a random 64
+ * bit token in value (upper half) and argument (lower half). Output datagrams are
+ * DATAGRAM_SIZE bytes, big endian:
+ *
+ * <pre>
+ * offset size
+ *   0     8   session token
+ *   8     8   sequence number, increasing per session
+ *  16     1   flags, FULL_STATE when the datagram carries every pin the client drives
+ *  17     3   reserved
+ *  20     4   mask of the GPIO addresses written
+ *  24     4   levels of the GPIO addresses written
+ *  28     4   reserved
+ * </pre>
+ *
+ * A datagram only updates the pins whose last update came from an older sequence
+ * number, so late and duplicated datagrams never undo newer state. The session ends with
+ * the TCP connection that opened it.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+final class TcpProtocol {
+    /*! Size of every frame */
+    static final int FRAME_SIZE = 16;
+    /*! Longest API key accepted, in bytes */
+    static final int MAX_KEY_LENGTH = 256;
+    /*! GPIO field of frames that address no pin */
+    static final int NO_GPIO = 0xFF;
+    /*! Opcode: authenticate the connection */
+    static final byte AUTH = 1;
+    /*! Opcode: provision an input pin */
+    static final byte PROVISION_INPUT = 2;
+    /*! Opcode: provision an output pin */
+    static final byte PROVISION_OUTPUT = 3;
+    /*! Opcode: read a provisioned input pin, answered BAD_REQUEST if not provisioned */
+    static final byte READ_INPUT = 4;
+    /*! Opcode: read a provisioned output pin, answered BAD_REQUEST if not provisioned */
+    static final byte READ_OUTPUT = 5;
+    /*! Opcode: set an output pin high */
+    static final byte UP = 6;
+    /*! Opcode: set an output pin low */
+    static final byte DOWN = 7;
+    /*! Opcode: toggle an output pin */
+    static final byte TOGGLE = 8;
+    /*! Opcode: read every provisioned pin */
+    static final byte READ_ALL = 9;
+    /*! Opcode: write several output pins */
+    static final byte WRITE_MASKED = 10;
+    /*! Opcode: send the edges of an input pin to this connection */
+    static final byte WATCH = 11;
+    /*! Opcode: a watched pin changed state, gateway to client only */
+    static final byte EDGE = 12;
+    /*! Opcode: edges were dropped, gateway to client only */
+    static final byte RESET = 13;
+    /*! Opcode: the request was not understood, gateway to client only */
+    static final byte BAD_REQUEST = 14;
+    /*! Opcode: open a UDP output session */
+    static final byte UDP_SESSION = 15;
+    /*! Size of every output datagram */
+    static final int DATAGRAM_SIZE = 32;
+    /*! Datagram flag: the datagram carries the full output state */
+    static final byte FULL_STATE = 1;
+
+    /**
+     * Constants holder, not meant to be instantiated
+     */
+    private TcpProtocol() {
+    }
+
+    /**
+     * Writes a frame at the buffer's position
+     *
+     * @param buffer The buffer, with at least FRAME_SIZE bytes remaining
+     * @param opcode The opcode
+     * @param gpio The GPIO address, or NO_GPIO
+     * @param status The status, zero in requests
+     * @param sequence The sequence number
+     * @param value The value
+     * @param argument The argument
+     */
+    static void putFrame(ByteBuffer buffer, byte opcode, int gpio, int status, int sequence,
+                         int value, int argument) {
+        buffer.put(opcode).put((byte)gpio).putShort((short)status).putInt(sequence)
+        .putInt(value).putInt(argument);
+    }
+
+    /**
+     * Writes an output datagram at the buffer's position
+     *
+     * @param buffer The buffer, with at least DATAGRAM_SIZE bytes remaining
+     * @param token The session token
+     * @param sequence The sequence number
+     * @param flags FULL_STATE or zero
+     * @param mask The GPIO addresses written
+     * @param values The levels of the GPIO addresses written
+     */
+    static void putDatagram(ByteBuffer buffer, long token, long sequence, byte flags, int mask,
+                            int values) {
+        buffer.putLong(token).putLong(sequence).put(flags).put((byte)0).putShort((short)0)
+        .putInt(mask).putInt(values & mask).putInt(0);
+    }
+
+    /**
+     * Returns the opcode of the frame starting at the given index
+     *
+     * @param buffer The buffer
+     * @param frame The index of the frame's first byte
+     * @return The opcode
+     */
+    static byte opcode(ByteBuffer buffer, int frame) {
+        return buffer.get(frame);
+    }
+
+    /**
+     * Returns the GPIO address of the frame starting at the given index
+     *
+     * @param buffer The buffer
+     * @param frame The index of the frame's first byte
+     * @return The GPIO address, or NO_GPIO
+     */
+    static int gpio(ByteBuffer buffer, int frame) {
+        return buffer.get(frame + 1) & 0xFF;
+    }
+
+    /**
+     * Returns the status of the frame starting at the given index
+     *
+     * @param buffer The buffer
+     * @param frame The index of the frame's first byte
+     * @return The status
+     */
+    static int status(ByteBuffer buffer, int frame) {
+        return buffer.getShort(frame + 2);
+    }
+
+    /**
+     * Returns the sequence number of the frame starting at the given index
+     *
+     * @param buffer The buffer
+     * @param frame The index of the frame's first byte
+     * @return The sequence number
+     */
+    static int sequence(ByteBuffer buffer, int frame) {
+        return buffer.getInt(frame + 4);
+    }
+
+    /**
+     * Returns the value of the frame starting at the given index
+     *
+     * @param buffer The buffer
+     * @param frame The index of the frame's first byte
+     * @return The value
+     */
+    static int value(ByteBuffer buffer, int frame) {
+        return buffer.getInt(frame + 8);
+    }
+
+    /**
+     * Returns the argument of the frame starting at the given index
+     *
+     * @param buffer The buffer
+     * @param frame The index of the frame's first byte
+     * @return The argument
+     */
+    static int argument(ByteBuffer buffer, int frame) {
+        return buffer.getInt(frame + 12);
+    }
+
+    /**
+     * Encodes an API key
+     *
+     * @param apiKey The key
+     * @return The key bytes
+     */
+    static byte[] encodeKey(String apiKey) {
+        return apiKey.getBytes(StandardCharsets.UTF_8);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,266 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.tcp;
+
+import static com.orland0m.rpi.access.tcp.TcpProtocol.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+
+import com.orland0m.rpi.middleware.pin.PinStatus;
+
+/**
+ * Client side of the UDP output channel. Output writes update a local copy of the levels
+ * the client drives and are sent as datagrams without waiting for an answer, see
+ * TcpProtocol. Datagrams carry absolute levels, never toggles, so a lost or late one
+ * can be repaired by any newer one; with a full state interval the whole copy is resent
+ * periodically for that purpose.
+ *
+ * With a window, writes only mark their pins and a sender thread sends the changed pins
+ * once per window; otherwise the writing thread sends at once. Nothing is allocated per
+ * write.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+final class UdpOutputChannel implements Closeable {
+    /*! Logger object reference */
+    final static Logger logger = Logger.getLogger(UdpOutputChannel.class);
+    /*! The accessor owning the TCP connection */
+    private final TcpPinAccessor accessor;
+    /*! The socket, connected to the gateway */
+    private final DatagramChannel channel;
+    /*! Datagram being sent, guarded by this */
+    private final ByteBuffer datagram = ByteBuffer.allocateDirect(DATAGRAM_SIZE);
+    /*! Merge window in nanoseconds, zero sends every write at once */
+    private final long windowNanos;
+    /*! Interval between full state datagrams in nanoseconds, zero disables them */
+    private final long fullStateNanos;
+    /*! Thread sending merged and full state datagrams, null if not needed */
+    private final Thread sender;
+    /*! TCP connection the session belongs to, guarded by this */
+    private TcpConnection sessionConnection;
+    /*! Session token, guarded by this */
+    private long token;
+    /*! Last sequence number sent, guarded by this */
+    private long sequence;
+    /*! GPIO addresses driven over UDP, guarded by this */
+    private int driven;
+    /*! Levels of the driven pins, guarded by this */
+    private int levels;
+    /*! GPIO addresses changed since the last datagram, guarded by this */
+    private int dirty;
+    /*! Set once closed */
+    private volatile boolean closed;
+
+    /**
+     * Opens the socket. The session is opened by the first write.
+     *
+     * @param accessor The accessor owning the TCP connection
+     * @param address The gateway's UDP address
+     * @param config Window and full state interval
+     * @throws IOException If the socket cannot be opened
+     */
+    UdpOutputChannel(TcpPinAccessor accessor, InetSocketAddress address, TcpConfig config)
+    throws IOException {
+        this.accessor = accessor;
+        this.windowNanos = config.getUdpWindowNanos();
+        this.fullStateNanos = config.getFullStateIntervalNanos();
+        channel = DatagramChannel.open();
+
+        try {
+            // Connected, so every send goes through write without resolving the address
+            channel.connect(address);
+
+        } catch(IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        if(windowNanos > 0 || fullStateNanos > 0) {
+            sender = new Thread(this::run, "rpi-udp-sender");
+            sender.setDaemon(true);
+            sender.start();
+
+        } else {
+            sender = null;
+        }
+    }
+
+    /**
+     * Writes an output pin
+     *
+     * @param address The GPIO address
+     * @param opcode UP, DOWN or TOGGLE
+     * @return OK once the write is sent or queued, or a negative PinStatus code if the
+     * pin's level could not be read, no session could be opened or the send failed
+     */
+    synchronized int write(int address, byte opcode) {
+        if(closed) {
+            return PinStatus.UNREACHABLE;
+        }
+
+        int bit = 1 << address;
+
+        if((driven & bit) == 0) {
+            // Toggles need to know where the pin starts from
+            int level = accessor.tryExecute(READ_OUTPUT, address);
+
+            if(level < 0) {
+                return level;
+            }
+
+            levels = level == PinStatus.HIGH ? levels | bit : levels & ~bit;
+            driven |= bit;
+        }
+
+        switch(opcode) {
+            case UP:
+                levels |= bit;
+                break;
+
+            case DOWN:
+                levels &= ~bit;
+                break;
+
+            default:
+                levels ^= bit;
+                break;
+        }
+
+        dirty |= bit;
+        return windowNanos > 0 ? PinStatus.OK : send((byte)0, dirty);
+    }
+
+    /**
+     * Stops driving a pin, so neither full state datagrams nor a new session write it
+     * again once its output pin is invalidated or provisioned as input
+     *
+     * @param address The GPIO address
+     */
+    synchronized void release(int address) {
+        int bit = 1 << address;
+        driven &= ~bit;
+        dirty &= ~bit;
+    }
+
+    /**
+     * Sends the pins changed within the current window at once
+     *
+     * @return OK, or UNREACHABLE if no session could be opened or the send failed
+     */
+    synchronized int flush() {
+        return dirty == 0 || closed ? PinStatus.OK : send((byte)0, dirty);
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() {
+        closed = true;
+
+        if(sender != null) {
+            LockSupport.unpark(sender);
+        }
+
+        try {
+            channel.close();
+
+        } catch(IOException e) {
+            logger.debug("Failed to close the UDP socket", e);
+        }
+    }
+
+    /**
+     * Sends a datagram, opening a session first if the TCP connection changed. Caller
+     * must hold the lock.
+     *
+     * @param flags FULL_STATE or zero
+     * @param mask The GPIO addresses to send
+     * @return OK, or UNREACHABLE if no session could be opened or the send failed
+     */
+    private int send(byte flags, int mask) {
+        try {
+            TcpConnection current = accessor.connection();
+
+            if(current != sessionConnection) {
+                token = current.openUdpSession();
+                sessionConnection = current;
+                // A new session starts from scratch on the gateway
+                mask = driven;
+            }
+
+            datagram.clear();
+            putDatagram(datagram, token, ++sequence, flags, mask, levels);
+            datagram.flip();
+            channel.write(datagram);
+            dirty = 0;
+            return PinStatus.OK;
+
+        } catch(IOException | IllegalArgumentException e) {
+            if(logger.isDebugEnabled()) {
+                logger.debug("UDP output failed", e);
+            }
+
+            return PinStatus.UNREACHABLE;
+        }
+    }
+
+    /**
+     * Sender loop: sends the pins changed within each window and the full state at its
+     * interval
+     */
+    private void run() {
+        long tick = windowNanos > 0 && (fullStateNanos == 0 || windowNanos < fullStateNanos)
+                    ? windowNanos : fullStateNanos;
+        long nextFullState = System.nanoTime() + fullStateNanos;
+
+        while(!closed) {
+            LockSupport.parkNanos(this, tick);
+
+            synchronized(this) {
+                if(closed) {
+                    break;
+                }
+
+                if(fullStateNanos > 0 && System.nanoTime() - nextFullState >= 0) {
+                    nextFullState += fullStateNanos;
+
+                    if(driven != 0) {
+                        send(FULL_STATE, driven);
+                    }
+
+                } else if(dirty != 0) {
+                    send((byte)0, dirty);
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
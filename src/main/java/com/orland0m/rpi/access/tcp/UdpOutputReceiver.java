@@ -0,0 +1,301 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.access.tcp;
+
+import static com.orland0m.rpi.access.tcp.TcpProtocol.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.log4j.Logger;
+
+import com.orland0m.rpi.middleware.exception.AccessorDownException;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.PinAccessor;
+import com.orland0m.rpi.middleware.pin.RpiPin;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Gateway side of the UDP output channel. A dedicated thread receives output datagrams,
+ * see TcpProtocol, drops the updates older than what each pin already shows and writes
+ * the rest with one PinAccessor#writeMasked call. Only pins already provisioned as
+ * outputs are written, a datagram never provisions a pin. The receive buffer, the sessions and
+ * their per pin sequence numbers are allocated up front, so the thread allocates nothing
+ * per datagram.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+final class UdpOutputReceiver {
+    /*! Logger object reference */
+    final static Logger logger = Logger.getLogger(UdpOutputReceiver.class);
+    /*! Sessions open at once */
+    static final int MAX_SESSIONS = 64;
+    /*! WiringPi pins indexed by GPIO address, null where there is none */
+    private static final WiringPi[] BY_ADDRESS = new WiringPi[Integer.SIZE];
+
+    static {
+        for(WiringPi gpio : WiringPi.values()) {
+            BY_ADDRESS[gpio.getGpioAddress()] = gpio;
+        }
+    }
+
+    /*! The accessor written */
+    private final PinAccessor accessor;
+    /*! The socket */
+    private final DatagramChannel channel;
+    /*! Open sessions */
+    private final AtomicReferenceArray<Session> sessions = new AtomicReferenceArray<>(MAX_SESSIONS);
+    /*! Token generator */
+    private final SecureRandom random = new SecureRandom();
+    /*! Thread receiving datagrams */
+    private final Thread receiver;
+    /*! Datagrams dropped, only written by the receiver */
+    private volatile long dropped;
+
+    /**
+     * Binds the socket
+     *
+     * @param accessor The accessor written
+     * @param address The address to bind
+     * @throws IOException If the socket cannot be bound
+     */
+    UdpOutputReceiver(PinAccessor accessor, InetSocketAddress address) throws IOException {
+        this.accessor = accessor;
+        channel = DatagramChannel.open();
+
+        try {
+            channel.bind(address);
+
+        } catch(IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        receiver = new Thread(this::receive, "rpi-udp-receiver");
+        receiver.setDaemon(true);
+    }
+
+    /**
+     * Starts receiving datagrams
+     */
+    void start() {
+        receiver.start();
+    }
+
+    /**
+     * Closes the socket, which stops the receiver
+     */
+    void close() {
+        try {
+            channel.close();
+
+        } catch(IOException e) {
+            logger.debug("Failed to close the UDP socket", e);
+        }
+    }
+
+    /**
+     * Returns the bound address
+     *
+     * @return The address, or null once closed
+     */
+    InetSocketAddress getAddress() {
+        try {
+            return (InetSocketAddress)channel.getLocalAddress();
+
+        } catch(IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the number of datagrams dropped: malformed, for unknown sessions, or
+     * entirely stale
+     *
+     * @return The count
+     */
+    long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Opens a session
+     *
+     * @return The token, or zero if too many sessions are open
+     */
+    long openSession() {
+        long token;
+
+        do {
+            token = random.nextLong();
+        } while(token == 0);
+
+        Session session = new Session(token);
+
+        for(int i = 0; i < MAX_SESSIONS; i++) {
+            if(sessions.get(i) == null && sessions.compareAndSet(i, null, session)) {
+                return token;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Closes a session
+     *
+     * @param token The token, zero is ignored
+     */
+    void closeSession(long token) {
+        for(int i = 0; token != 0 && i < MAX_SESSIONS; i++) {
+            Session session = sessions.get(i);
+
+            if(session != null && session.token == token) {
+                sessions.compareAndSet(i, session, null);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Receiver loop
+     */
+    private void receive() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(DATAGRAM_SIZE + 1);
+
+        while(channel.isOpen()) {
+            buffer.clear();
+
+            try {
+                channel.receive(buffer);
+
+            } catch(ClosedChannelException e) {
+                break;
+
+            } catch(IOException e) {
+                logger.error("Failed to receive a datagram", e);
+                continue;
+            }
+
+            if(buffer.position() != DATAGRAM_SIZE || !apply(buffer)) {
+                dropped++;
+            }
+        }
+    }
+
+    /**
+     * Applies the fresh updates of a datagram
+     *
+     * @param buffer The datagram
+     * @return False if the datagram was dropped entirely
+     */
+    private boolean apply(ByteBuffer buffer) {
+        Session session = find(buffer.getLong(0));
+
+        if(session == null) {
+            return false;
+        }
+
+        long sequence = buffer.getLong(8);
+        int mask = buffer.getInt(20);
+        int values = buffer.getInt(24);
+        int fresh = 0;
+
+        for(int pending = mask; pending != 0; pending &= pending - 1) {
+            int address = Integer.numberOfTrailingZeros(pending);
+
+            if(sequence > session.sequences[address] && BY_ADDRESS[address] != null) {
+                session.sequences[address] = sequence;
+                fresh |= 1 << address;
+            }
+        }
+
+        if(fresh == 0) {
+            return false;
+        }
+
+        // Only pins already provisioned as outputs, datagrams never provision; the rest
+        // would fail the whole write
+        for(int pending = fresh; pending != 0; pending &= pending - 1) {
+            int address = Integer.numberOfTrailingZeros(pending);
+            RpiPin pin = accessor.findGpio(BY_ADDRESS[address]);
+
+            if(!(pin instanceof OutputPin) || !pin.isValid()) {
+                fresh &= ~(1 << address);
+            }
+        }
+
+        try {
+            if(fresh != 0) {
+                accessor.writeMasked(fresh, values);
+            }
+
+            return true;
+
+        } catch(IllegalArgumentException | AccessorDownException e) {
+            // A pin was released in between, or the accessor is going down
+            return false;
+        }
+    }
+
+    /**
+     * Finds an open session
+     *
+     * @param token The token
+     * @return The session, or null if unknown
+     */
+    private Session find(long token) {
+        for(int i = 0; token != 0 && i < MAX_SESSIONS; i++) {
+            Session session = sessions.get(i);
+
+            if(session != null && session.token == token) {
+                return session;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * One client's output stream
+     */
+    private static class Session {
+        /*! The token */
+        final long token;
+        /*! Sequence number of the last update applied, per GPIO address, receiver only */
+        final long[] sequences = new long[Integer.SIZE];
+
+        /**
+         * @param token The token
+         */
+        Session(long token) {
+            this.token = token;
+        }
+    }
+}
\ No newline at end of file
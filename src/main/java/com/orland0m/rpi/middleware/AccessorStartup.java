@@ -0,0 +1,345 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.middleware;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.orland0m.rpi.middleware.pin.InputPin;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.PinAccessor;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Brings an accessor up in the background so the first real command does not pay for
+ * it: the backend is initialized, the pins of a StartupProfile are provisioned by a
+ * small pool of threads, and the read paths of those pins are run until the JIT has
+ * compiled them. Progress is exposed as a StartupState, and the time spent in each phase
+ * is kept for reporting.
+ *
+ * Warming up only reads the pins provisioned by the startup itself, it never writes, so
+ * it cannot race with a caller already driving an output or changing a pin's direction.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class AccessorStartup {
+    /*! Logger object reference */
+    final static Logger logger = Logger.getLogger(AccessorStartup.class);
+    /*! Every GPIO, cached because WiringPi.values() clones on each call */
+    private static final WiringPi[] GPIOS = WiringPi.values();
+    /*! The accessor brought up */
+    private final PinAccessor accessor;
+    /*! Backend initialization, null if there is none */
+    private final Runnable init;
+    /*! GPIO addresses provisioned as inputs */
+    private final int inputs;
+    /*! GPIO addresses provisioned as outputs */
+    private final int outputs;
+    /*! Threads provisioning pins */
+    private final int parallelism;
+    /*! Warm-up passes */
+    private final int warmupIterations;
+    /*! The startup thread */
+    private final Thread thread;
+    /*! Current phase, changed under this */
+    private volatile StartupState state = StartupState.NEW;
+    /*! Set once the backend initialization completed */
+    private volatile boolean initialized;
+    /*! Why the startup failed, null unless FAILED */
+    private volatile Throwable failure;
+    /*! Time spent initializing the backend */
+    private volatile long initNanos;
+    /*! Time spent provisioning pins */
+    private volatile long provisionNanos;
+    /*! Time spent warming up */
+    private volatile long warmupNanos;
+
+    /**
+     * Prepares the startup of an accessor, nothing runs until start is called
+     *
+     * @param accessor The accessor to bring up
+     * @param profile The pins and warm-up settings, copied
+     * @param init Backend initialization run first, null if there is none; accessors
+     *             that need it should call awaitInitialized before using the backend
+     * @throws IllegalArgumentException If a pin is declared both as input and output
+     */
+    public AccessorStartup(PinAccessor accessor, StartupProfile profile, Runnable init) {
+        if((profile.getInputs() & profile.getOutputs()) != 0) {
+            throw new IllegalArgumentException("Pins cannot be both inputs and outputs");
+        }
+
+        this.accessor = accessor;
+        this.init = init;
+        inputs = profile.getInputs();
+        outputs = profile.getOutputs();
+        parallelism = profile.getParallelism();
+        warmupIterations = profile.getWarmupIterations();
+        thread = new Thread(this::run, "rpi-startup");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts bringing the accessor up in the background
+     *
+     * @throws IllegalStateException If the startup was already started
+     */
+    public synchronized void start() {
+        if(state != StartupState.NEW) {
+            throw new IllegalStateException("Startup already started");
+        }
+
+        advance(StartupState.INITIALIZING);
+        thread.start();
+    }
+
+    /**
+     * Returns the current phase
+     *
+     * @return The startup state
+     */
+    public StartupState getState() {
+        return state;
+    }
+
+    /**
+     * Returns why the startup failed
+     *
+     * @return The failure, or null unless the state is FAILED
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Returns the time spent in a phase, zero for phases that did not complete
+     *
+     * @param phase INITIALIZING, PROVISIONING or WARMING_UP
+     * @return The phase duration in nanoseconds
+     */
+    public long getPhaseNanos(StartupState phase) {
+        switch(phase) {
+            case INITIALIZING:
+                return initNanos;
+
+            case PROVISIONING:
+                return provisionNanos;
+
+            case WARMING_UP:
+                return warmupNanos;
+
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Waits until every phase completed
+     *
+     * @param timeout Maximum time to wait
+     * @param unit The unit of the timeout
+     * @return True if ready, false if the timeout elapsed first
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     * @throws IllegalStateException If the startup failed
+     */
+    public synchronized boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException,
+        IllegalStateException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long remaining;
+
+        while(state != StartupState.READY && state != StartupState.FAILED
+            && (remaining = deadline - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+
+        if(state == StartupState.FAILED) {
+            throw new IllegalStateException("Accessor startup failed", failure);
+        }
+
+        return state == StartupState.READY;
+    }
+
+    /**
+     * Waits until the backend initialization completed, for accessors gating their
+     * backend calls on it. An interrupt does not end the wait, it is kept for the caller.
+     *
+     * @throws IllegalStateException If the backend initialization failed
+     */
+    public void awaitInitialized() throws IllegalStateException {
+        if(initialized) {
+            return;
+        }
+
+        boolean interrupted = false;
+
+        synchronized(this) {
+            while(!initialized && state != StartupState.FAILED) {
+                try {
+                    wait();
+
+                } catch(InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        if(!initialized) {
+            throw new IllegalStateException("Backend initialization failed", failure);
+        }
+    }
+
+    /**
+     * Runs every phase, on the startup thread
+     */
+    private void run() {
+        try {
+            long start = System.nanoTime();
+
+            if(init != null) {
+                init.run();
+            }
+
+            synchronized(this) {
+                initialized = true;
+                initNanos = System.nanoTime() - start;
+                advance(StartupState.PROVISIONING);
+            }
+
+            List<InputPin> ins = new ArrayList<>();
+            List<OutputPin> outs = new ArrayList<>();
+            start = System.nanoTime();
+            provision(ins, outs);
+            provisionNanos = System.nanoTime() - start;
+            advance(StartupState.WARMING_UP);
+
+            start = System.nanoTime();
+            warmUp(ins, outs);
+            warmupNanos = System.nanoTime() - start;
+            advance(StartupState.READY);
+
+            logger.info("Accessor ready: initialization " + TimeUnit.NANOSECONDS.toMillis(initNanos)
+                        + " ms, provisioning " + TimeUnit.NANOSECONDS.toMillis(provisionNanos)
+                        + " ms, warm-up " + TimeUnit.NANOSECONDS.toMillis(warmupNanos) + " ms");
+
+        } catch(RuntimeException | Error e) {
+            logger.error("Accessor startup failed during " + state, e);
+            failure = e;
+            advance(StartupState.FAILED);
+        }
+    }
+
+    /**
+     * Provisions the pins of the profile in parallel
+     *
+     * @param ins Receives the provisioned inputs
+     * @param outs Receives the provisioned outputs
+     */
+    private void provision(List<InputPin> ins, List<OutputPin> outs) {
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, task -> {
+            Thread worker = new Thread(task, "rpi-startup-provision");
+            worker.setDaemon(true);
+            return worker;
+        });
+
+        try {
+            List<Future<InputPin>> pendingIns = new ArrayList<>();
+            List<Future<OutputPin>> pendingOuts = new ArrayList<>();
+
+            for(WiringPi gpio : GPIOS) {
+                int bit = 1 << gpio.getGpioAddress();
+
+                if((inputs & bit) != 0) {
+                    pendingIns.add(pool.submit(() -> accessor.getInGpio(gpio)));
+
+                } else if((outputs & bit) != 0) {
+                    pendingOuts.add(pool.submit(() -> accessor.getOutGpio(gpio)));
+                }
+            }
+
+            for(Future<InputPin> provisioned : pendingIns) {
+                ins.add(provisioned.get());
+            }
+
+            for(Future<OutputPin> provisioned : pendingOuts) {
+                outs.add(provisioned.get());
+            }
+
+        } catch(ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException)e.getCause()
+                : new IllegalStateException(e.getCause());
+
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while provisioning pins", e);
+
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the read paths of the pins provisioned by the startup. Pins invalidated in the
+     * meantime only report INVALIDATED, they are never provisioned again.
+     *
+     * @param ins The provisioned inputs
+     * @param outs The provisioned outputs
+     */
+    private void warmUp(List<InputPin> ins, List<OutputPin> outs) {
+        if(ins.isEmpty() && outs.isEmpty()) {
+            return;
+        }
+
+        for(int i = 0; i < warmupIterations; i++) {
+            for(InputPin in : ins) {
+                in.tryRead();
+            }
+
+            for(OutputPin out : outs) {
+                out.tryRead();
+            }
+
+            accessor.readAll();
+        }
+    }
+
+    /**
+     * Moves to the next phase and wakes every waiting thread
+     *
+     * @param next The new phase
+     */
+    private synchronized void advance(StartupState next) {
+        state = next;
+        notifyAll();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,223 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.middleware;
+
+import com.orland0m.rpi.middleware.event.Edge;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Settings for a LogicCapture. The defaults sample nothing at 1 kHz and trigger at once,
+ * with no pre-trigger window and a 1000 sample post-trigger window.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class CaptureConfig {
+    /*! Trigger kind: the first sample */
+    static final int TRIGGER_NONE = 0;
+    /*! Trigger kind: a sample matching a pattern */
+    static final int TRIGGER_PATTERN = 1;
+    /*! Trigger kind: an edge on a pin */
+    static final int TRIGGER_EDGE = 2;
+    /*! GPIO addresses sampled */
+    private int pins;
+    /*! Samples per second */
+    private double sampleRateHz = 1000;
+    /*! Samples kept before the trigger */
+    private int preTrigger;
+    /*! Samples kept after the trigger */
+    private int postTrigger = 1000;
+    /*! One of the TRIGGER constants */
+    private int triggerKind = TRIGGER_NONE;
+    /*! Pattern trigger: pins compared; edge trigger: the pin watched */
+    private int triggerMask;
+    /*! Pattern trigger: levels the pins must have */
+    private int triggerValue;
+    /*! Edge trigger: whether rising edges trigger */
+    private boolean triggerRising;
+    /*! Edge trigger: whether falling edges trigger */
+    private boolean triggerFalling;
+
+    /**
+     * Returns the GPIO addresses sampled
+     *
+     * @return Bitmask of GPIO addresses
+     */
+    public int getPins() {
+        return pins;
+    }
+
+    /**
+     * Sets the pins sampled, they must be provisioned on the accessor before the capture
+     * starts
+     *
+     * @param pins Bitmask of GPIO addresses, see PinSet#mask
+     */
+    public void setPins(int pins) {
+        this.pins = pins;
+    }
+
+    /**
+     * Returns the sample rate
+     *
+     * @return Samples per second
+     */
+    public double getSampleRateHz() {
+        return sampleRateHz;
+    }
+
+    /**
+     * Sets the sample rate
+     *
+     * @param sampleRateHz Samples per second, up to 1 MHz
+     */
+    public void setSampleRateHz(double sampleRateHz) {
+        if(!(sampleRateHz > 0) || sampleRateHz > 1_000_000) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1 MHz: " + sampleRateHz);
+        }
+
+        this.sampleRateHz = sampleRateHz;
+    }
+
+    /**
+     * Returns the number of samples kept before the trigger
+     *
+     * @return The pre-trigger window
+     */
+    public int getPreTrigger() {
+        return preTrigger;
+    }
+
+    /**
+     * Sets the number of samples kept before the trigger. The trigger is only armed once
+     * this many samples were taken.
+     *
+     * @param samples The pre-trigger window
+     */
+    public void setPreTrigger(int samples) {
+        if(samples < 0) {
+            throw new IllegalArgumentException("Pre-trigger window cannot be negative");
+        }
+
+        this.preTrigger = samples;
+    }
+
+    /**
+     * Returns the number of samples kept after the trigger
+     *
+     * @return The post-trigger window
+     */
+    public int getPostTrigger() {
+        return postTrigger;
+    }
+
+    /**
+     * Sets the number of samples kept after the trigger sample
+     *
+     * @param samples The post-trigger window
+     */
+    public void setPostTrigger(int samples) {
+        if(samples < 0) {
+            throw new IllegalArgumentException("Post-trigger window cannot be negative");
+        }
+
+        this.postTrigger = samples;
+    }
+
+    /**
+     * Triggers on the first sample where the given pins have the given levels
+     *
+     * @param mask The pins compared, see PinSet#mask
+     * @param value Levels they must have
+     */
+    public void setPatternTrigger(int mask, int value) {
+        triggerKind = TRIGGER_PATTERN;
+        triggerMask = mask;
+        triggerValue = value & mask;
+    }
+
+    /**
+     * Triggers on the first edge of a pin
+     *
+     * @param gpio The pin, it must be sampled
+     * @param edge RISING or FALLING, null triggers on both
+     */
+    public void setEdgeTrigger(WiringPi gpio, Edge edge) {
+        triggerKind = TRIGGER_EDGE;
+        triggerMask = 1 << gpio.getGpioAddress();
+        triggerRising = edge != Edge.FALLING;
+        triggerFalling = edge != Edge.RISING;
+    }
+
+    /**
+     * Triggers on the first sample
+     */
+    public void clearTrigger() {
+        triggerKind = TRIGGER_NONE;
+    }
+
+    /**
+     * Returns the trigger kind
+     *
+     * @return One of the TRIGGER constants
+     */
+    int getTriggerKind() {
+        return triggerKind;
+    }
+
+    /**
+     * Returns the pins the trigger looks at
+     *
+     * @return Bitmask of GPIO addresses
+     */
+    int getTriggerMask() {
+        return triggerMask;
+    }
+
+    /**
+     * Returns the levels a pattern trigger waits for
+     *
+     * @return Bitmask of levels
+     */
+    int getTriggerValue() {
+        return triggerValue;
+    }
+
+    /**
+     * Returns whether rising edges trigger an edge trigger
+     *
+     * @return True if they do
+     */
+    boolean isTriggerRising() {
+        return triggerRising;
+    }
+
+    /**
+     * Returns whether falling edges trigger an edge trigger
+     *
+     * @return True if they do
+     */
+    boolean isTriggerFalling() {
+        return triggerFalling;
+    }
+}
\ No newline at end of file
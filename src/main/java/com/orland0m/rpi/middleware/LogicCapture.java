@@ -0,0 +1,478 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.middleware;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+
+import com.orland0m.rpi.middleware.pin.PinAccessor;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Logic analyzer style capture: a dedicated thread samples a set of input pins with
+ * PinAccessor#readAll at a fixed rate, one bitmask per tick, into a preallocated direct
+ * ByteBuffer ring sized for the pre-trigger and post-trigger windows. Ticks are hit by
+ * parking and spinning as WaveformPlayer does. Sampling neither allocates nor boxes.
+ *
+ * Once the pre-trigger window is full the trigger is armed; the capture ends when the
+ * post-trigger window after the trigger sample is full. Ticks the thread missed, when
+ * it was descheduled for longer than a period, are filled with the next sample taken so
+ * sample indexes keep matching time; getMissedSamples counts them.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class LogicCapture implements Closeable {
+    /*! Logger object reference */
+    final static Logger logger = Logger.getLogger(LogicCapture.class);
+    /*! Bytes per sample */
+    private static final int SAMPLE_SIZE = 4;
+    /*! The accessor sampled */
+    private final PinAccessor accessor;
+    /*! GPIO addresses sampled */
+    private final int pins;
+    /*! Tick length */
+    private final long periodNanos;
+    /*! Samples kept before the trigger */
+    private final int preTrigger;
+    /*! Samples kept after the trigger */
+    private final int postTrigger;
+    /*! One of the CaptureConfig.TRIGGER constants */
+    private final int triggerKind;
+    /*! Pins the trigger looks at */
+    private final int triggerMask;
+    /*! Levels a pattern trigger waits for */
+    private final int triggerValue;
+    /*! Whether rising edges trigger */
+    private final boolean triggerRising;
+    /*! Whether falling edges trigger */
+    private final boolean triggerFalling;
+    /*! Sample ring, off heap */
+    private final ByteBuffer ring;
+    /*! Ring capacity in samples */
+    private final int capacity;
+    /*! The sampling thread */
+    private final Thread thread;
+    /*! Samples written since the capture started, only written by the sampling thread */
+    private volatile long written;
+    /*! Absolute index of the trigger sample, -1 until triggered */
+    private volatile long triggerIndex = -1;
+    /*! Ticks filled in because the thread was late */
+    private volatile long missedSamples;
+    /*! Whether a capture is in progress, guarded by this */
+    private boolean running;
+    /*! Bumped by start and stop, so the sampling thread notices */
+    private volatile int generation;
+    /*! Set once closed, guarded by this */
+    private boolean closed;
+
+    /**
+     * Allocates the ring and starts an idle sampling thread. The settings are copied.
+     *
+     * @param accessor The accessor sampled, the pins must be provisioned on it
+     * @param config The capture settings
+     */
+    public LogicCapture(PinAccessor accessor, CaptureConfig config) {
+        this.accessor = accessor;
+        pins = config.getPins();
+        periodNanos = Math.max(1, Math.round(1_000_000_000L / config.getSampleRateHz()));
+        preTrigger = config.getPreTrigger();
+        postTrigger = config.getPostTrigger();
+        triggerKind = config.getTriggerKind();
+        triggerMask = config.getTriggerMask();
+        triggerValue = config.getTriggerValue();
+        triggerRising = config.isTriggerRising();
+        triggerFalling = config.isTriggerFalling();
+        capacity = preTrigger + postTrigger + 1;
+        ring = ByteBuffer.allocateDirect(capacity * SAMPLE_SIZE);
+        thread = new Thread(this::run, "rpi-capture");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Starts a new capture, discarding the previous one
+     *
+     * @throws IllegalStateException If the capture has been closed
+     */
+    public synchronized void start() throws IllegalStateException {
+        if(closed) {
+            throw new IllegalStateException("Capture has been closed");
+        }
+
+        running = true;
+        generation++;
+        notifyAll();
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Stops sampling, what was captured so far can still be exported
+     */
+    public synchronized void stop() {
+        running = false;
+        generation++;
+        notifyAll();
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Returns whether a capture is in progress
+     *
+     * @return True until the post-trigger window is full or the capture is stopped
+     */
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Returns whether the trigger fired
+     *
+     * @return True once the trigger sample was taken
+     */
+    public boolean isTriggered() {
+        return triggerIndex >= 0;
+    }
+
+    /**
+     * Waits until the capture ends
+     *
+     * @param timeout Maximum time to wait
+     * @param unit The unit of the timeout argument
+     * @return True if the capture is not running anymore
+     * @throws InterruptedException If the calling thread is interrupted
+     */
+    public synchronized boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        while(running) {
+            long remaining = deadline - System.nanoTime();
+
+            if(remaining <= 0) {
+                return false;
+            }
+
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the number of ticks filled in because the sampling thread was late
+     *
+     * @return The missed tick count
+     */
+    public long getMissedSamples() {
+        return missedSamples;
+    }
+
+    /**
+     * Returns the time between samples
+     *
+     * @return The tick length in nanoseconds
+     */
+    public long getPeriodNanos() {
+        return periodNanos;
+    }
+
+    /**
+     * Returns the number of samples held, at most the pre-trigger and post-trigger
+     * windows plus the trigger sample
+     *
+     * @return The sample count
+     */
+    public int getSampleCount() {
+        return (int)Math.min(written, capacity);
+    }
+
+    /**
+     * Returns the index of the trigger sample among the samples held
+     *
+     * @return The index, -1 if the trigger did not fire
+     */
+    public int getTriggerPosition() {
+        long trigger = triggerIndex;
+        return trigger < 0 ? -1 : (int)(trigger - first());
+    }
+
+    /**
+     * Returns a sample held
+     *
+     * @param index The sample index, from 0 to getSampleCount
+     * @return Levels of the sampled pins
+     */
+    public int getSample(int index) {
+        if(index < 0 || index >= getSampleCount()) {
+            throw new IndexOutOfBoundsException("No sample " + index);
+        }
+
+        return ring.getInt((int)((first() + index) % capacity) * SAMPLE_SIZE);
+    }
+
+    /**
+     * Streams the samples held as runs of identical levels. Sample offsets are relative
+     * to the trigger sample, or to the first sample if the trigger did not fire.
+     *
+     * @param sink Receives the runs
+     * @throws IllegalStateException If the capture is still running
+     */
+    public void export(CaptureSink sink) throws IllegalStateException {
+        assertStopped();
+        int count = getSampleCount();
+        int trigger = Math.max(0, getTriggerPosition());
+        int runStart = 0;
+
+        for(int i = 1; i <= count; i++) {
+            if(i == count || getSample(i) != getSample(runStart)) {
+                sink.onRun(runStart - trigger, getSample(runStart), i - runStart);
+                runStart = i;
+            }
+        }
+    }
+
+    /**
+     * Writes the samples held as a Value Change Dump, readable by waveform viewers such
+     * as GTKWave. Time zero is the trigger sample.
+     *
+     * @param out Where the dump is written
+     * @throws IOException If writing fails
+     * @throws IllegalStateException If the capture is still running
+     */
+    public void writeVcd(final Appendable out) throws IOException, IllegalStateException {
+        assertStopped();
+        out.append("$timescale 1 ns $end\n$scope module rpi $end\n");
+
+        for(WiringPi gpio : WiringPi.values()) {
+            if((pins & (1 << gpio.getGpioAddress())) != 0) {
+                out.append("$var wire 1 ").append(vcdId(gpio.getGpioAddress())).append(' ')
+                .append(gpio.toString()).append(" $end\n");
+            }
+        }
+
+        out.append("$upscope $end\n$enddefinitions $end\n");
+        final int[] previous = {0};
+        final boolean[] first = {true};
+        final IOException[] failure = new IOException[1];
+
+        export((offset, levels, length) -> {
+            int changed = first[0] ? pins : (levels ^ previous[0]) & pins;
+
+            try {
+                out.append('#').append(Long.toString(offset * periodNanos)).append('\n');
+
+                for(; changed != 0; changed &= changed - 1) {
+                    int address = Integer.numberOfTrailingZeros(changed);
+                    out.append((levels & (1 << address)) != 0 ? '1' : '0').append(vcdId(address)).append('\n');
+                }
+
+            } catch(IOException e) {
+                failure[0] = e;
+            }
+
+            previous[0] = levels;
+            first[0] = false;
+        });
+
+        if(failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        stop();
+    }
+
+    /**
+     * Ensures no capture is in progress
+     *
+     * @throws IllegalStateException If one is
+     */
+    private void assertStopped() throws IllegalStateException {
+        if(isRunning()) {
+            throw new IllegalStateException("Capture is still running");
+        }
+    }
+
+    /**
+     * Returns the absolute index of the oldest sample held
+     *
+     * @return The index
+     */
+    private long first() {
+        return Math.max(0, written - capacity);
+    }
+
+    /**
+     * Returns the Value Change Dump identifier of a pin
+     *
+     * @param address The GPIO address
+     * @return A single printable character
+     */
+    private static char vcdId(int address) {
+        return (char)('!' + address);
+    }
+
+    /**
+     * Sampling thread loop: waits for start and runs captures
+     */
+    private void run() {
+        while(true) {
+            int sampling;
+
+            synchronized(this) {
+                while(!running && !closed) {
+                    try {
+                        wait();
+
+                    } catch(InterruptedException e) {
+                        // Only close stops the thread
+                    }
+                }
+
+                if(closed) {
+                    return;
+                }
+
+                sampling = generation;
+            }
+
+            if(capture(sampling)) {
+                synchronized(this) {
+                    if(generation == sampling) {
+                        running = false;
+                        notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Samples until the post-trigger window is full
+     *
+     * @param sampling Generation being captured
+     * @return True if the capture completed, false if it was stopped or restarted
+     */
+    private boolean capture(int sampling) {
+        written = 0;
+        triggerIndex = -1;
+        missedSamples = 0;
+        long deadline = System.nanoTime();
+        long index = 0;
+        long end = Long.MAX_VALUE;
+        int previous = 0;
+
+        while(index < end) {
+            if(!waitUntil(deadline, sampling)) {
+                return false;
+            }
+
+            int sample;
+
+            try {
+                sample = accessor.readAll() & pins;
+
+            } catch(RuntimeException e) {
+                logger.error("Capture stopped, sampling failed", e);
+                return true;
+            }
+
+            // Ticks missed while descheduled repeat this sample
+            long late = (System.nanoTime() - deadline) / periodNanos;
+
+            for(long tick = 0; tick <= late && index < end; tick++) {
+                ring.putInt((int)(index % capacity) * SAMPLE_SIZE, sample);
+
+                if(end == Long.MAX_VALUE && index >= preTrigger && triggers(index, previous, sample)) {
+                    triggerIndex = index;
+                    end = index + postTrigger + 1;
+                }
+
+                previous = sample;
+                written = ++index;
+            }
+
+            missedSamples += late;
+            deadline += (late + 1) * periodNanos;
+        }
+
+        return true;
+    }
+
+    /**
+     * Evaluates the trigger for a sample
+     *
+     * @param index Absolute index of the sample
+     * @param previous The previous sample
+     * @param sample The sample
+     * @return True if the trigger fires
+     */
+    private boolean triggers(long index, int previous, int sample) {
+        switch(triggerKind) {
+            case CaptureConfig.TRIGGER_PATTERN:
+                return (sample & triggerMask) == triggerValue;
+
+            case CaptureConfig.TRIGGER_EDGE:
+                int changed = index == 0 ? 0 : (sample ^ previous) & triggerMask;
+                return (triggerRising && (changed & sample) != 0)
+                       || (triggerFalling && (changed & ~sample) != 0);
+
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Parks until shortly before a deadline, then spins until it is reached
+     *
+     * @param deadline The deadline, as System#nanoTime
+     * @param sampling Generation being captured
+     * @return True once the deadline is reached, false if the capture was stopped or
+     * restarted meanwhile
+     */
+    private boolean waitUntil(long deadline, int sampling) {
+        while(generation == sampling) {
+            long remaining = deadline - System.nanoTime();
+
+            if(remaining <= 0) {
+                return true;
+
+            } else if(remaining > WaveformPlayer.DEFAULT_SPIN_NANOS) {
+                LockSupport.parkNanos(this, remaining - WaveformPlayer.DEFAULT_SPIN_NANOS);
+            }
+        }
+
+        return false;
+    }
+}
\ No newline at end of file
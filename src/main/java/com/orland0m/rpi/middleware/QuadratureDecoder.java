@@ -0,0 +1,151 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.middleware;
+
+import com.orland0m.rpi.middleware.event.PinEvent;
+import com.orland0m.rpi.middleware.exception.InvalidatedPinException;
+import com.orland0m.rpi.middleware.pin.InputPin;
+
+/**
+ * Quadrature decoder for rotary encoders wired to a pair of input pins. Every edge of
+ * either channel moves the position by one step (4x decoding), forward when channel A
+ * leads channel B. An edge that reports the level its channel already had means the
+ * opposite edge was missed, so the step cannot be decoded and is counted as an error
+ * instead; that usually happens when the encoder turns faster than edges are reported
+ * or a debounce filter is too slow.
+ *
+ * Decoding runs on the pins' event threads as a plain listener, the position and error
+ * count are published in volatile fields so reading them never blocks decoding.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class QuadratureDecoder {
+    /*! Step for every previous and current state pair, indexed by previous << 2 | current
+     * where a state is A << 1 | B. Edges change one channel at a time, so pairs that
+     * differ in both channels never occur. */
+    private static final int[] STEPS = {
+         0, -1,  1,  0,
+         1,  0,  0, -1,
+        -1,  0,  0,  1,
+         0,  1, -1,  0
+    };
+    /*! Channel A, leads when turning forward */
+    private final InputPin channelA;
+    /*! Channel B */
+    private final InputPin channelB;
+    /*! Current state, guarded by this */
+    private int state;
+    /*! Steps counted, forward is positive; only written under this */
+    private volatile long position;
+    /*! Transitions that could not be decoded; only written under this */
+    private volatile long errors;
+    /*! Direction of the last step, 1, -1 or 0 before the first step */
+    private volatile int direction;
+
+    /**
+     * Starts decoding the given pins, from their current levels
+     *
+     * @param channelA Channel A input pin
+     * @param channelB Channel B input pin
+     * @throws InvalidatedPinException If either pin object has already been invalidated
+     * @throws IllegalArgumentException If both channels are the same pin
+     */
+    public QuadratureDecoder(InputPin channelA, InputPin channelB) throws InvalidatedPinException {
+        if(channelA == channelB) {
+            throw new IllegalArgumentException("Channels must be different pins");
+        }
+
+        this.channelA = channelA;
+        this.channelB = channelB;
+
+        synchronized(this) {
+            state = (channelA.isUp() ? 2 : 0) | (channelB.isUp() ? 1 : 0);
+        }
+
+        channelA.addEventListener(this::onEdge);
+        channelB.addEventListener(this::onEdge);
+    }
+
+    /**
+     * Returns the steps counted so far, forward is positive
+     *
+     * @return The position
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the direction of the last step
+     *
+     * @return 1 forward, -1 backward, 0 before the first step
+     */
+    public int getDirection() {
+        return direction;
+    }
+
+    /**
+     * Returns the number of transitions that could not be decoded
+     *
+     * @return The error count
+     */
+    public long getErrorCount() {
+        return errors;
+    }
+
+    /**
+     * Sets the position back to zero and clears the error count
+     */
+    public synchronized void reset() {
+        position = 0;
+        errors = 0;
+        direction = 0;
+    }
+
+    /**
+     * Decodes an edge of either channel
+     *
+     * @param event The edge
+     */
+    private synchronized void onEdge(PinEvent event) {
+        int current;
+
+        if(event.getPin() == channelA) {
+            current = (state & 1) | (event.isHigh() ? 2 : 0);
+
+        } else {
+            current = (state & 2) | (event.isHigh() ? 1 : 0);
+        }
+
+        if(current == state) {
+            errors++;
+            return;
+        }
+
+        int step = STEPS[state << 2 | current];
+        state = current;
+        position += step;
+        direction = step;
+    }
+}
\ No newline at end of file
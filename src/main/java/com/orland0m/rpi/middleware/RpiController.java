@@ -23,18 +23,34 @@
  */
 package com.orland0m.rpi.middleware;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+
 import com.orland0m.rpi.access.local.LocalPinAccessor;
+import com.orland0m.rpi.access.mmap.MappedPinAccessor;
 import com.orland0m.rpi.access.rest.RestConfig;
+import com.orland0m.rpi.access.rest.RestPinAccessor;
+import com.orland0m.rpi.access.sim.SimulatedPinAccessor;
+import com.orland0m.rpi.access.sim.SimulationConfig;
+import com.orland0m.rpi.access.tcp.TcpConfig;
+import com.orland0m.rpi.access.tcp.TcpPinAccessor;
 import com.orland0m.rpi.middleware.exception.AccessorDownException;
+import com.orland0m.rpi.middleware.exception.InvalidatedPinException;
 import com.orland0m.rpi.middleware.exception.PinBusyException;
+import com.orland0m.rpi.middleware.journal.PinJournal;
+import com.orland0m.rpi.middleware.journal.PinSnapshot;
+import com.orland0m.rpi.middleware.metrics.PinMetrics;
 import com.orland0m.rpi.middleware.pin.InputPin;
 import com.orland0m.rpi.middleware.pin.OutputPin;
 import com.orland0m.rpi.middleware.pin.PinAccessor;
+import com.orland0m.rpi.middleware.pin.PinLease;
+import com.orland0m.rpi.middleware.pin.RpiPin;
 import com.orland0m.rpi.middleware.pin.WiringPi;
 
 /**
  * Middleware class used to have transparent access to GPIO. This class
- * can use a local pin accessor or a REST based PIN accessor
+ * can use a local pin accessor, or a REST or TCP based PIN accessor
  *
  * @author Orlando Miramontes <https://github.com/orland0m>
  */
@@ -42,9 +58,23 @@ public class RpiController implements PinAccessor {
     /*! Middleware object for pin access */
     private PinAccessor middleware;
 
+    /**
+     * Initializes a controller object that uses the pins of a remote RestGateway
+     *
+     * @param config The gateway address, API key and connection settings
+     */
     public RpiController(RestConfig config) {
-        // Will create a rest based pin accessor
-        throw new UnsupportedOperationException("Not supported yet.");
+        middleware = new RestPinAccessor(config);
+    }
+
+    /**
+     * Initializes a controller object that uses the pins of a remote TcpGateway, for
+     * latency sensitive clients
+     *
+     * @param config The gateway address, API key and connection settings
+     */
+    public RpiController(TcpConfig config) {
+        middleware = new TcpPinAccessor(config);
     }
 
     /**
@@ -54,6 +84,52 @@ public class RpiController implements PinAccessor {
         middleware = new LocalPinAccessor();
     }
 
+    /**
+     * Initializes a controller object that uses the given local backend
+     *
+     * @param mode The local backend to use
+     * @throws UncheckedIOException If the memory mapped backend cannot map the GPIO registers
+     */
+    public RpiController(LocalMode mode) throws UncheckedIOException {
+        switch(mode) {
+            case MEMORY_MAPPED:
+                try {
+                    middleware = new MappedPinAccessor();
+
+                } catch(IOException e) {
+                    throw new UncheckedIOException("Unable to map the GPIO registers", e);
+                }
+
+                break;
+
+            default:
+                middleware = new LocalPinAccessor();
+                break;
+        }
+    }
+
+    /**
+     * Initializes a controller object that uses a simulated board, no hardware needed
+     *
+     * @param config The simulation settings
+     */
+    public RpiController(SimulationConfig config) {
+        middleware = new SimulatedPinAccessor(config);
+    }
+
+    /**
+     * Initializes a controller object on top of an already built pin accessor
+     *
+     * @param middleware The pin accessor to use
+     */
+    public RpiController(PinAccessor middleware) {
+        if(middleware == null) {
+            throw new NullPointerException("Pin accessor must be a valid object");
+        }
+
+        this.middleware = middleware;
+    }
+
     /* (non-Javadoc)
      * @see com.orland0m.rpi.middleware.pin.PinAccessor#shutdown()
      */
@@ -72,6 +148,38 @@ public class RpiController implements PinAccessor {
         return middleware.isDown();
     }
 
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#getMetrics()
+     */
+    @Override
+    public PinMetrics getMetrics() {
+        return middleware.getMetrics();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#setJournal(com.orland0m.rpi.middleware.journal.PinJournal)
+     */
+    @Override
+    public void setJournal(PinJournal journal) {
+        middleware.setJournal(journal);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#setSnapshot(com.orland0m.rpi.middleware.journal.PinSnapshot)
+     */
+    @Override
+    public void setSnapshot(PinSnapshot snapshot) {
+        middleware.setSnapshot(snapshot);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#restore(com.orland0m.rpi.middleware.journal.PinSnapshot)
+     */
+    @Override
+    public int restore(PinSnapshot snapshot) throws PinBusyException, AccessorDownException {
+        return middleware.restore(snapshot);
+    }
+
     /* (non-Javadoc)
      * @see com.orland0m.rpi.middleware.pin.PinAccessor#getInPin(int)
      */
@@ -143,4 +251,72 @@ public class RpiController implements PinAccessor {
         AccessorDownException, AccessorDownException {
         return middleware.getOutGpio(gpio);
     }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#readAll()
+     */
+    @Override
+    public int readAll() throws AccessorDownException {
+        return middleware.readAll();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#writeMasked(int, int)
+     */
+    @Override
+    public void writeMasked(int mask, int values) throws IllegalArgumentException,
+        AccessorDownException {
+        middleware.writeMasked(mask, values);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#flush()
+     */
+    @Override
+    public void flush() throws PinBusyException, InvalidatedPinException, AccessorDownException {
+        middleware.flush();
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#tryGetInGpio(com.orland0m.rpi.middleware.pin.WiringPi)
+     */
+    @Override
+    public InputPin tryGetInGpio(WiringPi gpio) {
+        return middleware.tryGetInGpio(gpio);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#tryGetOutGpio(com.orland0m.rpi.middleware.pin.WiringPi)
+     */
+    @Override
+    public OutputPin tryGetOutGpio(WiringPi gpio) {
+        return middleware.tryGetOutGpio(gpio);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#findGpio(com.orland0m.rpi.middleware.pin.WiringPi)
+     */
+    @Override
+    public RpiPin findGpio(WiringPi gpio) {
+        return middleware.findGpio(gpio);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#tryAcquire(com.orland0m.rpi.middleware.pin.WiringPi)
+     */
+    @Override
+    public PinLease tryAcquire(WiringPi gpio) throws IllegalArgumentException,
+        InvalidatedPinException, AccessorDownException {
+        return middleware.tryAcquire(gpio);
+    }
+
+    /* (non-Javadoc)
+     * @see com.orland0m.rpi.middleware.pin.PinAccessor#acquire(com.orland0m.rpi.middleware.pin.WiringPi, long, java.util.concurrent.TimeUnit)
+     */
+    @Override
+    public PinLease acquire(WiringPi gpio, long timeout, TimeUnit unit)
+    throws IllegalArgumentException, InvalidatedPinException, AccessorDownException,
+        InterruptedException {
+        return middleware.acquire(gpio, timeout, unit);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,513 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.middleware;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+
+import com.orland0m.rpi.middleware.metrics.LatencyHistogram;
+import com.orland0m.rpi.middleware.pin.PinAccessor;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Software PWM for pins without hardware PWM, every channel driven from one timing
+ * thread. The next edge of each channel is kept in a min-heap, so the thread always
+ * waits for the earliest edge of all channels; edges due at the same time are written
+ * together with a single PinAccessor#writeMasked call. Waiting parks until shortly
+ * before the edge and spins the rest of the way, as WaveformPlayer does.
+ *
+ * Settings are published as immutable snapshots. A channel picks up a new frequency or
+ * duty cycle at the start of its next period, so updates never cut a pulse short and
+ * updates made through one call apply to all their channels in the same period.
+ *
+ * Pins must be provisioned as outputs first. Channels are driven low when removed and
+ * when the engine is closed.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class SoftwarePwm implements Closeable {
+    /*! Logger object reference */
+    final static Logger logger = Logger.getLogger(SoftwarePwm.class);
+    /*! Number of GPIO addresses */
+    private static final int CHANNELS = 32;
+    /*! The accessor written to */
+    private final PinAccessor accessor;
+    /*! Time spent spinning before an edge */
+    private final long spinNanos;
+    /*! The timing thread */
+    private final Thread thread;
+    /*! Lateness of every edge */
+    private final LatencyHistogram timingErrors = new LatencyHistogram();
+    /*! Period and high time of every channel, interleaved by GPIO address; a zero
+     * period means the channel is off. Replaced, never modified, once published. */
+    private volatile long[] settings = new long[CHANNELS * 2];
+    /*! Set once closed */
+    private volatile boolean closed;
+    /*! Largest lateness seen, only written by the timing thread */
+    private volatile long maxErrorNanos;
+    /*! Mask writes performed, only written by the timing thread */
+    private volatile long writes;
+    /*! Mask writes that failed, only written by the timing thread */
+    private volatile long failedWrites;
+    /*! Channels ordered by next edge, timing thread only */
+    private final int[] heap = new int[CHANNELS];
+    /*! Number of channels in the heap, timing thread only */
+    private int size;
+    /*! Next edge of every channel, timing thread only */
+    private final long[] nextEdge = new long[CHANNELS];
+    /*! Start of the current period of every channel, timing thread only */
+    private final long[] periodStart = new long[CHANNELS];
+    /*! Period of the current period of every channel, timing thread only */
+    private final long[] period = new long[CHANNELS];
+    /*! Whether every channel's next edge starts a period, timing thread only */
+    private final boolean[] atStart = new boolean[CHANNELS];
+    /*! Levels last written, timing thread only */
+    private int levels;
+
+    /**
+     * Starts an engine with no channels and the default spin time
+     *
+     * @param accessor The accessor written to
+     */
+    public SoftwarePwm(PinAccessor accessor) {
+        this(accessor, WaveformPlayer.DEFAULT_SPIN_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Starts an engine with no channels
+     *
+     * @param accessor The accessor written to
+     * @param spin Time spent spinning before each edge, zero only parks
+     * @param unit The unit of the spin argument
+     */
+    public SoftwarePwm(PinAccessor accessor, long spin, TimeUnit unit) {
+        if(spin < 0) {
+            throw new IllegalArgumentException("Spin time cannot be negative");
+        }
+
+        this.accessor = accessor;
+        this.spinNanos = unit.toNanos(spin);
+        thread = new Thread(this::run, "rpi-pwm");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Drives a pin, or changes the frequency and duty cycle of a pin already driven
+     *
+     * @param gpio The pin
+     * @param frequencyHz Periods per second
+     * @param duty Fraction of the period spent high, from 0 to 1
+     * @throws IllegalArgumentException If the frequency or duty cycle is out of range
+     */
+    public void set(WiringPi gpio, double frequencyHz, double duty) throws IllegalArgumentException {
+        set(1 << gpio.getGpioAddress(), frequencyHz, duty);
+    }
+
+    /**
+     * Drives many pins with the same frequency and duty cycle, in one update
+     *
+     * @param mask The pins, see PinSet#mask
+     * @param frequencyHz Periods per second
+     * @param duty Fraction of the period spent high, from 0 to 1
+     * @throws IllegalArgumentException If the frequency or duty cycle is out of range
+     */
+    public synchronized void set(int mask, double frequencyHz, double duty) throws IllegalArgumentException {
+        if(!(frequencyHz > 0) || frequencyHz > 1_000_000) {
+            throw new IllegalArgumentException("Frequency must be between 0 and 1 MHz: " + frequencyHz);
+        }
+
+        assertDuty(duty);
+        long periodNanos = Math.round(1_000_000_000L / frequencyHz);
+        long[] next = settings.clone();
+
+        for(int bits = mask; bits != 0; bits &= bits - 1) {
+            int address = Integer.numberOfTrailingZeros(bits);
+            next[address * 2] = periodNanos;
+            next[address * 2 + 1] = Math.round(periodNanos * duty);
+        }
+
+        publish(next);
+    }
+
+    /**
+     * Changes the duty cycle of pins already driven, in one update
+     *
+     * @param mask The pins, see PinSet#mask
+     * @param duty Fraction of the period spent high, from 0 to 1
+     * @throws IllegalArgumentException If the duty cycle is out of range
+     * @throws IllegalStateException If a pin is not driven
+     */
+    public synchronized void setDuty(int mask, double duty) throws IllegalArgumentException,
+        IllegalStateException {
+        assertDuty(duty);
+        long[] next = settings.clone();
+
+        for(int bits = mask; bits != 0; bits &= bits - 1) {
+            int address = Integer.numberOfTrailingZeros(bits);
+
+            if(next[address * 2] == 0) {
+                throw new IllegalStateException("GPIO address " + address + " is not driven");
+            }
+
+            next[address * 2 + 1] = Math.round(next[address * 2] * duty);
+        }
+
+        publish(next);
+    }
+
+    /**
+     * Changes the duty cycle of a pin already driven
+     *
+     * @param gpio The pin
+     * @param duty Fraction of the period spent high, from 0 to 1
+     * @throws IllegalArgumentException If the duty cycle is out of range
+     * @throws IllegalStateException If the pin is not driven
+     */
+    public void setDuty(WiringPi gpio, double duty) throws IllegalArgumentException, IllegalStateException {
+        setDuty(1 << gpio.getGpioAddress(), duty);
+    }
+
+    /**
+     * Stops driving a pin and drives it low, nothing happens if it is not driven
+     *
+     * @param gpio The pin
+     */
+    public synchronized void remove(WiringPi gpio) {
+        int address = gpio.getGpioAddress();
+
+        if(settings[address * 2] != 0) {
+            long[] next = settings.clone();
+            next[address * 2] = 0;
+            next[address * 2 + 1] = 0;
+            publish(next);
+        }
+    }
+
+    /**
+     * Returns the duty cycle of a pin
+     *
+     * @param gpio The pin
+     * @return Fraction of the period spent high, zero if the pin is not driven
+     */
+    public double getDuty(WiringPi gpio) {
+        long[] current = settings;
+        int address = gpio.getGpioAddress();
+        return current[address * 2] == 0 ? 0 : (double)current[address * 2 + 1] / current[address * 2];
+    }
+
+    /**
+     * Returns the lateness of every edge written so far
+     *
+     * @return The histogram, live
+     */
+    public LatencyHistogram getTimingErrors() {
+        return timingErrors;
+    }
+
+    /**
+     * Returns the largest lateness of any edge written so far
+     *
+     * @return The lateness in nanoseconds
+     */
+    public long getMaxTimingErrorNanos() {
+        return maxErrorNanos;
+    }
+
+    /**
+     * Returns the number of mask writes, edges due together share one write
+     *
+     * @return The write count
+     */
+    public long getWrites() {
+        return writes;
+    }
+
+    /**
+     * Returns the number of mask writes that failed
+     *
+     * @return The failed write count
+     */
+    public long getFailedWrites() {
+        return failedWrites;
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Ensures a duty cycle is within range
+     *
+     * @param duty The duty cycle
+     * @throws IllegalArgumentException If it is not between 0 and 1
+     */
+    private static void assertDuty(double duty) throws IllegalArgumentException {
+        if(!(duty >= 0 && duty <= 1)) {
+            throw new IllegalArgumentException("Duty cycle must be between 0 and 1: " + duty);
+        }
+    }
+
+    /**
+     * Publishes new settings and wakes the timing thread. Caller must hold the lock.
+     *
+     * @param next The new settings
+     * @throws IllegalStateException If the engine has been closed
+     */
+    private void publish(long[] next) throws IllegalStateException {
+        if(closed) {
+            throw new IllegalStateException("PWM engine has been closed");
+        }
+
+        settings = next;
+        notifyAll();
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Timing loop: waits for the earliest edge and writes every edge due with it
+     */
+    private void run() {
+        long[] applied = new long[CHANNELS * 2];
+
+        while(!closed) {
+            long[] current = settings;
+
+            if(current != applied) {
+                reconcile(applied, current);
+                applied = current;
+            }
+
+            if(size == 0) {
+                synchronized(this) {
+                    while(settings == applied && !closed) {
+                        try {
+                            wait();
+
+                        } catch(InterruptedException e) {
+                            // Only close stops the thread
+                        }
+                    }
+                }
+
+                continue;
+            }
+
+            if(!waitUntil(nextEdge[heap[0]], applied)) {
+                continue;
+            }
+
+            long now = System.nanoTime();
+            int mask = 0;
+            int values = 0;
+
+            while(size > 0 && nextEdge[heap[0]] - now <= 0) {
+                int address = heap[0];
+                long error = now - nextEdge[address];
+                timingErrors.record(error);
+
+                if(error > maxErrorNanos) {
+                    maxErrorNanos = error;
+                }
+
+                int bit = 1 << address;
+                boolean high = advance(address, applied, now);
+                siftDown(0);
+
+                if(((levels & bit) != 0) != high) {
+                    levels ^= bit;
+                    mask |= bit;
+                }
+            }
+
+            write(mask, levels & mask);
+        }
+
+        write(levels, 0);
+    }
+
+    /**
+     * Moves a channel past its due edge. Timing thread only.
+     *
+     * @param address The channel
+     * @param applied The settings in use
+     * @param now The current time
+     * @return The level the channel goes to
+     */
+    private boolean advance(int address, long[] applied, long now) {
+        long edge = nextEdge[address];
+
+        if(!atStart[address]) {
+            // Falling edge, the period ends low
+            nextEdge[address] = periodStart[address] + period[address];
+            atStart[address] = true;
+            return false;
+        }
+
+        long periodNanos = applied[address * 2];
+        long highNanos = applied[address * 2 + 1];
+
+        if(now - edge > periodNanos) {
+            // Fell behind by more than a period, restart from now instead of catching up
+            edge = now;
+        }
+
+        periodStart[address] = edge;
+        period[address] = periodNanos;
+
+        if(highNanos > 0 && highNanos < periodNanos) {
+            nextEdge[address] = edge + highNanos;
+            atStart[address] = false;
+
+        } else {
+            nextEdge[address] = edge + periodNanos;
+        }
+
+        return highNanos > 0;
+    }
+
+    /**
+     * Starts the channels turned on and drives the channels turned off low. Channels that
+     * stay on pick up their new settings at their next period start. Timing thread only.
+     *
+     * @param previous The settings in use until now
+     * @param current The new settings
+     */
+    private void reconcile(long[] previous, long[] current) {
+        long now = System.nanoTime();
+        int stopped = 0;
+        size = 0;
+
+        for(int address = 0; address < CHANNELS; address++) {
+            boolean was = previous[address * 2] != 0;
+            boolean is = current[address * 2] != 0;
+
+            if(is && !was) {
+                // New channels start together, so pins set in one call are in phase
+                nextEdge[address] = now;
+                atStart[address] = true;
+
+            } else if(was && !is) {
+                stopped |= 1 << address;
+            }
+
+            if(is) {
+                heap[size++] = address;
+            }
+        }
+
+        for(int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+
+        if((levels & stopped) != 0) {
+            write(levels & stopped, 0);
+            levels &= ~stopped;
+        }
+    }
+
+    /**
+     * Restores the heap order below a node. Timing thread only.
+     *
+     * @param index The node
+     */
+    private void siftDown(int index) {
+        int address = heap[index];
+
+        while(true) {
+            int child = index * 2 + 1;
+
+            if(child >= size) {
+                break;
+
+            } else if(child + 1 < size && nextEdge[heap[child + 1]] - nextEdge[heap[child]] < 0) {
+                child++;
+            }
+
+            if(nextEdge[heap[child]] - nextEdge[address] >= 0) {
+                break;
+            }
+
+            heap[index] = heap[child];
+            index = child;
+        }
+
+        heap[index] = address;
+    }
+
+    /**
+     * Parks until shortly before a deadline, then spins until it is reached
+     *
+     * @param deadline The deadline, as System#nanoTime
+     * @param applied The settings in use
+     * @return True once the deadline is reached, false if the settings changed or the
+     * engine was closed meanwhile
+     */
+    private boolean waitUntil(long deadline, long[] applied) {
+        while(settings == applied && !closed) {
+            long remaining = deadline - System.nanoTime();
+
+            if(remaining <= 0) {
+                return true;
+
+            } else if(remaining > spinNanos) {
+                LockSupport.parkNanos(this, remaining - spinNanos);
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Writes levels, failures are counted and only the first one is logged. Timing thread
+     * only.
+     *
+     * @param mask The pins to write
+     * @param values Their levels
+     */
+    private void write(int mask, int values) {
+        if(mask == 0) {
+            return;
+        }
+
+        try {
+            accessor.writeMasked(mask, values);
+            writes++;
+
+        } catch(RuntimeException e) {
+            if(failedWrites++ == 0) {
+                logger.error("PWM write failed, further failures are only counted", e);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,124 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.middleware;
+
+/**
+ * Settings for an AccessorStartup: the pins provisioned before the accessor reports
+ * ready, how many threads provision them and how many warm-up passes run over their
+ * read paths. The defaults provision nothing, use two threads and run 1000 passes.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class StartupProfile {
+    /*! GPIO addresses provisioned as inputs */
+    private int inputs;
+    /*! GPIO addresses provisioned as outputs */
+    private int outputs;
+    /*! Threads provisioning pins */
+    private int parallelism = 2;
+    /*! Warm-up passes over the read paths */
+    private int warmupIterations = 1000;
+
+    /**
+     * Returns the GPIO addresses provisioned as inputs
+     *
+     * @return Bitmask of GPIO addresses
+     */
+    public int getInputs() {
+        return inputs;
+    }
+
+    /**
+     * Sets the pins provisioned as inputs
+     *
+     * @param inputs Bitmask of GPIO addresses, see PinSet#mask
+     */
+    public void setInputs(int inputs) {
+        this.inputs = inputs;
+    }
+
+    /**
+     * Returns the GPIO addresses provisioned as outputs
+     *
+     * @return Bitmask of GPIO addresses
+     */
+    public int getOutputs() {
+        return outputs;
+    }
+
+    /**
+     * Sets the pins provisioned as outputs. Outputs are provisioned low, warming them up
+     * only reads them.
+     *
+     * @param outputs Bitmask of GPIO addresses, see PinSet#mask
+     */
+    public void setOutputs(int outputs) {
+        this.outputs = outputs;
+    }
+
+    /**
+     * Returns the number of threads provisioning pins
+     *
+     * @return The provisioning parallelism
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of threads provisioning pins
+     *
+     * @param parallelism At least one thread
+     */
+    public void setParallelism(int parallelism) {
+        if(parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least one");
+        }
+
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the number of warm-up passes
+     *
+     * @return The warm-up iterations
+     */
+    public int getWarmupIterations() {
+        return warmupIterations;
+    }
+
+    /**
+     * Sets the number of warm-up passes over the read paths of the provisioned
+     * pins, enough for the JIT to compile them before the first real command
+     *
+     * @param iterations Zero disables warming up
+     */
+    public void setWarmupIterations(int iterations) {
+        if(iterations < 0) {
+            throw new IllegalArgumentException("Warm-up iterations cannot be negative");
+        }
+
+        this.warmupIterations = iterations;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,337 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.middleware;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+
+import com.orland0m.rpi.middleware.metrics.LatencyHistogram;
+import com.orland0m.rpi.middleware.pin.PinAccessor;
+import com.orland0m.rpi.middleware.pin.Waveform;
+
+/**
+ * Plays Waveform timelines on a dedicated timing thread instead of sleeping between
+ * writes on a caller thread. The thread parks until shortly before each transition and
+ * spins for the rest, trading some CPU for deadlines hit within microseconds; the
+ * lateness of every transition is recorded so jitter can be measured.
+ *
+ * Transitions are written with PinAccessor#writeMasked, so the pins must be provisioned
+ * as outputs first. A failed write is logged and counted, the timeline goes on.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class WaveformPlayer implements Closeable {
+    /*! Logger object reference */
+    final static Logger logger = Logger.getLogger(WaveformPlayer.class);
+    /*! Default time spent spinning before a transition instead of parking */
+    public static final long DEFAULT_SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    /*! The accessor written to */
+    private final PinAccessor accessor;
+    /*! Time spent spinning before a transition */
+    private final long spinNanos;
+    /*! The timing thread */
+    private final Thread thread;
+    /*! Lateness of every transition played */
+    private final LatencyHistogram timingErrors = new LatencyHistogram();
+    /*! Timeline being played, null while idle, guarded by this */
+    private Waveform waveform;
+    /*! When the timeline starts, as System#nanoTime, guarded by this */
+    private long startNanos;
+    /*! Whether the timeline repeats until stopped, guarded by this */
+    private boolean loop;
+    /*! Set once closed, guarded by this */
+    private boolean closed;
+    /*! Bumped by start and stop, so the timing thread notices it was interrupted */
+    private volatile int generation;
+    /*! Lateness of the last play of each transition of the current timeline */
+    private volatile long[] lastErrors = new long[0];
+    /*! Largest lateness seen, only written by the timing thread */
+    private volatile long maxErrorNanos;
+    /*! Writes that failed, only written by the timing thread */
+    private volatile long failedWrites;
+
+    /**
+     * Starts an idle player with the default spin time
+     *
+     * @param accessor The accessor written to
+     */
+    public WaveformPlayer(PinAccessor accessor) {
+        this(accessor, DEFAULT_SPIN_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Starts an idle player
+     *
+     * @param accessor The accessor written to
+     * @param spin Time spent spinning before each transition; longer is more precise when
+     * the scheduler wakes threads late, zero only parks
+     * @param unit The unit of the spin argument
+     */
+    public WaveformPlayer(PinAccessor accessor, long spin, TimeUnit unit) {
+        if(spin < 0) {
+            throw new IllegalArgumentException("Spin time cannot be negative");
+        }
+
+        this.accessor = accessor;
+        this.spinNanos = unit.toNanos(spin);
+        thread = new Thread(this::run, "rpi-waveform");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Plays a timeline now, replacing whatever is playing
+     *
+     * @param waveform The timeline
+     * @param loop True to repeat it until stopped
+     */
+    public void start(Waveform waveform, boolean loop) {
+        start(waveform, System.nanoTime(), loop);
+    }
+
+    /**
+     * Plays a timeline at a given time, replacing whatever is playing. Transitions whose
+     * time already passed are played at once and recorded as late.
+     *
+     * @param waveform The timeline
+     * @param startAtNanos When the timeline starts, as System#nanoTime
+     * @param loop True to repeat it until stopped
+     * @throws IllegalStateException If the player has been closed
+     */
+    public synchronized void start(Waveform waveform, long startAtNanos, boolean loop)
+    throws IllegalStateException {
+        if(closed) {
+            throw new IllegalStateException("Player has been closed");
+        }
+
+        this.waveform = waveform;
+        this.startNanos = startAtNanos;
+        this.loop = loop;
+        lastErrors = new long[waveform.size()];
+        generation++;
+        notifyAll();
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Stops playing, pins keep the levels of the last transition played
+     */
+    public synchronized void stop() {
+        waveform = null;
+        generation++;
+        notifyAll();
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Returns whether a timeline is playing or waiting for its start time
+     *
+     * @return True until the timeline ends or is stopped
+     */
+    public synchronized boolean isPlaying() {
+        return waveform != null;
+    }
+
+    /**
+     * Waits until the current timeline ends or is stopped
+     *
+     * @param timeout Maximum time to wait
+     * @param unit The unit of the timeout argument
+     * @return True if nothing is playing anymore
+     * @throws InterruptedException If the calling thread is interrupted
+     */
+    public synchronized boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        while(waveform != null) {
+            long remaining = deadline - System.nanoTime();
+
+            if(remaining <= 0) {
+                return false;
+            }
+
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the lateness of every transition played so far
+     *
+     * @return The histogram, live
+     */
+    public LatencyHistogram getTimingErrors() {
+        return timingErrors;
+    }
+
+    /**
+     * Returns the largest lateness of any transition played so far
+     *
+     * @return The lateness in nanoseconds
+     */
+    public long getMaxTimingErrorNanos() {
+        return maxErrorNanos;
+    }
+
+    /**
+     * Returns the lateness of the last play of a transition of the current timeline
+     *
+     * @param transition The transition index
+     * @return The lateness in nanoseconds, zero if it was not played yet
+     */
+    public long getTimingErrorNanos(int transition) {
+        return lastErrors[transition];
+    }
+
+    /**
+     * Returns the number of transitions whose write failed
+     *
+     * @return The failed write count
+     */
+    public long getFailedWrites() {
+        return failedWrites;
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        stop();
+    }
+
+    /**
+     * Timing thread loop: waits for a timeline and plays it until it ends or is replaced
+     */
+    private void run() {
+        while(true) {
+            Waveform current;
+            long base;
+            boolean repeat;
+            int played;
+            long[] errors;
+
+            synchronized(this) {
+                while(waveform == null && !closed) {
+                    try {
+                        wait();
+
+                    } catch(InterruptedException e) {
+                        // Only close stops the thread
+                    }
+                }
+
+                if(closed) {
+                    return;
+                }
+
+                current = waveform;
+                base = startNanos;
+                repeat = loop;
+                played = generation;
+                errors = lastErrors;
+            }
+
+            if(play(current, base, repeat, played, errors)) {
+                synchronized(this) {
+                    if(generation == played) {
+                        waveform = null;
+                        notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Plays a timeline
+     *
+     * @param current The timeline
+     * @param base When it starts
+     * @param repeat Whether it loops
+     * @param played Generation it was started in
+     * @param errors Where the lateness of each transition goes
+     * @return True if it ended, false if it was stopped or replaced
+     */
+    private boolean play(Waveform current, long base, boolean repeat, int played, long[] errors) {
+        do {
+            for(int i = 0; i < current.size(); i++) {
+                long deadline = base + current.getOffsetNanos(i);
+
+                if(!waitUntil(deadline, played)) {
+                    return false;
+                }
+
+                long error = System.nanoTime() - deadline;
+
+                try {
+                    accessor.writeMasked(current.getMask(i), current.getValues(i));
+
+                } catch(RuntimeException e) {
+                    failedWrites++;
+                    logger.error("Waveform transition " + i + " failed", e);
+                }
+
+                errors[i] = error;
+                timingErrors.record(error);
+
+                if(error > maxErrorNanos) {
+                    maxErrorNanos = error;
+                }
+            }
+
+            base += current.getPeriodNanos();
+        } while(repeat);
+
+        return true;
+    }
+
+    /**
+     * Parks until shortly before a deadline, then spins until it is reached
+     *
+     * @param deadline The deadline, as System#nanoTime
+     * @param played Generation being played
+     * @return True once the deadline is reached, false if the timeline was stopped or
+     * replaced meanwhile
+     */
+    private boolean waitUntil(long deadline, int played) {
+        while(generation == played) {
+            long remaining = deadline - System.nanoTime();
+
+            if(remaining <= 0) {
+                return true;
+
+            } else if(remaining > spinNanos) {
+                LockSupport.parkNanos(this, remaining - spinNanos);
+            }
+        }
+
+        return false;
+    }
+}
\ No newline at end of file
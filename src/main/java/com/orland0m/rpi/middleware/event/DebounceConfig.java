@@ -0,0 +1,110 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.middleware.event;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Debounce and glitch filter settings for an input pin, see InputPin#setDebounce. The
+ * defaults filter nothing: no stable time and no rate cap.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class DebounceConfig {
+    /*! Time the pin must stay at a level before it is considered settled */
+    private long stableNanos;
+    /*! Which edge of a burst is reported */
+    private DebounceMode mode = DebounceMode.TRAILING;
+    /*! Maximum changes reported per second, zero means no cap */
+    private int maxRate;
+
+    /**
+     * Returns the time the pin must stay at a level before it is considered settled
+     *
+     * @return The stable time in nanoseconds
+     */
+    public long getStableTimeNanos() {
+        return stableNanos;
+    }
+
+    /**
+     * Sets the time the pin must stay at a level before it is considered settled. Pulses
+     * shorter than this are suppressed as glitches.
+     *
+     * @param stable The stable time
+     * @param unit The unit of the stable argument
+     */
+    public void setStableTime(long stable, TimeUnit unit) {
+        if(stable < 0) {
+            throw new IllegalArgumentException("Stable time cannot be negative");
+        }
+
+        this.stableNanos = unit.toNanos(stable);
+    }
+
+    /**
+     * Returns which edge of a burst is reported
+     *
+     * @return LEADING or TRAILING
+     */
+    public DebounceMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Sets which edge of a burst is reported
+     *
+     * @param mode LEADING or TRAILING
+     */
+    public void setMode(DebounceMode mode) {
+        if(mode == null) {
+            throw new NullPointerException("Mode must be a valid object");
+        }
+
+        this.mode = mode;
+    }
+
+    /**
+     * Returns the maximum number of changes reported per second
+     *
+     * @return The rate cap, zero means no cap
+     */
+    public int getMaxRate() {
+        return maxRate;
+    }
+
+    /**
+     * Caps the number of changes reported per second. Changes arriving faster are held
+     * back and only the latest level is reported once the cap allows it.
+     *
+     * @param maxRate Changes per second, zero removes the cap
+     */
+    public void setMaxRate(int maxRate) {
+        if(maxRate < 0) {
+            throw new IllegalArgumentException("Rate cap cannot be negative");
+        }
+
+        this.maxRate = maxRate;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,75 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.middleware.event;
+
+/**
+ * Bounded queue between an input pin and a listener registered through
+ * InputPin#addListener(PinStateListener, int, OverflowPolicy). Events are delivered in
+ * order by a worker dedicated to the listener, so a slow listener only delays itself.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public interface ListenerQueue {
+    /**
+     * Returns the maximum number of pending events
+     *
+     * @return The queue capacity
+     */
+    int getCapacity();
+
+    /**
+     * Returns what happens to new events while the queue is full
+     *
+     * @return The overflow policy
+     */
+    OverflowPolicy getOverflowPolicy();
+
+    /**
+     * Returns the number of events waiting to be delivered
+     *
+     * @return The current queue depth
+     */
+    int getDepth();
+
+    /**
+     * Returns the number of events discarded or replaced because the queue was full
+     *
+     * @return The dropped event count
+     */
+    long getDroppedCount();
+
+    /**
+     * Returns the number of events handed to the listener
+     *
+     * @return The delivered event count
+     */
+    long getDeliveredCount();
+
+    /**
+     * Returns the longest time an event waited in the queue before being delivered
+     *
+     * @return The maximum queueing delay in nanoseconds
+     */
+    long getMaxQueueNanos();
+}
\ No newline at end of file
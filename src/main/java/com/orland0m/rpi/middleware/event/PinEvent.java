@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.middleware.event;
+
+import com.orland0m.rpi.middleware.pin.InputPin;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * State change of an input pin, as captured when the backend saw it. Event objects are
+ * pooled and reused once the listener returns, so listeners must copy what they need
+ * instead of keeping the event.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public interface PinEvent {
+    /**
+     * Returns the pin that changed
+     *
+     * @return A reference to the pin object
+     */
+    InputPin getPin();
+
+    /**
+     * Returns the GPIO that changed
+     *
+     * @return The GPIO pin information
+     */
+    WiringPi getGpio();
+
+    /**
+     * Returns the level the pin changed to
+     *
+     * @return True if the pin is now high
+     */
+    boolean isHigh();
+
+    /**
+     * Returns the direction of the change
+     *
+     * @return RISING if the pin is now high, FALLING otherwise
+     */
+    Edge getEdge();
+
+    /**
+     * Returns when the change was captured, comparable to System#nanoTime only
+     *
+     * @return The capture time in nanoseconds
+     */
+    long getTimestampNanos();
+
+    /**
+     * Returns the number of this change on its pin, starting at one. Gaps tell a queued
+     * listener how many changes were dropped.
+     *
+     * @return The per pin sequence number
+     */
+    long getSequence();
+}
\ No newline at end of file
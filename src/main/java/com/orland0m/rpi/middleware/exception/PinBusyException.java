@@ -33,8 +33,8 @@ public class PinBusyException extends RuntimeException {
     /*! Serialization id for class */
     private static final long serialVersionUID = 1L;
 
-    /*! Initializes the exception object */
+    /*! Initializes the exception object, skipping the stack trace in stackless mode */
     public PinBusyException(String message) {
-        super(message);
+        super(message, null, true, !StacklessMode.isEnabled());
     }
 }
\ No newline at end of file
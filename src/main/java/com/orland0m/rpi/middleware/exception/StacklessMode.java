@@ -0,0 +1,61 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.middleware.exception;
+
+/**
+ * Controls whether the middleware exceptions capture a stack trace. Capturing the trace
+ * is the most expensive part of throwing, applications that treat busy or invalidated
+ * pins as a normal outcome can turn it off. The initial value comes from the
+ * rpi.exceptions.stackless system property.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public final class StacklessMode {
+    /*! Whether exceptions created from now on skip the stack trace */
+    private static volatile boolean enabled = Boolean.getBoolean("rpi.exceptions.stackless");
+
+    /**
+     * Utility class, not meant to be instantiated
+     */
+    private StacklessMode() {
+    }
+
+    /**
+     * Returns true if exceptions are currently created without a stack trace
+     *
+     * @return True if stackless mode is enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables stackless mode for exceptions created after the call
+     *
+     * @param stackless True to skip stack traces
+     */
+    public static void setEnabled(boolean stackless) {
+        enabled = stackless;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,208 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.middleware.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Reads the records of a PinJournal in the order they were appended. The reader is a
+ * cursor: next moves to the following record and the getters describe the current one,
+ * so reading allocates nothing per record.
+ *
+ * Timestamps are converted to nanoseconds since the epoch using the clock readings in
+ * each segment header, which keeps them comparable across segments written by
+ * different runs of the application.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class JournalReader implements Closeable {
+    /*! Segment files, in order */
+    private final File[] segments;
+    /*! Index of the next segment to open */
+    private int nextSegment;
+    /*! Mapped current segment, null before the first or after the last */
+    private MappedByteBuffer segment;
+    /*! Offset of the current record in the segment */
+    private int offset;
+    /*! Epoch nanoseconds minus System#nanoTime for the current segment */
+    private long clockOffset;
+
+    /**
+     * Opens the journal in the given directory
+     *
+     * @param directory The directory a PinJournal wrote to
+     * @throws IOException If the directory cannot be listed
+     */
+    public JournalReader(File directory) throws IOException {
+        if(!directory.isDirectory()) {
+            throw new IOException("Not a journal directory: " + directory);
+        }
+
+        segments = segments(directory);
+    }
+
+    /**
+     * Moves to the next record
+     *
+     * @return False once every record has been read
+     * @throws IOException If a segment cannot be read or is not a journal segment
+     */
+    public boolean next() throws IOException {
+        if(segment != null) {
+            offset += PinJournal.RECORD_SIZE;
+
+            if(offset + PinJournal.RECORD_SIZE <= segment.limit() && segment.get(offset + 8) != 0) {
+                return true;
+            }
+        }
+
+        // The rest of this segment was never written, continue with the next one
+        while(nextSegment < segments.length) {
+            openSegment(segments[nextSegment++]);
+
+            if(offset + PinJournal.RECORD_SIZE <= segment.limit() && segment.get(offset + 8) != 0) {
+                return true;
+            }
+        }
+
+        segment = null;
+        return false;
+    }
+
+    /**
+     * Returns the opcode of the current record
+     *
+     * @return One of the PinJournal opcodes
+     */
+    public byte getOpcode() {
+        return segment.get(offset + 8);
+    }
+
+    /**
+     * Returns the GPIO address of the current record
+     *
+     * @return The address, or PinJournal#BANK_ADDRESS
+     */
+    public int getAddress() {
+        return segment.get(offset + 9);
+    }
+
+    /**
+     * Returns the value of the current record
+     *
+     * @return The level, or the levels of a WRITE_MASK record
+     */
+    public int getValue() {
+        return segment.getInt(offset + 12);
+    }
+
+    /**
+     * Returns the GPIO addresses affected by the current record
+     *
+     * @return The address mask
+     */
+    public int getMask() {
+        return segment.getInt(offset + 16);
+    }
+
+    /**
+     * Returns when the current record happened
+     *
+     * @return Nanoseconds since the epoch
+     */
+    public long getTimestampNanos() {
+        return segment.getLong(offset) + clockOffset;
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() {
+        segment = null;
+        nextSegment = segments.length;
+    }
+
+    /**
+     * Maps a segment and checks its header
+     *
+     * @param file The segment file
+     * @throws IOException If the file cannot be mapped or is not a journal segment
+     */
+    private void openSegment(File file) throws IOException {
+        try(RandomAccessFile opened = new RandomAccessFile(file, "r")) {
+            segment = opened.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, opened.length());
+        }
+
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+
+        if(segment.limit() < PinJournal.HEADER_SIZE || segment.getInt(0) != PinJournal.MAGIC
+            || segment.getInt(4) != PinJournal.VERSION
+            || segment.getInt(8) != PinJournal.RECORD_SIZE) {
+            throw new IOException("Not a pin journal segment: " + file);
+        }
+
+        clockOffset = segment.getLong(16) * 1000000L - segment.getLong(24);
+        offset = PinJournal.HEADER_SIZE;
+    }
+
+    /**
+     * Lists the segments of a journal directory in order
+     *
+     * @param directory The journal directory
+     * @return The segment files, possibly empty
+     * @throws IOException If the directory cannot be listed
+     */
+    static File[] segments(File directory) throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(PinJournal.SEGMENT_PREFIX)
+                                           && name.endsWith(PinJournal.SEGMENT_SUFFIX));
+
+        if(files == null) {
+            throw new IOException("Cannot list journal directory " + directory);
+        }
+
+        // Indexes are zero padded, so names sort in segment order
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * Parses the index of a segment file
+     *
+     * @param segment The segment file
+     * @return The segment index
+     */
+    static int index(File segment) {
+        String name = segment.getName();
+        return Integer.parseInt(name.substring(PinJournal.SEGMENT_PREFIX.length(),
+                                               name.length() - PinJournal.SEGMENT_SUFFIX.length()));
+    }
+}
\ No newline at end of file
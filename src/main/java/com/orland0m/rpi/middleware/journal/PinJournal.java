@@ -0,0 +1,307 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.middleware.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Journal of the traffic of an accessor's pins: provisioning, invalidation, output
+ * writes and input edges, appended as fixed size binary records to a directory of
+ * memory-mapped segment files. Attach it with PinAccessor#setJournal and read it back
+ * with JournalReader.
+ *
+ * This is a multi-writer journal: output writes, edge callbacks and the accessor append
+ * from their own threads, and appends are serialized on the journal's monitor. Records
+ * are stores into the mapped segment: nothing is allocated and nothing waits for the
+ * disk, the operating system writes pages back on its own and a crashed JVM loses
+ * nothing already appended. Only rolling over to the next segment touches the file
+ * system. If that fails the journal logs it and drops records from then on instead of
+ * failing pin writes.
+ *
+ * Segment layout, little-endian: a HEADER_SIZE byte header holding MAGIC, VERSION,
+ * RECORD_SIZE, the segment index, and the wall clock and System#nanoTime readings taken
+ * when the segment was created, followed by records of RECORD_SIZE bytes each:
+ * <pre>
+ * 0  long  System#nanoTime timestamp
+ * 8  byte  opcode, zero marks the end of the journal
+ * 9  byte  GPIO address, BANK_ADDRESS for WRITE_MASK
+ * 10 short reserved
+ * 12 int   value: the level, or the levels of a WRITE_MASK
+ * 16 int   mask of the GPIO addresses affected
+ * 20 int   reserved
+ * </pre>
+ * The opcode is stored last, ordered after the rest of the record by a volatile write
+ * and read, so a reader mapping the segment never sees a record half written.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class PinJournal implements Closeable {
+    /*! Logger object reference */
+    final static Logger logger = Logger.getLogger(PinJournal.class);
+    /*! Pin provisioned as input, value is the level read at that time */
+    public static final byte PROVISION_INPUT = 1;
+    /*! Pin provisioned as output */
+    public static final byte PROVISION_OUTPUT = 2;
+    /*! Pin invalidated, by the user or because it was released */
+    public static final byte INVALIDATE = 3;
+    /*! Output set to the level in value */
+    public static final byte WRITE = 4;
+    /*! Output inverted */
+    public static final byte TOGGLE = 5;
+    /*! Outputs in mask set to the levels in value, through PinAccessor#writeMasked */
+    public static final byte WRITE_MASK = 6;
+    /*! Input changed to the level in value, before debouncing */
+    public static final byte EDGE = 7;
+    /*! Address of records that affect several pins */
+    public static final int BANK_ADDRESS = -1;
+    /*! First int of every segment */
+    public static final int MAGIC = 0x4C4E4A52;
+    /*! Format version */
+    public static final int VERSION = 1;
+    /*! Bytes in the segment header */
+    public static final int HEADER_SIZE = 32;
+    /*! Bytes in a record */
+    public static final int RECORD_SIZE = 24;
+    /*! Default segment size, 64 MB */
+    public static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+    /*! Segment file name prefix */
+    static final String SEGMENT_PREFIX = "journal-";
+    /*! Segment file name suffix */
+    static final String SEGMENT_SUFFIX = ".seg";
+    /*! Directory holding the segments */
+    private final File directory;
+    /*! Records per segment */
+    private final int recordsPerSegment;
+    /*! Open segment file, guarded by this */
+    private RandomAccessFile file;
+    /*! Mapped open segment, guarded by this; null once closed or failed */
+    private MappedByteBuffer segment;
+    /*! Index of the open segment, guarded by this */
+    private int segmentIndex;
+    /*! Records in the open segment, guarded by this */
+    private int segmentRecords;
+    /*! Records appended, only written under this */
+    private volatile long records;
+    /*! Records dropped because the journal is closed or failed, only written under this */
+    private volatile long dropped;
+    /*! Written and read back between a record and its opcode, see publish */
+    private volatile int fence;
+
+    /**
+     * Opens a journal with segments of DEFAULT_SEGMENT_SIZE bytes
+     *
+     * @param directory Directory for the segments, created if missing
+     * @throws IOException If the first segment cannot be created
+     */
+    public PinJournal(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens a journal. Segments already in the directory are kept, new ones are numbered
+     * after them, so a journal reopened after a restart continues the same history.
+     *
+     * @param directory Directory for the segments, created if missing
+     * @param segmentSize Size of each segment file in bytes
+     * @throws IOException If the first segment cannot be created
+     * @throws IllegalArgumentException If a segment cannot hold at least one record
+     */
+    public PinJournal(File directory, long segmentSize) throws IOException {
+        long capacity = (segmentSize - HEADER_SIZE) / RECORD_SIZE;
+
+        if(capacity < 1 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+        }
+
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create journal directory " + directory);
+        }
+
+        this.directory = directory;
+        recordsPerSegment = (int)capacity;
+        File[] existing = JournalReader.segments(directory);
+        segmentIndex = existing.length == 0 ? 0 : JournalReader.index(existing[existing.length - 1]) + 1;
+
+        synchronized(this) {
+            openSegment();
+        }
+    }
+
+    /**
+     * Appends a record, called by accessors and pins on their write and edge paths
+     *
+     * @param opcode One of the opcodes of this class
+     * @param address GPIO address, or BANK_ADDRESS
+     * @param value Level, or levels for WRITE_MASK
+     * @param mask GPIO addresses affected
+     * @param timestampNanos When it happened, from System#nanoTime
+     */
+    public synchronized void append(byte opcode, int address, int value, int mask, long timestampNanos) {
+        if(segment == null) {
+            dropped++;
+            return;
+        }
+
+        if(segmentRecords == recordsPerSegment) {
+            try {
+                closeSegment();
+                segmentIndex++;
+                openSegment();
+
+            } catch(IOException e) {
+                logger.error("Cannot roll the pin journal over, dropping records from now on", e);
+                segment = null;
+                dropped++;
+                return;
+            }
+        }
+
+        int offset = HEADER_SIZE + segmentRecords * RECORD_SIZE;
+        segment.putLong(offset, timestampNanos);
+        segment.put(offset + 9, (byte)address);
+        segment.putInt(offset + 12, value);
+        segment.putInt(offset + 16, mask);
+        publish(offset, opcode);
+        segmentRecords++;
+        records++;
+    }
+
+    /**
+     * Returns the number of records appended
+     *
+     * @return The record count
+     */
+    public long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * Returns the number of records dropped because the journal was closed or could not
+     * roll over to a new segment
+     *
+     * @return The dropped record count
+     */
+    public long getDroppedCount() {
+        return dropped;
+    }
+
+    /**
+     * Returns the directory holding the segments
+     *
+     * @return The journal directory
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Writes the open segment back to the disk, for callers that need the journal to
+     * survive a power loss and not only a crash
+     */
+    public synchronized void flush() {
+        if(segment != null) {
+            segment.force();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(segment != null) {
+            closeSegment();
+            segment = null;
+        }
+    }
+
+    /**
+     * Stores the opcode of a record whose other fields are already written. The volatile
+     * write keeps those stores from moving after it and the volatile read keeps the
+     * opcode store from moving before it, the store fence Java 8 has no public API for
+     *
+     * @param offset Offset of the record in the segment
+     * @param opcode The record opcode
+     */
+    private void publish(int offset, byte opcode) {
+        fence = offset;
+
+        if(fence == offset) {
+            segment.put(offset + 8, opcode);
+        }
+    }
+
+    /**
+     * Creates and maps the segment at segmentIndex
+     *
+     * @throws IOException If the segment cannot be created
+     */
+    private void openSegment() throws IOException {
+        File next = new File(directory, String.format("%s%06d%s", SEGMENT_PREFIX, segmentIndex,
+                                                      SEGMENT_SUFFIX));
+        long size = HEADER_SIZE + (long)recordsPerSegment * RECORD_SIZE;
+        RandomAccessFile opened = new RandomAccessFile(next, "rw");
+
+        try {
+            segment = opened.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        } catch(IOException e) {
+            opened.close();
+            throw e;
+        }
+
+        file = opened;
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        segment.putInt(0, MAGIC);
+        segment.putInt(4, VERSION);
+        segment.putInt(8, RECORD_SIZE);
+        segment.putInt(12, segmentIndex);
+        segment.putLong(16, System.currentTimeMillis());
+        segment.putLong(24, System.nanoTime());
+        segmentRecords = 0;
+
+        if(logger.isDebugEnabled()) {
+            logger.debug("Opened pin journal segment " + next);
+        }
+    }
+
+    /**
+     * Writes the open segment back and closes its file, the mapping stays valid until it
+     * is collected
+     *
+     * @throws IOException If the file cannot be closed
+     */
+    private void closeSegment() throws IOException {
+        segment.force();
+        file.close();
+    }
+}
\ No newline at end of file
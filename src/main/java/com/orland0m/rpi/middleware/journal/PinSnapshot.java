@@ -0,0 +1,306 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.middleware.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+import com.orland0m.rpi.middleware.event.DebounceConfig;
+import com.orland0m.rpi.middleware.event.DebounceMode;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Persistent state of an accessor's provisioned pins: direction, output level, debounce
+ * filter and frequency window. Bound with PinAccessor#setSnapshot it is kept up to date
+ * incrementally, every change is a store of a few bytes into a small memory-mapped
+ * file, and PinAccessor#restore provisions every pin again from it after a restart.
+ *
+ * Listeners are code and cannot be persisted, the application registers them again
+ * after restoring. Shutting the accessor down leaves the snapshot as it was, so it
+ * describes the pins before the shutdown.
+ *
+ * The file is a SNAPSHOT_HEADER byte header holding MAGIC, VERSION and SLOT_SIZE,
+ * followed by one SLOT_SIZE byte slot per GPIO address, little-endian:
+ * <pre>
+ * 0  byte  direction: NONE, INPUT or OUTPUT
+ * 1  byte  output level
+ * 2  byte  debounce mode, DebounceMode ordinal plus one, zero without a filter
+ * 4  int   debounce rate cap
+ * 8  long  debounce stable time in nanoseconds
+ * 16 long  frequency window in nanoseconds, zero for the default
+ * </pre>
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class PinSnapshot implements Closeable {
+    /*! Slot of a GPIO that is not provisioned */
+    public static final byte NONE = 0;
+    /*! Slot of a GPIO provisioned as input */
+    public static final byte INPUT = 1;
+    /*! Slot of a GPIO provisioned as output */
+    public static final byte OUTPUT = 2;
+    /*! First int of the file */
+    public static final int MAGIC = 0x534E5052;
+    /*! Format version */
+    public static final int VERSION = 1;
+    /*! Bytes in the header */
+    public static final int SNAPSHOT_HEADER = 16;
+    /*! Bytes in a slot */
+    public static final int SLOT_SIZE = 32;
+    /*! Number of slots, one per GPIO address */
+    private static final int SLOTS = 32;
+    /*! Debounce modes, cached because values() clones on each call */
+    private static final DebounceMode[] MODES = DebounceMode.values();
+    /*! The open file */
+    private final RandomAccessFile file;
+    /*! The mapped file, null once closed */
+    private volatile MappedByteBuffer state;
+
+    /**
+     * Opens a snapshot file, creating an empty snapshot if the file does not exist yet
+     *
+     * @param snapshot The snapshot file
+     * @throws IOException If the file cannot be mapped or is not a pin snapshot
+     */
+    public PinSnapshot(File snapshot) throws IOException {
+        boolean created = !snapshot.exists() || snapshot.length() == 0;
+        file = new RandomAccessFile(snapshot, "rw");
+
+        try {
+            MappedByteBuffer mapped = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                                                            SNAPSHOT_HEADER + SLOTS * SLOT_SIZE);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            if(created) {
+                mapped.putInt(4, VERSION);
+                mapped.putInt(8, SLOT_SIZE);
+                mapped.putInt(0, MAGIC);
+
+            } else if(mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION
+                || mapped.getInt(8) != SLOT_SIZE) {
+                throw new IOException("Not a pin snapshot: " + snapshot);
+            }
+
+            state = mapped;
+
+        } catch(IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns how the given GPIO was provisioned
+     *
+     * @param gpio The GPIO pin information
+     * @return NONE, INPUT or OUTPUT
+     */
+    public byte getDirection(WiringPi gpio) {
+        MappedByteBuffer mapped = state;
+        return mapped == null ? NONE : mapped.get(slot(gpio.getGpioAddress()));
+    }
+
+    /**
+     * Returns the last level written to the given output
+     *
+     * @param gpio The GPIO pin information
+     * @return True if the output was high
+     */
+    public boolean isHigh(WiringPi gpio) {
+        MappedByteBuffer mapped = state;
+        return mapped != null && mapped.get(slot(gpio.getGpioAddress()) + 1) != 0;
+    }
+
+    /**
+     * Returns the debounce filter of the given input
+     *
+     * @param gpio The GPIO pin information
+     * @return A new configuration, or null if the input was not filtered
+     */
+    public DebounceConfig getDebounce(WiringPi gpio) {
+        MappedByteBuffer mapped = state;
+        int slot = slot(gpio.getGpioAddress());
+
+        if(mapped == null || mapped.get(slot + 2) == 0) {
+            return null;
+        }
+
+        DebounceConfig config = new DebounceConfig();
+        config.setMode(MODES[mapped.get(slot + 2) - 1]);
+        config.setMaxRate(mapped.getInt(slot + 4));
+        config.setStableTime(mapped.getLong(slot + 8), TimeUnit.NANOSECONDS);
+        return config;
+    }
+
+    /**
+     * Returns the frequency window of the given input
+     *
+     * @param gpio The GPIO pin information
+     * @return The window in nanoseconds, zero if it was never changed
+     */
+    public long getFrequencyWindowNanos(WiringPi gpio) {
+        MappedByteBuffer mapped = state;
+        return mapped == null ? 0 : mapped.getLong(slot(gpio.getGpioAddress()) + 16);
+    }
+
+    /**
+     * Records a newly provisioned pin, clearing the settings of the previous one
+     *
+     * @param address The GPIO address
+     * @param direction INPUT or OUTPUT
+     * @param high The output level
+     */
+    public void recordProvision(int address, byte direction, boolean high) {
+        MappedByteBuffer mapped = state;
+
+        if(mapped != null) {
+            int slot = slot(address);
+            mapped.putLong(slot + 16, 0);
+            mapped.putLong(slot + 8, 0);
+            mapped.putInt(slot + 4, 0);
+            mapped.put(slot + 2, (byte)0);
+            mapped.put(slot + 1, (byte)(high ? 1 : 0));
+            mapped.put(slot, direction);
+        }
+    }
+
+    /**
+     * Records an invalidated pin
+     *
+     * @param address The GPIO address
+     */
+    public void recordInvalidation(int address) {
+        MappedByteBuffer mapped = state;
+
+        if(mapped != null) {
+            mapped.put(slot(address), NONE);
+        }
+    }
+
+    /**
+     * Records the level written to an output
+     *
+     * @param address The GPIO address
+     * @param high The new level
+     */
+    public void recordLevel(int address, boolean high) {
+        MappedByteBuffer mapped = state;
+
+        if(mapped != null) {
+            mapped.put(slot(address) + 1, (byte)(high ? 1 : 0));
+        }
+    }
+
+    /**
+     * Records the levels written by a masked write
+     *
+     * @param mask Bitmask of the GPIO addresses written
+     * @param values Bitmask with the level for each GPIO in the mask
+     */
+    public void recordLevels(int mask, int values) {
+        for(int pending = mask; pending != 0; pending &= pending - 1) {
+            int address = Integer.numberOfTrailingZeros(pending);
+            recordLevel(address, (values & (1 << address)) != 0);
+        }
+    }
+
+    /**
+     * Records the debounce filter of an input
+     *
+     * @param address The GPIO address
+     * @param config The filter settings, null if the filter was removed
+     */
+    public void recordDebounce(int address, DebounceConfig config) {
+        MappedByteBuffer mapped = state;
+
+        if(mapped != null) {
+            int slot = slot(address);
+
+            if(config == null) {
+                mapped.put(slot + 2, (byte)0);
+
+            } else {
+                mapped.putLong(slot + 8, config.getStableTimeNanos());
+                mapped.putInt(slot + 4, config.getMaxRate());
+                mapped.put(slot + 2, (byte)(config.getMode().ordinal() + 1));
+            }
+        }
+    }
+
+    /**
+     * Records the frequency window of an input
+     *
+     * @param address The GPIO address
+     * @param windowNanos The window length
+     */
+    public void recordFrequencyWindow(int address, long windowNanos) {
+        MappedByteBuffer mapped = state;
+
+        if(mapped != null) {
+            mapped.putLong(slot(address) + 16, windowNanos);
+        }
+    }
+
+    /**
+     * Writes the snapshot back to the disk, for callers that need it to survive a power
+     * loss and not only a crash
+     */
+    public void flush() {
+        MappedByteBuffer mapped = state;
+
+        if(mapped != null) {
+            mapped.force();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        MappedByteBuffer mapped = state;
+
+        if(mapped != null) {
+            state = null;
+            mapped.force();
+            file.close();
+        }
+    }
+
+    /**
+     * Returns the offset of the slot of a GPIO address
+     *
+     * @param address The GPIO address
+     * @return The slot offset
+     */
+    private static int slot(int address) {
+        return SNAPSHOT_HEADER + address * SLOT_SIZE;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,155 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.middleware.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with fixed buckets, from one microsecond up to one hundred
+ * milliseconds. Recording is a bucket search plus two LongAdder increments, it never
+ * allocates once the adders are warmed up.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public final class LatencyHistogram {
+    /*! Bucket upper bounds in nanoseconds, the last implicit bucket is +Inf */
+    private static final long[] BOUNDS = new long[] {
+        1000L, 2000L, 5000L,
+        10000L, 20000L, 50000L,
+        100000L, 200000L, 500000L,
+        1000000L, 2000000L, 5000000L,
+        10000000L, 20000000L, 50000000L,
+        100000000L
+    };
+    /*! Bucket upper bounds in seconds, preformatted for the Prometheus le label */
+    private static final String[] BOUND_LABELS = new String[] {
+        "1.0E-6", "2.0E-6", "5.0E-6",
+        "1.0E-5", "2.0E-5", "5.0E-5",
+        "1.0E-4", "2.0E-4", "5.0E-4",
+        "0.001", "0.002", "0.005",
+        "0.01", "0.02", "0.05",
+        "0.1"
+    };
+    /*! Sample count of each bucket, not cumulative */
+    private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+    /*! Sum of every recorded sample */
+    private final LongAdder sumNanos = new LongAdder();
+
+    /**
+     * Initializes an empty histogram
+     */
+    public LatencyHistogram() {
+        for(int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a sample
+     *
+     * @param nanos The measured latency in nanoseconds
+     */
+    public void record(long nanos) {
+        int bucket = 0;
+
+        while(bucket < BOUNDS.length && nanos > BOUNDS[bucket]) {
+            bucket++;
+        }
+
+        buckets[bucket].increment();
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * Returns the number of recorded samples
+     *
+     * @return The sample count
+     */
+    public long getCount() {
+        long count = 0;
+
+        for(LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the sum of every recorded sample
+     *
+     * @return The sum in nanoseconds
+     */
+    public long getSumNanos() {
+        return sumNanos.sum();
+    }
+
+    /**
+     * Returns the number of samples at or below the given bucket's upper bound
+     *
+     * @param bucket The bucket index, bucketCount() - 1 is the +Inf bucket
+     * @return The cumulative sample count
+     */
+    public long getCumulativeCount(int bucket) {
+        long count = 0;
+
+        for(int i = 0; i <= bucket; i++) {
+            count += buckets[i].sum();
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the number of buckets, including the +Inf bucket
+     *
+     * @return The bucket count
+     */
+    public static int bucketCount() {
+        return BOUNDS.length + 1;
+    }
+
+    /**
+     * Appends this histogram in Prometheus text format
+     *
+     * @param out The buffer to append to
+     * @param name The metric name
+     * @param help The metric description
+     */
+    void writePrometheus(StringBuilder out, String name, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" histogram\n");
+        long cumulative = 0;
+
+        for(int i = 0; i < buckets.length; i++) {
+            cumulative += buckets[i].sum();
+            out.append(name).append("_bucket{le=\"")
+            .append(i < BOUND_LABELS.length ? BOUND_LABELS[i] : "+Inf")
+            .append("\"} ").append(cumulative).append('\n');
+        }
+
+        out.append(name).append("_sum ").append(sumNanos.sum() / 1e9).append('\n');
+        out.append(name).append("_count ").append(cumulative).append('\n');
+    }
+}
\ No newline at end of file
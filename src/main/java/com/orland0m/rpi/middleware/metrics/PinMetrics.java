@@ -0,0 +1,241 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.middleware.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Operation counters for every pin of an accessor, plus latency histograms for pin
+ * writes and listener callbacks. Counters are LongAdders indexed by WiringPi ordinal so
+ * recording never allocates nor contends on a shared word. A snapshot can be exported
+ * in Prometheus text format.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public final class PinMetrics {
+    /*! Every GPIO, indexed by ordinal; cached because WiringPi.values() clones on each call */
+    private static final WiringPi[] GPIOS = WiringPi.values();
+    /*! Pin writes, per GPIO */
+    private final LongAdder[] writes = newCounters();
+    /*! Pin reads, per GPIO */
+    private final LongAdder[] reads = newCounters();
+    /*! Rejected attempts to mark a pin busy or lease it, per GPIO */
+    private final LongAdder[] busyRejections = newCounters();
+    /*! Pin invalidations, per GPIO */
+    private final LongAdder[] invalidations = newCounters();
+    /*! State change events delivered to listeners, per GPIO */
+    private final LongAdder[] listenerEvents = newCounters();
+    /*! Time spent performing pin writes */
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+    /*! Time spent inside listener callbacks */
+    private final LatencyHistogram listenerLatency = new LatencyHistogram();
+
+    /**
+     * Records a pin write
+     *
+     * @param gpio The GPIO written
+     * @param nanos Time spent performing the write
+     */
+    public void recordWrite(WiringPi gpio, long nanos) {
+        writes[gpio.ordinal()].increment();
+        writeLatency.record(nanos);
+    }
+
+    /**
+     * Records a pin read
+     *
+     * @param gpio The GPIO read
+     */
+    public void recordRead(WiringPi gpio) {
+        reads[gpio.ordinal()].increment();
+    }
+
+    /**
+     * Records a rejected attempt to mark a pin busy or lease it
+     *
+     * @param gpio The GPIO in question
+     */
+    public void recordBusyRejection(WiringPi gpio) {
+        busyRejections[gpio.ordinal()].increment();
+    }
+
+    /**
+     * Records a pin invalidation
+     *
+     * @param gpio The GPIO invalidated
+     */
+    public void recordInvalidation(WiringPi gpio) {
+        invalidations[gpio.ordinal()].increment();
+    }
+
+    /**
+     * Records one listener callback
+     *
+     * @param gpio The GPIO that changed state
+     * @param nanos Time spent inside the callback
+     */
+    public void recordListenerEvent(WiringPi gpio, long nanos) {
+        listenerEvents[gpio.ordinal()].increment();
+        listenerLatency.record(nanos);
+    }
+
+    /**
+     * Returns the number of writes performed on the given GPIO
+     *
+     * @param gpio The GPIO in question
+     * @return The write count
+     */
+    public long getWrites(WiringPi gpio) {
+        return writes[gpio.ordinal()].sum();
+    }
+
+    /**
+     * Returns the number of reads performed on the given GPIO
+     *
+     * @param gpio The GPIO in question
+     * @return The read count
+     */
+    public long getReads(WiringPi gpio) {
+        return reads[gpio.ordinal()].sum();
+    }
+
+    /**
+     * Returns the number of rejected busy marks and leases on the given GPIO
+     *
+     * @param gpio The GPIO in question
+     * @return The rejection count
+     */
+    public long getBusyRejections(WiringPi gpio) {
+        return busyRejections[gpio.ordinal()].sum();
+    }
+
+    /**
+     * Returns the number of times pins of the given GPIO were invalidated
+     *
+     * @param gpio The GPIO in question
+     * @return The invalidation count
+     */
+    public long getInvalidations(WiringPi gpio) {
+        return invalidations[gpio.ordinal()].sum();
+    }
+
+    /**
+     * Returns the number of listener callbacks for the given GPIO
+     *
+     * @param gpio The GPIO in question
+     * @return The callback count
+     */
+    public long getListenerEvents(WiringPi gpio) {
+        return listenerEvents[gpio.ordinal()].sum();
+    }
+
+    /**
+     * Returns the pin write latency histogram
+     *
+     * @return The histogram
+     */
+    public LatencyHistogram getWriteLatency() {
+        return writeLatency;
+    }
+
+    /**
+     * Returns the listener callback latency histogram
+     *
+     * @return The histogram
+     */
+    public LatencyHistogram getListenerLatency() {
+        return listenerLatency;
+    }
+
+    /**
+     * Exports a snapshot of every metric in Prometheus text format
+     *
+     * @return The exposition text
+     */
+    public String toPrometheusText() {
+        StringBuilder out = new StringBuilder(4096);
+        writePrometheus(out);
+        return out.toString();
+    }
+
+    /**
+     * Appends a snapshot of every metric in Prometheus text format. GPIOs that were never
+     * used are skipped to keep scrapes small.
+     *
+     * @param out The buffer to append to
+     */
+    public void writePrometheus(StringBuilder out) {
+        writeCounters(out, "rpi_pin_writes_total", "Pin writes", writes);
+        writeCounters(out, "rpi_pin_reads_total", "Pin reads", reads);
+        writeCounters(out, "rpi_pin_busy_rejections_total",
+                      "Rejected attempts to mark a pin busy or lease it", busyRejections);
+        writeCounters(out, "rpi_pin_invalidations_total", "Pin invalidations", invalidations);
+        writeCounters(out, "rpi_pin_listener_events_total",
+                      "State change events delivered to listeners", listenerEvents);
+        writeLatency.writePrometheus(out, "rpi_pin_write_latency_seconds",
+                                     "Time spent performing pin writes");
+        listenerLatency.writePrometheus(out, "rpi_pin_listener_latency_seconds",
+                                        "Time spent inside listener callbacks");
+    }
+
+    /**
+     * Appends a per GPIO counter family in Prometheus text format
+     *
+     * @param out The buffer to append to
+     * @param name The metric name
+     * @param help The metric description
+     * @param counters The counters, indexed by WiringPi ordinal
+     */
+    private static void writeCounters(StringBuilder out, String name, String help,
+                                      LongAdder[] counters) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+
+        for(int i = 0; i < counters.length; i++) {
+            long value = counters[i].sum();
+
+            if(value != 0) {
+                out.append(name).append("{gpio=\"").append(GPIOS[i]).append("\"} ")
+                .append(value).append('\n');
+            }
+        }
+    }
+
+    /**
+     * Creates one counter per GPIO
+     *
+     * @return The counters, indexed by WiringPi ordinal
+     */
+    private static LongAdder[] newCounters() {
+        LongAdder[] counters = new LongAdder[GPIOS.length];
+
+        for(int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+
+        return counters;
+    }
+}
\ No newline at end of file
@@ -23,6 +23,13 @@
  */
 package com.orland0m.rpi.middleware.pin;
 
+import java.util.concurrent.TimeUnit;
+
+import com.orland0m.rpi.middleware.event.DebounceConfig;
+import com.orland0m.rpi.middleware.event.Edge;
+import com.orland0m.rpi.middleware.event.ListenerQueue;
+import com.orland0m.rpi.middleware.event.OverflowPolicy;
+import com.orland0m.rpi.middleware.event.PinEventListener;
 import com.orland0m.rpi.middleware.event.PinStateListener;
 import com.orland0m.rpi.middleware.exception.InvalidatedPinException;
 
@@ -39,4 +46,113 @@ public interface InputPin extends RpiPin {
      * @throws InvalidatedPinException If the pin object has already been invalidated
      */
     void addListener(PinStateListener listener) throws InvalidatedPinException;
+
+    /**
+     * Registers a listener notified asynchronously: state changes are queued in a bounded
+     * ring and delivered in order by a thread dedicated to this listener, so it cannot
+     * delay the backend's event thread or other listeners. The queue stops when the pin
+     * is invalidated.
+     *
+     * @param listener A reference to the listener object
+     * @param capacity The maximum number of pending changes
+     * @param policy What to do with new changes while the queue is full
+     * @return The queue, to monitor its depth and dropped changes
+     * @throws InvalidatedPinException If the pin object has already been invalidated
+     * @throws IllegalArgumentException If the capacity is not positive
+     */
+    ListenerQueue addListener(PinStateListener listener, int capacity, OverflowPolicy policy)
+    throws InvalidatedPinException, IllegalArgumentException;
+
+    /**
+     * Registers a listener receiving the level, direction, capture time and sequence
+     * number of every state change
+     *
+     * @param listener A reference to the listener object
+     * @throws InvalidatedPinException If the pin object has already been invalidated
+     */
+    void addEventListener(PinEventListener listener) throws InvalidatedPinException;
+
+    /**
+     * Registers an event listener notified asynchronously, see
+     * addListener(PinStateListener, int, OverflowPolicy). Sequence numbers tell the
+     * listener where changes were dropped.
+     *
+     * @param listener A reference to the listener object
+     * @param capacity The maximum number of pending changes
+     * @param policy What to do with new changes while the queue is full
+     * @return The queue, to monitor its depth and dropped changes
+     * @throws InvalidatedPinException If the pin object has already been invalidated
+     * @throws IllegalArgumentException If the capacity is not positive
+     */
+    ListenerQueue addEventListener(PinEventListener listener, int capacity, OverflowPolicy policy)
+    throws InvalidatedPinException, IllegalArgumentException;
+
+    /**
+     * Filters this pin's state changes before they reach any listener: bounces and
+     * glitches shorter than the stable time are suppressed and reports are capped at the
+     * maximum rate. Timing is driven by a single timer thread shared by every pin, and
+     * delayed changes are delivered on a single dispatcher thread, also shared by every
+     * pin.
+     *
+     * @param config The filter settings, copied; null removes the filter
+     * @throws InvalidatedPinException If the pin object has already been invalidated
+     */
+    void setDebounce(DebounceConfig config) throws InvalidatedPinException;
+
+    /**
+     * Returns the number of edges the debounce filter kept from the listeners
+     *
+     * @return The suppressed edge count
+     */
+    long getSuppressedEdgeCount();
+
+    /**
+     * Returns the number of edges reported since counting started or the counters were
+     * reset. Counting happens after debouncing, like a hardware counter behind an input
+     * filter. Backends that only watch pins on demand start watching the first time any
+     * counter method is called, so call resetCounters to arm the counters up front.
+     *
+     * @param edge The edge to count, null for both
+     * @return The edge count
+     */
+    long getEdgeCount(Edge edge);
+
+    /**
+     * Returns the width of the last complete high pulse, from a rising to the next
+     * falling edge
+     *
+     * @return The width in nanoseconds, zero until a pulse completed
+     */
+    long getPulseWidthNanos();
+
+    /**
+     * Returns the time between the last two rising edges
+     *
+     * @return The period in nanoseconds, zero until two rising edges were seen
+     */
+    long getPeriodNanos();
+
+    /**
+     * Returns the rising edges per second over the sliding frequency window ending
+     * now, one second unless changed. Reading it never blocks the edge path.
+     *
+     * @return The frequency in Hz
+     */
+    double getFrequencyHz();
+
+    /**
+     * Changes the length of the sliding frequency window. Longer windows give steadier
+     * readings of slow signals, shorter ones follow changes faster. The frequency
+     * starts over.
+     *
+     * @param window The window length
+     * @param unit The unit of the window length
+     * @throws IllegalArgumentException If the window is not positive
+     */
+    void setFrequencyWindow(long window, TimeUnit unit);
+
+    /**
+     * Clears the edge counts and the pulse, period and frequency measurements
+     */
+    void resetCounters();
 }
\ No newline at end of file
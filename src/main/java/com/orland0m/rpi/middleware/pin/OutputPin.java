@@ -52,4 +52,19 @@ public interface OutputPin extends RpiPin {
      * @throws InvalidatedPinException If the pin object has already been invalidated
      */
     public void toggle() throws InvalidatedPinException;
+
+    /**
+     * Sets this pin state without throwing
+     *
+     * @param high True to set the pin up, false to set it down
+     * @return PinStatus.OK, or PinStatus.INVALIDATED if the pin object has already been invalidated
+     */
+    public int trySet(boolean high);
+
+    /**
+     * Inverts this pin state without throwing
+     *
+     * @return PinStatus.OK, or PinStatus.INVALIDATED if the pin object has already been invalidated
+     */
+    public int tryToggle();
 }
\ No newline at end of file
@@ -23,8 +23,14 @@
  */
 package com.orland0m.rpi.middleware.pin;
 
+import java.util.concurrent.TimeUnit;
+
 import com.orland0m.rpi.middleware.exception.AccessorDownException;
+import com.orland0m.rpi.middleware.exception.InvalidatedPinException;
 import com.orland0m.rpi.middleware.exception.PinBusyException;
+import com.orland0m.rpi.middleware.journal.PinJournal;
+import com.orland0m.rpi.middleware.journal.PinSnapshot;
+import com.orland0m.rpi.middleware.metrics.PinMetrics;
 
 /**
  * Common interface for pin accessors, this interface is shared exposed
@@ -48,6 +54,47 @@ public interface PinAccessor {
      */
     boolean isDown();
 
+    /**
+     * Returns the metrics registry shared by every pin this accessor provisions
+     *
+     * @return The accessor's metrics, never null
+     */
+    PinMetrics getMetrics();
+
+    /**
+     * Starts or stops journaling the traffic of every pin this accessor provisions:
+     * provisioning, invalidation, output writes and input edges. The journal is not
+     * closed when replaced or when the accessor shuts down.
+     *
+     * @param journal The journal to append to, null to stop journaling
+     */
+    void setJournal(PinJournal journal);
+
+    /**
+     * Starts or stops persisting the state of every pin this accessor provisions into
+     * the given snapshot. Pins already provisioned are recorded right away. The snapshot
+     * is not closed when replaced or when the accessor shuts down. Shutting down leaves
+     * it describing the pins as they were, and leaves the outputs of backends that drive
+     * hardware at their last level instead of driving them low.
+     *
+     * @param snapshot The snapshot to keep up to date, null to stop persisting
+     */
+    void setSnapshot(PinSnapshot snapshot);
+
+    /**
+     * Provisions every pin recorded in a snapshot in a single pass, outputs at their
+     * recorded level and inputs with their recorded debounce filter and frequency
+     * window, then keeps the snapshot up to date as with setSnapshot. Backends that can
+     * provision an output at a given level do so without ever driving it to another
+     * level first. Listeners are not persisted and have to be registered again.
+     *
+     * @param snapshot The snapshot written before the restart
+     * @return The number of pins restored
+     * @throws PinBusyException If a recorded pin is provisioned and busy in another direction
+     * @throws AccessorDownException If this accessor is already down
+     */
+    int restore(PinSnapshot snapshot) throws PinBusyException, AccessorDownException;
+
     /**
      * Provisions the given pin as input pin and returns a manager object
      *
@@ -145,4 +192,86 @@ public interface PinAccessor {
      */
     OutputPin getOutGpio(WiringPi gpio) throws IllegalArgumentException, PinBusyException,
                   AccessorDownException;
+
+    /**
+     * Reads the level of every provisioned pin at once
+     *
+     * @return Bitmask of levels, bit N is set if the pin with GPIO address N is high; bits of
+     * pins that are not provisioned are always clear. See PinSet#isHigh
+     * @throws AccessorDownException If this accessor has already been shutdown
+     */
+    int readAll() throws AccessorDownException;
+
+    /**
+     * Sets many output pins at once. Backends able to do it write all pins with a single
+     * register access, so there is no skew between them.
+     *
+     * @param mask Bitmask of the GPIO addresses to write, see PinSet#mask
+     * @param values Bitmask with the level for each GPIO in the mask
+     * @throws IllegalArgumentException If a GPIO in the mask is not provisioned as a valid output
+     * pin, in which case nothing is written
+     * @throws AccessorDownException If this accessor has already been shutdown
+     */
+    void writeMasked(int mask, int values) throws IllegalArgumentException, AccessorDownException;
+
+    /**
+     * Blocks until every write issued so far has been applied. Accessors that write
+     * immediately return right away; accessors that batch writes send the pending batch.
+     *
+     * @throws PinBusyException If a pending write could not be applied because its pin was busy
+     * @throws InvalidatedPinException If a pending write could not be applied because its pin was invalidated
+     * @throws AccessorDownException If this accessor has already been shutdown
+     */
+    void flush() throws PinBusyException, InvalidatedPinException, AccessorDownException;
+
+    /**
+     * Provisions the given pin as input pin without throwing on busy or shutdown conditions
+     *
+     * @param gpio The gpio's WiringPi object
+     * @return A reference to the pin manager, or null if the accessor is down or the GPIO is
+     * provisioned as output pin and currently marked as busy
+     */
+    InputPin tryGetInGpio(WiringPi gpio);
+    /**
+     * Provisions the given pin as output pin without throwing on busy or shutdown conditions
+     *
+     * @param gpio The gpio's WiringPi object
+     * @return A reference to the pin manager, or null if the accessor is down or the GPIO is
+     * provisioned as input pin and currently marked as busy
+     */
+    OutputPin tryGetOutGpio(WiringPi gpio);
+    /**
+     * Returns the pin already provisioned for the given GPIO without provisioning it
+     *
+     * @param gpio The gpio's WiringPi object
+     * @return A reference to the pin manager, in either direction and possibly invalidated,
+     * or null if the accessor is down or the GPIO is not provisioned
+     */
+    RpiPin findGpio(WiringPi gpio);
+
+    /**
+     * Takes exclusive ownership of an already provisioned pin if it is currently free
+     *
+     * @param gpio The gpio's WiringPi object
+     * @return The lease object, or null if the pin is currently busy
+     * @throws IllegalArgumentException If the given GPIO has not been provisioned
+     * @throws InvalidatedPinException If the provisioned pin has already been invalidated
+     * @throws AccessorDownException If this accessor has already been shutdown
+     */
+    PinLease tryAcquire(WiringPi gpio) throws IllegalArgumentException, InvalidatedPinException,
+                 AccessorDownException;
+    /**
+     * Takes exclusive ownership of an already provisioned pin, waiting up to the given time
+     *
+     * @param gpio The gpio's WiringPi object
+     * @param timeout The maximum time to wait
+     * @param unit The unit of the timeout argument
+     * @return The lease object, or null if the timeout elapsed before the pin was free
+     * @throws IllegalArgumentException If the given GPIO has not been provisioned
+     * @throws InvalidatedPinException If the provisioned pin is invalidated before or while waiting
+     * @throws AccessorDownException If this accessor has already been shutdown
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     */
+    PinLease acquire(WiringPi gpio, long timeout, TimeUnit unit) throws IllegalArgumentException,
+                 InvalidatedPinException, AccessorDownException, InterruptedException;
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.middleware.pin;
+
+/**
+ * Exclusive ownership of a pin obtained through RpiPin#acquire or RpiPin#tryAcquire.
+ * Closing the lease releases the pin and hands it to the next waiting thread, so
+ * leases are meant to be used in try-with-resources blocks.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public interface PinLease extends AutoCloseable {
+    /**
+     * Returns the pin owned through this lease
+     *
+     * @return A reference to the pin object
+     */
+    RpiPin getPin();
+
+    /**
+     * Returns true while this lease still owns the pin. A lease stops being active once
+     * it is closed, or once it is revoked for exceeding the pin's maximum lease time.
+     *
+     * @return True if this lease still owns the pin
+     */
+    boolean isActive();
+
+    /**
+     * Releases the pin, calling it on an inactive lease does nothing
+     */
+    @Override
+    void close();
+}
\ No newline at end of file
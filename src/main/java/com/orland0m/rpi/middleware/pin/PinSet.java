@@ -0,0 +1,229 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.middleware.pin;
+
+/**
+ * Immutable set of GPIOs stored as a 32 bit mask, bit N corresponds to the WiringPi
+ * GPIO address N. Used to read and write many pins with a single accessor call, see
+ * PinAccessor#readAll and PinAccessor#writeMasked.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public final class PinSet {
+    /*! The set with no GPIOs */
+    private static final PinSet EMPTY = new PinSet(0);
+    /*! Bitmask of the GPIO addresses in this set */
+    private final int mask;
+
+    /**
+     * Initializes a set from a mask
+     *
+     * @param mask Bitmask of GPIO addresses
+     */
+    private PinSet(int mask) {
+        this.mask = mask;
+    }
+
+    /**
+     * Returns an empty set
+     *
+     * @return The empty set
+     */
+    public static PinSet empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a set with the given GPIOs
+     *
+     * @param gpios The GPIOs in the set
+     * @return The new set
+     */
+    public static PinSet of(WiringPi... gpios) {
+        int mask = 0;
+
+        for(WiringPi gpio : gpios) {
+            mask |= bit(gpio);
+        }
+
+        return new PinSet(mask);
+    }
+
+    /**
+     * Creates a set from a mask of GPIO addresses
+     *
+     * @param mask Bitmask of GPIO addresses
+     * @return The new set
+     * @throws IllegalArgumentException If the mask contains an address that is not a WiringPi GPIO
+     */
+    public static PinSet fromMask(int mask) throws IllegalArgumentException {
+        for(int remaining = mask; remaining != 0; remaining &= remaining - 1) {
+            WiringPi.fromGpioAddress(Integer.numberOfTrailingZeros(remaining));
+        }
+
+        return new PinSet(mask);
+    }
+
+    /**
+     * Returns the mask bit used for the given GPIO
+     *
+     * @param gpio The GPIO in question
+     * @return The mask with only that GPIO's bit set
+     */
+    public static int bit(WiringPi gpio) {
+        return 1 << gpio.getGpioAddress();
+    }
+
+    /**
+     * Checks the level of a GPIO inside a value returned by PinAccessor#readAll
+     *
+     * @param levels The levels bitmask
+     * @param gpio The GPIO in question
+     * @return True if the GPIO's bit is set
+     */
+    public static boolean isHigh(int levels, WiringPi gpio) {
+        return (levels & bit(gpio)) != 0;
+    }
+
+    /**
+     * Returns the mask of GPIO addresses in this set
+     *
+     * @return The bitmask
+     */
+    public int mask() {
+        return mask;
+    }
+
+    /**
+     * Returns the number of GPIOs in this set
+     *
+     * @return The GPIO count
+     */
+    public int size() {
+        return Integer.bitCount(mask);
+    }
+
+    /**
+     * Returns true if this set has no GPIOs
+     *
+     * @return True if the set is empty
+     */
+    public boolean isEmpty() {
+        return mask == 0;
+    }
+
+    /**
+     * Returns true if the given GPIO is part of this set
+     *
+     * @param gpio The GPIO in question
+     * @return True if the GPIO is in the set
+     */
+    public boolean contains(WiringPi gpio) {
+        return (mask & bit(gpio)) != 0;
+    }
+
+    /**
+     * Returns a set with the given GPIO added
+     *
+     * @param gpio The GPIO to add
+     * @return The resulting set
+     */
+    public PinSet with(WiringPi gpio) {
+        return new PinSet(mask | bit(gpio));
+    }
+
+    /**
+     * Returns a set with the given GPIO removed
+     *
+     * @param gpio The GPIO to remove
+     * @return The resulting set
+     */
+    public PinSet without(WiringPi gpio) {
+        return new PinSet(mask & ~bit(gpio));
+    }
+
+    /**
+     * Returns a set with the GPIOs of both sets
+     *
+     * @param other The other set
+     * @return The resulting set
+     */
+    public PinSet union(PinSet other) {
+        return new PinSet(mask | other.mask);
+    }
+
+    /**
+     * Builds a values mask where every GPIO in this set gets the same level
+     *
+     * @param high True to set every GPIO high
+     * @return The values mask to be used with PinAccessor#writeMasked
+     */
+    public int valuesFor(boolean high) {
+        return high ? mask : 0;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof PinSet && ((PinSet)other).mask == mask;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return mask;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return toString(mask);
+    }
+
+    /**
+     * Formats a GPIO address mask as a list of GPIO names
+     *
+     * @param mask Bitmask of GPIO addresses
+     * @return The formatted list
+     */
+    public static String toString(int mask) {
+        StringBuilder builder = new StringBuilder("[");
+
+        for(int remaining = mask; remaining != 0; remaining &= remaining - 1) {
+            if(builder.length() > 1) {
+                builder.append(", ");
+            }
+
+            builder.append("GPIO_").append(Integer.numberOfTrailingZeros(remaining));
+        }
+
+        return builder.append(']').toString();
+    }
+}
\ No newline at end of file
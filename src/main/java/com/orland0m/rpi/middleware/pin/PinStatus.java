@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.middleware.pin;
+
+/**
+ * Status codes returned by the non-throwing pin operations. Non-negative values mean
+ * success, negative values describe why the operation could not be performed.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public final class PinStatus {
+    /*! The operation was performed */
+    public static final int OK = 0;
+    /*! Read result: the pin is in a low state */
+    public static final int LOW = 0;
+    /*! Read result: the pin is in a high state */
+    public static final int HIGH = 1;
+    /*! The pin object has already been invalidated */
+    public static final int INVALIDATED = -1;
+    /*! The pin is currently busy */
+    public static final int BUSY = -2;
+    /*! The accessor has already been shutdown */
+    public static final int ACCESSOR_DOWN = -3;
+    /*! A remote accessor could not be reached */
+    public static final int UNREACHABLE = -4;
+
+    /**
+     * Constants holder, not meant to be instantiated
+     */
+    private PinStatus() {
+    }
+
+    /**
+     * Returns true if the given status code means success
+     *
+     * @param status The status code
+     * @return True if the status is OK, LOW or HIGH
+     */
+    public static boolean isSuccess(int status) {
+        return status >= 0;
+    }
+
+    /**
+     * Returns a human readable name for the given status code
+     *
+     * @param status The status code
+     * @return The status name
+     */
+    public static String toString(int status) {
+        switch(status) {
+            case OK:
+                return "OK";
+
+            case HIGH:
+                return "HIGH";
+
+            case INVALIDATED:
+                return "INVALIDATED";
+
+            case BUSY:
+                return "BUSY";
+
+            case ACCESSOR_DOWN:
+                return "ACCESSOR_DOWN";
+
+            case UNREACHABLE:
+                return "UNREACHABLE";
+
+            default:
+                return "UNKNOWN(" + status + ")";
+        }
+    }
+}
\ No newline at end of file
@@ -23,6 +23,8 @@
  */
 package com.orland0m.rpi.middleware.pin;
 
+import java.util.concurrent.TimeUnit;
+
 import com.orland0m.rpi.middleware.exception.InvalidatedPinException;
 import com.orland0m.rpi.middleware.exception.PinBusyException;
 
@@ -46,6 +48,13 @@ public interface RpiPin {
      * @throws InvalidatedPinException If the pin object has already been invalidated
      */
     boolean isDown() throws InvalidatedPinException;
+    /**
+     * Reads this pin's level without throwing
+     *
+     * @return PinStatus.HIGH or PinStatus.LOW, or PinStatus.INVALIDATED if the pin object
+     * has already been invalidated
+     */
+    int tryRead();
     /**
      * Returns the GPIO information object of this pin
      *
@@ -94,4 +103,50 @@ public interface RpiPin {
      * @return True if the resource is currently valid
      */
     boolean isValid();
+
+    /**
+     * Takes exclusive ownership of this pin if it is free and no other thread is waiting for it
+     *
+     * @return The lease object, or null if the pin is currently busy
+     * @throws InvalidatedPinException If the pin object has already been invalidated
+     */
+    PinLease tryAcquire() throws InvalidatedPinException;
+    /**
+     * Takes exclusive ownership of this pin, waiting up to the given time for it to be free.
+     * Waiting threads are parked and served in arrival order.
+     *
+     * @param timeout The maximum time to wait
+     * @param unit The unit of the timeout argument
+     * @return The lease object, or null if the timeout elapsed before the pin was free
+     * @throws InvalidatedPinException If the pin object is invalidated before or while waiting
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     */
+    PinLease acquire(long timeout, TimeUnit unit) throws InvalidatedPinException,
+          InterruptedException;
+    /**
+     * Sets the maximum time a lease may hold this pin. Once exceeded, the lease is revoked
+     * and the pin is handed to the next waiting thread. Zero disables revocation.
+     *
+     * @param time The maximum lease time, or zero
+     * @param unit The unit of the time argument
+     */
+    void setMaxLeaseTime(long time, TimeUnit unit);
+    /**
+     * Returns the number of acquire calls that had to wait because the pin was busy
+     *
+     * @return The contended acquire count
+     */
+    long getLeaseContentionCount();
+    /**
+     * Returns the total time threads have spent waiting to acquire this pin
+     *
+     * @return The accumulated wait time in nanoseconds
+     */
+    long getLeaseWaitNanos();
+    /**
+     * Returns the number of leases revoked for exceeding the maximum lease time
+     *
+     * @return The revoked lease count
+     */
+    long getRevokedLeaseCount();
 }
\ No newline at end of file
@@ -0,0 +1,151 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.middleware.pin;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable, precompiled timeline of output transitions played by WaveformPlayer. Each
+ * transition is a time offset from the start of the timeline and a PinAccessor
+ * #writeMasked call, mask and values. The timeline is kept in primitive arrays so
+ * playing it never touches an object per transition.
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public final class Waveform {
+    /*! Offset of every transition from the start, ascending */
+    private final long[] offsets;
+    /*! GPIO mask written by every transition */
+    private final int[] masks;
+    /*! Levels written by every transition */
+    private final int[] values;
+    /*! Length of one repetition, the first transition of the next one starts after it */
+    private final long periodNanos;
+
+    /**
+     * Compiles a timeline, the arrays are copied
+     *
+     * @param offsetsNanos Offset of every transition from the start in nanoseconds, ascending
+     * @param masks GPIO mask written by every transition, see PinSet#mask
+     * @param values Levels written by every transition
+     * @param periodNanos Length of one repetition, greater than the last offset
+     * @throws IllegalArgumentException If the arrays are empty or differ in length, or the
+     * offsets are not ascending and within the period
+     */
+    public Waveform(long[] offsetsNanos, int[] masks, int[] values, long periodNanos)
+    throws IllegalArgumentException {
+        if(offsetsNanos.length == 0 || offsetsNanos.length != masks.length
+                || offsetsNanos.length != values.length) {
+            throw new IllegalArgumentException("Timeline arrays must be non empty and of equal length");
+        }
+
+        long previous = 0;
+
+        for(long offset : offsetsNanos) {
+            if(offset < previous) {
+                throw new IllegalArgumentException("Offsets must be ascending and not negative: " + offset);
+            }
+
+            previous = offset;
+        }
+
+        if(periodNanos <= previous) {
+            throw new IllegalArgumentException("Period must be greater than the last offset: " + periodNanos);
+        }
+
+        this.offsets = offsetsNanos.clone();
+        this.masks = masks.clone();
+        this.values = values.clone();
+        this.periodNanos = periodNanos;
+    }
+
+    /**
+     * Compiles a square wave: the pins go high at the start and low after the high time
+     *
+     * @param mask The GPIOs to drive, see PinSet#mask
+     * @param high Time spent high
+     * @param low Time spent low
+     * @param unit The unit of the time arguments
+     * @return The waveform
+     * @throws IllegalArgumentException If a time is not positive
+     */
+    public static Waveform square(int mask, long high, long low, TimeUnit unit)
+    throws IllegalArgumentException {
+        if(high <= 0 || low <= 0) {
+            throw new IllegalArgumentException("High and low times must be positive");
+        }
+
+        long highNanos = unit.toNanos(high);
+        return new Waveform(new long[] {0, highNanos}, new int[] {mask, mask},
+                            new int[] {mask, 0}, highNanos + unit.toNanos(low));
+    }
+
+    /**
+     * Returns the number of transitions
+     *
+     * @return The number of transitions in one repetition
+     */
+    public int size() {
+        return offsets.length;
+    }
+
+    /**
+     * Returns the offset of a transition from the start
+     *
+     * @param transition The transition index
+     * @return The offset in nanoseconds
+     */
+    public long getOffsetNanos(int transition) {
+        return offsets[transition];
+    }
+
+    /**
+     * Returns the GPIO mask written by a transition
+     *
+     * @param transition The transition index
+     * @return Bitmask of GPIO addresses
+     */
+    public int getMask(int transition) {
+        return masks[transition];
+    }
+
+    /**
+     * Returns the levels written by a transition
+     *
+     * @param transition The transition index
+     * @return Bitmask with the level for each GPIO in the mask
+     */
+    public int getValues(int transition) {
+        return values[transition];
+    }
+
+    /**
+     * Returns the length of one repetition
+     *
+     * @return The period in nanoseconds
+     */
+    public long getPeriodNanos() {
+        return periodNanos;
+    }
+}
\ No newline at end of file
@@ -32,15 +32,16 @@ import java.util.Map;
  * @author Orlando Miramontes <https://github.com/orland0m>
  */
 public enum WiringPi {
-    GPIO_8(8, 3), GPIO_9(9, 5), GPIO_7(7, 7),
-    GPIO_0(0, 11), GPIO_2(2, 13), GPIO_3(3, 15),
-    GPIO_12(12, 19), GPIO_13(13, 21), GPIO_14(14, 23),
-    GPIO_30(30, 27), GPIO_21(21, 29), GPIO_22(22, 31), GPIO_23(23, 33), GPIO_24(24, 35), GPIO_25(25, 37),
-    GPIO_15(15, 8), GPIO_16(16, 10), GPIO_1(1, 12),
-    GPIO_4(4, 16), GPIO_5(5, 18),
-    GPIO_6(6, 22), GPIO_10(10, 24), GPIO_11(11, 26), GPIO_31(31, 28),
-    GPIO_26(26, 32),
-    GPIO_27(27, 36), GPIO_28(28, 38), GPIO_29(29, 40);
+    GPIO_8(8, 3, 2), GPIO_9(9, 5, 3), GPIO_7(7, 7, 4),
+    GPIO_0(0, 11, 17), GPIO_2(2, 13, 27), GPIO_3(3, 15, 22),
+    GPIO_12(12, 19, 10), GPIO_13(13, 21, 9), GPIO_14(14, 23, 11),
+    GPIO_30(30, 27, 0), GPIO_21(21, 29, 5), GPIO_22(22, 31, 6), GPIO_23(23, 33, 13), GPIO_24(24, 35, 19),
+    GPIO_25(25, 37, 26),
+    GPIO_15(15, 8, 14), GPIO_16(16, 10, 15), GPIO_1(1, 12, 18),
+    GPIO_4(4, 16, 23), GPIO_5(5, 18, 24),
+    GPIO_6(6, 22, 25), GPIO_10(10, 24, 8), GPIO_11(11, 26, 7), GPIO_31(31, 28, 1),
+    GPIO_26(26, 32, 12),
+    GPIO_27(27, 36, 16), GPIO_28(28, 38, 20), GPIO_29(29, 40, 21);
 
     /*! A map used to translate GPIO number into a WiringPi object */
     private static final Map<Integer, WiringPi> intToWiringPiMap;
@@ -65,15 +66,20 @@ public enum WiringPi {
     private final int gpioNumber;
     /*! This GPIOs physical pin */
     private final int physicalPinNumber;
+    /*! This GPIOs Broadcom SoC number, used to address the GPIO registers */
+    private final int bcmNumber;
 
     /**
      * Initializes a WiringPi object with the given GPIO number
      *
      * @param gpioNumber The GPIO number to be used
+     * @param physicalPinNumber The physical pin number on the 40 pin header
+     * @param bcmNumber The Broadcom SoC GPIO number
      */
-    private WiringPi(int gpioNumber, int physicalPinNumber) {
+    private WiringPi(int gpioNumber, int physicalPinNumber, int bcmNumber) {
         this.gpioNumber = gpioNumber;
         this.physicalPinNumber = physicalPinNumber;
+        this.bcmNumber = bcmNumber;
     }
 
     /*! Returns the integer value associated with this GPIO object */
@@ -86,6 +92,11 @@ public enum WiringPi {
         return physicalPinNumber;
     }
 
+    /*! Returns this GPIO's Broadcom SoC number */
+    public int getBcmGpio() {
+        return bcmNumber;
+    }
+
     /**
      * Parses the given GPIO number and returns the corresponding WiringPi object
      *
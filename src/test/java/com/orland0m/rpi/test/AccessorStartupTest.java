@@ -0,0 +1,163 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.test;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.orland0m.rpi.access.sim.SimulatedPinAccessor;
+import com.orland0m.rpi.middleware.AccessorStartup;
+import com.orland0m.rpi.middleware.StartupProfile;
+import com.orland0m.rpi.middleware.StartupState;
+import com.orland0m.rpi.middleware.pin.PinSet;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * ULT class for background accessor startup
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class AccessorStartupTest {
+    /*! The board brought up */
+    private SimulatedPinAccessor board;
+    /*! The profile under test */
+    private StartupProfile profile;
+
+    @Before
+    public void setUp() {
+        board = new SimulatedPinAccessor();
+        profile = new StartupProfile();
+        profile.setInputs(PinSet.of(WiringPi.GPIO_7).mask());
+        profile.setOutputs(PinSet.of(WiringPi.GPIO_0, WiringPi.GPIO_1, WiringPi.GPIO_2).mask());
+        profile.setParallelism(3);
+        profile.setWarmupIterations(100);
+    }
+
+    @After
+    public void tearDown() {
+        board.shutdown();
+    }
+
+    /**
+     * Ensures every phase runs in order, provisions and warms up the declared pins, and
+     * is timed
+     */
+    @Test(timeout = 10000)
+    public void readyTest() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AccessorStartup startup = new AccessorStartup(board, profile, () -> {
+            try {
+                release.await();
+
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        assertEquals(StartupState.NEW, startup.getState());
+        startup.start();
+        assertEquals(StartupState.INITIALIZING, startup.getState());
+        assertFalse(startup.awaitReady(20, TimeUnit.MILLISECONDS));
+
+        // Callers gated on the initialization wait for it
+        Thread gated = new Thread(startup::awaitInitialized);
+        gated.start();
+        gated.join(50);
+        assertTrue(gated.isAlive());
+
+        release.countDown();
+        gated.join();
+        assertTrue(startup.awaitReady(5, TimeUnit.SECONDS));
+        assertEquals(StartupState.READY, startup.getState());
+        assertNull(startup.getFailure());
+
+        assertTrue(startup.getPhaseNanos(StartupState.INITIALIZING) >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(startup.getPhaseNanos(StartupState.PROVISIONING) > 0);
+        assertTrue(startup.getPhaseNanos(StartupState.WARMING_UP) > 0);
+        assertEquals(0, startup.getPhaseNanos(StartupState.READY));
+
+        assertTrue(board.getMetrics().getReads(WiringPi.GPIO_7) >= 100);
+        assertTrue(board.getMetrics().getReads(WiringPi.GPIO_0) >= 100);
+
+        // Warming up never writes, the outputs stay as they were provisioned
+        assertEquals(0, board.getMetrics().getWrites(WiringPi.GPIO_0));
+        assertFalse(board.getOutGpio(WiringPi.GPIO_0).isUp());
+        assertEquals(0, board.readAll() & profile.getOutputs());
+
+        try {
+            startup.start();
+            fail("Expected IllegalStateException");
+
+        } catch(IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Ensures a failed initialization is reported to every waiter
+     */
+    @Test(timeout = 10000)
+    public void failureTest() throws InterruptedException {
+        AccessorStartup startup = new AccessorStartup(board, profile, () -> {
+            throw new IllegalStateException("No native library");
+        });
+        startup.start();
+
+        try {
+            startup.awaitReady(5, TimeUnit.SECONDS);
+            fail("Expected IllegalStateException");
+
+        } catch(IllegalStateException e) {
+            assertEquals("No native library", e.getCause().getMessage());
+        }
+
+        assertEquals(StartupState.FAILED, startup.getState());
+
+        try {
+            startup.awaitInitialized();
+            fail("Expected IllegalStateException");
+
+        } catch(IllegalStateException e) {
+            // Expected
+        }
+
+        // Later phases never ran
+        assertEquals(0, startup.getPhaseNanos(StartupState.PROVISIONING));
+    }
+
+    /**
+     * Ensures a pin cannot be declared in both directions
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void conflictTest() {
+        profile.setInputs(profile.getOutputs());
+        new AccessorStartup(board, profile, null);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,210 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.orland0m.rpi.middleware.exception.AccessorDownException;
+import com.orland0m.rpi.middleware.pin.InputPin;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+import com.orland0m.rpi.test.helper.StubAccessor;
+
+/**
+ * ULT class for the BaseAccessor pin registry
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class BaseAccessorTest {
+    /*! Number of threads used on concurrent tests */
+    private static final int THREADS = 8;
+
+    /**
+     * Ensures cached pins are reused and that switching direction invalidates the old pin
+     */
+    @Test
+    public void reuseAndReleaseTest() {
+        StubAccessor accessor = new StubAccessor();
+        OutputPin out = accessor.getOutGpio(WiringPi.GPIO_1);
+        assertSame(out, accessor.getOutGpio(1));
+        assertSame(out, accessor.getOutPin(12));
+
+        InputPin in = accessor.getInGpio(WiringPi.GPIO_1);
+        assertFalse(out.isValid());
+        assertTrue(in.isValid());
+        assertSame(in, accessor.getInGpio("GPIO_1"));
+    }
+
+    /**
+     * Ensures only one registration wins when many threads race on the same GPIO
+     *
+     * @throws InterruptedException If the test thread is interrupted
+     */
+    @Test
+    public void concurrentRegisterTest() throws InterruptedException {
+        final StubAccessor accessor = new StubAccessor();
+        final AtomicInteger winners = new AtomicInteger();
+        final AtomicInteger losers = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+
+        for(int i = 0; i < THREADS; i++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    accessor.register(new StubAccessor.StubOutputPin(WiringPi.GPIO_7));
+                    winners.incrementAndGet();
+
+                } catch(IllegalArgumentException e) {
+                    losers.incrementAndGet();
+
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(1, winners.get());
+        assertEquals(THREADS - 1, losers.get());
+    }
+
+    /**
+     * Ensures threads racing to provision the same GPIO all get the single pin built
+     *
+     * @throws InterruptedException If the test thread is interrupted
+     */
+    @Test
+    public void concurrentProvisionTest() throws InterruptedException {
+        final StubAccessor accessor = new StubAccessor();
+        final Set<OutputPin> pins = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        final AtomicInteger failures = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+
+        for(int i = 0; i < THREADS; i++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    pins.add(accessor.getOutGpio(WiringPi.GPIO_7));
+
+                } catch(RuntimeException e) {
+                    failures.incrementAndGet();
+
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(0, failures.get());
+        assertEquals(1, pins.size());
+        assertTrue(pins.iterator().next().isValid());
+    }
+
+    /**
+     * Ensures tryGetOutGpio returns the winner's pin instead of throwing when a pin is
+     * registered behind its back
+     *
+     * @throws InterruptedException If the test thread is interrupted
+     */
+    @Test(timeout = 30000)
+    public void tryGetRaceTest() throws InterruptedException {
+        for(int i = 0; i < 200; i++) {
+            final StubAccessor accessor = new StubAccessor();
+            final StubAccessor.StubOutputPin registered =
+                new StubAccessor.StubOutputPin(WiringPi.GPIO_7);
+            final CountDownLatch start = new CountDownLatch(1);
+            Thread registrar = new Thread(() -> {
+                try {
+                    start.await();
+                    accessor.register(registered);
+
+                } catch(IllegalArgumentException e) {
+                    // tryGetOutGpio won
+
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            registrar.start();
+            start.countDown();
+            OutputPin pin = accessor.tryGetOutGpio(WiringPi.GPIO_7);
+            registrar.join();
+
+            assertNotNull(pin);
+            assertSame(pin, accessor.findGpio(WiringPi.GPIO_7));
+        }
+    }
+
+    /**
+     * Ensures shutdown invalidates every registered pin and refuses further requests
+     */
+    @Test
+    public void shutdownTest() {
+        StubAccessor accessor = new StubAccessor();
+        OutputPin out = accessor.getOutGpio(WiringPi.GPIO_0);
+        InputPin in = accessor.getInGpio(WiringPi.GPIO_2);
+        out.markBusy();
+
+        try {
+            accessor.shutdown();
+            fail("Shutdown should fail while a pin is busy");
+
+        } catch(RuntimeException e) {
+            assertFalse(accessor.isDown());
+        }
+
+        out.markFree();
+        assertSame(out, accessor.getOutGpio(WiringPi.GPIO_0));
+        accessor.shutdown();
+        assertTrue(accessor.isDown());
+        assertFalse(out.isValid());
+        assertFalse(in.isValid());
+
+        try {
+            accessor.getOutGpio(WiringPi.GPIO_0);
+            fail("Accessor should be down");
+
+        } catch(AccessorDownException e) {
+            // Expected
+        }
+    }
+}
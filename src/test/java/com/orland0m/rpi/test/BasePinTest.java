@@ -0,0 +1,184 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.test;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.orland0m.rpi.middleware.exception.InvalidatedPinException;
+import com.orland0m.rpi.middleware.exception.PinBusyException;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+import com.orland0m.rpi.test.helper.StubAccessor.StubOutputPin;
+
+/**
+ * ULT class for the BasePin state machine
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class BasePinTest {
+    /*! Number of threads used on stress tests */
+    private static final int THREADS = 8;
+    /*! Number of busy/free cycles each thread attempts */
+    private static final int ITERATIONS = 20000;
+
+    /**
+     * Ensures the single threaded transitions behave like the documented contract
+     */
+    @Test
+    public void transitionsTest() {
+        StubOutputPin pin = new StubOutputPin(WiringPi.GPIO_0);
+        assertTrue(pin.isValid());
+        assertTrue(pin.isFree());
+        pin.markBusy();
+        assertTrue(pin.isBusy());
+
+        try {
+            pin.markBusy();
+            fail("Pin was already busy");
+
+        } catch(PinBusyException e) {
+            // Expected
+        }
+
+        try {
+            pin.markInvalid();
+            fail("Busy pins cannot be invalidated");
+
+        } catch(PinBusyException e) {
+            assertTrue(pin.isValid());
+        }
+
+        pin.markFree();
+        pin.markInvalid();
+        assertFalse(pin.isValid());
+
+        try {
+            pin.up();
+            fail("Pin is invalid");
+
+        } catch(InvalidatedPinException e) {
+            // Expected
+        }
+
+        try {
+            pin.isBusy();
+            fail("Pin is invalid");
+
+        } catch(InvalidatedPinException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Hammers markBusy/markFree from many threads while another thread keeps trying to
+     * invalidate the pin. Only one thread may own the pin at any time and the pin must
+     * never become invalid while it is owned.
+     *
+     * @throws InterruptedException If the test thread is interrupted
+     */
+    @Test
+    public void concurrentTransitionsTest() throws InterruptedException {
+        final StubOutputPin pin = new StubOutputPin(WiringPi.GPIO_1);
+        final AtomicInteger owners = new AtomicInteger();
+        final AtomicInteger acquired = new AtomicInteger();
+        final AtomicInteger invalidations = new AtomicInteger();
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS + 1);
+
+        for(int i = 0; i < THREADS; i++) {
+            pool.execute(() -> {
+                awaitQuietly(start);
+
+                for(int j = 0; j < ITERATIONS; j++) {
+                    try {
+                        pin.markBusy();
+
+                    } catch(PinBusyException e) {
+                        continue;
+
+                    } catch(InvalidatedPinException e) {
+                        break;
+                    }
+
+                    acquired.incrementAndGet();
+
+                    if(owners.incrementAndGet() != 1) {
+                        failure.compareAndSet(null, "Two threads owned the pin at once");
+                    }
+
+                    if(!pin.isValid()) {
+                        failure.compareAndSet(null, "Pin was invalidated while busy");
+                    }
+
+                    owners.decrementAndGet();
+                    pin.markFree();
+                }
+            });
+        }
+
+        pool.execute(() -> {
+            awaitQuietly(start);
+
+            while(pin.isValid()) {
+                try {
+                    pin.markInvalid();
+                    invalidations.incrementAndGet();
+
+                } catch(PinBusyException | InvalidatedPinException e) {
+                    Thread.yield();
+                }
+            }
+        });
+
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        assertNull(failure.get(), failure.get());
+        assertEquals(1, invalidations.get());
+        assertFalse(pin.isValid());
+    }
+
+    /**
+     * Waits on the given latch, restoring the interrupt flag if needed
+     *
+     * @param latch The latch to wait on
+     */
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.test;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.orland0m.rpi.access.sim.SimulatedPinAccessor;
+import com.orland0m.rpi.middleware.event.DebounceConfig;
+import com.orland0m.rpi.middleware.event.DebounceMode;
+import com.orland0m.rpi.middleware.pin.InputPin;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * ULT class for input debouncing
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class DebounceTest {
+    /*! The board */
+    private SimulatedPinAccessor board;
+    /*! The pin under test */
+    private InputPin in;
+    /*! Levels reported to the listener */
+    private List<Boolean> reported;
+
+    @Before
+    public void setUp() {
+        board = new SimulatedPinAccessor();
+        in = board.getInGpio(WiringPi.GPIO_7);
+        reported = new CopyOnWriteArrayList<>();
+        in.addEventListener(event -> reported.add(event.isHigh()));
+    }
+
+    @After
+    public void tearDown() {
+        board.shutdown();
+    }
+
+    /**
+     * Ensures a bouncing press is reported once, after it settles
+     */
+    @Test(timeout = 10000)
+    public void trailingTest() throws InterruptedException {
+        in.setDebounce(config(DebounceMode.TRAILING, 20, 0));
+        bounce(9);
+        assertTrue(reported.isEmpty());
+
+        awaitReports(1);
+        assertEquals(true, reported.get(0));
+        assertEquals(8, in.getSuppressedEdgeCount());
+    }
+
+    /**
+     * Ensures settled levels are not dispatched on the timer wheel thread
+     */
+    @Test(timeout = 10000)
+    public void dispatchThreadTest() throws InterruptedException {
+        List<String> threads = new CopyOnWriteArrayList<>();
+        in.addEventListener(event -> threads.add(Thread.currentThread().getName()));
+        in.setDebounce(config(DebounceMode.TRAILING, 20, 0));
+        bounce(3);
+
+        while(threads.isEmpty()) {
+            Thread.sleep(5);
+        }
+
+        assertEquals(1, reported.size());
+        assertNotEquals("rpi-timer-wheel", threads.get(0));
+        assertNotEquals(Thread.currentThread().getName(), threads.get(0));
+    }
+
+    /**
+     * Ensures pulses shorter than the stable time are never reported
+     */
+    @Test(timeout = 10000)
+    public void glitchTest() throws InterruptedException {
+        in.setDebounce(config(DebounceMode.TRAILING, 20, 0));
+        bounce(2);
+        Thread.sleep(100);
+        assertTrue(reported.isEmpty());
+        assertEquals(2, in.getSuppressedEdgeCount());
+    }
+
+    /**
+     * Ensures the first edge is reported at once, and the settled level afterwards if the
+     * bounces ended somewhere else
+     */
+    @Test(timeout = 10000)
+    public void leadingTest() throws InterruptedException {
+        in.setDebounce(config(DebounceMode.LEADING, 20, 0));
+        bounce(9);
+        assertEquals(1, reported.size());
+        assertEquals(true, reported.get(0));
+
+        Thread.sleep(100);
+        assertEquals(1, reported.size());
+        assertEquals(8, in.getSuppressedEdgeCount());
+
+        // Released and bounced back up, the settled level is reported once stable
+        bounce(2);
+        assertEquals(2, reported.size());
+        awaitReports(3);
+        assertEquals(false, reported.get(1));
+        assertEquals(true, reported.get(2));
+    }
+
+    /**
+     * Ensures the rate cap holds back fast changes and reports the latest level
+     */
+    @Test(timeout = 10000)
+    public void rateTest() throws InterruptedException {
+        in.setDebounce(config(DebounceMode.TRAILING, 0, 10));
+        long start = System.nanoTime();
+
+        for(int i = 0; i < 40; i++) {
+            board.setInputLevel(WiringPi.GPIO_7, i % 2 == 0);
+            Thread.sleep(5);
+        }
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(reported.size() <= elapsedMillis / 100 + 1);
+        assertTrue(reported.size() >= 1);
+
+        // Removing the filter reports changes directly again
+        in.setDebounce(null);
+        int before = reported.size();
+        board.setInputLevel(WiringPi.GPIO_7, true);
+        board.setInputLevel(WiringPi.GPIO_7, false);
+        assertEquals(before + 2, reported.size());
+    }
+
+    /**
+     * Builds a filter configuration
+     *
+     * @param mode LEADING or TRAILING
+     * @param stableMillis Stable time in milliseconds
+     * @param maxRate Rate cap
+     * @return The configuration
+     */
+    private static DebounceConfig config(DebounceMode mode, long stableMillis, int maxRate) {
+        DebounceConfig config = new DebounceConfig();
+        config.setMode(mode);
+        config.setStableTime(stableMillis, TimeUnit.MILLISECONDS);
+        config.setMaxRate(maxRate);
+        return config;
+    }
+
+    /**
+     * Toggles the pin as fast as possible, starting with a rising edge
+     *
+     * @param edges Number of edges
+     */
+    private void bounce(int edges) {
+        boolean level = in.isUp();
+
+        for(int i = 0; i < edges; i++) {
+            level = !level;
+            board.setInputLevel(WiringPi.GPIO_7, level);
+        }
+    }
+
+    /**
+     * Waits until the listener has seen a number of changes
+     *
+     * @param count The expected number of changes
+     */
+    private void awaitReports(int count) throws InterruptedException {
+        while(reported.size() < count) {
+            Thread.sleep(5);
+        }
+    }
+}
\ No newline at end of file
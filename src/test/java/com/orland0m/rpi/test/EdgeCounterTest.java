@@ -0,0 +1,212 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.test;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.orland0m.rpi.access.sim.SimulatedPinAccessor;
+import com.orland0m.rpi.middleware.QuadratureDecoder;
+import com.orland0m.rpi.middleware.event.Edge;
+import com.orland0m.rpi.middleware.pin.InputPin;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+import com.orland0m.rpi.test.helper.StubAccessor;
+import com.orland0m.rpi.test.helper.StubAccessor.StubInputPin;
+
+/**
+ * ULT class for edge counters, pulse measurements and quadrature decoding
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class EdgeCounterTest {
+    /*! The board */
+    private SimulatedPinAccessor board;
+    /*! The pin under test, also channel A of the decoder */
+    private InputPin in;
+    /*! Channel B of the decoder */
+    private InputPin channelB;
+
+    @Before
+    public void setUp() {
+        board = new SimulatedPinAccessor();
+        in = board.getInGpio(WiringPi.GPIO_7);
+    }
+
+    @After
+    public void tearDown() {
+        board.shutdown();
+    }
+
+    /**
+     * Ensures edges are counted per direction and the counters can be reset
+     */
+    @Test(timeout = 10000)
+    public void countTest() {
+        assertEquals(0, in.getEdgeCount(null));
+
+        for(int i = 0; i < 10; i++) {
+            board.setInputLevel(WiringPi.GPIO_7, true);
+            board.setInputLevel(WiringPi.GPIO_7, false);
+        }
+
+        board.setInputLevel(WiringPi.GPIO_7, true);
+        assertEquals(11, in.getEdgeCount(Edge.RISING));
+        assertEquals(10, in.getEdgeCount(Edge.FALLING));
+        assertEquals(21, in.getEdgeCount(null));
+
+        in.resetCounters();
+        assertEquals(0, in.getEdgeCount(null));
+        assertEquals(0, in.getPeriodNanos());
+        assertEquals(0, in.getPulseWidthNanos());
+    }
+
+    /**
+     * Ensures the pulse width and period follow the last pulse
+     */
+    @Test(timeout = 10000)
+    public void pulseTest() throws InterruptedException {
+        long start = System.nanoTime();
+        board.setInputLevel(WiringPi.GPIO_7, true);
+        Thread.sleep(20);
+        board.setInputLevel(WiringPi.GPIO_7, false);
+        long high = System.nanoTime() - start;
+        assertEquals(0, in.getPeriodNanos());
+        assertTrue(in.getPulseWidthNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(in.getPulseWidthNanos() <= high);
+
+        Thread.sleep(30);
+        board.setInputLevel(WiringPi.GPIO_7, true);
+        long period = System.nanoTime() - start;
+        assertTrue(in.getPeriodNanos() >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(in.getPeriodNanos() <= period);
+    }
+
+    /**
+     * Ensures the frequency counts the rising edges within the window, and drops to
+     * zero once the signal stops for longer than the window
+     */
+    @Test(timeout = 10000)
+    public void frequencyTest() throws InterruptedException {
+        in.setFrequencyWindow(200, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+
+        while(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(300)) {
+            board.setInputLevel(WiringPi.GPIO_7, true);
+            board.setInputLevel(WiringPi.GPIO_7, false);
+            Thread.sleep(5);
+        }
+
+        // At most one rising edge every 5 ms within the last 200 ms
+        double frequency = in.getFrequencyHz();
+        assertTrue(frequency > 20);
+        assertTrue(frequency <= 220);
+
+        Thread.sleep(300);
+        assertEquals(0, in.getFrequencyHz(), 0);
+
+        try {
+            in.setFrequencyWindow(0, TimeUnit.MILLISECONDS);
+            fail("Expected IllegalArgumentException");
+
+        } catch(IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Ensures steps are decoded in both directions and skipped states are counted
+     */
+    @Test(timeout = 10000)
+    public void quadratureTest() {
+        channelB = board.getInGpio(WiringPi.GPIO_0);
+        QuadratureDecoder decoder = new QuadratureDecoder(in, channelB);
+
+        // One forward cycle, A leading: 00 10 11 01 00
+        setLevels(true, false);
+        setLevels(true, true);
+        setLevels(false, true);
+        setLevels(false, false);
+        assertEquals(4, decoder.getPosition());
+        assertEquals(1, decoder.getDirection());
+
+        // Two steps back: 00 01 11
+        setLevels(false, true);
+        setLevels(true, true);
+        assertEquals(2, decoder.getPosition());
+        assertEquals(-1, decoder.getDirection());
+        assertEquals(0, decoder.getErrorCount());
+
+        decoder.reset();
+        assertEquals(0, decoder.getPosition());
+        assertEquals(0, decoder.getDirection());
+    }
+
+    /**
+     * Ensures an edge repeating its channel's level is counted as an error, not a step
+     */
+    @Test(timeout = 10000)
+    public void missedEdgeTest() {
+        StubAccessor accessor = new StubAccessor();
+        StubInputPin a = new StubInputPin(WiringPi.GPIO_1);
+        StubInputPin b = new StubInputPin(WiringPi.GPIO_2);
+        accessor.register(a);
+        accessor.register(b);
+        QuadratureDecoder decoder = new QuadratureDecoder(a, b);
+
+        // Stub pins always read low, so every reported edge repeats the level
+        a.fire();
+        b.fire();
+        assertEquals(2, decoder.getErrorCount());
+        assertEquals(0, decoder.getPosition());
+
+        try {
+            new QuadratureDecoder(a, a);
+            fail("Expected IllegalArgumentException");
+
+        } catch(IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Sets both channels, changing only the one that differs
+     *
+     * @param a Channel A level
+     * @param b Channel B level
+     */
+    private void setLevels(boolean a, boolean b) {
+        if(in.isUp() != a) {
+            board.setInputLevel(WiringPi.GPIO_7, a);
+        }
+
+        if(channelB.isUp() != b) {
+            board.setInputLevel(WiringPi.GPIO_0, b);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,254 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.orland0m.rpi.access.sim.JournalReplayer;
+import com.orland0m.rpi.access.sim.SimulatedPinAccessor;
+import com.orland0m.rpi.middleware.journal.JournalReader;
+import com.orland0m.rpi.middleware.journal.PinJournal;
+import com.orland0m.rpi.middleware.pin.InputPin;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * ULT class for the pin journal and its replayer
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class JournalTest {
+    /*! Journal directories */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    /*! The recorded board */
+    private SimulatedPinAccessor board;
+    /*! The board replayed into */
+    private SimulatedPinAccessor replica;
+
+    @Before
+    public void setUp() {
+        board = new SimulatedPinAccessor();
+        replica = new SimulatedPinAccessor();
+    }
+
+    @After
+    public void tearDown() {
+        board.shutdown();
+
+        if(!replica.isDown()) {
+            replica.shutdown();
+        }
+    }
+
+    /**
+     * Ensures every kind of traffic is recorded in order and can be read back
+     */
+    @Test(timeout = 10000)
+    public void recordTest() throws IOException {
+        File directory = folder.newFolder();
+
+        try(PinJournal journal = new PinJournal(directory)) {
+            record(journal);
+            assertEquals(8, journal.getRecordCount());
+        }
+
+        List<Byte> opcodes = new ArrayList<>();
+        long previous = 0;
+
+        try(JournalReader reader = new JournalReader(directory)) {
+            while(reader.next()) {
+                opcodes.add(reader.getOpcode());
+                assertTrue(reader.getTimestampNanos() >= previous);
+                previous = reader.getTimestampNanos();
+
+                if(reader.getOpcode() == PinJournal.WRITE_MASK) {
+                    assertEquals(PinJournal.BANK_ADDRESS, reader.getAddress());
+                    assertEquals(1 << WiringPi.GPIO_0.getGpioAddress(), reader.getMask());
+                    assertEquals(0, reader.getValue());
+
+                } else if(reader.getOpcode() == PinJournal.EDGE) {
+                    assertEquals(WiringPi.GPIO_7.getGpioAddress(), reader.getAddress());
+                }
+            }
+        }
+
+        assertEquals(list(PinJournal.PROVISION_INPUT, PinJournal.PROVISION_OUTPUT, PinJournal.WRITE,
+                          PinJournal.TOGGLE, PinJournal.EDGE, PinJournal.EDGE,
+                          PinJournal.WRITE_MASK, PinJournal.INVALIDATE), opcodes);
+
+        // The wall clock in the segment header anchors the timestamps
+        long nowNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        assertTrue(Math.abs(nowNanos - previous) < TimeUnit.MINUTES.toNanos(1));
+    }
+
+    /**
+     * Ensures a replayed journal reproduces the recorded edges and outputs
+     */
+    @Test(timeout = 10000)
+    public void replayTest() throws Exception {
+        File directory = folder.newFolder();
+
+        try(PinJournal journal = new PinJournal(directory)) {
+            board.setJournal(journal);
+            InputPin in = board.getInGpio(WiringPi.GPIO_7);
+            OutputPin out = board.getOutGpio(WiringPi.GPIO_0);
+            OutputPin other = board.getOutGpio(WiringPi.GPIO_1);
+
+            for(int i = 0; i < 5; i++) {
+                board.setInputLevel(WiringPi.GPIO_7, true);
+                board.setInputLevel(WiringPi.GPIO_7, false);
+            }
+
+            out.up();
+            other.toggle();
+            board.writeMasked(1 << WiringPi.GPIO_0.getGpioAddress(), 0);
+            assertEquals(10, in.getEdgeCount(null));
+        }
+
+        // Pins the replica provisions on its own see the replayed edges
+        AtomicInteger edges = new AtomicInteger();
+        replica.getInGpio(WiringPi.GPIO_7).addEventListener(event -> edges.incrementAndGet());
+        JournalReplayer replayer = new JournalReplayer(replica);
+
+        try(JournalReader reader = new JournalReader(directory)) {
+            assertEquals(16, replayer.replay(reader, false));
+        }
+
+        assertEquals(0, replayer.getFailedCount());
+        assertEquals(10, edges.get());
+        assertEquals(10, replica.getInGpio(WiringPi.GPIO_7).getEdgeCount(null));
+        assertFalse(replica.getOutGpio(WiringPi.GPIO_0).isUp());
+        assertTrue(replica.getOutGpio(WiringPi.GPIO_1).isUp());
+    }
+
+    /**
+     * Ensures records spill into new segments and a reopened journal continues after them
+     */
+    @Test(timeout = 10000)
+    public void segmentTest() throws IOException {
+        File directory = folder.newFolder();
+        long segmentSize = PinJournal.HEADER_SIZE + 3 * PinJournal.RECORD_SIZE;
+
+        try(PinJournal journal = new PinJournal(directory, segmentSize)) {
+            for(int i = 0; i < 7; i++) {
+                journal.append(PinJournal.WRITE, 0, i, 1, System.nanoTime());
+            }
+        }
+
+        assertEquals(3, directory.listFiles().length);
+
+        PinJournal reopened = new PinJournal(directory, segmentSize);
+        reopened.append(PinJournal.WRITE, 0, 7, 1, System.nanoTime());
+        reopened.close();
+        reopened.append(PinJournal.WRITE, 0, 8, 1, System.nanoTime());
+        assertEquals(1, reopened.getDroppedCount());
+        assertEquals(4, directory.listFiles().length);
+
+        // The last segment of the first run was never filled, reading skips to the next
+        int expected = 0;
+
+        try(JournalReader reader = new JournalReader(directory)) {
+            while(reader.next()) {
+                assertEquals(expected++, reader.getValue());
+            }
+        }
+
+        assertEquals(8, expected);
+    }
+
+    /**
+     * Ensures a real time replay keeps the recorded spacing
+     */
+    @Test(timeout = 10000)
+    public void realTimeTest() throws Exception {
+        File directory = folder.newFolder();
+        long start = System.nanoTime();
+
+        try(PinJournal journal = new PinJournal(directory)) {
+            journal.append(PinJournal.EDGE, WiringPi.GPIO_7.getGpioAddress(), 1, 0, start);
+            journal.append(PinJournal.EDGE, WiringPi.GPIO_7.getGpioAddress(), 0, 0,
+                           start + TimeUnit.MILLISECONDS.toNanos(100));
+        }
+
+        JournalReplayer replayer = new JournalReplayer(replica);
+        long replayStart = System.nanoTime();
+
+        try(JournalReader reader = new JournalReader(directory)) {
+            assertEquals(2, replayer.replay(reader, true));
+        }
+
+        assertTrue(System.nanoTime() - replayStart >= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    /**
+     * Records one of every kind of traffic on the board
+     *
+     * @param journal The journal to record into
+     */
+    private void record(PinJournal journal) {
+        board.setJournal(journal);
+        InputPin in = board.getInGpio(WiringPi.GPIO_7);
+        OutputPin out = board.getOutGpio(WiringPi.GPIO_0);
+        out.up();
+        out.toggle();
+        board.setInputLevel(WiringPi.GPIO_7, true);
+        board.setInputLevel(WiringPi.GPIO_7, false);
+        board.writeMasked(1 << WiringPi.GPIO_0.getGpioAddress(), 0);
+        in.markInvalid();
+
+        // Detached journals record nothing more
+        board.setJournal(null);
+        out.up();
+    }
+
+    /**
+     * Builds a list of opcodes
+     *
+     * @param opcodes The opcodes
+     * @return The list
+     */
+    private static List<Byte> list(byte... opcodes) {
+        List<Byte> result = new ArrayList<>();
+
+        for(byte opcode : opcodes) {
+            result.add(opcode);
+        }
+
+        return result;
+    }
+}
\ No newline at end of file
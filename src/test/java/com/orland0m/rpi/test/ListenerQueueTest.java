@@ -0,0 +1,211 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.test;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.orland0m.rpi.access.sim.SimulatedPinAccessor;
+import com.orland0m.rpi.middleware.event.ListenerQueue;
+import com.orland0m.rpi.middleware.event.OverflowPolicy;
+import com.orland0m.rpi.middleware.pin.InputPin;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * ULT class for asynchronous listener queues
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class ListenerQueueTest {
+    /*! Number of edges driven by every test */
+    private static final int EDGES = 10;
+    /*! The board */
+    private SimulatedPinAccessor board;
+    /*! The pin under test */
+    private InputPin in;
+    /*! Released to let the slow listener return */
+    private CountDownLatch release;
+    /*! Calls made to the slow listener */
+    private AtomicInteger slowCalls;
+
+    @Before
+    public void setUp() {
+        board = new SimulatedPinAccessor();
+        in = board.getInGpio(WiringPi.GPIO_4);
+        release = new CountDownLatch(1);
+        slowCalls = new AtomicInteger();
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        board.shutdown();
+    }
+
+    /**
+     * Ensures a stalled listener neither delays the edge source nor other listeners, and
+     * that overflowing changes are counted
+     */
+    @Test(timeout = 10000)
+    public void dropOldestTest() throws InterruptedException {
+        ListenerQueue queue = in.addListener(this::slow, 4, OverflowPolicy.DROP_OLDEST);
+        final AtomicInteger direct = new AtomicInteger();
+        in.addListener(pin -> direct.incrementAndGet());
+
+        drive();
+        assertEquals(EDGES, direct.get());
+        assertEquals(4, queue.getCapacity());
+        assertTrue(queue.getDepth() <= 4);
+        assertTrue(queue.getDroppedCount() > 0);
+
+        release.countDown();
+        awaitDrained(queue);
+        assertEquals(slowCalls.get(), queue.getDeliveredCount());
+    }
+
+    /**
+     * Ensures queued events keep their own level and sequence number, and that the gaps
+     * match the dropped count
+     */
+    @Test(timeout = 10000)
+    public void eventTest() throws InterruptedException {
+        final long[] last = new long[1];
+        final AtomicInteger mismatches = new AtomicInteger();
+        ListenerQueue queue = in.addEventListener(event -> {
+            // Odd sequence numbers are rising edges, see drive
+            if(event.isHigh() != (event.getSequence() % 2 == 1) || event.getSequence() <= last[0]) {
+                mismatches.incrementAndGet();
+            }
+
+            last[0] = event.getSequence();
+            slow(event.getPin());
+        }, 4, OverflowPolicy.DROP_OLDEST);
+
+        drive();
+        release.countDown();
+        awaitDrained(queue);
+        assertEquals(0, mismatches.get());
+        assertEquals(EDGES, last[0]);
+    }
+
+    /**
+     * Ensures a coalescing queue still delivers the last change
+     */
+    @Test(timeout = 10000)
+    public void coalesceTest() throws InterruptedException {
+        ListenerQueue queue = in.addListener(this::slow, 1, OverflowPolicy.COALESCE);
+
+        drive();
+        assertTrue(queue.getDepth() <= 1);
+        release.countDown();
+        awaitDrained(queue);
+        assertTrue(queue.getDeliveredCount() >= 1);
+        assertTrue(queue.getDroppedCount() >= EDGES - 2);
+    }
+
+    /**
+     * Ensures a blocking queue holds the edge source back instead of dropping changes
+     */
+    @Test(timeout = 10000)
+    public void blockTest() throws InterruptedException {
+        ListenerQueue queue = in.addListener(this::slow, 1, OverflowPolicy.BLOCK);
+        Thread source = new Thread(this::drive);
+        source.start();
+
+        // One change being delivered, one queued, the source waits for room
+        while(source.getState() != Thread.State.WAITING || queue.getDepth() != 1) {
+            Thread.sleep(5);
+        }
+
+        release.countDown();
+        source.join();
+        awaitDrained(queue);
+        assertEquals(0, queue.getDroppedCount());
+    }
+
+    /**
+     * Ensures invalidating the pin stops the queue
+     */
+    @Test(timeout = 10000)
+    public void invalidationTest() throws InterruptedException {
+        ListenerQueue queue = in.addListener(this::slow, 4, OverflowPolicy.BLOCK);
+        board.setInputLevel(WiringPi.GPIO_4, true);
+        in.markInvalid();
+        release.countDown();
+
+        try {
+            in.addListener(pin -> {}, 4, OverflowPolicy.BLOCK);
+            fail("Pin should have been invalid");
+
+        } catch(RuntimeException e) {
+        }
+
+        assertTrue(queue.getDeliveredCount() <= 1);
+    }
+
+    /**
+     * Listener stalling until the test releases it
+     *
+     * @param pin The pin that changed
+     */
+    private void slow(InputPin pin) {
+        slowCalls.incrementAndGet();
+
+        try {
+            release.await();
+
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Drives EDGES changes on the pin
+     */
+    private void drive() {
+        for(int i = 0; i < EDGES; i++) {
+            board.setInputLevel(WiringPi.GPIO_4, i % 2 == 0);
+        }
+    }
+
+    /**
+     * Waits until every change driven was either delivered or dropped
+     *
+     * @param queue The queue
+     */
+    private static void awaitDrained(ListenerQueue queue) throws InterruptedException {
+        while(queue.getDeliveredCount() + queue.getDroppedCount() != EDGES) {
+            Thread.sleep(5);
+        }
+
+        assertEquals(0, queue.getDepth());
+    }
+}
\ No newline at end of file
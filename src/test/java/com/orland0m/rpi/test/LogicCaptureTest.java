@@ -0,0 +1,173 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.orland0m.rpi.access.sim.SimulatedPinAccessor;
+import com.orland0m.rpi.middleware.CaptureConfig;
+import com.orland0m.rpi.middleware.LogicCapture;
+import com.orland0m.rpi.middleware.event.Edge;
+import com.orland0m.rpi.middleware.pin.PinSet;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * ULT class for logic analyzer captures, driven by the simulated backend
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class LogicCaptureTest {
+    /*! The board */
+    private SimulatedPinAccessor board;
+    /*! The capture under test */
+    private LogicCapture capture;
+
+    @Before
+    public void setUp() {
+        board = new SimulatedPinAccessor();
+        board.getInGpio(WiringPi.GPIO_0);
+        board.getInGpio(WiringPi.GPIO_1);
+    }
+
+    @After
+    public void tearDown() {
+        if(capture != null) {
+            capture.close();
+        }
+
+        board.shutdown();
+    }
+
+    /**
+     * Ensures an edge trigger keeps the pre-trigger and post-trigger windows around the
+     * edge and the export covers every sample
+     */
+    @Test(timeout = 10000)
+    public void edgeTriggerTest() throws InterruptedException {
+        CaptureConfig config = config();
+        config.setEdgeTrigger(WiringPi.GPIO_0, Edge.RISING);
+        capture = new LogicCapture(board, config);
+        capture.start();
+
+        // Let the pre-trigger window fill, a falling edge must not trigger
+        Thread.sleep(50);
+        board.setInputLevel(WiringPi.GPIO_1, true);
+        Thread.sleep(5);
+        assertFalse(capture.isTriggered());
+        board.setInputLevel(WiringPi.GPIO_0, true);
+        assertTrue(capture.awaitCompletion(5, TimeUnit.SECONDS));
+
+        assertEquals(301, capture.getSampleCount());
+        assertEquals(100, capture.getTriggerPosition());
+        int bit0 = PinSet.bit(WiringPi.GPIO_0);
+        assertEquals(0, capture.getSample(99) & bit0);
+        assertEquals(bit0, capture.getSample(100) & bit0);
+
+        final long[] total = {0};
+        final long[] triggerRun = {Long.MIN_VALUE};
+        capture.export((offset, levels, length) -> {
+            total[0] += length;
+
+            if((levels & bit0) != 0 && triggerRun[0] == Long.MIN_VALUE) {
+                triggerRun[0] = offset;
+            }
+        });
+        assertEquals(301, total[0]);
+        assertEquals(0, triggerRun[0]);
+    }
+
+    /**
+     * Ensures a pattern trigger waits for every pin of the pattern, and the capture can be
+     * dumped as VCD
+     */
+    @Test(timeout = 10000)
+    public void patternTriggerTest() throws InterruptedException, IOException {
+        CaptureConfig config = config();
+        int both = PinSet.of(WiringPi.GPIO_0, WiringPi.GPIO_1).mask();
+        config.setPatternTrigger(both, PinSet.bit(WiringPi.GPIO_1));
+        capture = new LogicCapture(board, config);
+        capture.start();
+
+        board.setInputLevel(WiringPi.GPIO_0, true);
+        board.setInputLevel(WiringPi.GPIO_1, true);
+        Thread.sleep(50);
+        assertFalse(capture.isTriggered());
+
+        try {
+            capture.export((offset, levels, length) -> {});
+            fail("Running captures should not be exported");
+
+        } catch(IllegalStateException e) {
+        }
+
+        board.setInputLevel(WiringPi.GPIO_0, false);
+        assertTrue(capture.awaitCompletion(5, TimeUnit.SECONDS));
+        assertEquals(PinSet.bit(WiringPi.GPIO_1), capture.getSample(capture.getTriggerPosition()));
+
+        StringBuilder vcd = new StringBuilder();
+        capture.writeVcd(vcd);
+        assertTrue(vcd.toString().contains("$var wire 1 ! GPIO_0 $end"));
+        assertTrue(vcd.toString().contains("#0\n0!\n"));
+    }
+
+    /**
+     * Ensures stopping keeps what was captured
+     */
+    @Test(timeout = 10000)
+    public void stopTest() throws InterruptedException {
+        CaptureConfig config = config();
+        config.setEdgeTrigger(WiringPi.GPIO_1, null);
+        capture = new LogicCapture(board, config);
+        capture.start();
+        Thread.sleep(20);
+        capture.stop();
+
+        assertFalse(capture.isRunning());
+        assertFalse(capture.isTriggered());
+        assertEquals(-1, capture.getTriggerPosition());
+        assertTrue(capture.getSampleCount() > 0);
+    }
+
+    /**
+     * Builds the configuration shared by the tests: both pins at 10 kHz, 100 samples
+     * before the trigger and 200 after
+     *
+     * @return The configuration
+     */
+    private static CaptureConfig config() {
+        CaptureConfig config = new CaptureConfig();
+        config.setPins(PinSet.of(WiringPi.GPIO_0, WiringPi.GPIO_1).mask());
+        config.setSampleRateHz(10000);
+        config.setPreTrigger(100);
+        config.setPostTrigger(200);
+        return config;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,235 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.orland0m.rpi.access.mmap.GpioRegisters;
+import com.orland0m.rpi.access.mmap.MappedPinAccessor;
+import com.orland0m.rpi.middleware.event.Edge;
+import com.orland0m.rpi.middleware.journal.JournalReader;
+import com.orland0m.rpi.middleware.journal.PinJournal;
+import com.orland0m.rpi.middleware.journal.PinSnapshot;
+import com.orland0m.rpi.middleware.pin.InputPin;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.PinSet;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * ULT class for the memory mapped backend, a temporary file stands in for /dev/gpiomem
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class MappedPinAccessorTest {
+    /*! The register stand-in file */
+    private File registerFile;
+    /*! Independent view of the stand-in file used to inspect and fake registers */
+    private MappedByteBuffer view;
+    /*! Accessor under test */
+    private MappedPinAccessor accessor;
+
+    @Before
+    public void setUp() throws IOException {
+        registerFile = File.createTempFile("gpiomem", ".bin");
+
+        try(RandomAccessFile file = new RandomAccessFile(registerFile, "rw")) {
+            file.setLength(GpioRegisters.BLOCK_SIZE);
+            view = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, GpioRegisters.BLOCK_SIZE);
+            view.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        accessor = new MappedPinAccessor(registerFile.getPath(), TimeUnit.MICROSECONDS.toNanos(100));
+    }
+
+    @After
+    public void tearDown() {
+        if(!accessor.isDown()) {
+            accessor.shutdown();
+        }
+
+        registerFile.delete();
+    }
+
+    /**
+     * Ensures outputs are configured through the function select registers and driven
+     * through the set and clear registers using BCM numbering
+     */
+    @Test
+    public void outputTest() {
+        // WiringPi GPIO_0 is BCM 17, third function select register
+        OutputPin pin = accessor.getOutGpio(WiringPi.GPIO_0);
+        assertEquals(GpioRegisters.FSEL_OUTPUT, (view.getInt(GpioRegisters.GPFSEL0 + 4) >>> 21) & 7);
+
+        pin.up();
+        assertEquals(1 << 17, view.getInt(GpioRegisters.GPSET0));
+        pin.down();
+        assertEquals(1 << 17, view.getInt(GpioRegisters.GPCLR0));
+
+        view.putInt(GpioRegisters.GPLEV0, 1 << 17);
+        assertTrue(pin.isUp());
+
+        pin.markInvalid();
+        assertEquals(GpioRegisters.FSEL_INPUT, (view.getInt(GpioRegisters.GPFSEL0 + 4) >>> 21) & 7);
+    }
+
+    /**
+     * Ensures a shutdown keeping a snapshot leaves the outputs driving their level, so the
+     * restore after the restart does not glitch them
+     *
+     * @throws IOException If the snapshot cannot be created
+     */
+    @Test
+    public void shutdownWithSnapshotTest() throws IOException {
+        File file = File.createTempFile("snapshot", ".bin");
+
+        try(PinSnapshot snapshot = new PinSnapshot(file)) {
+            accessor.setSnapshot(snapshot);
+            accessor.getOutGpio(WiringPi.GPIO_0).up();
+            view.putInt(GpioRegisters.GPCLR0, 0);
+            accessor.shutdown();
+
+            assertEquals(0, view.getInt(GpioRegisters.GPCLR0));
+            assertEquals(GpioRegisters.FSEL_OUTPUT, (view.getInt(GpioRegisters.GPFSEL0 + 4) >>> 21) & 7);
+            assertEquals(PinSnapshot.OUTPUT, snapshot.getDirection(WiringPi.GPIO_0));
+            assertTrue(snapshot.isHigh(WiringPi.GPIO_0));
+
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Ensures bank writes become one set and one clear register write
+     */
+    @Test
+    public void bankTest() {
+        accessor.getOutGpio(WiringPi.GPIO_0);
+        accessor.getOutGpio(WiringPi.GPIO_1);
+        accessor.getOutGpio(WiringPi.GPIO_2);
+        view.putInt(GpioRegisters.GPSET0, 0);
+        view.putInt(GpioRegisters.GPCLR0, 0);
+
+        PinSet leds = PinSet.of(WiringPi.GPIO_0, WiringPi.GPIO_1, WiringPi.GPIO_2);
+        accessor.writeMasked(leds.mask(), PinSet.bit(WiringPi.GPIO_0) | PinSet.bit(WiringPi.GPIO_2));
+        assertEquals((1 << 17) | (1 << 27), view.getInt(GpioRegisters.GPSET0));
+        assertEquals(1 << 18, view.getInt(GpioRegisters.GPCLR0));
+
+        // BCM 18 is WiringPi GPIO_1, BCM 4 is WiringPi GPIO_7 which is not provisioned
+        view.putInt(GpioRegisters.GPLEV0, (1 << 18) | (1 << 4));
+        assertEquals(PinSet.bit(WiringPi.GPIO_1), accessor.readAll());
+    }
+
+    /**
+     * Ensures the edge poller notifies listeners when the level register changes
+     *
+     * @throws InterruptedException If the test thread is interrupted
+     */
+    @Test
+    public void listenerTest() throws InterruptedException {
+        InputPin pin = accessor.getInGpio(WiringPi.GPIO_7);
+        final CountDownLatch edges = new CountDownLatch(2);
+        pin.addListener(changed -> edges.countDown());
+
+        // Give the poller a chance to take its first sample
+        Thread.sleep(10);
+        view.putInt(GpioRegisters.GPLEV0, 1 << 4);
+        Thread.sleep(10);
+        view.putInt(GpioRegisters.GPLEV0, 0);
+        assertTrue(edges.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Ensures the edge counters see edges without any listener, the poller only watches
+     * pins on demand
+     *
+     * @throws InterruptedException If the test thread is interrupted
+     */
+    @Test(timeout = 10000)
+    public void counterTest() throws InterruptedException {
+        InputPin pin = accessor.getInGpio(WiringPi.GPIO_7);
+        pin.resetCounters();
+
+        Thread.sleep(10);
+        view.putInt(GpioRegisters.GPLEV0, 1 << 4);
+        Thread.sleep(10);
+        view.putInt(GpioRegisters.GPLEV0, 0);
+
+        while(pin.getEdgeCount(null) < 2) {
+            Thread.sleep(5);
+        }
+
+        assertEquals(1, pin.getEdgeCount(Edge.RISING));
+        assertTrue(pin.getPulseWidthNanos() > 0);
+    }
+
+    /**
+     * Ensures a journal records the edges of inputs without any listener
+     *
+     * @throws Exception If the journal cannot be written or read
+     */
+    @Test(timeout = 10000)
+    public void journalTest() throws Exception {
+        File directory = Files.createTempDirectory("journal").toFile();
+
+        try(PinJournal journal = new PinJournal(directory)) {
+            accessor.setJournal(journal);
+            accessor.getInGpio(WiringPi.GPIO_7);
+
+            Thread.sleep(10);
+            view.putInt(GpioRegisters.GPLEV0, 1 << 4);
+
+            while(journal.getRecordCount() < 2) {
+                Thread.sleep(5);
+            }
+        }
+
+        try(JournalReader reader = new JournalReader(directory)) {
+            assertTrue(reader.next());
+            assertEquals(PinJournal.PROVISION_INPUT, reader.getOpcode());
+            assertTrue(reader.next());
+            assertEquals(PinJournal.EDGE, reader.getOpcode());
+            assertEquals(1, reader.getValue());
+        }
+
+        for(File segment : directory.listFiles()) {
+            segment.delete();
+        }
+
+        directory.delete();
+    }
+}
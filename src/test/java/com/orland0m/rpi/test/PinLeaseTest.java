@@ -0,0 +1,194 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.test;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.orland0m.rpi.middleware.exception.PinBusyException;
+import com.orland0m.rpi.middleware.pin.PinLease;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+import com.orland0m.rpi.test.helper.StubAccessor;
+import com.orland0m.rpi.test.helper.StubAccessor.StubOutputPin;
+
+/**
+ * ULT class for pin leases
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class PinLeaseTest {
+    /**
+     * Ensures leases follow the busy flag and that a closed lease cannot release a later one
+     */
+    @Test
+    public void tryAcquireTest() {
+        StubOutputPin pin = new StubOutputPin(WiringPi.GPIO_0);
+        PinLease first = pin.tryAcquire();
+        assertNotNull(first);
+        assertTrue(first.isActive());
+        assertTrue(pin.isBusy());
+        assertNull(pin.tryAcquire());
+
+        try {
+            pin.markBusy();
+            fail("Leased pins are busy");
+
+        } catch(PinBusyException e) {
+            // Expected
+        }
+
+        first.close();
+        assertFalse(first.isActive());
+        assertTrue(pin.isFree());
+
+        try(PinLease second = pin.tryAcquire()) {
+            assertNotNull(second);
+            first.close();
+            assertTrue(second.isActive());
+        }
+
+        assertTrue(pin.isFree());
+    }
+
+    /**
+     * Ensures acquire gives up after the timeout and accounts for the wait
+     *
+     * @throws InterruptedException If the test thread is interrupted
+     */
+    @Test
+    public void timeoutTest() throws InterruptedException {
+        StubOutputPin pin = new StubOutputPin(WiringPi.GPIO_1);
+
+        try(PinLease lease = pin.tryAcquire()) {
+            assertNotNull(lease);
+            assertNull(pin.acquire(20, TimeUnit.MILLISECONDS));
+        }
+
+        assertEquals(1, pin.getLeaseContentionCount());
+        assertTrue(pin.getLeaseWaitNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    /**
+     * Ensures waiting threads are served in arrival order
+     *
+     * @throws InterruptedException If the test thread is interrupted
+     */
+    @Test
+    public void fifoTest() throws InterruptedException {
+        final StubOutputPin pin = new StubOutputPin(WiringPi.GPIO_2);
+        final List<Integer> order = new CopyOnWriteArrayList<>();
+        final int waiters = 4;
+        Thread[] threads = new Thread[waiters];
+        PinLease lease = pin.tryAcquire();
+
+        for(int i = 0; i < waiters; i++) {
+            final int id = i;
+            final CountDownLatch queued = new CountDownLatch(1);
+            threads[i] = new Thread(() -> {
+                queued.countDown();
+
+                try(PinLease own = pin.acquire(10, TimeUnit.SECONDS)) {
+                    assertNotNull(own);
+                    order.add(id);
+
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads[i].start();
+            queued.await();
+
+            // Wait for the thread to park before queuing the next one
+            while(threads[i].getState() != Thread.State.TIMED_WAITING) {
+                Thread.yield();
+            }
+        }
+
+        lease.close();
+
+        for(Thread thread : threads) {
+            thread.join(10000);
+        }
+
+        assertEquals(waiters, order.size());
+
+        for(int i = 0; i < waiters; i++) {
+            assertEquals(Integer.valueOf(i), order.get(i));
+        }
+    }
+
+    /**
+     * Ensures a lease that exceeds the maximum lease time is revoked in favor of a waiter
+     *
+     * @throws InterruptedException If the test thread is interrupted
+     */
+    @Test
+    public void revocationTest() throws InterruptedException {
+        StubOutputPin pin = new StubOutputPin(WiringPi.GPIO_3);
+        pin.setMaxLeaseTime(20, TimeUnit.MILLISECONDS);
+        PinLease stuck = pin.tryAcquire();
+        PinLease next = pin.acquire(5, TimeUnit.SECONDS);
+        assertNotNull(next);
+        assertFalse(stuck.isActive());
+        assertTrue(next.isActive());
+        assertEquals(1, pin.getRevokedLeaseCount());
+
+        // Closing the revoked lease must not release the new owner
+        stuck.close();
+        assertTrue(next.isActive());
+        next.close();
+        assertTrue(pin.isFree());
+    }
+
+    /**
+     * Ensures accessors lease provisioned pins only
+     *
+     * @throws InterruptedException If the test thread is interrupted
+     */
+    @Test
+    public void accessorLeaseTest() throws InterruptedException {
+        StubAccessor accessor = new StubAccessor();
+
+        try {
+            accessor.tryAcquire(WiringPi.GPIO_4);
+            fail("GPIO was not provisioned");
+
+        } catch(IllegalArgumentException e) {
+            // Expected
+        }
+
+        accessor.getOutGpio(WiringPi.GPIO_4);
+
+        try(PinLease lease = accessor.acquire(WiringPi.GPIO_4, 1, TimeUnit.SECONDS)) {
+            assertSame(accessor.getOutGpio(WiringPi.GPIO_4), lease.getPin());
+            assertNull(accessor.tryAcquire(WiringPi.GPIO_4));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.orland0m.rpi.middleware.exception.PinBusyException;
+import com.orland0m.rpi.middleware.metrics.LatencyHistogram;
+import com.orland0m.rpi.middleware.metrics.PinMetrics;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.RpiPin;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+import com.orland0m.rpi.test.helper.StubAccessor;
+import com.orland0m.rpi.test.helper.StubAccessor.StubInputPin;
+
+/**
+ * ULT class for the pin metrics registry
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class PinMetricsTest {
+    /**
+     * Ensures pin operations are counted against the accessor that provisioned the pin
+     */
+    @Test
+    public void countersTest() {
+        StubAccessor accessor = new StubAccessor();
+        PinMetrics metrics = accessor.getMetrics();
+        OutputPin out = accessor.getOutGpio(WiringPi.GPIO_0);
+
+        out.up();
+        out.trySet(false);
+        out.toggle();
+        assertTrue(out.isUp());
+        assertEquals(3, metrics.getWrites(WiringPi.GPIO_0));
+        assertEquals(1, metrics.getReads(WiringPi.GPIO_0));
+        assertEquals(3, metrics.getWriteLatency().getCount());
+
+        RpiPin pin = (RpiPin)out;
+        pin.markBusy();
+
+        try {
+            pin.markBusy();
+            fail("Pin should have been busy");
+
+        } catch(PinBusyException e) {
+        }
+
+        assertNull(pin.tryAcquire());
+        assertEquals(2, metrics.getBusyRejections(WiringPi.GPIO_0));
+        pin.markFree();
+
+        accessor.getInGpio(WiringPi.GPIO_0);
+        assertEquals(1, metrics.getInvalidations(WiringPi.GPIO_0));
+        assertEquals(0, metrics.getWrites(WiringPi.GPIO_1));
+        accessor.shutdown();
+    }
+
+    /**
+     * Ensures every listener callback is counted and timed
+     */
+    @Test
+    public void listenerTest() {
+        StubAccessor accessor = new StubAccessor();
+        StubInputPin in = (StubInputPin)accessor.getInGpio(WiringPi.GPIO_2);
+        in.addListener(pin -> {});
+        in.addListener(pin -> {
+            throw new IllegalStateException("Listener failure must not stop the fan out");
+        });
+
+        in.fire();
+        assertEquals(2, accessor.getMetrics().getListenerEvents(WiringPi.GPIO_2));
+        assertEquals(2, accessor.getMetrics().getListenerLatency().getCount());
+        accessor.shutdown();
+    }
+
+    /**
+     * Ensures samples land in the right buckets
+     */
+    @Test
+    public void histogramTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(500);
+        histogram.record(1000);
+        histogram.record(1500);
+        histogram.record(Long.MAX_VALUE / 2);
+
+        assertEquals(2, histogram.getCumulativeCount(0));
+        assertEquals(3, histogram.getCumulativeCount(1));
+        assertEquals(3, histogram.getCumulativeCount(LatencyHistogram.bucketCount() - 2));
+        assertEquals(4, histogram.getCumulativeCount(LatencyHistogram.bucketCount() - 1));
+        assertEquals(4, histogram.getCount());
+    }
+
+    /**
+     * Ensures the exposition text contains the used GPIOs only
+     */
+    @Test
+    public void prometheusTest() {
+        StubAccessor accessor = new StubAccessor();
+        accessor.getOutGpio(WiringPi.GPIO_4).up();
+        String text = accessor.getMetrics().toPrometheusText();
+
+        assertTrue(text.contains("# TYPE rpi_pin_writes_total counter\n"));
+        assertTrue(text.contains("rpi_pin_writes_total{gpio=\"GPIO_4\"} 1\n"));
+        assertFalse(text.contains("gpio=\"GPIO_5\""));
+        assertTrue(text.contains("# TYPE rpi_pin_write_latency_seconds histogram\n"));
+        assertTrue(text.contains("rpi_pin_write_latency_seconds_bucket{le=\"+Inf\"} 1\n"));
+        assertTrue(text.contains("rpi_pin_write_latency_seconds_count 1\n"));
+        accessor.shutdown();
+    }
+}
\ No newline at end of file
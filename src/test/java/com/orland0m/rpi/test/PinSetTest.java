@@ -0,0 +1,110 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.PinSet;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+import com.orland0m.rpi.test.helper.StubAccessor;
+
+/**
+ * ULT class for PinSet and the accessor bank operations
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class PinSetTest {
+    /**
+     * Ensures set operations map GPIOs to their address bits
+     */
+    @Test
+    public void maskTest() {
+        PinSet set = PinSet.of(WiringPi.GPIO_0, WiringPi.GPIO_5, WiringPi.GPIO_31);
+        assertEquals(1 | (1 << 5) | (1 << 31), set.mask());
+        assertEquals(3, set.size());
+        assertTrue(set.contains(WiringPi.GPIO_31));
+        assertFalse(set.contains(WiringPi.GPIO_1));
+        assertEquals(set, PinSet.fromMask(set.mask()));
+        assertEquals(2, set.without(WiringPi.GPIO_5).size());
+        assertEquals(set, PinSet.empty().union(set));
+        assertTrue(PinSet.empty().isEmpty());
+        assertEquals("[GPIO_0, GPIO_5, GPIO_31]", set.toString());
+    }
+
+    /**
+     * Ensures masks with addresses outside the WiringPi scheme are refused
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidMaskTest() {
+        // There is no WiringPi GPIO_17
+        PinSet.fromMask(1 << 17);
+    }
+
+    /**
+     * Ensures masked writes only touch the selected pins and readAll reports every level
+     */
+    @Test
+    public void bankTest() {
+        StubAccessor accessor = new StubAccessor();
+        OutputPin led0 = accessor.getOutGpio(WiringPi.GPIO_0);
+        OutputPin led1 = accessor.getOutGpio(WiringPi.GPIO_1);
+        OutputPin led2 = accessor.getOutGpio(WiringPi.GPIO_2);
+        led2.up();
+
+        PinSet leds = PinSet.of(WiringPi.GPIO_0, WiringPi.GPIO_1);
+        accessor.writeMasked(leds.mask(), PinSet.bit(WiringPi.GPIO_0));
+        assertTrue(led0.isUp());
+        assertTrue(led1.isDown());
+        assertTrue(led2.isUp());
+
+        int levels = accessor.readAll();
+        assertTrue(PinSet.isHigh(levels, WiringPi.GPIO_0));
+        assertFalse(PinSet.isHigh(levels, WiringPi.GPIO_1));
+        assertTrue(PinSet.isHigh(levels, WiringPi.GPIO_2));
+
+        accessor.writeMasked(leds.mask(), leds.valuesFor(true));
+        assertTrue(led1.isUp());
+    }
+
+    /**
+     * Ensures a mask with a non output pin is rejected before anything is written
+     */
+    @Test
+    public void partialWriteTest() {
+        StubAccessor accessor = new StubAccessor();
+        OutputPin led = accessor.getOutGpio(WiringPi.GPIO_0);
+        accessor.getInGpio(WiringPi.GPIO_1);
+
+        try {
+            accessor.writeMasked(PinSet.of(WiringPi.GPIO_0, WiringPi.GPIO_1).mask(), -1);
+            fail("GPIO_1 is an input pin");
+
+        } catch(IllegalArgumentException e) {
+            assertTrue(led.isDown());
+        }
+    }
+}
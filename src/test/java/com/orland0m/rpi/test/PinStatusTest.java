@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.orland0m.rpi.middleware.exception.InvalidatedPinException;
+import com.orland0m.rpi.middleware.exception.StacklessMode;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.PinStatus;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+import com.orland0m.rpi.test.helper.StubAccessor;
+
+/**
+ * ULT class for the non-throwing pin operations
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class PinStatusTest {
+    /**
+     * Restores the default exception mode
+     */
+    @After
+    public void tearDown() {
+        StacklessMode.setEnabled(false);
+    }
+
+    /**
+     * Ensures the try* pin calls report failures through status codes
+     */
+    @Test
+    public void pinStatusTest() {
+        StubAccessor accessor = new StubAccessor();
+        OutputPin pin = accessor.tryGetOutGpio(WiringPi.GPIO_0);
+        assertNotNull(pin);
+        assertEquals(PinStatus.LOW, pin.tryRead());
+        assertEquals(PinStatus.OK, pin.trySet(true));
+        assertEquals(PinStatus.HIGH, pin.tryRead());
+        assertEquals(PinStatus.OK, pin.tryToggle());
+        assertEquals(PinStatus.LOW, pin.tryRead());
+
+        pin.markInvalid();
+        assertEquals(PinStatus.INVALIDATED, pin.tryRead());
+        assertEquals(PinStatus.INVALIDATED, pin.trySet(true));
+        assertEquals(PinStatus.INVALIDATED, pin.tryToggle());
+        assertFalse(PinStatus.isSuccess(pin.tryToggle()));
+    }
+
+    /**
+     * Ensures tryGet calls return null instead of throwing
+     */
+    @Test
+    public void accessorStatusTest() {
+        StubAccessor accessor = new StubAccessor();
+        OutputPin out = accessor.tryGetOutGpio(WiringPi.GPIO_1);
+        assertSame(out, accessor.tryGetOutGpio(WiringPi.GPIO_1));
+
+        out.markBusy();
+        assertNull(accessor.tryGetInGpio(WiringPi.GPIO_1));
+        out.markFree();
+        assertNotNull(accessor.tryGetInGpio(WiringPi.GPIO_1));
+        assertFalse(out.isValid());
+
+        accessor.shutdown();
+        assertNull(accessor.tryGetOutGpio(WiringPi.GPIO_1));
+    }
+
+    /**
+     * Ensures stackless mode skips the stack trace
+     */
+    @Test
+    public void stacklessTest() {
+        assertTrue(new InvalidatedPinException("test").getStackTrace().length > 0);
+        StacklessMode.setEnabled(true);
+        assertEquals(0, new InvalidatedPinException("test").getStackTrace().length);
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.test;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.orland0m.rpi.access.rest.RestConfig;
+import com.orland0m.rpi.access.rest.RestGateway;
+import com.orland0m.rpi.access.sim.SimulatedPinAccessor;
+import com.orland0m.rpi.middleware.pin.InputPin;
+import com.orland0m.rpi.middleware.pin.PinSet;
+import com.orland0m.rpi.middleware.pin.PinStatus;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * ULT class for the REST gateway, served from a simulated accessor
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class RestGatewayTest {
+    /*! Key shared with the gateway */
+    private static final String API_KEY = "secret";
+    /*! The accessor exposed by the gateway */
+    private SimulatedPinAccessor accessor;
+    /*! The gateway under test */
+    private RestGateway gateway;
+
+    @BeforeClass
+    public static void setUpClass() {
+        // What a deployment passes on the command line, see RestGateway
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        RestConfig config = new RestConfig();
+        config.setBindAddress("127.0.0.1");
+        config.setPort(0);
+        config.setApiKey(API_KEY);
+        config.setWorkerThreads(2);
+        accessor = new SimulatedPinAccessor();
+        gateway = new RestGateway(accessor, config);
+        gateway.start();
+    }
+
+    @After
+    public void tearDown() {
+        gateway.stop();
+        accessor.shutdown();
+    }
+
+    /**
+     * Ensures output pins can be provisioned, written and read back
+     */
+    @Test
+    public void outputTest() throws IOException {
+        assertEquals("0", call("POST", "/gpio/GPIO_1/output", 200));
+        assertEquals("0", call("POST", "/gpio/GPIO_1/up", 200));
+        assertEquals("1", call("GET", "/gpio/GPIO_1/output", 200));
+        assertTrue(accessor.getOutGpio(WiringPi.GPIO_1).isUp());
+        assertEquals("0", call("POST", "/gpio/GPIO_1/toggle", 200));
+        assertEquals("0", call("GET", "/gpio/GPIO_1/output", 200));
+
+        call("POST", "/gpio/GPIO_2/output", 200);
+        call("POST", "/bank/" + PinSet.of(WiringPi.GPIO_1, WiringPi.GPIO_2).mask() + "/"
+             + PinSet.bit(WiringPi.GPIO_2), 200);
+        assertEquals(Integer.toString(PinSet.bit(WiringPi.GPIO_2)), call("GET", "/bank", 200));
+    }
+
+    /**
+     * Ensures inputs are read, reads never provision, and conflicts are reported with
+     * status codes
+     */
+    @Test
+    public void inputTest() throws IOException {
+        call("GET", "/gpio/GPIO_3/input", 404);
+        assertNull(accessor.findGpio(WiringPi.GPIO_3));
+        assertEquals("0", call("POST", "/gpio/GPIO_3/input", 200));
+        assertEquals("0", call("GET", "/gpio/GPIO_3/input", 200));
+        accessor.setInputLevel(WiringPi.GPIO_3, true);
+        assertEquals("1", call("GET", "/gpio/GPIO_3/input", 200));
+
+        // Reading in the other direction leaves the pin alone
+        assertEquals(Integer.toString(PinStatus.BUSY), call("GET", "/gpio/GPIO_3/output", 409));
+        assertTrue(accessor.findGpio(WiringPi.GPIO_3) instanceof InputPin);
+
+        InputPin busy = accessor.getInGpio(WiringPi.GPIO_4);
+        busy.markBusy();
+        assertEquals(Integer.toString(PinStatus.BUSY), call("POST", "/gpio/GPIO_4/up", 409));
+        busy.markFree();
+    }
+
+    /**
+     * Ensures malformed requests and bad keys are rejected
+     */
+    @Test
+    public void errorTest() throws IOException {
+        call("GET", "/gpio/GPIO_99/input", 404);
+        call("GET", "/gpio/GPIO_1/sideways", 404);
+        call("GET", "/gpio/GPIO_1/up", 405);
+        call("POST", "/bank/x/1", 400);
+        assertEquals(401, open("GET", "/gpio/GPIO_1/input", "wrong").getResponseCode());
+        assertEquals(401, open("GET", "/metrics", null).getResponseCode());
+    }
+
+    /**
+     * Ensures batches are folded in order and applied all or nothing
+     */
+    @Test
+    public void batchTest() throws IOException {
+        call("POST", "/gpio/GPIO_1/output", 200);
+        assertEquals("0", post("/batch", "GPIO_1 up\nGPIO_2 up\nGPIO_1 toggle\nGPIO_6 toggle\n", 200));
+        assertEquals(PinSet.of(WiringPi.GPIO_2, WiringPi.GPIO_6).mask(), accessor.readAll());
+
+        InputPin busy = accessor.getInGpio(WiringPi.GPIO_3);
+        busy.markBusy();
+        assertEquals(Integer.toString(PinStatus.BUSY), post("/batch", "GPIO_2 down\nGPIO_3 up\n", 409));
+        assertTrue(accessor.getOutGpio(WiringPi.GPIO_2).isUp());
+
+        // Rejected batches provision nothing, even pins listed before the failing line
+        post("/batch", "GPIO_4 up\nGPIO_3 up\n", 409);
+        assertNull(accessor.findGpio(WiringPi.GPIO_4));
+        busy.markFree();
+
+        post("/batch", "GPIO_4 up\nGPIO_2 sideways\n", 400);
+        post("/batch", "GPIO_2\n", 400);
+        assertNull(accessor.findGpio(WiringPi.GPIO_4));
+        assertTrue(accessor.findGpio(WiringPi.GPIO_3) instanceof InputPin);
+    }
+
+    /**
+     * Ensures the metrics endpoint serves the accessor's registry
+     */
+    @Test
+    public void metricsTest() throws IOException {
+        call("POST", "/gpio/GPIO_5/up", 200);
+        String text = call("GET", "/metrics", 200);
+        assertTrue(text.contains("rpi_pin_writes_total{gpio=\"GPIO_5\"} 1\n"));
+    }
+
+    /**
+     * Ensures edges of watched pins are streamed and replayed after a reconnection
+     */
+    @Test(timeout = 30000)
+    public void eventsTest() throws IOException {
+        call("POST", "/gpio/GPIO_6/watch", 200);
+        HttpURLConnection first = open("GET", "/events", API_KEY);
+        assertEquals(200, first.getResponseCode());
+        BufferedReader events = events(first);
+        accessor.setInputLevel(WiringPi.GPIO_6, true);
+
+        String id = nextEvent(events, "edge", "GPIO_6 1");
+        first.disconnect();
+
+        // Edges reported while disconnected are replayed from the last id received
+        accessor.setInputLevel(WiringPi.GPIO_6, false);
+        HttpURLConnection second = open("GET", "/events", API_KEY);
+        second.setRequestProperty("Last-Event-ID", id);
+        String replayed = nextEvent(events(second), "edge", "GPIO_6 0");
+        assertEquals(Long.parseLong(id.substring(id.indexOf(':') + 1)) + 1,
+                     Long.parseLong(replayed.substring(replayed.indexOf(':') + 1)));
+        second.disconnect();
+
+        // Ids from another gateway instance cannot be replayed
+        HttpURLConnection third = open("GET", "/events", API_KEY);
+        third.setRequestProperty("Last-Event-ID", "0:0");
+        nextEvent(events(third), "reset", "");
+        third.disconnect();
+
+        call("POST", "/gpio/GPIO_6/watch", 200);
+        call("GET", "/gpio/GPIO_6/watch", 405);
+        assertEquals(401, open("GET", "/events", null).getResponseCode());
+    }
+
+    /**
+     * Reads an event stream
+     *
+     * @param connection The connection, the request is sent when the stream is opened
+     * @return The stream
+     */
+    private BufferedReader events(HttpURLConnection connection) throws IOException {
+        return new BufferedReader(new InputStreamReader(connection.getInputStream(),
+                                                        StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Skips heartbeats and reads the next event, checking its name and data
+     *
+     * @param events The stream
+     * @param event The expected event name
+     * @param data The expected event data
+     * @return The event id
+     */
+    private String nextEvent(BufferedReader events, String event, String data) throws IOException {
+        String id = null;
+        String name = null;
+        String value = null;
+
+        for(String line = events.readLine(); name == null || !line.isEmpty(); line = events.readLine()) {
+            if(line.startsWith("id: ")) {
+                id = line.substring(4);
+
+            } else if(line.startsWith("event: ")) {
+                name = line.substring(7);
+
+            } else if(line.startsWith("data:")) {
+                value = line.substring(5).trim();
+            }
+        }
+
+        assertEquals(event, name);
+        assertEquals(data, value);
+        assertNotNull(id);
+        return id;
+    }
+
+    /**
+     * Performs a request and checks the response status
+     *
+     * @param method The request method
+     * @param path The request path
+     * @param expected The expected HTTP status
+     * @return The response body
+     */
+    private String call(String method, String path, int expected) throws IOException {
+        return read(open(method, path, API_KEY), method + " " + path, expected);
+    }
+
+    /**
+     * Posts a body and checks the response status
+     *
+     * @param path The request path
+     * @param body The request body
+     * @param expected The expected HTTP status
+     * @return The response body
+     */
+    private String post(String path, String body, int expected) throws IOException {
+        HttpURLConnection connection = open("POST", path, API_KEY);
+        connection.setDoOutput(true);
+
+        try(OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        return read(connection, "POST " + path, expected);
+    }
+
+    /**
+     * Checks the response status and reads the response body
+     *
+     * @param connection The connection
+     * @param request Description of the request, for failure messages
+     * @param expected The expected HTTP status
+     * @return The response body
+     */
+    private String read(HttpURLConnection connection, String request, int expected)
+    throws IOException {
+        assertEquals(request, expected, connection.getResponseCode());
+        InputStream in = expected < 400 ? connection.getInputStream() : connection.getErrorStream();
+
+        if(in == null) {
+            return "";
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[512];
+
+        for(int read; (read = in.read(buffer)) > 0;) {
+            body.write(buffer, 0, read);
+        }
+
+        in.close();
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Opens a connection to the gateway
+     *
+     * @param method The request method
+     * @param path The request path
+     * @param apiKey The key to send, null to send none
+     * @return The connection
+     */
+    private HttpURLConnection open(String method, String path, String apiKey) throws IOException {
+        URL url = new URL("http", "127.0.0.1", gateway.getAddress().getPort(), path);
+        HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+        connection.setRequestMethod(method);
+
+        if(apiKey != null) {
+            connection.setRequestProperty("X-Api-Key", apiKey);
+        }
+
+        return connection;
+    }
+}
\ No newline at end of file
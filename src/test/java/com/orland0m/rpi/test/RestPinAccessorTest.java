@@ -0,0 +1,303 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.orland0m.rpi.access.rest.RestConfig;
+import com.orland0m.rpi.access.rest.RestGateway;
+import com.orland0m.rpi.access.sim.SimulatedPinAccessor;
+import com.orland0m.rpi.middleware.RpiController;
+import com.orland0m.rpi.middleware.exception.PinBusyException;
+import com.orland0m.rpi.middleware.pin.InputPin;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.PinSet;
+import com.orland0m.rpi.middleware.pin.PinStatus;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * ULT class for the REST pin accessor, talking to a gateway over loopback
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class RestPinAccessorTest {
+    /*! Key shared with the gateway */
+    private static final String API_KEY = "secret";
+    /*! The accessor exposed by the gateway */
+    private SimulatedPinAccessor board;
+    /*! The gateway */
+    private RestGateway gateway;
+
+    @BeforeClass
+    public static void setUpClass() {
+        // What a deployment passes on the command line, see RestGateway
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        RestConfig config = new RestConfig();
+        config.setBindAddress("127.0.0.1");
+        config.setPort(0);
+        config.setApiKey(API_KEY);
+        board = new SimulatedPinAccessor();
+        gateway = new RestGateway(board, config);
+        gateway.start();
+    }
+
+    @After
+    public void tearDown() {
+        gateway.stop();
+        board.shutdown();
+    }
+
+    /**
+     * Ensures remote pins behave like local ones
+     */
+    @Test
+    public void pinTest() {
+        RpiController controller = new RpiController(clientConfig(2));
+        OutputPin out = controller.getOutGpio(WiringPi.GPIO_1);
+        out.up();
+        assertTrue(out.isUp());
+        assertTrue(board.getOutGpio(WiringPi.GPIO_1).isUp());
+        assertEquals(PinStatus.OK, out.tryToggle());
+        assertEquals(PinStatus.LOW, out.tryRead());
+
+        InputPin in = controller.getInGpio(WiringPi.GPIO_2);
+        board.setInputLevel(WiringPi.GPIO_2, true);
+        assertTrue(in.isUp());
+
+        controller.writeMasked(PinSet.bit(WiringPi.GPIO_1), -1);
+        assertEquals(PinSet.of(WiringPi.GPIO_1, WiringPi.GPIO_2).mask(), controller.readAll());
+        controller.shutdown();
+    }
+
+    /**
+     * Ensures gateway side conflicts map to the usual exceptions and status codes
+     */
+    @Test
+    public void conflictTest() {
+        RpiController controller = new RpiController(clientConfig(1));
+        OutputPin out = controller.getOutGpio(WiringPi.GPIO_3);
+        // Someone on the board takes the pin over as an input and holds it
+        InputPin local = board.getInGpio(WiringPi.GPIO_3);
+        local.markBusy();
+
+        try {
+            assertEquals(PinStatus.BUSY, out.trySet(true));
+            out.up();
+            fail("Remote pin should have been busy");
+
+        } catch(PinBusyException e) {
+        } finally {
+            local.markFree();
+        }
+
+        assertEquals(PinStatus.OK, out.trySet(true));
+        controller.shutdown();
+    }
+
+    /**
+     * Ensures concurrent calls are pipelined over a single connection without mixing up
+     * their responses
+     */
+    @Test(timeout = 30000)
+    public void pipeliningTest() throws InterruptedException {
+        final RpiController controller = new RpiController(clientConfig(1));
+        final int threads = 8;
+        final int calls = 200;
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger failures = new AtomicInteger();
+
+        for(int t = 0; t < threads; t++) {
+            final WiringPi gpio = WiringPi.fromGpioAddress(t);
+            final OutputPin out = controller.getOutGpio(gpio);
+
+            new Thread(() -> {
+                for(int i = 0; i < calls; i++) {
+                    boolean high = (i & 1) == 0;
+
+                    if(out.trySet(high) != PinStatus.OK
+                       || out.tryRead() != (high ? PinStatus.HIGH : PinStatus.LOW)) {
+                        failures.incrementAndGet();
+                    }
+                }
+
+                done.countDown();
+            }).start();
+        }
+
+        assertTrue(done.await(25, TimeUnit.SECONDS));
+        assertEquals(0, failures.get());
+        assertEquals(calls, board.getMetrics().getWrites(WiringPi.GPIO_7));
+        controller.shutdown();
+    }
+
+    /**
+     * Ensures batched writes are collapsed per pin and only applied on flush
+     */
+    @Test
+    public void batchingTest() {
+        RestConfig config = clientConfig(1);
+        config.setBatchWindow(1, TimeUnit.MINUTES);
+        RpiController controller = new RpiController(config);
+        OutputPin first = controller.getOutGpio(WiringPi.GPIO_1);
+        OutputPin second = controller.getOutGpio(WiringPi.GPIO_2);
+        OutputPin third = controller.getOutGpio(WiringPi.GPIO_3);
+
+        first.up();
+        second.up();
+        first.toggle();
+        third.toggle();
+        third.toggle();
+        assertEquals(0, board.readAll());
+
+        controller.flush();
+        assertEquals(PinSet.bit(WiringPi.GPIO_2), board.readAll());
+
+        // Reads send the pending batch first
+        first.up();
+        assertTrue(first.isUp());
+        controller.shutdown();
+    }
+
+    /**
+     * Ensures a failed batch is reported by the next flush
+     */
+    @Test
+    public void batchFailureTest() {
+        RestConfig config = clientConfig(1);
+        config.setBatchWindow(1, TimeUnit.MINUTES);
+        RpiController controller = new RpiController(config);
+        OutputPin out = controller.getOutGpio(WiringPi.GPIO_4);
+        InputPin local = board.getInGpio(WiringPi.GPIO_4);
+        local.markBusy();
+        assertEquals(PinStatus.OK, out.trySet(true));
+
+        try {
+            controller.flush();
+            fail("Batch should have failed");
+
+        } catch(PinBusyException e) {
+        } finally {
+            local.markFree();
+        }
+
+        controller.flush();
+        controller.shutdown();
+    }
+
+    /**
+     * Ensures remote listeners are notified of board edges, also after the gateway
+     * restarts
+     */
+    @Test(timeout = 30000)
+    public void listenerTest() throws IOException, InterruptedException {
+        RpiController controller = new RpiController(clientConfig(1));
+        InputPin in = controller.getInGpio(WiringPi.GPIO_5);
+        final Semaphore notified = new Semaphore(0);
+        final AtomicInteger high = new AtomicInteger();
+        in.addListener(pin -> {
+            if(pin.isUp()) {
+                high.incrementAndGet();
+            }
+
+            notified.release();
+        });
+
+        board.setInputLevel(WiringPi.GPIO_5, true);
+        assertTrue(notified.tryAcquire(5, TimeUnit.SECONDS));
+        assertEquals(1, high.get());
+
+        // The new gateway knows nothing about the client: the stream resyncs, which
+        // notifies the listener and watches the pin again
+        int port = gateway.getAddress().getPort();
+        gateway.stop();
+        RestConfig config = new RestConfig();
+        config.setBindAddress("127.0.0.1");
+        config.setPort(port);
+        config.setApiKey(API_KEY);
+        gateway = new RestGateway(board, config);
+        gateway.start();
+        assertTrue(notified.tryAcquire(10, TimeUnit.SECONDS));
+
+        board.setInputLevel(WiringPi.GPIO_5, false);
+        assertTrue(notified.tryAcquire(5, TimeUnit.SECONDS));
+        assertEquals(2, high.get());
+        controller.shutdown();
+    }
+
+    /**
+     * Ensures an unreachable gateway is reported instead of hanging
+     */
+    @Test
+    public void unreachableTest() throws IOException {
+        RestConfig config = clientConfig(1);
+
+        try(ServerSocket closed = new ServerSocket(0)) {
+            config.setPort(closed.getLocalPort());
+        }
+
+        RpiController controller = new RpiController(config);
+
+        try {
+            controller.getOutGpio(WiringPi.GPIO_0);
+            fail("Gateway should have been unreachable");
+
+        } catch(UncheckedIOException e) {
+        }
+
+        controller.shutdown();
+    }
+
+    /**
+     * Builds a client configuration for the running gateway
+     *
+     * @param connections The pool size
+     * @return The configuration
+     */
+    private RestConfig clientConfig(int connections) {
+        RestConfig config = new RestConfig();
+        config.setServer("127.0.0.1");
+        config.setPort(gateway.getAddress().getPort());
+        config.setApiKey(API_KEY);
+        config.setMaxConnections(connections);
+        config.setReadTimeout(5, TimeUnit.SECONDS);
+        return config;
+    }
+}
\ No newline at end of file
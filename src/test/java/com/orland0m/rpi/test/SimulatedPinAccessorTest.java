@@ -0,0 +1,157 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.orland0m.rpi.access.sim.SimulatedPinAccessor;
+import com.orland0m.rpi.access.sim.SimulationConfig;
+import com.orland0m.rpi.middleware.RpiController;
+import com.orland0m.rpi.middleware.event.Edge;
+import com.orland0m.rpi.middleware.event.PinEvent;
+import com.orland0m.rpi.middleware.pin.InputPin;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.PinSet;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * ULT class for the simulated backend
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class SimulatedPinAccessorTest {
+    /**
+     * Ensures outputs and inputs share the in-memory bank
+     */
+    @Test
+    public void levelsTest() {
+        RpiController controller = new RpiController(new SimulationConfig());
+        OutputPin out = controller.getOutGpio(WiringPi.GPIO_0);
+        out.up();
+        assertTrue(out.isUp());
+        out.toggle();
+        assertTrue(out.isDown());
+
+        controller.writeMasked(PinSet.of(WiringPi.GPIO_0).mask(), -1);
+        assertEquals(PinSet.bit(WiringPi.GPIO_0), controller.readAll());
+        controller.shutdown();
+    }
+
+    /**
+     * Ensures driving an input fires its listeners only on actual changes
+     */
+    @Test
+    public void inputTest() {
+        SimulatedPinAccessor accessor = new SimulatedPinAccessor();
+        InputPin in = accessor.getInGpio(WiringPi.GPIO_3);
+        final AtomicInteger changes = new AtomicInteger();
+        in.addListener(pin -> changes.incrementAndGet());
+
+        accessor.setInputLevel(WiringPi.GPIO_3, true);
+        accessor.setInputLevel(WiringPi.GPIO_3, true);
+        assertTrue(in.isUp());
+        accessor.setInputLevel(WiringPi.GPIO_3, false);
+        assertTrue(in.isDown());
+        assertEquals(2, changes.get());
+        accessor.shutdown();
+    }
+
+    /**
+     * Ensures events carry the new level, direction, capture time and sequence number,
+     * and that events are recycled between changes
+     */
+    @Test
+    public void eventTest() {
+        SimulatedPinAccessor accessor = new SimulatedPinAccessor();
+        InputPin in = accessor.getInGpio(WiringPi.GPIO_3);
+        final List<String> seen = new ArrayList<>();
+        final List<PinEvent> instances = new ArrayList<>();
+        final AtomicInteger adapted = new AtomicInteger();
+        in.addListener(pin -> adapted.incrementAndGet());
+        in.addEventListener(event -> {
+            seen.add(event.getGpio() + " " + event.isHigh() + " " + event.getEdge() + " " + event.getSequence());
+            instances.add(event);
+        });
+
+        long before = System.nanoTime();
+        accessor.setInputLevel(WiringPi.GPIO_3, true);
+        in.addEventListener(event -> {
+            assertEquals(Edge.FALLING, event.getEdge());
+            assertTrue(event.getTimestampNanos() >= before);
+            assertTrue(event.getTimestampNanos() <= System.nanoTime());
+        });
+        accessor.setInputLevel(WiringPi.GPIO_3, false);
+
+        assertEquals(2, adapted.get());
+        assertEquals("GPIO_3 true RISING 1", seen.get(0));
+        assertEquals("GPIO_3 false FALLING 2", seen.get(1));
+        assertSame(instances.get(0), instances.get(1));
+        accessor.shutdown();
+    }
+
+    /**
+     * Ensures the configured latency is applied to pin operations
+     */
+    @Test
+    public void latencyTest() {
+        SimulationConfig config = new SimulationConfig();
+        config.setLatency(2, TimeUnit.MILLISECONDS);
+        config.setJitter(1, TimeUnit.MILLISECONDS);
+        SimulatedPinAccessor accessor = new SimulatedPinAccessor(config);
+        OutputPin out = accessor.getOutGpio(WiringPi.GPIO_1);
+
+        long start = System.nanoTime();
+
+        for(int i = 0; i < 5; i++) {
+            out.toggle();
+        }
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(10));
+        accessor.shutdown();
+    }
+
+    /**
+     * Ensures synthetic edges reach the listeners at roughly the configured rate
+     *
+     * @throws InterruptedException If the test thread is interrupted
+     */
+    @Test
+    public void syntheticEdgesTest() throws InterruptedException {
+        SimulationConfig config = new SimulationConfig();
+        config.setEdgeRateHz(1000);
+        SimulatedPinAccessor accessor = new SimulatedPinAccessor(config);
+        final CountDownLatch edges = new CountDownLatch(50);
+        accessor.getInGpio(WiringPi.GPIO_2).addListener(pin -> edges.countDown());
+        assertTrue(edges.await(5, TimeUnit.SECONDS));
+        accessor.shutdown();
+    }
+}
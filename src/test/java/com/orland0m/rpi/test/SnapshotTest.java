@@ -0,0 +1,185 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.orland0m.rpi.access.sim.SimulatedPinAccessor;
+import com.orland0m.rpi.middleware.event.DebounceConfig;
+import com.orland0m.rpi.middleware.event.DebounceMode;
+import com.orland0m.rpi.middleware.journal.PinSnapshot;
+import com.orland0m.rpi.middleware.pin.InputPin;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * ULT class for pin snapshots and restoring them
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class SnapshotTest {
+    /*! Snapshot files */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    /*! The board before the restart */
+    private SimulatedPinAccessor board;
+    /*! The board after the restart */
+    private SimulatedPinAccessor restarted;
+
+    @Before
+    public void setUp() {
+        board = new SimulatedPinAccessor();
+        restarted = new SimulatedPinAccessor();
+    }
+
+    @After
+    public void tearDown() {
+        if(!board.isDown()) {
+            board.shutdown();
+        }
+
+        restarted.shutdown();
+    }
+
+    /**
+     * Ensures every provisioned pin comes back with its level and settings, without
+     * writing any output after provisioning it
+     */
+    @Test(timeout = 10000)
+    public void restoreTest() throws IOException {
+        File file = folder.newFile();
+
+        try(PinSnapshot snapshot = new PinSnapshot(file)) {
+            board.setSnapshot(snapshot);
+            board.getOutGpio(WiringPi.GPIO_0).up();
+            board.getOutGpio(WiringPi.GPIO_1).toggle();
+            board.getOutGpio(WiringPi.GPIO_2).up();
+            board.getOutGpio(WiringPi.GPIO_3).up();
+            board.writeMasked(1 << WiringPi.GPIO_2.getGpioAddress(), 0);
+            InputPin in = board.getInGpio(WiringPi.GPIO_7);
+            in.setDebounce(debounce());
+            in.setFrequencyWindow(250, TimeUnit.MILLISECONDS);
+
+            // Shutting down leaves the snapshot as it was
+            board.shutdown();
+        }
+
+        try(PinSnapshot snapshot = new PinSnapshot(file)) {
+            assertEquals(5, restarted.restore(snapshot));
+            assertTrue(restarted.getOutGpio(WiringPi.GPIO_0).isUp());
+            assertTrue(restarted.getOutGpio(WiringPi.GPIO_1).isUp());
+            assertFalse(restarted.getOutGpio(WiringPi.GPIO_2).isUp());
+            assertTrue(restarted.getOutGpio(WiringPi.GPIO_3).isUp());
+
+            for(WiringPi gpio : new WiringPi[] {WiringPi.GPIO_0, WiringPi.GPIO_1, WiringPi.GPIO_2}) {
+                assertEquals(0, restarted.getMetrics().getWrites(gpio));
+            }
+
+            // Restored settings are still in the snapshot, and the filter is active
+            DebounceConfig restored = snapshot.getDebounce(WiringPi.GPIO_7);
+            assertEquals(DebounceMode.LEADING, restored.getMode());
+            assertEquals(TimeUnit.MILLISECONDS.toNanos(20), restored.getStableTimeNanos());
+            assertEquals(5, restored.getMaxRate());
+            assertEquals(TimeUnit.MILLISECONDS.toNanos(250), snapshot.getFrequencyWindowNanos(WiringPi.GPIO_7));
+
+            for(int i = 0; i < 4; i++) {
+                restarted.setInputLevel(WiringPi.GPIO_7, i % 2 == 0);
+            }
+
+            assertTrue(restarted.getInGpio(WiringPi.GPIO_7).getSuppressedEdgeCount() > 0);
+        }
+    }
+
+    /**
+     * Ensures the snapshot follows invalidation, direction changes and removed filters
+     */
+    @Test(timeout = 10000)
+    public void incrementalTest() throws IOException {
+        try(PinSnapshot snapshot = new PinSnapshot(folder.newFile())) {
+            OutputPin out = board.getOutGpio(WiringPi.GPIO_0);
+            out.up();
+
+            // Pins provisioned before binding are recorded with their level
+            board.setSnapshot(snapshot);
+            assertEquals(PinSnapshot.OUTPUT, snapshot.getDirection(WiringPi.GPIO_0));
+            assertTrue(snapshot.isHigh(WiringPi.GPIO_0));
+
+            out.down();
+            assertFalse(snapshot.isHigh(WiringPi.GPIO_0));
+
+            InputPin in = board.getInGpio(WiringPi.GPIO_0);
+            assertEquals(PinSnapshot.INPUT, snapshot.getDirection(WiringPi.GPIO_0));
+            in.setDebounce(debounce());
+            assertNotNull(snapshot.getDebounce(WiringPi.GPIO_0));
+            in.setDebounce(null);
+            assertNull(snapshot.getDebounce(WiringPi.GPIO_0));
+
+            in.markInvalid();
+            assertEquals(PinSnapshot.NONE, snapshot.getDirection(WiringPi.GPIO_0));
+
+            // Unbound snapshots are left alone
+            board.setSnapshot(null);
+            board.getOutGpio(WiringPi.GPIO_1);
+            assertEquals(PinSnapshot.NONE, snapshot.getDirection(WiringPi.GPIO_1));
+        }
+    }
+
+    /**
+     * Ensures files that are not snapshots are refused
+     */
+    @Test(timeout = 10000, expected = IOException.class)
+    public void corruptTest() throws IOException {
+        File file = folder.newFile();
+
+        try(FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[] {1, 2, 3, 4});
+        }
+
+        new PinSnapshot(file).close();
+    }
+
+    /**
+     * Builds the filter used by the tests
+     *
+     * @return A leading filter with a rate cap
+     */
+    private static DebounceConfig debounce() {
+        DebounceConfig config = new DebounceConfig();
+        config.setMode(DebounceMode.LEADING);
+        config.setStableTime(20, TimeUnit.MILLISECONDS);
+        config.setMaxRate(5);
+        return config;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,146 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.test;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.orland0m.rpi.access.sim.SimulatedPinAccessor;
+import com.orland0m.rpi.middleware.SoftwarePwm;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.PinSet;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * ULT class for the software PWM engine
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class SoftwarePwmTest {
+    /*! The board */
+    private SimulatedPinAccessor board;
+    /*! The engine */
+    private SoftwarePwm pwm;
+
+    @Before
+    public void setUp() {
+        board = new SimulatedPinAccessor();
+        pwm = new SoftwarePwm(board);
+    }
+
+    @After
+    public void tearDown() {
+        pwm.close();
+        board.shutdown();
+    }
+
+    /**
+     * Ensures pins spend their duty cycle high and duty updates apply without a restart
+     */
+    @Test(timeout = 10000)
+    public void dutyTest() {
+        OutputPin a = board.getOutGpio(WiringPi.GPIO_0);
+        OutputPin b = board.getOutGpio(WiringPi.GPIO_1);
+        pwm.set(PinSet.of(WiringPi.GPIO_0, WiringPi.GPIO_1).mask(), 100, 0.25);
+        assertEquals(0.25, measure(a), 0.12);
+
+        pwm.setDuty(WiringPi.GPIO_1, 0.75);
+        assertEquals(0.75, pwm.getDuty(WiringPi.GPIO_1), 0.001);
+        assertEquals(0.75, measure(b), 0.12);
+        assertEquals(0.25, measure(a), 0.12);
+
+        // Both channels share their rising edges, so they share writes
+        assertTrue(pwm.getWrites() < pwm.getTimingErrors().getCount());
+        assertEquals(0, pwm.getFailedWrites());
+    }
+
+    /**
+     * Ensures the duty cycle extremes hold the pin and removing a channel drives it low
+     */
+    @Test(timeout = 10000)
+    public void extremesTest() throws InterruptedException {
+        OutputPin a = board.getOutGpio(WiringPi.GPIO_2);
+        pwm.set(WiringPi.GPIO_2, 200, 1);
+        Thread.sleep(20);
+        assertEquals(1, measure(a), 0.01);
+        pwm.setDuty(WiringPi.GPIO_2, 0);
+        Thread.sleep(20);
+        assertEquals(0, measure(a), 0.01);
+
+        pwm.setDuty(WiringPi.GPIO_2, 1);
+        Thread.sleep(20);
+        pwm.remove(WiringPi.GPIO_2);
+        Thread.sleep(20);
+        assertTrue(a.isDown());
+        assertEquals(0, pwm.getDuty(WiringPi.GPIO_2), 0);
+
+        try {
+            pwm.setDuty(WiringPi.GPIO_2, 0.5);
+            fail("Removed channel should not be driven");
+
+        } catch(IllegalStateException e) {
+        }
+    }
+
+    /**
+     * Ensures closing the engine drives its pins low
+     */
+    @Test(timeout = 10000)
+    public void closeTest() throws InterruptedException {
+        OutputPin a = board.getOutGpio(WiringPi.GPIO_3);
+        pwm.set(WiringPi.GPIO_3, 50, 1);
+        Thread.sleep(20);
+        assertTrue(a.isUp());
+        pwm.close();
+        Thread.sleep(20);
+        assertTrue(a.isDown());
+    }
+
+    /**
+     * Samples a pin for 300 milliseconds
+     *
+     * @param pin The pin
+     * @return Fraction of the samples that were high
+     */
+    private static double measure(OutputPin pin) {
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+        long samples = 0;
+        long high = 0;
+
+        while(System.nanoTime() < end) {
+            samples++;
+
+            if(pin.isUp()) {
+                high++;
+            }
+        }
+
+        return (double)high / samples;
+    }
+}
\ No newline at end of file
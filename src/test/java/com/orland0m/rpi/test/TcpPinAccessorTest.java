@@ -0,0 +1,370 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.test;
+
+import static org.junit.Assert.*;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.orland0m.rpi.access.sim.SimulatedPinAccessor;
+import com.orland0m.rpi.access.tcp.TcpConfig;
+import com.orland0m.rpi.access.tcp.TcpGateway;
+import com.orland0m.rpi.middleware.RpiController;
+import com.orland0m.rpi.middleware.exception.PinBusyException;
+import com.orland0m.rpi.middleware.pin.InputPin;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.PinSet;
+import com.orland0m.rpi.middleware.pin.PinStatus;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * ULT class for the binary TCP pin accessor, talking to a gateway over loopback
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class TcpPinAccessorTest {
+    /*! Key shared with the gateway */
+    private static final String API_KEY = "secret";
+    /*! TcpProtocol opcodes used by the raw frame helper */
+    private static final byte AUTH = 1, PROVISION_INPUT = 2, READ_INPUT = 4, READ_OUTPUT = 5,
+                              BAD_REQUEST = 14;
+    /*! The accessor exposed by the gateway */
+    private SimulatedPinAccessor board;
+    /*! The gateway */
+    private TcpGateway gateway;
+
+    @Before
+    public void setUp() throws IOException {
+        board = new SimulatedPinAccessor();
+        gateway = startGateway(0);
+    }
+
+    @After
+    public void tearDown() {
+        gateway.stop();
+        board.shutdown();
+    }
+
+    /**
+     * Ensures remote pins behave like local ones
+     */
+    @Test
+    public void pinTest() {
+        RpiController controller = new RpiController(clientConfig(API_KEY, 4));
+        OutputPin out = controller.getOutGpio(WiringPi.GPIO_1);
+        out.up();
+        assertTrue(out.isUp());
+        assertTrue(board.getOutGpio(WiringPi.GPIO_1).isUp());
+        assertEquals(PinStatus.OK, out.tryToggle());
+        assertEquals(PinStatus.LOW, out.tryRead());
+
+        InputPin in = controller.getInGpio(WiringPi.GPIO_2);
+        board.setInputLevel(WiringPi.GPIO_2, true);
+        assertTrue(in.isUp());
+
+        controller.writeMasked(PinSet.bit(WiringPi.GPIO_1), -1);
+        assertEquals(PinSet.of(WiringPi.GPIO_1, WiringPi.GPIO_2).mask(), controller.readAll());
+        controller.shutdown();
+    }
+
+    /**
+     * Ensures gateway side conflicts map to the usual exceptions and status codes
+     */
+    @Test
+    public void conflictTest() {
+        RpiController controller = new RpiController(clientConfig(API_KEY, 4));
+        OutputPin out = controller.getOutGpio(WiringPi.GPIO_3);
+        InputPin local = board.getInGpio(WiringPi.GPIO_3);
+        local.markBusy();
+
+        try {
+            assertEquals(PinStatus.BUSY, out.trySet(true));
+            out.up();
+            fail("Remote pin should have been busy");
+
+        } catch(PinBusyException e) {
+        } finally {
+            local.markFree();
+        }
+
+        assertEquals(PinStatus.OK, out.trySet(true));
+        controller.shutdown();
+    }
+
+    /**
+     * Ensures more concurrent callers than the in-flight window get their own responses
+     */
+    @Test(timeout = 30000)
+    public void windowTest() throws InterruptedException {
+        final RpiController controller = new RpiController(clientConfig(API_KEY, 2));
+        final int threads = 8;
+        final int calls = 500;
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger failures = new AtomicInteger();
+
+        for(int t = 0; t < threads; t++) {
+            final WiringPi gpio = WiringPi.fromGpioAddress(t);
+            final OutputPin pin = controller.getOutGpio(gpio);
+
+            new Thread(() -> {
+                boolean level = false;
+
+                for(int i = 0; i < calls; i++) {
+                    level = !level;
+
+                    if(pin.trySet(level) != PinStatus.OK
+                            || pin.tryRead() != (level ? PinStatus.HIGH : PinStatus.LOW)) {
+                        failures.incrementAndGet();
+                    }
+                }
+
+                done.countDown();
+            }).start();
+        }
+
+        done.await();
+        assertEquals(0, failures.get());
+        controller.shutdown();
+    }
+
+    /**
+     * Ensures remote listeners are notified of board edges, also after the gateway
+     * restarts
+     */
+    @Test(timeout = 30000)
+    public void listenerTest() throws IOException, InterruptedException {
+        RpiController controller = new RpiController(clientConfig(API_KEY, 4));
+        InputPin in = controller.getInGpio(WiringPi.GPIO_5);
+        final Semaphore notified = new Semaphore(0);
+        final AtomicInteger high = new AtomicInteger();
+        in.addListener(pin -> {
+            // Listeners may call back into the accessor
+            if(pin.isUp()) {
+                high.incrementAndGet();
+            }
+
+            notified.release();
+        });
+
+        board.setInputLevel(WiringPi.GPIO_5, true);
+        assertTrue(notified.tryAcquire(5, TimeUnit.SECONDS));
+        assertEquals(1, high.get());
+
+        // The client reconnects in the background, watches the pin again and notifies
+        // the listener once
+        int port = gateway.getAddress().getPort();
+        gateway.stop();
+        gateway = startGateway(port);
+        assertTrue(notified.tryAcquire(10, TimeUnit.SECONDS));
+
+        board.setInputLevel(WiringPi.GPIO_5, false);
+        assertTrue(notified.tryAcquire(5, TimeUnit.SECONDS));
+        assertEquals(2, high.get());
+        controller.shutdown();
+    }
+
+    /**
+     * Ensures UDP writes reach the board, full state datagrams repair levels changed
+     * behind the client's back and stop once the pin is no longer an output
+     */
+    @Test(timeout = 30000)
+    public void udpTest() throws IOException, InterruptedException {
+        gateway.stop();
+        TcpConfig gatewayConfig = new TcpConfig();
+        gatewayConfig.setBindAddress("127.0.0.1");
+        gatewayConfig.setPort(0);
+        gatewayConfig.setApiKey(API_KEY);
+        gatewayConfig.setUdpPort(0);
+        gateway = new TcpGateway(board, gatewayConfig);
+        gateway.start();
+
+        TcpConfig config = clientConfig(API_KEY, 4);
+        config.setUdpPort(gateway.getUdpAddress().getPort());
+        config.setFullStateInterval(50, TimeUnit.MILLISECONDS);
+        RpiController controller = new RpiController(config);
+        OutputPin out = controller.getOutGpio(WiringPi.GPIO_6);
+        OutputPin local = board.getOutGpio(WiringPi.GPIO_6);
+
+        assertEquals(PinStatus.OK, out.trySet(true));
+        awaitLevel(local, true);
+        out.toggle();
+        awaitLevel(local, false);
+        out.toggle();
+        awaitLevel(local, true);
+
+        // Nothing is written by the client, the next full state datagram restores it
+        local.down();
+        awaitLevel(local, true);
+
+        // Once the pin turns into an input, datagrams must not provision it back
+        controller.getInGpio(WiringPi.GPIO_6);
+        Thread.sleep(200);
+        assertTrue(board.findGpio(WiringPi.GPIO_6) instanceof InputPin);
+        assertFalse(local.isValid());
+        controller.shutdown();
+    }
+
+    /**
+     * Ensures a wrong key or an unreachable gateway are reported instead of hanging
+     */
+    @Test
+    public void failureTest() {
+        RpiController controller = new RpiController(clientConfig("wrong", 4));
+
+        try {
+            controller.getOutGpio(WiringPi.GPIO_0);
+            fail("Gateway should have rejected the key");
+
+        } catch(UncheckedIOException e) {
+        }
+
+        controller.shutdown();
+        TcpConfig config = clientConfig(API_KEY, 4);
+        gateway.stop();
+        RpiController unreachable = new RpiController(config);
+
+        try {
+            unreachable.getOutGpio(WiringPi.GPIO_0);
+            fail("Gateway should have been unreachable");
+
+        } catch(UncheckedIOException e) {
+        }
+
+        unreachable.shutdown();
+    }
+
+    /**
+     * Ensures reads never provision and leave pins provisioned in the other direction alone
+     */
+    @Test(timeout = 10000)
+    public void readTest() throws IOException {
+        try(Socket socket = new Socket("127.0.0.1", gateway.getAddress().getPort())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            byte[] key = API_KEY.getBytes(StandardCharsets.UTF_8);
+            assertEquals(PinStatus.OK, call(out, in, AUTH, 0xFF, key.length, key)[1]);
+
+            assertEquals(BAD_REQUEST, call(out, in, READ_INPUT, 3, 0, null)[0]);
+            assertNull(board.findGpio(WiringPi.GPIO_3));
+            assertEquals(PinStatus.LOW, call(out, in, PROVISION_INPUT, 3, 0, null)[1]);
+            board.setInputLevel(WiringPi.GPIO_3, true);
+            assertEquals(PinStatus.HIGH, call(out, in, READ_INPUT, 3, 0, null)[1]);
+
+            // Reading in the other direction leaves the pin alone
+            int[] response = call(out, in, READ_OUTPUT, 3, 0, null);
+            assertEquals(READ_OUTPUT, response[0]);
+            assertEquals(PinStatus.BUSY, response[1]);
+            assertTrue(board.findGpio(WiringPi.GPIO_3) instanceof InputPin);
+            assertTrue(board.findGpio(WiringPi.GPIO_3).isValid());
+        }
+    }
+
+    /**
+     * Sends a raw request frame and reads the response frame
+     *
+     * @param out The socket output
+     * @param in The socket input
+     * @param opcode The opcode
+     * @param gpio The GPIO address
+     * @param value The value
+     * @param payload Bytes sent after the frame, or null
+     * @return The response opcode and status
+     */
+    private static int[] call(DataOutputStream out, DataInputStream in, byte opcode, int gpio,
+                              int value, byte[] payload) throws IOException {
+        out.writeByte(opcode);
+        out.writeByte(gpio);
+        out.writeShort(0);
+        out.writeInt(1);
+        out.writeInt(value);
+        out.writeInt(0);
+
+        if(payload != null) {
+            out.write(payload);
+        }
+
+        out.flush();
+        byte[] frame = new byte[16];
+        in.readFully(frame);
+        return new int[] { frame[0], (short)((frame[2] & 0xFF) << 8 | frame[3] & 0xFF) };
+    }
+
+    /**
+     * Waits until a board pin reaches a level, datagrams are not acknowledged
+     *
+     * @param pin The board pin
+     * @param high The expected level
+     */
+    private static void awaitLevel(OutputPin pin, boolean high) throws InterruptedException {
+        while(pin.isUp() != high) {
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * Starts a gateway for the board
+     *
+     * @param port The port, zero picks a free one
+     * @return The running gateway
+     */
+    private TcpGateway startGateway(int port) throws IOException {
+        TcpConfig config = new TcpConfig();
+        config.setBindAddress("127.0.0.1");
+        config.setPort(port);
+        config.setApiKey(API_KEY);
+        TcpGateway started = new TcpGateway(board, config);
+        started.start();
+        return started;
+    }
+
+    /**
+     * Builds a client configuration for the running gateway
+     *
+     * @param apiKey The key to present
+     * @param window The in-flight window
+     * @return The configuration
+     */
+    private TcpConfig clientConfig(String apiKey, int window) {
+        TcpConfig config = new TcpConfig();
+        config.setServer("127.0.0.1");
+        config.setPort(gateway.getAddress().getPort());
+        config.setApiKey(apiKey);
+        config.setMaxInFlight(window);
+        config.setReadTimeout(5, TimeUnit.SECONDS);
+        return config;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,150 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.test;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.orland0m.rpi.access.sim.SimulatedPinAccessor;
+import com.orland0m.rpi.middleware.WaveformPlayer;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.PinSet;
+import com.orland0m.rpi.middleware.pin.Waveform;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * ULT class for the waveform player
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class WaveformPlayerTest {
+    /*! The board */
+    private SimulatedPinAccessor board;
+    /*! The player */
+    private WaveformPlayer player;
+
+    @Before
+    public void setUp() {
+        board = new SimulatedPinAccessor();
+        player = new WaveformPlayer(board);
+    }
+
+    @After
+    public void tearDown() {
+        player.close();
+        board.shutdown();
+    }
+
+    /**
+     * Ensures a timeline plays once, in order, and its timing errors are recorded
+     */
+    @Test(timeout = 10000)
+    public void playTest() throws InterruptedException {
+        OutputPin a = board.getOutGpio(WiringPi.GPIO_0);
+        OutputPin b = board.getOutGpio(WiringPi.GPIO_1);
+        int both = PinSet.of(WiringPi.GPIO_0, WiringPi.GPIO_1).mask();
+        long ms = TimeUnit.MILLISECONDS.toNanos(1);
+        Waveform waveform = new Waveform(new long[] {0, 5 * ms, 10 * ms},
+                                         new int[] {both, both, PinSet.bit(WiringPi.GPIO_0)},
+                                         new int[] {PinSet.bit(WiringPi.GPIO_0), both, 0},
+                                         15 * ms);
+
+        long start = System.nanoTime();
+        player.start(waveform, false);
+        assertTrue(player.awaitCompletion(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= 10 * ms);
+
+        assertTrue(a.isDown());
+        assertTrue(b.isUp());
+        assertEquals(3, player.getTimingErrors().getCount());
+        assertEquals(0, player.getFailedWrites());
+        assertTrue(player.getMaxTimingErrorNanos() >= player.getTimingErrorNanos(2));
+        assertFalse(player.isPlaying());
+    }
+
+    /**
+     * Ensures a timeline waits for its start time
+     */
+    @Test(timeout = 10000)
+    public void startAtTest() throws InterruptedException {
+        OutputPin a = board.getOutGpio(WiringPi.GPIO_0);
+        Waveform waveform = Waveform.square(PinSet.bit(WiringPi.GPIO_0), 1, 1, TimeUnit.SECONDS);
+
+        player.start(waveform, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50), false);
+        assertTrue(player.isPlaying());
+        assertTrue(a.isDown());
+        Thread.sleep(200);
+        assertTrue(a.isUp());
+
+        // Stopping keeps the last level written
+        player.stop();
+        assertTrue(player.awaitCompletion(1, TimeUnit.SECONDS));
+        assertTrue(a.isUp());
+    }
+
+    /**
+     * Ensures a looping timeline repeats until stopped
+     */
+    @Test(timeout = 10000)
+    public void loopTest() throws InterruptedException {
+        board.getOutGpio(WiringPi.GPIO_2);
+        Waveform waveform = Waveform.square(PinSet.bit(WiringPi.GPIO_2), 1, 1, TimeUnit.MILLISECONDS);
+
+        player.start(waveform, true);
+        assertFalse(player.awaitCompletion(100, TimeUnit.MILLISECONDS));
+        player.stop();
+        assertTrue(player.awaitCompletion(1, TimeUnit.SECONDS));
+        assertTrue(player.getTimingErrors().getCount() > 20);
+    }
+
+    /**
+     * Ensures malformed timelines are rejected and failed writes counted
+     */
+    @Test(timeout = 10000)
+    public void failureTest() throws InterruptedException {
+        try {
+            new Waveform(new long[] {5, 1}, new int[2], new int[2], 10);
+            fail("Offsets should have been rejected");
+
+        } catch(IllegalArgumentException e) {
+        }
+
+        try {
+            new Waveform(new long[] {0, 10}, new int[2], new int[2], 10);
+            fail("Period should have been rejected");
+
+        } catch(IllegalArgumentException e) {
+        }
+
+        // GPIO_3 is not provisioned as an output
+        player.start(Waveform.square(PinSet.bit(WiringPi.GPIO_3), 1, 1, TimeUnit.MILLISECONDS), false);
+        assertTrue(player.awaitCompletion(1, TimeUnit.SECONDS));
+        assertEquals(2, player.getFailedWrites());
+    }
+}
\ No newline at end of file
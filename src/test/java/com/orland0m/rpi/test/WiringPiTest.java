@@ -65,6 +65,19 @@ public class WiringPiTest {
         32,
         36, 38, 40
     };
+    /*! An array containing the BCM GPIO number of every pin,
+     * the positions in this array match their corresponding GPIO in @c GPIOS */
+    private static final int[] BCM_GPIOS = new int[] {
+        2, 3, 4,
+        17, 27, 22,
+        10, 9, 11,
+        0, 5, 6, 13, 19, 26,
+        14, 15, 18,
+        23, 24,
+        25, 8, 7, 1,
+        12,
+        16, 20, 21
+    };
     /*! The number of GPIO pins available */
     private static int EXPECTED_GPIO_COUNT = 28;
 
@@ -165,4 +178,19 @@ public class WiringPiTest {
 
         assertEquals(EXPECTED_GPIO_COUNT, references.size());
     }
+
+    /**
+     * Ensures every GPIO maps to its Broadcom number and that no two GPIOs share one
+     */
+    @Test
+    public void bcmCompletnessTest() {
+        assertEquals(EXPECTED_GPIO_COUNT, BCM_GPIOS.length);
+        Set<Integer> references = new HashSet<>();
+
+        for(int i = 0; i < EXPECTED_GPIO_COUNT; i++) {
+            WiringPi obj = WiringPi.fromGpioAddress(GPIOS[i]);
+            assertEquals(BCM_GPIOS[i], obj.getBcmGpio());
+            assertTrue(references.add(obj.getBcmGpio()));
+        }
+    }
 }
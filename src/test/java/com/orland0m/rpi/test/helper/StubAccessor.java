@@ -0,0 +1,151 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Orlando Miramontes <https://github.com/orland0m>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.orland0m.rpi.test.helper;
+
+import com.orland0m.rpi.access.BaseAccessor;
+import com.orland0m.rpi.access.BaseInputPin;
+import com.orland0m.rpi.access.BaseOutputPin;
+import com.orland0m.rpi.access.BasePin;
+import com.orland0m.rpi.middleware.exception.AccessorDownException;
+import com.orland0m.rpi.middleware.exception.PinBusyException;
+import com.orland0m.rpi.middleware.pin.InputPin;
+import com.orland0m.rpi.middleware.pin.OutputPin;
+import com.orland0m.rpi.middleware.pin.WiringPi;
+
+/**
+ * Hardware free accessor used to exercise BaseAccessor and BasePin logic in tests
+ *
+ * @author Orlando Miramontes <https://github.com/orland0m>
+ */
+public class StubAccessor extends BaseAccessor {
+    /**
+     * Input pin that always reads low
+     */
+    public static class StubInputPin extends BaseInputPin {
+        public StubInputPin(WiringPi gpio) {
+            super(gpio);
+        }
+
+        @Override
+        protected boolean readLevel() {
+            return false;
+        }
+
+        /**
+         * Simulates an edge, notifying every registered listener
+         */
+        public void fire() {
+            fireStateChange();
+        }
+    }
+
+    /**
+     * Output pin that keeps its level in a field
+     */
+    public static class StubOutputPin extends BaseOutputPin {
+        /*! The current pin level */
+        private volatile boolean level;
+
+        public StubOutputPin(WiringPi gpio) {
+            super(gpio);
+        }
+
+        @Override
+        protected boolean readLevel() {
+            return level;
+        }
+
+        @Override
+        protected void writeLevel(boolean high) {
+            level = high;
+        }
+    }
+
+    /**
+     * Exposes the protected registration call so tests can race on it
+     *
+     * @param pin The pin to register
+     */
+    public void register(BasePin pin) {
+        registerProvisionedPin(pin);
+    }
+
+    @Override
+    public InputPin getInPin(int physicalPinNumber) {
+        return getInGpio(WiringPi.fromPhysicalPin(physicalPinNumber));
+    }
+
+    @Override
+    public InputPin getInGpio(int gpioNumber) {
+        return getInGpio(WiringPi.fromGpioAddress(gpioNumber));
+    }
+
+    @Override
+    public InputPin getInGpio(String gpioName) {
+        return getInGpio(WiringPi.fromGpioName(gpioName));
+    }
+
+    @Override
+    public InputPin getInGpio(WiringPi gpio) throws PinBusyException, AccessorDownException {
+        synchronized(provisioningLock(gpio)) {
+            InputPin retVal = getForInputOrRelease(gpio);
+
+            if(retVal == null) {
+                retVal = new StubInputPin(gpio);
+                registerProvisionedPin(retVal);
+            }
+
+            return retVal;
+        }
+    }
+
+    @Override
+    public OutputPin getOutPin(int physicalPinNumber) {
+        return getOutGpio(WiringPi.fromPhysicalPin(physicalPinNumber));
+    }
+
+    @Override
+    public OutputPin getOutGpio(int gpioNumber) {
+        return getOutGpio(WiringPi.fromGpioAddress(gpioNumber));
+    }
+
+    @Override
+    public OutputPin getOutGpio(String gpioName) {
+        return getOutGpio(WiringPi.fromGpioName(gpioName));
+    }
+
+    @Override
+    public OutputPin getOutGpio(WiringPi gpio) throws PinBusyException, AccessorDownException {
+        synchronized(provisioningLock(gpio)) {
+            OutputPin retVal = getForOutputOrRelease(gpio);
+
+            if(retVal == null) {
+                retVal = new StubOutputPin(gpio);
+                registerProvisionedPin(retVal);
+            }
+
+            return retVal;
+        }
+    }
+}